@@ -10,6 +10,7 @@ Input is fasta and gff files.
 The .pkm file may be used by CallGenes.
 
 Usage:  analyzegenes.sh in=x.fa gff=x.gff out=x.pgm
+        analyzegenes.sh in=new.fa model=x.pgm out=y.pgm
 
 File parameters:
 in=<file>       A fasta file or comma-delimited list of fasta files.
@@ -18,6 +19,10 @@ gff=<file>      A gff file or comma-delimited list.  This is optional;
                 If absent, a fasta file 'foo.fasta' will imply the
                 presence of 'foo.gff'.
 out=<file>      Output pgm file.
+model=<file>    Optional existing pgm file or comma-delimited list.  The new
+                genomes are added to it, giving the same model as processing
+                all of its genomes and the new ones together.
+t=              Maximum threads; fasta files are processed in parallel.
 
 Please contact Brian Bushnell at bbushnell@lbl.gov if you encounter any problems.
 For documentation and the latest version, visit: https://bbmap.org
@@ -0,0 +1,74 @@
+#!/bin/bash
+
+usage(){
+echo "
+Written by Brandon Imstepf
+Last modified August 9, 2025
+
+Description:  Runs the JMH benchmarks for gene calling and neural network
+inference, and writes the results as JSON so builds can be compared.
+Benchmarks must first be compiled with './compile.sh bench' or 'ant bench'.
+
+Usage:  bench.sh jmh=<folder> out=bench.json [JMH options] [regex]
+
+Parameters:
+jmh=<folder>    Folder containing the JMH jars (default: \$JMH_HOME).
+out=<file>      JSON results file (default: bench.json).
+regex           Only run benchmarks matching this, e.g. GeneCallerBench
+                or InferenceBench.cnn.
+
+Any other arguments go to JMH; useful ones include:
+-p genome=<fasta>   Genome for GeneCallerBench; 'synthetic' for random
+                    sequence, or '?name' for a bundled resource.
+-p net=<file.bbnet> Trained CNN for InferenceBench instead of random weights.
+-f 1 -wi 3 -i 5     Forks, warmup iterations, measurement iterations.
+-l                  List benchmarks and exit.
+
+Benchmarks:
+prok.GeneCallerBench.callGenes              Whole-genome GeneCaller.callGenes.
+prok.GeneCallerBench.scorePoint             FrameStats.scorePoint, 1M positions.
+prok.GeneCallerBench.generateFeatureVector  CNN features for all called CDS.
+ml.InferenceBench.cnnForward                CNNNetwork.forward, one sample.
+ml.InferenceBench.cnnInferenceScore         CNNInference.score, one sample.
+ml.InferenceBench.cnnInferenceBatch         CNNInference.scoreBatch, per sample.
+ml.InferenceBench.cellNetFeedForward        CellNet.feedForward, one sample.
+"
+}
+
+pushd . > /dev/null
+DIR="${BASH_SOURCE[0]}"
+while [ -h "$DIR" ]; do
+  cd "$(dirname "$DIR")"
+  DIR="$(readlink "$(basename "$DIR")")"
+done
+cd "$(dirname "$DIR")"
+DIR="$(pwd)/"
+popd > /dev/null
+CP="$DIR""current/"
+BENCH="$DIR""bench/build/"
+
+if [[ $1 == -h ]] || [[ $1 == --help ]]; then
+	usage
+	exit
+fi
+
+JMH="$JMH_HOME"
+OUT="bench.json"
+ARGS=()
+for arg in "$@"; do
+	case $arg in
+		jmh=*) JMH="${arg#jmh=}";;
+		out=*) OUT="${arg#out=}";;
+		*) ARGS+=("$arg");;
+	esac
+done
+
+if [[ -z "$JMH" ]] || [[ ! -d "$BENCH" ]]; then
+	echo "ERROR: Needs jmh=<folder> (or JMH_HOME) and benchmarks built in $BENCH" >&2
+	usage
+	exit 1
+fi
+
+CMD="java --add-modules jdk.incubator.vector -cp $CP:$BENCH:$JMH/* org.openjdk.jmh.Main -rf json -rff $OUT ${ARGS[@]}"
+echo $CMD >&2
+java --add-modules jdk.incubator.vector -cp "$CP:$BENCH:$JMH/*" org.openjdk.jmh.Main -rf json -rff "$OUT" "${ARGS[@]}"
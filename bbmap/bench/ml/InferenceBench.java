@@ -0,0 +1,115 @@
+package ml;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dna.Data;
+
+/**
+ * JMH benchmarks for neural network inference: CNNNetwork.forward,
+ * the frozen CNNInference engine (single and batched), and CellNet.feedForward.
+ * The CNN uses the default CNNTrainer architecture with seeded random weights
+ * on 356 inputs shaped like gene features (8 scalars, then one-hot bases);
+ * net= may name a trained .bbnet instead.  The CellNet is the bundled
+ * bbmerge.bbnet unless cellnet= names another.
+ * Times are per sample.
+ *
+ * @author Brandon Imstepf
+ * @date 8-9-2025
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class InferenceBench {
+
+    /** A .bbnet CNN, or "random" for the default architecture */
+    @Param({"random"})
+    public String net;
+
+    /** A CellNet file or resource */
+    @Param({"?bbmerge.bbnet"})
+    public String cellnet;
+
+    @Setup
+    public void setup() {
+        if(net.equals("random")) {
+            cnn = new CNNNetwork(FEATURES, 1);
+            cnn.setArchitecture(new int[] {32, 64}, new int[] {5, 3}, new int[] {2, 2}, new int[] {128});
+            cnn.setSeed(SEED);
+            cnn.initialize();
+        } else {
+            cnn = CNNNetwork.loadNetwork(net);
+        }
+        engine = new CNNInference(cnn);
+
+        final Random randy = new Random(SEED);
+        final int width = cnn.numInputs();
+        samples = new float[SAMPLES * width];
+        for(int s = 0; s < SAMPLES; s++) {
+            final int base = s * width;
+            for(int i = 0; i < Math.min(8, width); i++) {samples[base + i] = randy.nextFloat();}
+            for(int i = 8; i + 4 <= width; i += 4) {samples[base + i + randy.nextInt(4)] = 1f;}
+        }
+        sample = Arrays.copyOf(samples, width);
+        scores = new float[SAMPLES];
+
+        cell = CellNetParser.load(cellnet.startsWith("?") ? Data.findPath(cellnet) : cellnet);
+        cellInput = new float[cell.numInputs()];
+        for(int i = 0; i < cellInput.length; i++) {cellInput[i] = randy.nextFloat();}
+    }
+
+    @Benchmark
+    public float cnnForward() {
+        return cnn.forward(sample)[0];
+    }
+
+    @Benchmark
+    public float cnnInferenceScore() {
+        return engine.score(sample);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public float cnnInferenceBatch() {
+        engine.scoreBatch(samples, SAMPLES, scores);
+        return scores[0];
+    }
+
+    @Benchmark
+    public float cellNetFeedForward() {
+        cell.applyInput(cellInput);
+        return cell.feedForward();
+    }
+
+    /*--------------------------------------------------------------*/
+
+    private CNNNetwork cnn;
+    private CNNInference engine;
+    private float[] samples;
+    private float[] sample;
+    private float[] scores;
+    private CellNet cell;
+    private float[] cellInput;
+
+    private static final int FEATURES = 356;
+    private static final int SAMPLES = 64;
+    private static final long SEED = 12345;
+
+}
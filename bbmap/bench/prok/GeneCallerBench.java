@@ -0,0 +1,143 @@
+package prok;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dna.AminoAcid;
+import dna.Data;
+import fileIO.FileFormat;
+import stream.ConcurrentReadInputStream;
+import stream.Read;
+import tracker.EntropyTracker;
+
+/**
+ * JMH benchmarks for the gene-calling hot paths: whole-genome
+ * GeneCaller.callGenes, FrameStats.scorePoint on the CDS start model,
+ * and CallGenesHelper.generateFeatureVectorDirect on called ORFs.
+ * <p>
+ * genome is "synthetic" for a seeded random sequence, a "?name" resource
+ * resolved by Data.findPath, or a FASTA path (-p genome=x.fna.gz).
+ * Run through bench.sh, which writes results as JSON.
+ *
+ * @author Brandon Imstepf
+ * @date 8-9-2025
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx4g"})
+public class GeneCallerBench {
+
+    @Param({"synthetic", "?lambda.fa.gz"})
+    public String genome;
+
+    /** Length of the synthetic genome */
+    @Param({"1000000"})
+    public int syntheticLength;
+
+    @Setup
+    public void setup() {
+        pgm = GeneModelParser.loadModel(Data.findPath("?model.pgm"));
+        caller = CallGenes.makeGeneCaller(pgm);
+        reads = loadGenome(genome, syntheticLength);
+
+        // Score positions of the first contig against the CDS start model
+        startStats = pgm.statsCDS.start;
+        scoreBases = reads.get(0).bases;
+
+        // Candidate ORFs and contig stats for feature generation
+        helper = new CallGenesHelper();
+        helper.initializeThreadObjects();
+        EntropyTracker et = new EntropyTracker(5, 50, false);
+        orfs = new ArrayList<>();
+        orfContigs = new ArrayList<>();
+        orfStats = new ArrayList<>();
+        for(Read r : reads) {
+            ArrayList<Orf> list = caller.callGenes(r);
+            if(list == null) {continue;}
+            CallGenesHelper.ContigStats stats = CallGenesHelper.calculateContigStats(r.bases, et);
+            for(Orf orf : list) {
+                if(orf.type == ProkObject.CDS) {
+                    orfs.add(orf);
+                    orfContigs.add(r);
+                    orfStats.add(stats);
+                }
+            }
+        }
+        featureVector = new float[FEATURES];
+    }
+
+    @Benchmark
+    public void callGenes(Blackhole bh) {
+        for(Read r : reads) {
+            bh.consume(caller.callGenes(r));
+        }
+    }
+
+    @Benchmark
+    public float scorePoint() {
+        float sum = 0;
+        final int lim = Math.min(scoreBases.length, SCORE_POINTS);
+        for(int i = 0; i < lim; i++) {
+            sum += startStats.scorePoint(i, scoreBases);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void generateFeatureVector(Blackhole bh) {
+        for(int i = 0; i < orfs.size(); i++) {
+            helper.setContigStats(orfStats.get(i));
+            bh.consume(helper.generateFeatureVectorDirect(orfs.get(i), orfContigs.get(i), featureVector));
+        }
+    }
+
+    /*--------------------------------------------------------------*/
+
+    static ArrayList<Read> loadGenome(String genome, int syntheticLength) {
+        if(genome.equals("synthetic")) {
+            Random randy = new Random(SEED);
+            byte[] bases = new byte[syntheticLength];
+            for(int i = 0; i < bases.length; i++) {bases[i] = AminoAcid.numberToBase[randy.nextInt(4)];}
+            ArrayList<Read> list = new ArrayList<>();
+            list.add(new Read(bases, null, "synthetic", 0));
+            return list;
+        }
+        String path = (genome.startsWith("?") ? Data.findPath(genome) : genome);
+        FileFormat ff = FileFormat.testInput(path, FileFormat.FASTA, null, true, true);
+        return ConcurrentReadInputStream.getReads(-1, false, ff, null, null, null);
+    }
+
+    private GeneModel pgm;
+    private GeneCaller caller;
+    private ArrayList<Read> reads;
+    private FrameStats startStats;
+    private byte[] scoreBases;
+    private CallGenesHelper helper;
+    private ArrayList<Orf> orfs;
+    private ArrayList<Read> orfContigs;
+    private ArrayList<CallGenesHelper.ContigStats> orfStats;
+    private float[] featureVector;
+
+    /** Width of the standard CNN feature vector */
+    private static final int FEATURES = 356;
+    private static final int SCORE_POINTS = 1000000;
+    private static final long SEED = 12345;
+
+}
@@ -3,7 +3,7 @@
 usage(){
 echo "
 Written by Brandon Imstepf, with inspiration from Brian Bushnell.
-Last modified June 30, 2025
+Last modified August 8, 2025
 
 Description: 
 A main pipeline that processes an entire folder of genomes to create a
@@ -17,6 +17,12 @@ Required Parameters:
 in=<folder>     Input folder containing matching pairs of .fna.gz and .gff.gz files.
 out=<master.tsv>  The final, combined output TSV training file.
 
+Optional Parameters:
+jobs=1          Number of genomes to process at once.  Each genome's
+                CallGenes runs are independent, so for many small genomes
+                jobs=<cores> with t=1 is much faster than one genome at a
+                time.  The final conversion uses this many threads.
+
 Optional Pass-through Options (for CallGenes):
 nofilter       Generates ALL candidates from CallGenes, not just filtered ones.
 minlen=60      Minimum gene length for CallGenes predictions.
@@ -42,12 +48,14 @@ z2="-Xms6g"
 # --- Argument Parsing ---
 INFOLDER=""
 OUT_TSV=""
+JOBS=1
 PASSTHRU_ARGS=()
 
 for arg in "$@"; do
     case $arg in
         in=*) INFOLDER="${arg#in=}";;
         out=*) OUT_TSV="${arg#out=}";;
+        jobs=*) JOBS="${arg#jobs=}";;
         -h|--help) usage; exit 0;;
         *) PASSTHRU_ARGS+=("$arg");;
     esac
@@ -65,33 +73,29 @@ TMPDIR=$(mktemp -d)
 echo "Master pipeline started. Using temporary directory: $TMPDIR"
 
 
-for ref_fasta in "$INFOLDER"/*.fna.gz; do
-    base=$(basename "$ref_fasta" .fna.gz)
-    ref_gff="$INFOLDER/$base.gff.gz"
-
-    if [[ ! -f "$ref_gff" ]]; then
-        echo "WARNING: No matching reference GFF for $ref_fasta. Skipping."
-        continue
-    fi
+process_genome(){
+    local ref_fasta="$1"
+    local base=$(basename "$ref_fasta" .fna.gz)
+    local ref_gff="$INFOLDER/$base.gff.gz"
 
     echo "--- Processing Genome: $base ---"
 
     # Define temporary files for THIS specific genome
-    ALL_GFF="$TMPDIR/${base}.all.gff"
-    PRED_GFF="$TMPDIR/${base}.predicted.gff"
-    UNION_GFF="$TMPDIR/${base}.union.gff"
-    NEGATIVES_GFF="$TMPDIR/${base}.negatives.gff"
-    POSITIVES_GFF="$TMPDIR/${base}.positives.gff"
+    local ALL_GFF="$TMPDIR/${base}.all.gff"
+    local PRED_GFF="$TMPDIR/${base}.predicted.gff"
+    local UNION_GFF="$TMPDIR/${base}.union.gff"
+    local NEGATIVES_GFF="$TMPDIR/neg/${base}.gff"
+    local POSITIVES_GFF="$TMPDIR/pos/${base}.gff"
     
     # STEP 1: Generate source GFFs
-    echo "  [1/3] Generating gene calls..."
+    echo "  [1/2] Generating gene calls for $base..."
     # Get ALL candidates using 'nofilter'
     callgenes.sh in="$ref_fasta" outgff="$ALL_GFF" truegenes="$ref_gff" cds nofilter "${PASSTHRU_ARGS[@]}"
     # Get filtered, high-confidence predictions
     callgenes.sh in="$ref_fasta" outgff="$PRED_GFF" truegenes="$ref_gff" cds "${PASSTHRU_ARGS[@]}"
 
     # STEP 2: Perform set operations
-    echo "  [2/3] Performing set operations..."
+    echo "  [2/2] Performing set operations for $base..."
     # Union of predicted and reference
     gffsetop.sh in_a="$PRED_GFF" in_b="$ref_gff" out="$UNION_GFF" op=union
     # High-confidence negatives = all candidates minus the union
@@ -99,25 +103,43 @@ for ref_fasta in "$INFOLDER"/*.fna.gz; do
     # True positives = intersection of predicted and reference
     gffsetop.sh in_a="$PRED_GFF" in_b="$ref_gff" out="$POSITIVES_GFF" op=intersect
 
-    # STEP 3: Convert to labeled TSV
-    echo "  [3/3] Converting to labeled TSV format..."
-    # Diagnostic: report GFF sizes and VECTOR-containing lines before conversion
-    echo "    Negatives GFF lines: $(wc -l < "$NEGATIVES_GFF" 2>/dev/null || echo 0)"
-    echo "    Negatives GFF VECTOR-containing lines: $(grep -c 'VECTOR=' "$NEGATIVES_GFF" 2>/dev/null || echo 0)"
-    echo "    Positives GFF lines: $(wc -l < "$POSITIVES_GFF" 2>/dev/null || echo 0)"
-    echo "    Positives GFF VECTOR-containing lines: $(grep -c 'VECTOR=' "$POSITIVES_GFF" 2>/dev/null || echo 0)"
+    # Diagnostic: report GFF sizes and VECTOR-containing lines
+    echo "    $base negatives GFF VECTOR-containing lines: $(grep -c 'VECTOR=' "$NEGATIVES_GFF" 2>/dev/null || echo 0)"
+    echo "    $base positives GFF VECTOR-containing lines: $(grep -c 'VECTOR=' "$POSITIVES_GFF" 2>/dev/null || echo 0)"
+
+    echo "--- Finished processing $base ---"
+}
 
-    # Convert negatives with label 0, save to a final holding location
-    gff2tsv.sh in="$NEGATIVES_GFF" out="$TMPDIR/${base}.negatives.tsv" label=0
-    # Convert positives with label 1, save to a final holding location
-    gff2tsv.sh in="$POSITIVES_GFF" out="$TMPDIR/${base}.positives.tsv" label=1
+# Run up to JOBS genomes at once; final GFFs are collected in neg/ and pos/
+mkdir -p "$TMPDIR/neg" "$TMPDIR/pos"
+for ref_fasta in "$INFOLDER"/*.fna.gz; do
+    base=$(basename "$ref_fasta" .fna.gz)
+    ref_gff="$INFOLDER/$base.gff.gz"
 
-    # Diagnostic: report TSV sizes after conversion
-    echo "    Negatives TSV lines: $(wc -l < "$TMPDIR/${base}.negatives.tsv" 2>/dev/null || echo 0)"
-    echo "    Positives TSV lines: $(wc -l < "$TMPDIR/${base}.positives.tsv" 2>/dev/null || echo 0)"
+    if [[ ! -f "$ref_gff" ]]; then
+        echo "WARNING: No matching reference GFF for $ref_fasta. Skipping."
+        continue
+    fi
 
-    echo "--- Finished processing $base ---"
+    while (( $(jobs -rp | wc -l) >= JOBS )); do
+        wait -n
+    done
+    process_genome "$ref_fasta" &
 done
+wait
+
+if [[ -z "$(ls -A "$TMPDIR/pos")" ]]; then
+    echo "ERROR: No genomes were processed." >&2
+    rm -r "$TMPDIR"
+    exit 1
+fi
+
+# STEP 3: Convert all genomes to labeled TSV, one parallel pass per folder
+echo "Converting GFF sets to labeled TSV format..."
+gff2tsv.sh in="$TMPDIR/neg" out="$TMPDIR/all.negatives.tsv" threads="$JOBS"
+gff2tsv.sh in="$TMPDIR/pos" out="$TMPDIR/all.positives.tsv" threads="$JOBS"
+echo "    Negatives TSV lines: $(wc -l < "$TMPDIR/all.negatives.tsv" 2>/dev/null || echo 0)"
+echo "    Positives TSV lines: $(wc -l < "$TMPDIR/all.positives.tsv" 2>/dev/null || echo 0)"
 
 # --- Final Assembly ---
 echo "Assembling final master training set: $OUT_TSV"
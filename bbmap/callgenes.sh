@@ -18,10 +18,14 @@ outa=<file>     Amino acid output.
 out16s=<file>   16S output.
 model=<file>    A pgm file or comma-delimited list.
                 If unspecified a default model will be used.
+                May be a binary snapshot from mergepgm.sh snapshot=t,
+                which starts up faster.
 stats=stderr    Stats output (may be stderr, stdin, a file, or null).
 hist=null       Gene length histogram.
 compareto=      Optional reference gff file to compare with the gene calls.
                 'auto' will name it based on the input file name.
+                Contigs are joined one at a time in input order, so the
+                gff must list contigs in the same order as the fasta.
 
 Formatting parameters:
 json=false      Print stats in JSON.
@@ -39,6 +43,14 @@ merge=f         For paired reads, merge before calling.
 detranslate=f   Output canonical nucleotide sequences instead of amino acids.
 recode=f        Re-encode nucleotide sequences over called genes, leaving
                 non-coding regions unchanged.
+windowthreads=-1  Most threads for finding and scoring orfs within one long
+                contig, including its calling thread; 1 disables windowing
+                and -1 allows all threads.  Only threads that have run out
+                of contigs are used, so a single long contig gets them all
+                while busy threads are never oversubscribed.
+                Results are identical to single-threaded calling.
+minwindowedlen=1m  Contigs at least this long are split into windows.
+windowlen=250k  Bases per window.
 
 Please contact Brian Bushnell at bbushnell@lbl.gov if you encounter any problems.
 For documentation and the latest version, visit: https://bbmap.org
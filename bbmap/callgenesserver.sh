@@ -0,0 +1,84 @@
+#!/bin/bash
+
+usage(){
+echo "
+Written by Brandon Imstepf
+Last modified August 11, 2025
+
+Description:  Starts a server that calls genes in prokaryotic genomes.
+The gene model, rRNA/tRNA reference data, and neural network are loaded
+once and kept in memory, so each job skips JVM startup and model loading.
+Jobs run concurrently, one per handler thread.
+
+Usage:  callgenesserver.sh port=<number> net=<file> <callgenes parameters>
+
+Submitting jobs:
+curl --data-binary @genome.fna.gz http://localhost:3070/gff > genes.gff
+curl --data-binary @genome.fna http://localhost:3070/amino > genes.faa
+
+The fasta may be gzipped.  /stats reports totals since startup.
+To kill remotely, launch with the flag killcode=password,
+then access /kill/password
+
+Parameters:
+port=3070       Port number.
+handlerthreads=-1  Maximum concurrent jobs; -1 uses the thread count.
+killcode=       Set a password to allow remote killing.
+maxbody=500m    Largest request body accepted; larger ones get a 413.
+maxinflated=1500m  Largest size a gzipped body may decompress to.
+model=<file>    A pgm file or comma-delimited list, as in callgenes.sh.
+                A binary snapshot from mergepgm.sh snapshot=t loads fastest.
+verbose=f       Log each job.
+
+Gene-calling and neural network parameters such as minlen, net, cutoff,
+and windowthreads are accepted as in callgenes.sh and apply to every job.
+
+Java Parameters:
+-Xmx                This will set Java's memory usage, overriding autodetection.
+                    -Xmx20g will specify 20 gigs of RAM, and -Xmx200m will specify 200 megs.
+                    The max is typically 85% of physical memory.
+-eoom               This flag will cause the process to exit if an
+                    out-of-memory exception occurs.  Requires Java 8u92+.
+-da                 Disable assertions.
+
+For documentation and the latest version, visit: https://bbmap.org
+"
+}
+
+#This block allows symlinked shellscripts to correctly set classpath.
+pushd . > /dev/null
+DIR="${BASH_SOURCE[0]}"
+while [ -h "$DIR" ]; do
+  cd "$(dirname "$DIR")"
+  DIR="$(readlink "$(basename "$DIR")")"
+done
+cd "$(dirname "$DIR")"
+DIR="$(pwd)/"
+popd > /dev/null
+
+#DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )/"
+CP="$DIR""current/"
+
+z="-Xmx6g"
+z2="-Xms6g"
+set=0
+
+if [ -z "$1" ] || [[ $1 == -h ]] || [[ $1 == --help ]]; then
+	usage
+	exit
+fi
+
+calcXmx () {
+	source "$DIR""/calcmem.sh"
+	setEnvironment
+	parseXmx "$@"
+}
+calcXmx "$@"
+
+callgenesserver() {
+	local CMD="java $EA $SIMD $EOOM $z $z2 -cp $CP prok.CallGenesServer $@"
+	echo $CMD >&2
+	eval $CMD
+}
+
+callgenesserver "$@"
@@ -22,6 +22,9 @@ I/O parameters:
 in=<file>       Input; may be one file or multiple comma-delimited files.
 list=<file>     Optional text file containing one input file per line.
                 Use list or in, but not both.
+region=         Only process reads overlapping these regions of sorted, indexed
+                bam input: name, name:start, or name:start-end (1-based),
+                comma-delimited, or a bed file.  Needs a .bai or .csi index.
 out=<file>      Output variant list in var format.  If the name ends
                 with .vcf then it will be vcf format.
 vcf=<file>      Output variant list in vcf format.
@@ -14,6 +14,8 @@ in=<file>       Tab-delimited data vectors. The first line should look like
 data=<file>     '#dims 356 1' with the number of inputs and outputs; the
                 first X columns are inputs, and the last Y the desired result.
                 Subsequent lines are tab-delimited floating point numbers.
+                Binary .bbd files from gff2tsv.sh binary=t are also accepted,
+                and load much faster.
 validate=<file> Optional validation dataset used exclusively for evaluation.
                 If not provided, 10% of training data is used for validation.
 net=<file>      Optional input network for evaluation mode or continued training.
@@ -36,8 +38,24 @@ epochs=<int>    Number of training epochs (default: 10).
 batch=<int>     Batch size for mini-batch training (default: 32).
 lr=<float>      Learning rate (default: 0.001).
 dropout=<float> Dropout rate for regularization (default: 0.5).
+threads=<int>   Worker threads for data-parallel training (default: all).
+                Each mini-batch is split across threads and the gradients
+                are summed before the weight update.
+seed=<long>     Seed for weight initialization and shuffling.  Results are
+                reproducible for a fixed seed and thread count (default: -1,
+                meaning random).
 shuffle         Shuffle training data before splitting.
 split=<float>   Fraction to use for validation if validate not specified (default: 0.1).
+stream=f        Stream training rows from disk each epoch instead of loading
+                them, so the training set may exceed memory.  Only the
+                validation rows are held; without validate=, up to vlines
+                (default 100k) rows are held out by a hash of the row number.
+                Works best with binary (.bbd) input.
+shufflebuffer=100000  Rows held in the streaming shuffle buffer.  Larger
+                buffers give a more uniform shuffle.
+pack=t          Hold one-hot sequence columns as one byte per base instead
+                of four floats.  Lossless; cuts resident memory per sample
+                about 10x for the standard 356-column feature set.
 
 Evaluation mode:
 evaluate        Run in evaluation mode instead of training.
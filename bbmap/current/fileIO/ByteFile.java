@@ -62,14 +62,19 @@ public abstract class ByteFile {
 	/**
 	 * Creates a ByteFile instance with explicit type selection.
 	 * Type 1 forces ByteFile1, type 2 forces ByteFile2.
+	 * Type 5 uses ByteFileMapped for uncompressed local files.
 	 * Type 0 uses automatic selection based on system resources and settings.
 	 * Prefers ByteFile2 for multi-threaded systems unless forced otherwise.
 	 *
 	 * @param ff The FileFormat describing the input file
-	 * @param type Implementation type (0=auto, 1=ByteFile1, 2=ByteFile2)
+	 * @param type Implementation type (0=auto, 1=ByteFile1, 2=ByteFile2, 5=ByteFileMapped)
 	 * @return ByteFile instance of the specified or selected type
 	 */
 	public static final ByteFile makeByteFile(FileFormat ff, int type){
+		if((type==5 || (type==0 && FORCE_MODE_BFM)) && ByteFileMapped.canMap(ff)){
+			return new ByteFileMapped(ff);
+		}
+		if(type==5){type=0;}
 		type=pickType(type);
 		if(type==4){return new ByteFile4(ff);}
 		if(type==3){return new ByteFile3(ff);}
@@ -267,6 +272,8 @@ public abstract class ByteFile {
 	/** Unused legacy flag for ByteFile3 implementation */
 	public static boolean FORCE_MODE_BF3=false;
 	public static boolean FORCE_MODE_BF4=false;
+	/** Use ByteFileMapped for uncompressed local files */
+	public static boolean FORCE_MODE_BFM=false;
 
 	public static boolean ALLOW_BF1=true;
 	public static boolean ALLOW_BF2=true;
@@ -0,0 +1,399 @@
+package fileIO;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shared.KillSwitch;
+import shared.Timer;
+import shared.Tools;
+import structures.IntList;
+import structures.ListNum;
+
+/**
+ * ByteFile for uncompressed local files that memory-maps the file in segments
+ * instead of reading it through an InputStream.
+ *
+ * <p>nextLine() still returns a copy of each line, per the ByteFile contract;
+ * nextLineBuffer() returns a view of the mapped line with no copy, and nextChunk()
+ * copies many whole lines at once into one array and reports where each ends.
+ *
+ * <p>A ByteFileMapped can cover a byte range of the file, so several threads can
+ * each parse a region of one big file.  A range owns every line that starts inside it,
+ * so ranges from partition() or any other split cover each line exactly once.
+ *
+ * @author Brandon Imstepf
+ * @date November 24, 2025
+ */
+public final class ByteFileMapped extends ByteFile {
+
+	/**
+	 * Prints lines, or with "speedtest", times reading the file;
+	 * a third argument splits the speedtest over that many threads.
+	 */
+	public static void main(String[] args){
+		ByteFileMapped bf=new ByteFileMapped(args[0], false);
+		if(args.length>1 && args[1].equalsIgnoreCase("speedtest")){
+			bf.close();
+			final int threads=(args.length>2 ? Integer.parseInt(args[2]) : 1);
+			speedtest(bf.ff, threads);
+		}else{
+			long first=(args.length>1 ? Long.parseLong(args[1]) : 0), last=first+100;
+			for(long i=0; i<first; i++){bf.nextLine();}
+			for(long i=first; i<last; i++){
+				byte[] s=bf.nextLine();
+				if(s==null){break;}
+				System.out.println(new String(s));
+			}
+			bf.close();
+		}
+	}
+
+	private static void speedtest(FileFormat ff, int threads){
+		Timer t=new Timer();
+		final ByteFileMapped[] parts=split(ff, threads);
+		final AtomicLong lines=new AtomicLong(), bytes=new AtomicLong();
+		ArrayList<Thread> list=new ArrayList<Thread>(threads);
+		for(ByteFileMapped bf : parts){
+			list.add(new Thread(){
+				@Override
+				public void run(){
+					long x=0, y=0;
+					for(ByteBuffer line=bf.nextLineBuffer(); line!=null; line=bf.nextLineBuffer()){
+						x++;
+						y+=line.remaining()+1;
+					}
+					bf.close();
+					lines.addAndGet(x);
+					bytes.addAndGet(y);
+				}
+			});
+		}
+		for(Thread th : list){th.start();}
+		for(Thread th : list){
+			try{th.join();}catch(InterruptedException e){e.printStackTrace();}
+		}
+		t.stop();
+		System.err.println(Tools.timeLinesBytesProcessed(t, lines.get(), bytes.get(), 8));
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	public ByteFileMapped(String fname, boolean allowSubprocess_){
+		this(FileFormat.testInput(fname, FileFormat.TEXT, null, allowSubprocess_, false));
+	}
+
+	/** Read the whole file */
+	public ByteFileMapped(FileFormat ff){
+		this(ff, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Read the lines starting in [start, stop).
+	 * @param ff An uncompressed file; see canMap()
+	 * @param start First byte of the range; need not be a line start
+	 * @param stop Byte after the range
+	 */
+	public ByteFileMapped(FileFormat ff, long start, long stop){
+		super(ff);
+		assert(canMap(ff)) : "Can't memory-map "+ff.name();
+		rangeStart=Math.max(0, start);
+		rangeStop=stop;
+		if(verbose){System.err.println("ByteFileMapped("+ff+", "+start+", "+stop+")");}
+		open();
+	}
+
+	/** True for uncompressed regular files, which can be mapped */
+	public static boolean canMap(FileFormat ff){
+		return ff!=null && !ff.compressed() && !ff.stdio() && !ff.name().startsWith("jar:") &&
+			new File(ff.name()).isFile();
+	}
+
+	/**
+	 * Split a file into ranges of similar size that start at line starts.
+	 * @return parts+1 offsets; range i is [bounds[i], bounds[i+1]), and may be empty
+	 */
+	public static long[] partition(String fname, int parts){
+		parts=Math.max(1, parts);
+		final long[] bounds=new long[parts+1];
+		try(FileChannel fc=FileChannel.open(new File(fname).toPath(), StandardOpenOption.READ)){
+			final long len=fc.size();
+			for(int i=1; i<parts; i++){
+				bounds[i]=Math.max(bounds[i-1], lineStartAtOrAfter(fc, (len*i)/parts, len));
+			}
+			bounds[parts]=len;
+		}catch(IOException e){
+			throw new RuntimeException("Error partitioning "+fname, e);
+		}
+		return bounds;
+	}
+
+	/** One ByteFileMapped per partition of the file */
+	public static ByteFileMapped[] split(FileFormat ff, int parts){
+		final long[] bounds=partition(ff.name(), parts);
+		ByteFileMapped[] array=new ByteFileMapped[bounds.length-1];
+		for(int i=0; i<array.length; i++){
+			array[i]=new ByteFileMapped(ff, bounds[i], bounds[i+1]);
+		}
+		return array;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	@Override
+	public final void reset(){
+		close();
+		open();
+		superReset();
+	}
+
+	@Override
+	public synchronized final boolean close(){
+		if(verbose){System.err.println("Closing "+this.getClass().getName()+" for "+name()+"; open="+open+"; errorState="+errorState);}
+		if(!open){return errorState;}
+		open=false;
+		try{
+			fc.close();
+		}catch(IOException e){
+			e.printStackTrace();
+			errorState=true;
+		}
+		fc=null;
+		segment=null;//Unmapped when collected
+		pushBack=null;
+		lineNum=-1;
+		return errorState;
+	}
+
+	@Override
+	public final byte[] nextLine(){
+		if(pushBack!=null){
+			byte[] line=pushBack;
+			pushBack=null;
+			lineNum++;
+			return line;
+		}
+		if(!findLine(true)){
+			close();
+			return null;
+		}
+		if(lineStop==lineStart){return blankLine;}
+		final byte[] line=KillSwitch.allocByte1D(lineStop-lineStart);
+		segment.get(lineStart, line);
+		return line;
+	}
+
+	/**
+	 * Returns the next line, without its line terminator, as a view of the mapped file.
+	 * No bytes are copied; the view stays valid after later calls, but not after
+	 * the file is modified.  Lines pushed back with pushBack() are wrapped.
+	 * @return The next line, or null at the end of the range
+	 */
+	public final ByteBuffer nextLineBuffer(){
+		if(pushBack!=null){
+			byte[] line=pushBack;
+			pushBack=null;
+			lineNum++;
+			return ByteBuffer.wrap(line);
+		}
+		if(!findLine(true)){
+			close();
+			return null;
+		}
+		return segment.slice(lineStart, lineStop-lineStart);
+	}
+
+	/**
+	 * Copies whole lines, about TARGET_LIST_BYTES in total, into one new array.
+	 * Lines keep their terminators: line i spans from the byte after newlines[i-1]
+	 * (or 0) up to newlines[i], which is a '\n' or, for a final unterminated line,
+	 * the array length.  A '\r' before the '\n' is not removed.
+	 * @param newlines Cleared, then filled with line ends
+	 * @return The lines, or null at the end of the range
+	 */
+	public final byte[] nextChunk(IntList newlines){
+		newlines.clear();
+		assert(pushBack==null) : "nextChunk can't return pushed-back lines";
+		int first=-1;
+		while(newlines.size<1 || pos-first<TARGET_LIST_BYTES){
+			if(!findLine(newlines.size<1)){break;}//Lines in a chunk must share a segment
+			if(first<0){first=lineStart;}
+			newlines.add(lineEnd-first);
+		}
+		if(newlines.size<1){
+			close();
+			return null;
+		}
+		final byte[] chunk=KillSwitch.allocByte1D(pos-first);
+		segment.get(first, chunk);
+		return chunk;
+	}
+
+	@Override
+	public final ListNum<byte[]> nextList(){
+		if(!open){return null;}
+		final int slimit=TARGET_LIST_SIZE, blimit=TARGET_LIST_BYTES;
+		ArrayList<byte[]> list=new ArrayList<byte[]>(slimit);
+		int bytes=0;
+		for(byte[] line=nextLine(); line!=null; line=nextLine()){
+			list.add(line);
+			bytes+=line.length;
+			if(list.size()>=slimit || bytes>=blimit){break;}
+		}
+		return list.isEmpty() ? null : new ListNum<byte[]>(list, nextID++);
+	}
+
+	@Override
+	public void pushBack(byte[] line){
+		assert(pushBack==null) : "Only one line can be pushed back";
+		pushBack=line;
+		lineNum--;
+	}
+
+	/** There is no InputStream; returns null */
+	@Override
+	public final InputStream is(){return null;}
+
+	@Override
+	public boolean isOpen(){return open;}
+
+	@Override
+	public final long lineNum(){return lineNum;}
+
+	/** File offset of the next unread byte */
+	public final long filePos(){return segmentStart+pos;}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final synchronized void open(){
+		if(open){
+			throw new RuntimeException("Attempt to open already-opened ByteFileMapped "+name());
+		}
+		try{
+			fc=FileChannel.open(new File(name()).toPath(), StandardOpenOption.READ);
+			fileLength=fc.size();
+			rangeStop=Math.min(rangeStop, fileLength);
+			final long start=lineStartAtOrAfter(fc, rangeStart, fileLength);
+			map(start, Math.min(SEGMENT_SIZE, fileLength-start));
+		}catch(IOException e){
+			throw new RuntimeException("Error memory-mapping "+name(), e);
+		}
+		open=true;
+		lineNum=-1;
+	}
+
+	/** Map len bytes starting at a file offset */
+	private void map(long start, long len) throws IOException{
+		segmentStart=start;
+		segmentLength=(int)len;
+		segment=fc.map(FileChannel.MapMode.READ_ONLY, start, len);
+		segment.order(ByteOrder.LITTLE_ENDIAN);
+		pos=0;
+	}
+
+	/**
+	 * Find the next line starting before rangeStop and move past it.
+	 * Sets lineStart, lineStop (excluding "\r\n" or "\n") and lineEnd (the '\n' or segment end).
+	 * @param allowRemap Map a new segment if the line crosses the segment end;
+	 * otherwise such a line is left unread and false is returned
+	 */
+	private boolean findLine(boolean allowRemap){
+		if(!open || filePos()>=rangeStop){return false;}
+		int nl=findNewline(segment, pos, segmentLength);
+		while(nl<0 && segmentStart+segmentLength<fileLength){//Line crosses the segment end
+			if(!allowRemap){return false;}
+			try{
+				final long start=filePos();
+				final long max=Math.min(Integer.MAX_VALUE-8, fileLength-start);
+				final long len=(pos==0 ? 2L*segmentLength : SEGMENT_SIZE);
+				if(pos==0 && segmentLength>=max){
+					throw new RuntimeException("Line longer than 2GB in "+name());
+				}
+				map(start, Math.min(len, max));
+			}catch(IOException e){
+				throw new RuntimeException("Error memory-mapping "+name(), e);
+			}
+			nl=findNewline(segment, pos, segmentLength);
+		}
+		lineStart=pos;
+		lineEnd=(nl<0 ? segmentLength : nl);
+		lineStop=(lineEnd>lineStart && segment.get(lineEnd-1)==slashr ? lineEnd-1 : lineEnd);
+		pos=(nl<0 ? segmentLength : nl+1);
+		lineNum++;
+		return true;
+	}
+
+	/** Position of the first '\n' in [from, to), or -1; compares 8 bytes at a time */
+	private static int findNewline(MappedByteBuffer bb, int from, int to){
+		int i=from;
+		for(final int limit=to-7; i<limit; i+=8){
+			final long x=bb.getLong(i)^NEWLINES;
+			final long found=(x-ONES)&~x&HIGHS;
+			if(found!=0){return i+(Long.numberOfTrailingZeros(found)>>>3);}
+		}
+		for(; i<to; i++){
+			if(bb.get(i)==slashn){return i;}
+		}
+		return -1;
+	}
+
+	/** The first line start at or after pos: pos itself if it is 0 or follows a '\n' */
+	private static long lineStartAtOrAfter(FileChannel fc, long pos, long len) throws IOException{
+		if(pos<=0){return 0;}
+		final ByteBuffer bb=ByteBuffer.allocate(65536);
+		for(long p=pos-1; p<len; ){
+			bb.clear();
+			final int r=fc.read(bb, p);
+			if(r<=0){break;}
+			for(int i=0; i<r; i++){
+				if(bb.get(i)==slashn){return p+i+1;}
+			}
+			p+=r;
+		}
+		return len;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private FileChannel fc;
+	private MappedByteBuffer segment;
+	/** File offset of segment[0] */
+	private long segmentStart;
+	private int segmentLength;
+	/** Next unread position in segment */
+	private int pos;
+	/** Last line found: start, stop before the terminator, and position of the '\n' */
+	private int lineStart, lineStop, lineEnd;
+
+	private final long rangeStart;
+	private long rangeStop;
+	private long fileLength;
+
+	private byte[] pushBack;
+	private boolean open=false;
+	private boolean errorState=false;
+	/** Current line number (0-based within the range, -1 when closed) */
+	public long lineNum=-1;
+
+	/** Bytes mapped at a time; segments grow as needed to hold a long line */
+	public static long SEGMENT_SIZE=1L<<28;
+	public static boolean verbose=false;
+
+	private static final byte[] blankLine=new byte[0];
+	private static final long ONES=0x0101010101010101L, HIGHS=0x8080808080808080L;
+	private static final long NEWLINES=ONES*slashn;
+}
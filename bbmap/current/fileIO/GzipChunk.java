@@ -0,0 +1,107 @@
+package fileIO;
+
+import stream.HasID;
+import structures.LongList;
+
+/**
+ * A slice of a gzip file for GzipInputStreamMT, and the output decoded from it.
+ * The data holds this chunk plus the next one, so the block straddling the
+ * chunk end can be finished; decoding stops at the first dynamic Huffman block
+ * starting at or after stopBit, which is exactly where the next chunk's search begins.
+ *
+ * @author Brandon Imstepf
+ * @date November 19, 2025
+ */
+final class GzipChunk implements HasID{
+
+	GzipChunk(long id_, byte[] data_, int dataLen_, long startByte_, long stopBit_, boolean atEof_){
+		id=id_;
+		data=data_;
+		dataLen=dataLen_;
+		startByte=startByte_;
+		stopBit=stopBit_;
+		atEof=atEof_;
+	}
+
+	/** Discard any decoded output, e.g. before decoding again */
+	void clearOutput(){
+		chars=null;
+		bytes=null;
+		charLen=byteStart=byteLen=0;
+		startBit=endBit=-1;
+		eof=false;
+		members.clear();
+	}
+
+	/** Decoded bytes, excluding the window-marker prefix of the char output */
+	long outputLength(){
+		return (chars==null ? 0 : charLen-GzipChunkDecoder.WINDOW)+(bytes==null ? 0 : byteLen-byteStart);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           HasID              ----------------*/
+	/*--------------------------------------------------------------*/
+
+	@Override
+	public long id(){return id;}
+
+	@Override
+	public boolean poison(){return type==POISON;}
+
+	@Override
+	public boolean last(){return type==LAST;}
+
+	@Override
+	public GzipChunk makePoison(long id_){
+		GzipChunk x=new GzipChunk(id_, null, 0, 0, 0, true);
+		x.type=POISON;
+		return x;
+	}
+
+	@Override
+	public GzipChunk makeLast(long id_){
+		GzipChunk x=new GzipChunk(id_, null, 0, 0, 0, true);
+		x.type=LAST;
+		return x;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	final long id;
+	/** Compressed bytes starting at startByte */
+	byte[] data;
+	int dataLen;
+	/** File offset of data[0] */
+	final long startByte;
+	/** Stop before the first dynamic block starting at or after this file bit */
+	long stopBit;
+	/** True if data extends to the end of the file */
+	boolean atEof;
+
+	/** File bit where decoding started; -1 for the file start */
+	long startBit=-1;
+	/** File bit where decoding stopped, at a dynamic block header; -1 at end of stream */
+	long endBit=-1;
+	/** True if the last gzip member ended in this chunk */
+	boolean eof=false;
+	/** True if speculative decoding succeeded */
+	boolean ok=false;
+
+	/**
+	 * Output that may reference the unknown preceding window:
+	 * chars[WINDOW, charLen) hold bytes (below 256) or markers (256+window position).
+	 */
+	char[] chars;
+	int charLen;
+	/** Plain output after the char output, at bytes[byteStart, byteLen) */
+	byte[] bytes;
+	int byteStart, byteLen;
+	/** For each gzip member ending here: output offset, CRC32 and ISIZE from the trailer */
+	final LongList members=new LongList(3);
+
+	private int type=NORMAL;
+
+	private static final int NORMAL=0, POISON=1, LAST=2;
+}
@@ -0,0 +1,729 @@
+package fileIO;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Deflate decoder used by GzipInputStreamMT to decompress chunks of one gzip stream in parallel.
+ *
+ * <p>Unlike java.util.zip.Inflater, this can start at any bit offset and without the
+ * preceding 32kb window.  Back-references into the unknown window are emitted as
+ * 16-bit markers (256 plus the window position), which the consumer replaces once the
+ * previous chunk is done.  After 32kb of output free of markers, nothing can refer to
+ * the unknown window any more, so decoding switches to plain bytes.
+ *
+ * <p>Block boundaries are found speculatively: a candidate must have a valid dynamic
+ * Huffman header (complete code-length code, valid literal and distance codes, an
+ * end-of-block code) and its first block must decode without error.  Chunks stop at the
+ * first dynamic block at or after their end, so a correct guess lands exactly where the
+ * previous chunk stopped; the consumer checks this and redecodes on a mismatch.
+ *
+ * <p>One instance per thread; decoding writes results into the GzipChunk.
+ *
+ * @author Brandon Imstepf
+ * @date November 19, 2025
+ */
+final class GzipChunkDecoder{
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Decode a chunk from a known position with a known window.
+	 * @param job Chunk to decode
+	 * @param fromBit File bit of a block header, or -1 to start with a gzip header at data[0]
+	 * @param window Preceding output, right-aligned in a WINDOW-length array; may be null
+	 * @param windowLen Valid bytes at the end of window
+	 * @param anyBlock_ Stop at the first block of any type at or after stopBit, rather than
+	 * the first dynamic block; for serial decoding, where nothing has to line up with a search
+	 * @throws DataFormatException for corrupt data; NeedMoreData if the chunk ends mid-block
+	 */
+	void decodeKnown(GzipChunk job, long fromBit, byte[] window, int windowLen, boolean anyBlock_) throws DataFormatException{
+		setInput(job);
+		anyBlock=anyBlock_;
+		startBytes(window, windowLen);
+		if(fromBit<0){
+			pos=0;
+			if(!parseHeader()){throw new DataFormatException("Not in GZIP format");}
+		}else{
+			seekBit(fromBit);
+		}
+		job.startBit=fromBit;
+		decodeBlocks();
+		job.ok=true;
+	}
+
+	/**
+	 * Find the first block boundary at or after the chunk start and decode from there
+	 * with an unknown window.
+	 * @return True on success; false if no boundary was found or decoding failed
+	 */
+	boolean decodeSpeculative(GzipChunk job){
+		setInput(job);
+		anyBlock=false;
+		final long limit=Math.min(job.stopBit, dataEndBit());
+		for(long b=job.startByte*8; b<limit; b++){
+			b=findDynamicHeader(b, limit);
+			if(b<0){return false;}
+			startMarkers();
+			try{
+				seekBit(b);
+				job.startBit=b;
+				decodeBlocks();
+				job.ok=true;
+				return true;
+			}catch(DataFormatException e){
+				job.clearOutput();
+				if(blocksDone>0 || e instanceof NeedMoreData){return false;}
+				//Otherwise a false candidate; keep looking
+			}
+		}
+		return false;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Block Loop           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Decode blocks and gzip members until the stop position or end of stream */
+	private void decodeBlocks() throws DataFormatException{
+		blocksDone=0;
+		while(true){
+			refillSlow();
+			final long bit=bitPos();
+			if(bit>=stopBit && (anyBlock || (bitbuf&6)==4)){//Stop before a dynamic block
+				job.endBit=bit;
+				break;
+			}
+			final int header=(int)(bitbuf&7);
+			bitbuf>>>=3;
+			bitcnt-=3;
+			final int type=header>>>1;
+			if(type==0){
+				storedBlock();
+			}else if(type==1){
+				huffmanBlock(FIXED_LIT, FIXED_LIT_BITS, FIXED_DIST, FIXED_DIST_BITS);
+			}else if(type==2){
+				readDynamicTables();
+				huffmanBlock(litTable, litBits, distTable, distBits);
+			}else{
+				throw new DataFormatException("Invalid block type");
+			}
+			checkOverrun();
+			blocksDone++;
+			if((header&1)!=0 && !finishMember()){
+				job.eof=true;
+				break;
+			}
+		}
+		finishOutput();
+	}
+
+	/** Decode one Huffman block, switching from markers to bytes when possible */
+	private void huffmanBlock(int[] lt, int lbits, int[] dt, int dbits) throws DataFormatException{
+		if(markerMode){
+			if(huffmanChars(lt, lbits, dt, dbits)){return;}
+			switchToBytes();
+		}
+		huffmanBytes(lt, lbits, dt, dbits);
+	}
+
+	/** Copy a stored block */
+	private void storedBlock() throws DataFormatException{
+		alignToByte();
+		if(pos+4>dataLen){overrun();}
+		final int len=(data[pos]&0xFF)|((data[pos+1]&0xFF)<<8);
+		final int nlen=(data[pos+2]&0xFF)|((data[pos+3]&0xFF)<<8);
+		if(len!=(~nlen&0xFFFF)){throw new DataFormatException("Invalid stored block lengths");}
+		pos+=4;
+		if(pos+len>dataLen){overrun();}
+		if(markerMode){
+			ensureChars(len);
+			for(int i=0; i<len; i++){cout[cop+i]=(char)(data[pos+i]&0xFF);}
+			cop+=len;
+			if(cop-lastMarker>WINDOW){switchToBytes();}
+		}else{
+			ensureBytes(len);
+			System.arraycopy(data, pos, bout, bop, len);
+			bop+=len;
+		}
+		pos+=len;
+	}
+
+	/**
+	 * Read a member trailer and the next member's header.
+	 * @return False at the end of the stream
+	 */
+	private boolean finishMember() throws DataFormatException{
+		alignToByte();
+		if(pos+8>dataLen){overrun();}
+		final long crc=readLE32(pos), isize=readLE32(pos+4);
+		pos+=8;
+		job.members.add(outputPos());
+		job.members.add(crc);
+		job.members.add(isize);
+		return parseHeader();
+	}
+
+	/**
+	 * Parse a gzip member header at pos.
+	 * As in GZIPInputStream, anything other than a header ends the stream.
+	 * @return False if there is no further member
+	 */
+	private boolean parseHeader() throws DataFormatException{
+		if(pos+10>dataLen){
+			if(atEof){return false;}
+			overrun();
+		}
+		if((data[pos]&0xFF)!=0x1F || (data[pos+1]&0xFF)!=0x8B){return false;}
+		if(data[pos+2]!=8){throw new DataFormatException("Unsupported compression method");}
+		final int flags=data[pos+3]&0xFF;
+		int p=pos+10;
+		if((flags&FEXTRA)!=0){
+			if(p+2>dataLen){overrun();}
+			p+=2+((data[p]&0xFF)|((data[p+1]&0xFF)<<8));
+		}
+		if((flags&FNAME)!=0){
+			while(p<dataLen && data[p]!=0){p++;}
+			p++;
+		}
+		if((flags&FCOMMENT)!=0){
+			while(p<dataLen && data[p]!=0){p++;}
+			p++;
+		}
+		if((flags&FHCRC)!=0){p+=2;}
+		if(p>dataLen){overrun();}
+		pos=p;
+		bitbuf=0;
+		bitcnt=0;
+		return true;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Symbol Decoding       ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Decode symbols into bytes until end of block */
+	private void huffmanBytes(final int[] lt, final int lbits, final int[] dt, final int dbits) throws DataFormatException{
+		final byte[] d=data;
+		final int dl=dataLen;
+		final int lmask=(1<<lbits)-1, dmask=(1<<dbits)-1;
+		long bb=bitbuf;
+		int bc=bitcnt, p=pos;
+		byte[] out=bout;
+		int op=bop;
+		int limit=out.length-MAX_MATCH;
+
+		while(true){
+			if(bc<48){
+				if(p+8<=dl){
+					bb|=((long)LE64.get(d, p))<<bc;
+					p+=(63-bc)>>>3;
+					bc|=56;//Now 56-63 bits
+				}else{
+					if(p>dl && ((p-dl)<<3)>bc){break;}//Overran the data; reported below
+					for(; bc<=56; bc+=8, p++){bb|=(p<dl ? d[p]&0xFFL : 0L)<<bc;}
+				}
+			}
+			if(op>limit){
+				out=bout=Arrays.copyOf(out, (int)Math.min(Integer.MAX_VALUE-16, out.length*3L/2+MAX_MATCH));
+				limit=out.length-MAX_MATCH;
+			}
+
+			int e=lt[(int)bb&lmask];
+			if((e&0x80)!=0){
+				if(e<0){throw new DataFormatException("Invalid literal/length code");}
+				e=lt[(e>>>8)+((int)(bb>>>lbits)&((1<<(e&15))-1))];
+				if(e<0){throw new DataFormatException("Invalid literal/length code");}
+			}
+			int n=e&15;
+			bb>>>=n;
+			bc-=n;
+			int sym=e>>>8;
+			if(sym<256){
+				out[op++]=(byte)sym;
+				continue;
+			}
+			if(sym==256){break;}
+			sym-=257;
+			if(sym>=29){throw new DataFormatException("Invalid literal/length code");}
+			int len=LBASE[sym];
+			n=LEXT[sym];
+			len+=(int)bb&((1<<n)-1);
+			bb>>>=n;
+			bc-=n;
+
+			e=dt[(int)bb&dmask];
+			if((e&0x80)!=0){
+				if(e<0){throw new DataFormatException("Invalid distance code");}
+				e=dt[(e>>>8)+((int)(bb>>>dbits)&((1<<(e&15))-1))];
+				if(e<0){throw new DataFormatException("Invalid distance code");}
+			}
+			n=e&15;
+			bb>>>=n;
+			bc-=n;
+			sym=e>>>8;
+			if(sym>=30){throw new DataFormatException("Invalid distance code");}
+			n=DEXT[sym];
+			final int dist=DBASE[sym]+((int)bb&((1<<n)-1));
+			bb>>>=n;
+			bc-=n;
+
+			final int src=op-dist;
+			if(src<0){throw new DataFormatException("Invalid distance too far back");}
+			if(dist>=len && len>16){
+				System.arraycopy(out, src, out, op, len);
+			}else{
+				for(int i=0; i<len; i++){out[op+i]=out[src+i];}
+			}
+			op+=len;
+		}
+		bitbuf=bb;
+		bitcnt=bc;
+		pos=p;
+		bop=op;
+		checkOverrun();
+	}
+
+	/**
+	 * Decode symbols into chars, tracking markers, until end of block or
+	 * until the last 32kb contain no markers.
+	 * @return True at end of block; false when it is time to switch to bytes
+	 */
+	private boolean huffmanChars(final int[] lt, final int lbits, final int[] dt, final int dbits) throws DataFormatException{
+		final byte[] d=data;
+		final int dl=dataLen;
+		final int lmask=(1<<lbits)-1, dmask=(1<<dbits)-1;
+		long bb=bitbuf;
+		int bc=bitcnt, p=pos;
+		char[] out=cout;
+		int op=cop, last=lastMarker;
+		int limit=out.length-MAX_MATCH;
+		boolean endOfBlock=false;
+
+		while(op-last<=WINDOW){
+			if(bc<48){
+				if(p+8<=dl){
+					bb|=((long)LE64.get(d, p))<<bc;
+					p+=(63-bc)>>>3;
+					bc|=56;
+				}else{
+					if(p>dl && ((p-dl)<<3)>bc){break;}
+					for(; bc<=56; bc+=8, p++){bb|=(p<dl ? d[p]&0xFFL : 0L)<<bc;}
+				}
+			}
+			if(op>limit){
+				out=cout=Arrays.copyOf(out, (int)Math.min(Integer.MAX_VALUE-16, out.length*3L/2+MAX_MATCH));
+				limit=out.length-MAX_MATCH;
+			}
+
+			int e=lt[(int)bb&lmask];
+			if((e&0x80)!=0){
+				if(e<0){throw new DataFormatException("Invalid literal/length code");}
+				e=lt[(e>>>8)+((int)(bb>>>lbits)&((1<<(e&15))-1))];
+				if(e<0){throw new DataFormatException("Invalid literal/length code");}
+			}
+			int n=e&15;
+			bb>>>=n;
+			bc-=n;
+			int sym=e>>>8;
+			if(sym<256){
+				out[op++]=(char)sym;
+				continue;
+			}
+			if(sym==256){
+				endOfBlock=true;
+				break;
+			}
+			sym-=257;
+			if(sym>=29){throw new DataFormatException("Invalid literal/length code");}
+			int len=LBASE[sym];
+			n=LEXT[sym];
+			len+=(int)bb&((1<<n)-1);
+			bb>>>=n;
+			bc-=n;
+
+			e=dt[(int)bb&dmask];
+			if((e&0x80)!=0){
+				if(e<0){throw new DataFormatException("Invalid distance code");}
+				e=dt[(e>>>8)+((int)(bb>>>dbits)&((1<<(e&15))-1))];
+				if(e<0){throw new DataFormatException("Invalid distance code");}
+			}
+			n=e&15;
+			bb>>>=n;
+			bc-=n;
+			sym=e>>>8;
+			if(sym>=30){throw new DataFormatException("Invalid distance code");}
+			n=DEXT[sym];
+			final int dist=DBASE[sym]+((int)bb&((1<<n)-1));
+			bb>>>=n;
+			bc-=n;
+
+			final int src=op-dist;
+			if(src<0){throw new DataFormatException("Invalid distance too far back");}
+			for(int i=0; i<len; i++){
+				final char c=out[src+i];
+				out[op+i]=c;
+				if(c>=256){last=op+i;}
+			}
+			op+=len;
+		}
+		bitbuf=bb;
+		bitcnt=bc;
+		pos=p;
+		cop=op;
+		lastMarker=last;
+		checkOverrun();
+		return endOfBlock;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Dynamic Headers       ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Read the code lengths of a dynamic block and build its tables */
+	private void readDynamicTables() throws DataFormatException{
+		refillSlow();
+		final int hlit=(int)(bitbuf&31)+257, hdist=(int)((bitbuf>>>5)&31)+1, hclen=(int)((bitbuf>>>10)&15)+4;
+		bitbuf>>>=14;
+		bitcnt-=14;
+		if(hlit>286 || hdist>30){throw new DataFormatException("Too many length or distance symbols");}
+
+		Arrays.fill(clLens, 0);
+		for(int i=0; i<hclen; i++){
+			refillSlow();
+			clLens[CL_ORDER[i]]=(int)(bitbuf&7);
+			bitbuf>>>=3;
+			bitcnt-=3;
+		}
+		final int clBits=buildTable(clLens, 0, 19, clTable, 7, false);
+
+		final int n=hlit+hdist, mask=(1<<clBits)-1;
+		for(int i=0; i<n;){
+			refillSlow();
+			final int e=clTable[(int)bitbuf&mask];
+			if(e<0){throw new DataFormatException("Invalid code lengths set");}
+			final int len=e&15;
+			bitbuf>>>=len;
+			bitcnt-=len;
+			final int sym=e>>>8;
+			if(sym<16){
+				lens[i++]=sym;
+				continue;
+			}
+			int value=0, repeat;
+			if(sym==16){
+				if(i==0){throw new DataFormatException("Invalid bit length repeat");}
+				value=lens[i-1];
+				repeat=3+(int)(bitbuf&3);
+				bitbuf>>>=2;
+				bitcnt-=2;
+			}else if(sym==17){
+				repeat=3+(int)(bitbuf&7);
+				bitbuf>>>=3;
+				bitcnt-=3;
+			}else{
+				repeat=11+(int)(bitbuf&127);
+				bitbuf>>>=7;
+				bitcnt-=7;
+			}
+			if(i+repeat>n){throw new DataFormatException("Invalid bit length repeat");}
+			for(int j=0; j<repeat; j++){lens[i++]=value;}
+		}
+		if(lens[256]==0){throw new DataFormatException("Invalid code -- missing end-of-block");}
+		litBits=buildTable(lens, 0, hlit, litTable, LIT_ROOT, true);
+		distBits=buildTable(lens, hlit, hdist, distTable, DIST_ROOT, true);
+	}
+
+	/**
+	 * Find the next position that could start a dynamic block.
+	 * Checks the header fields and that the code-length code is complete, which
+	 * rejects nearly all positions; the full header and first block are checked by decoding.
+	 * @return File bit of the candidate, or -1 if none before limit
+	 */
+	private long findDynamicHeader(long from, long limit){
+		final long base=baseBit;
+		for(long b=from; b<limit; b++){
+			final int q=(int)((b-base)>>>3), r=(int)((b-base)&7);
+			if(q+16>dataLen){return -1;}
+			final long lo=(long)LE64.get(data, q), hi=(long)LE64.get(data, q+8);
+			final long x=(lo>>>r)|(r==0 ? 0 : hi<<(64-r));
+			if((x&6)!=4 || ((x>>>3)&31)>29 || ((x>>>8)&31)>29){continue;}
+			final int hclen=(int)((x>>>13)&15)+4;
+			int kraft=0;
+			for(int i=0, off=17+r; i<hclen; i++, off+=3){
+				final int len=(int)(off<64 ? ((lo>>>off)|(off+3>64 ? hi<<(64-off) : 0))&7 : (hi>>>(off-64))&7);
+				if(len>0){kraft+=128>>>len;}
+			}
+			if(kraft==128){return b;}
+		}
+		return -1;
+	}
+
+	/**
+	 * Build a two-level decode table for a canonical Huffman code.
+	 * Root entries of codes up to the root length hold (symbol<<8)|length; a longer prefix
+	 * holds (subtable start<<8)|0x80|subtable bits, and subtable entries hold
+	 * (symbol<<8)|total length.  Unused entries are -1.
+	 * @param allowSingle Allow the incomplete code with one 1-bit code, as zlib does
+	 * @return Root bits
+	 */
+	private static int buildTable(int[] lens, int off, int n, int[] table, int rootBits, boolean allowSingle) throws DataFormatException{
+		final int[] count=new int[16];
+		for(int i=0; i<n; i++){count[lens[off+i]]++;}
+		count[0]=0;
+		int maxLen=15;
+		while(maxLen>0 && count[maxLen]==0){maxLen--;}
+		if(maxLen==0){
+			table[0]=-1;//No codes; any use is an error
+			return 0;
+		}
+		int left=1;
+		for(int len=1; len<=15; len++){
+			left=(left<<1)-count[len];
+			if(left<0){throw new DataFormatException("Over-subscribed Huffman code");}
+		}
+		if(left>0 && !(allowSingle && maxLen==1)){throw new DataFormatException("Incomplete Huffman code");}
+
+		final int root=Math.min(rootBits, maxLen), subBits=maxLen-root, rootSize=1<<root;
+		final int[] next=new int[16];
+		for(int len=1, code=0; len<=15; len++){
+			code=(code+count[len-1])<<1;
+			next[len]=code;
+		}
+		Arrays.fill(table, 0, rootSize, -1);
+		int subNext=rootSize;
+		for(int sym=0; sym<n; sym++){
+			final int len=lens[off+sym];
+			if(len==0){continue;}
+			final int rev=Integer.reverse(next[len]++)>>>(32-len);
+			final int entry=(sym<<8)|len;
+			if(len<=root){
+				for(int i=rev; i<rootSize; i+=1<<len){table[i]=entry;}
+			}else{
+				final int prefix=rev&(rootSize-1);
+				int start;
+				if(table[prefix]==-1){
+					start=subNext;
+					subNext+=1<<subBits;
+					Arrays.fill(table, start, subNext, -1);
+					table[prefix]=(start<<8)|0x80|subBits;
+				}else{
+					start=table[prefix]>>>8;
+				}
+				for(int i=rev>>>root; i<(1<<subBits); i+=1<<(len-root)){table[start+i]=entry;}
+			}
+		}
+		return root;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Output             ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Start output with an unknown window: WINDOW markers, then chars */
+	private void startMarkers(){
+		markerMode=true;
+		if(cout==null){cout=new char[WINDOW+(1<<18)];}//Reused across rejected candidates
+		for(int i=0; i<WINDOW; i++){cout[i]=(char)(256+i);}
+		cop=WINDOW;
+		lastMarker=WINDOW-1;
+		bout=null;
+		bop=bstart=0;
+	}
+
+	/** Start output with a known window, directly in bytes */
+	private void startBytes(byte[] window, int windowLen){
+		markerMode=false;
+		cout=null;
+		cop=0;
+		bout=new byte[windowLen+Math.max(1<<16, dataLen*3)];
+		if(windowLen>0){System.arraycopy(window, WINDOW-windowLen, bout, 0, windowLen);}
+		bop=bstart=windowLen;
+	}
+
+	/** The last WINDOW chars hold no markers, so continue in bytes from a copy of them */
+	private void switchToBytes(){
+		assert(cop-lastMarker>WINDOW);
+		bout=new byte[WINDOW+Math.max(1<<16, (int)Math.min(Integer.MAX_VALUE/2, dataLen*3L))];
+		for(int i=0, j=cop-WINDOW; i<WINDOW; i++, j++){bout[i]=(byte)cout[j];}
+		bop=bstart=WINDOW;
+		markerMode=false;
+	}
+
+	/** Bytes output so far in this chunk */
+	private long outputPos(){
+		return (cout==null ? 0 : cop-WINDOW)+(bout==null ? 0 : bop-bstart);
+	}
+
+	/** Hand the output to the job; the next chunk gets new buffers */
+	private void finishOutput(){
+		job.chars=cout;
+		job.charLen=cop;
+		job.bytes=bout;
+		job.byteStart=bstart;
+		job.byteLen=bop;
+		cout=null;
+		bout=null;
+	}
+
+	private void ensureChars(int len){
+		if(cop+len>cout.length){cout=Arrays.copyOf(cout, (int)Math.min(Integer.MAX_VALUE-16, (cop+len)*3L/2));}
+	}
+
+	private void ensureBytes(int len){
+		if(bop+len>bout.length){bout=Arrays.copyOf(bout, (int)Math.min(Integer.MAX_VALUE-16, (bop+len)*3L/2));}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------          Bit Input           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private void setInput(GzipChunk job_){
+		job=job_;
+		job.clearOutput();
+		data=job.data;
+		dataLen=job.dataLen;
+		baseBit=job.startByte*8;
+		atEof=job.atEof;
+		stopBit=job.stopBit;
+		blocksDone=0;
+	}
+
+	private long dataEndBit(){return baseBit+dataLen*8L;}
+
+	/** File bit of the next unread bit */
+	private long bitPos(){return baseBit+pos*8L-bitcnt;}
+
+	private void seekBit(long bit) throws DataFormatException{
+		final long rel=bit-baseBit;
+		pos=(int)(rel>>>3);
+		bitbuf=0;
+		bitcnt=0;
+		final int r=(int)(rel&7);
+		if(r>0){
+			refillSlow();
+			bitbuf>>>=r;
+			bitcnt-=r;
+		}
+	}
+
+	/** Ensure at least 57 bits are buffered, padding past the end of data with zeros */
+	private void refillSlow() throws DataFormatException{
+		checkOverrun();
+		for(; bitcnt<=56; bitcnt+=8, pos++){bitbuf|=(pos<dataLen ? data[pos]&0xFFL : 0L)<<bitcnt;}
+	}
+
+	/** Discard bits to the next byte boundary and return whole buffered bytes to the input */
+	private void alignToByte() throws DataFormatException{
+		final int drop=bitcnt&7;
+		bitbuf>>>=drop;
+		bitcnt-=drop;
+		pos-=bitcnt>>>3;
+		bitbuf=0;
+		bitcnt=0;
+		checkOverrun();
+	}
+
+	/** Throw if more bits have been consumed than the data holds */
+	private void checkOverrun() throws DataFormatException{
+		if(pos>dataLen && ((long)(pos-dataLen)<<3)>bitcnt){overrun();}
+	}
+
+	private void overrun() throws DataFormatException{
+		if(atEof){throw new DataFormatException("Unexpected end of gzip input");}
+		throw new NeedMoreData();
+	}
+
+	private long readLE32(int p){
+		return (data[p]&0xFFL)|((data[p+1]&0xFFL)<<8)|((data[p+2]&0xFFL)<<16)|((data[p+3]&0xFFL)<<24);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Classes        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** The chunk ended before decoding could stop; decode again with more data */
+	static final class NeedMoreData extends DataFormatException{
+		NeedMoreData(){super("Deflate block extends past the end of the chunk");}
+		private static final long serialVersionUID=1L;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private GzipChunk job;
+	private byte[] data;
+	private int dataLen;
+	private long baseBit;
+	private boolean atEof;
+	private long stopBit;
+	/** Stop before any block at or after stopBit, not just a dynamic one */
+	private boolean anyBlock;
+	private int blocksDone;
+
+	private int pos;
+	private long bitbuf;
+	private int bitcnt;
+
+	private boolean markerMode;
+	private char[] cout;
+	private int cop;
+	/** Position of the last marker written */
+	private int lastMarker;
+	private byte[] bout;
+	private int bop, bstart;
+
+	private final int[] litTable=new int[TABLE_SIZE], distTable=new int[TABLE_SIZE], clTable=new int[TABLE_SIZE];
+	private int litBits, distBits;
+	private final int[] lens=new int[320], clLens=new int[19];
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Static Fields         ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Deflate window size */
+	static final int WINDOW=32768;
+	private static final int MAX_MATCH=258;
+	private static final int LIT_ROOT=10, DIST_ROOT=8;
+	/** Literal root table plus a subtable per symbol; distance tables need less */
+	private static final int TABLE_SIZE=(1<<LIT_ROOT)+288*(1<<(15-LIT_ROOT));
+
+	private static final int FEXTRA=4, FNAME=8, FCOMMENT=16, FHCRC=2;
+
+	private static final int[] LBASE={3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+		35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+	private static final int[] LEXT={0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+		3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+	private static final int[] DBASE={1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+		257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+	private static final int[] DEXT={0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+		7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+	private static final int[] CL_ORDER={16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+	private static final int[] FIXED_LIT=new int[TABLE_SIZE], FIXED_DIST=new int[TABLE_SIZE];
+	private static final int FIXED_LIT_BITS, FIXED_DIST_BITS;
+
+	static{
+		int[] fixed=new int[288];
+		Arrays.fill(fixed, 0, 144, 8);
+		Arrays.fill(fixed, 144, 256, 9);
+		Arrays.fill(fixed, 256, 280, 7);
+		Arrays.fill(fixed, 280, 288, 8);
+		int[] fixedDist=new int[32];
+		Arrays.fill(fixedDist, 5);
+		try{
+			FIXED_LIT_BITS=buildTable(fixed, 0, 288, FIXED_LIT, LIT_ROOT, false);
+			FIXED_DIST_BITS=buildTable(fixedDist, 0, 32, FIXED_DIST, DIST_ROOT, false);
+		}catch(DataFormatException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static final VarHandle LE64=MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+}
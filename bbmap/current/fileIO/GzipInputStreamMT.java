@@ -0,0 +1,389 @@
+package fileIO;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
+
+import stream.OrderedQueueSystem;
+import template.ThreadWaiter;
+
+/**
+ * Multithreaded decompression of ordinary (non-BGZF) gzip, single- or multi-member.
+ *
+ * <p>Architecture, as in BgzfInputStreamMT3:
+ * - Producer thread: Reads fixed-size compressed chunks and creates jobs
+ * - Worker threads: Each finds the first deflate block boundary in its chunk and
+ *   decodes from there without the preceding window (see GzipChunkDecoder)
+ * - Consumer (reading thread): Takes jobs in order, checks that each one started
+ *   exactly where the previous one stopped, redecodes it if not, fills in
+ *   references to the previous window, and verifies member CRCs and sizes.
+ *
+ * <p>The consumer's work is a cheap pass over the output, so throughput scales with
+ * worker threads.  Decoding is pure Java, about as fast per thread as zlib once
+ * warmed up, but the speculative search and marker resolution add work,
+ * so this is only worthwhile with several threads and large files.
+ *
+ * <p>Streams with few or no dynamic Huffman blocks (Z_FIXED, some other encoders)
+ * give the search nothing to find.  After SERIAL_AFTER consecutive chunks had to be
+ * redecoded, workers stop searching and the consumer decodes the rest of the stream
+ * serially, stopping at the first block of any type after each chunk.
+ *
+ * @author Brandon Imstepf
+ * @date November 19, 2025
+ */
+public class GzipInputStreamMT extends InputStream{
+
+	public static void main(String[] args) throws IOException{
+		if(args.length<1){
+			System.err.println("Usage: GzipInputStreamMT <file.gz> [threads] [write]");
+			System.exit(1);
+		}
+		int threads=(args.length>1 ? Integer.parseInt(args[1]) : DEFAULT_THREADS);
+		boolean write=args.length>2;
+		byte[] buffer=new byte[131072];
+		long totalBytes=0;
+		long startTime=System.nanoTime();
+		try(InputStream is=new GzipInputStreamMT(new java.io.FileInputStream(args[0]), threads)){
+			for(int n=is.read(buffer); n>=0; n=is.read(buffer)){
+				totalBytes+=n;
+				if(write){System.out.write(buffer, 0, n);}
+			}
+		}
+		System.out.flush();
+		float seconds=(System.nanoTime()-startTime)/1e9f;
+		System.err.println("Total bytes:     "+totalBytes);
+		System.err.println("Time:            "+String.format("%.3f", seconds)+" seconds");
+		System.err.println("Throughput:      "+String.format("%.2f", totalBytes/seconds/1e6)+" MB/s");
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	public GzipInputStreamMT(InputStream in){
+		this(in, DEFAULT_THREADS);
+	}
+
+	public GzipInputStreamMT(InputStream in_, int threads){
+		assert(in_!=null) : "Null input stream";
+		in=(in_ instanceof BufferedInputStream ? in_ : new BufferedInputStream(in_, 65536));
+		workerThreads=Math.max(1, threads);
+		GzipChunk prototype=new GzipChunk(0, null, 0, 0, 0, true);
+		//Small queues; each job holds several megabytes of output
+		oqs=new OrderedQueueSystem<GzipChunk, GzipChunk>(workerThreads+1, workerThreads+3, true, prototype, prototype);
+		startThreads();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Threads            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private void startThreads(){
+		producer=new Thread(new Runnable(){
+			public void run(){producerLoop();}
+		}, "Gzip-InputProducer");
+		producer.setDaemon(true);
+		producer.start();
+
+		workers=new Thread[workerThreads];
+		for(int i=0; i<workerThreads; i++){
+			workers[i]=new Thread(new Runnable(){
+				public void run(){workerLoop();}
+			}, "Gzip-InputWorker-"+i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/** Read chunks; each job holds its chunk and the next one */
+	private void producerLoop(){
+		try{
+			long id=0, start=0;
+			byte[] a=readChunk(), b=(a.length<CHUNK_SIZE ? EMPTY : readChunk());
+			while(a.length>0 && !closed){
+				final byte[] c=(b.length<CHUNK_SIZE ? EMPTY : readChunk());
+				final boolean atEof=(c.length==0);
+				final byte[] data=(b.length==0 ? a : concat(a, b));
+				final long stopBit=(b.length==0 ? Long.MAX_VALUE : (start+a.length)*8);
+				oqs.addInput(new GzipChunk(id, data, data.length, start, stopBit, atEof || b.length==0));
+				id++;
+				start+=a.length;
+				a=b;
+				b=c;
+			}
+		}catch(IOException e){
+			producerError=e;
+		}finally{
+			oqs.poison();
+		}
+	}
+
+	private void workerLoop(){
+		final GzipChunkDecoder decoder=new GzipChunkDecoder();
+		while(true){
+			GzipChunk job=oqs.getInput();
+			if(job.poison()){
+				oqs.addInput(job);
+				break;
+			}
+			if(serial){
+				//Speculation has stopped paying; the consumer decodes everything
+			}else if(job.id==0){
+				try{
+					decoder.decodeKnown(job, -1, null, 0, false);
+				}catch(DataFormatException e){
+					job.clearOutput();//The consumer will decode it again and report the error
+				}
+			}else{
+				decoder.decodeSpeculative(job);
+			}
+			oqs.addOutput(job);
+		}
+	}
+
+	private byte[] readChunk() throws IOException{
+		byte[] chunk=new byte[CHUNK_SIZE];
+		int len=0;
+		for(int n=0; len<CHUNK_SIZE && n>=0; len+=Math.max(n, 0)){
+			n=in.read(chunk, len, CHUNK_SIZE-len);
+		}
+		return len==CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, len);
+	}
+
+	private static byte[] concat(byte[] a, byte[] b){
+		byte[] c=Arrays.copyOf(a, a.length+b.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Consumer           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Get the next job, verified and resolved.
+	 * @return False at end of stream
+	 */
+	private boolean nextJob() throws IOException{
+		if(streamDone){return false;}
+		GzipChunk job=oqs.getOutput();
+		if(job==null || job.last()){
+			if(producerError!=null){throw producerError;}
+			if(expectedBit>=0 || !sawJob){throw new EOFException("Unexpected end of gzip input");}
+			streamDone=true;
+			return false;
+		}
+		sawJob=true;
+		if(serial || !job.ok || job.startBit!=expectedBit){
+			if(serial){job.clearOutput();}
+			job=decodeHere(job);
+			redecoded++;
+			missesInRow++;
+			if(missesInRow>=SERIAL_AFTER && !serial){serial=true;}
+		}else{
+			missesInRow=0;
+		}
+		resolve(job);
+		expectedBit=job.endBit;
+		if(job.eof){
+			streamDone=true;
+			oqs.setFinished();
+		}
+		return true;
+	}
+
+	/** Decode a job in this thread from the known position and window, adding data as needed */
+	private GzipChunk decodeHere(GzipChunk job) throws IOException{
+		boolean anyBlock=serial;
+		while(true){
+			try{
+				consumerDecoder.decodeKnown(job, expectedBit, window, windowLen, anyBlock);
+				return job;
+			}catch(GzipChunkDecoder.NeedMoreData e){
+				if(!anyBlock){//No dynamic block ahead; stop at a block of any kind instead
+					anyBlock=true;
+					continue;
+				}
+				GzipChunk next=oqs.getOutput();
+				if(next==null || next.last()){throw new EOFException("Unexpected end of gzip input");}
+				job=merge(job, next);
+			}catch(DataFormatException e){
+				throw new ZipException(e.getMessage());
+			}
+		}
+	}
+
+	/** Extend a job with the data of the following job, which overlaps it by one chunk */
+	private static GzipChunk merge(GzipChunk a, GzipChunk b){
+		final int keep=(int)(b.startByte-a.startByte);
+		byte[] data=Arrays.copyOf(a.data, keep+b.dataLen);
+		System.arraycopy(b.data, 0, data, keep, b.dataLen);
+		GzipChunk c=new GzipChunk(b.id, data, data.length, a.startByte, b.stopBit, b.atEof);
+		c.startBit=a.startBit;
+		return c;
+	}
+
+	/** Replace window markers, check member trailers, and advance the window */
+	private void resolve(GzipChunk job) throws IOException{
+		head=null;
+		headLen=0;
+		if(job.chars!=null && job.charLen>GzipChunkDecoder.WINDOW){
+			final char[] chars=job.chars;
+			headLen=job.charLen-GzipChunkDecoder.WINDOW;
+			head=new byte[headLen];
+			final int minMarker=256+GzipChunkDecoder.WINDOW-windowLen;
+			for(int i=0, j=GzipChunkDecoder.WINDOW; i<headLen; i++, j++){
+				final int c=chars[j];
+				if(c<256){
+					head[i]=(byte)c;
+				}else{
+					if(c<minMarker){throw new ZipException("Invalid distance too far back");}
+					head[i]=window[c-256];
+				}
+			}
+		}
+		body=job.bytes;
+		bodyPos=job.byteStart;
+		bodyLen=(body==null ? 0 : job.byteLen);
+		headPos=0;
+
+		//Check CRC32 and ISIZE at each member end
+		long done=0;
+		for(int i=0; i<job.members.size(); i+=3){
+			final long end=job.members.get(i);
+			updateCrc(done, end);
+			done=end;
+			if(crc.getValue()!=job.members.get(i+1) || (memberBytes&0xFFFFFFFFL)!=job.members.get(i+2)){
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+			crc.reset();
+			memberBytes=0;
+		}
+		updateCrc(done, headLen+(long)(bodyLen-bodyPos));
+
+		appendWindow(head, 0, headLen);
+		if(body!=null){appendWindow(body, bodyPos, bodyLen);}
+	}
+
+	/** Add output offsets [from, to) of the current job to the CRC */
+	private void updateCrc(long from, long to){
+		memberBytes+=to-from;
+		if(from<headLen){
+			final int end=(int)Math.min(to, headLen);
+			crc.update(head, (int)from, end-(int)from);
+			from=end;
+		}
+		if(from<to){
+			crc.update(body, bodyPos+(int)(from-headLen), (int)(to-from));
+		}
+	}
+
+	private void appendWindow(byte[] src, int from, int to){
+		final int n=to-from, w=GzipChunkDecoder.WINDOW;
+		if(n>=w){
+			System.arraycopy(src, to-w, window, 0, w);
+		}else if(n>0){
+			System.arraycopy(window, n, window, 0, w-n);
+			System.arraycopy(src, from, window, w-n, n);
+		}
+		windowLen=Math.min(w, windowLen+n);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         InputStream          ----------------*/
+	/*--------------------------------------------------------------*/
+
+	@Override
+	public int read() throws IOException{
+		byte[] b=new byte[1];
+		int n=read(b, 0, 1);
+		return n<0 ? -1 : (b[0]&0xFF);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException{
+		if(closed){throw new IOException("Stream closed");}
+		if(len==0){return 0;}
+		int total=0;
+		while(total<len){
+			if(headPos<headLen){
+				final int n=Math.min(len-total, headLen-headPos);
+				System.arraycopy(head, headPos, b, off+total, n);
+				headPos+=n;
+				total+=n;
+			}else if(bodyPos<bodyLen){
+				final int n=Math.min(len-total, bodyLen-bodyPos);
+				System.arraycopy(body, bodyPos, b, off+total, n);
+				bodyPos+=n;
+				total+=n;
+			}else if(total>0 || !nextJob()){
+				break;
+			}
+		}
+		return total==0 ? -1 : total;
+	}
+
+	@Override
+	public synchronized void close() throws IOException{
+		if(closed){return;}
+		closed=true;
+		try{in.close();}catch(IOException ignore){}
+		oqs.setFinished();
+		ThreadWaiter.waitForThreadsToFinish(workers);
+	}
+
+	/** Chunks that had to be decoded again by the consumer */
+	public long redecoded(){return redecoded;}
+
+	/** True once the rest of the stream is decoded serially */
+	public boolean serial(){return serial;}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final InputStream in;
+	private final int workerThreads;
+	private final OrderedQueueSystem<GzipChunk, GzipChunk> oqs;
+	private Thread producer;
+	private Thread[] workers;
+	private volatile IOException producerError=null;
+	private volatile boolean closed=false;
+
+	private final GzipChunkDecoder consumerDecoder=new GzipChunkDecoder();
+	/** Where the next job must start; -1 before the first job */
+	private long expectedBit=-1;
+	private boolean sawJob=false;
+	private boolean streamDone=false;
+	private long redecoded=0;
+	/** Consecutive jobs the consumer had to decode itself */
+	private int missesInRow=0;
+	/** Set by the consumer when speculation is abandoned */
+	private volatile boolean serial=false;
+
+	/** The last 32kb of output, right-aligned */
+	private final byte[] window=new byte[GzipChunkDecoder.WINDOW];
+	private int windowLen=0;
+	private final CRC32 crc=new CRC32();
+	private long memberBytes=0;
+
+	/** Current job output: head (resolved markers) then body */
+	private byte[] head, body;
+	private int headPos, headLen, bodyPos, bodyLen;
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Static Fields         ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Compressed bytes per chunk */
+	public static int CHUNK_SIZE=1<<20;
+	public static int DEFAULT_THREADS=8;
+	/** Give up on speculation after this many consecutive redecoded chunks */
+	public static int SERIAL_AFTER=3;
+	private static final byte[] EMPTY=new byte[0];
+}
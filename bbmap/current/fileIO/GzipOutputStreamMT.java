@@ -0,0 +1,386 @@
+package fileIO;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import stream.HasID;
+import stream.OrderedQueueSystem;
+import stream.bam.BgzfSettings;
+
+/**
+ * Multithreaded in-JVM gzip compression, writing either one ordinary gzip member
+ * (like pigz) or BGZF (like bgzip), so no external compressor is needed.
+ *
+ * <p>Architecture, as in GzipInputStreamMT:
+ * - Producer (calling thread): Fills fixed-size blocks and submits them with ascending IDs
+ * - Worker threads: Deflate blocks in parallel
+ * - Writer thread: Takes compressed blocks in order and writes them
+ *
+ * <p>In gzip mode each block is primed with the last 32KB of the previous block
+ * and ends with a sync flush, so the blocks concatenate into a single deflate stream
+ * that compresses almost as well as a single-threaded one; the writer tracks the CRC.
+ * In BGZF mode each block is an independent gzip member of at most 64KB,
+ * followed by the standard EOF block.
+ *
+ * <p>close() waits until everything is written and the underlying stream is closed.
+ * Threads are daemons, so an unclosed stream cannot keep the JVM alive.
+ *
+ * @author Brandon Imstepf
+ * @date November 21, 2025
+ */
+public class GzipOutputStreamMT extends OutputStream{
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Create an ordinary gzip output stream */
+	public GzipOutputStreamMT(OutputStream out, int threads, int level){
+		this(out, threads, level, false);
+	}
+
+	/**
+	 * @param out Underlying stream; closed by close()
+	 * @param threads Compression threads
+	 * @param level Deflate level, 0-9; higher values are treated as 9
+	 * @param bgzf Write BGZF instead of a single gzip member
+	 */
+	public GzipOutputStreamMT(OutputStream out_, int threads, int level, boolean bgzf_){
+		this(out_, threads, level, bgzf_, MAX_BGZF_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param out Underlying stream; closed by close()
+	 * @param threads Compression threads
+	 * @param level Deflate level, 0-9; higher values are treated as 9
+	 * @param bgzf Write BGZF instead of a single gzip member
+	 * @param bgzfBlockSize Uncompressed bytes per BGZF block, capped at MAX_BGZF_BLOCK_SIZE;
+	 * ignored for gzip
+	 */
+	public GzipOutputStreamMT(OutputStream out_, int threads, int level, boolean bgzf_, int bgzfBlockSize){
+		assert(out_!=null) : "Null output stream";
+		out=out_;
+		workerThreads=Math.max(1, threads);
+		compressionLevel=Math.max(0, Math.min(level, 9));
+		bgzf=bgzf_;
+		blockSize=(bgzf ? Math.max(1, Math.min(bgzfBlockSize, MAX_BGZF_BLOCK_SIZE)) : Math.max(BLOCK_SIZE, DICT_SIZE));
+		buffer=new byte[blockSize];
+		GzipBlock prototype=new GzipBlock(0, null, 0, null, false);
+		oqs=new OrderedQueueSystem<GzipBlock, GzipBlock>(workerThreads+2, workerThreads*2+2, true, prototype, prototype);
+		startThreads();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Threads            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private void startThreads(){
+		workers=new Thread[workerThreads];
+		for(int i=0; i<workerThreads; i++){
+			workers[i]=new Thread(new Runnable(){
+				public void run(){workerLoop();}
+			}, "Gzip-OutputWorker-"+i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		writer=new Thread(new Runnable(){
+			public void run(){writerLoop();}
+		}, "Gzip-OutputWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void workerLoop(){
+		final Deflater deflater=new Deflater(compressionLevel, true);
+		if(bgzf && BgzfSettings.FILTERED_BGZF){deflater.setStrategy(Deflater.FILTERED);}
+		Deflater stored=null;
+		try{
+			while(true){
+				GzipBlock job=oqs.getInput();
+				if(job.poison()){
+					oqs.addInput(job);
+					break;
+				}
+				if(error==null){
+					try{
+						if(bgzf){
+							compressBgzf(job, deflater);
+							if(job.clen<0){//Expanded past 64KB; store it instead
+								if(stored==null){stored=new Deflater(Deflater.NO_COMPRESSION, true);}
+								compressBgzf(job, stored);
+							}
+						}else{
+							compressGzip(job, deflater);
+						}
+					}catch(RuntimeException e){
+						setError(new IOException("Gzip compression failed", e));
+					}
+				}
+				oqs.addOutput(job);
+			}
+		}finally{
+			deflater.end();
+			if(stored!=null){stored.end();}
+		}
+	}
+
+	/** Deflate a block as part of one stream, primed with the previous block's tail */
+	private static void compressGzip(GzipBlock job, Deflater deflater){
+		deflater.reset();
+		if(job.dict!=null){
+			deflater.setDictionary(job.dict, job.dict.length-DICT_SIZE, DICT_SIZE);
+		}
+		deflater.setInput(job.data, 0, job.len);
+		if(job.finish){deflater.finish();}
+		job.compressed=new byte[job.len+(job.len>>6)+64];
+		int clen=0;
+		while(true){
+			clen+=deflater.deflate(job.compressed, clen, job.compressed.length-clen,
+				job.finish ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+			if(job.finish ? deflater.finished() : clen<job.compressed.length){break;}
+			job.compressed=Arrays.copyOf(job.compressed, job.compressed.length*2);
+		}
+		job.clen=clen;
+	}
+
+	/** Deflate a block as a complete BGZF member; clen is -1 if it does not fit in one */
+	private static void compressBgzf(GzipBlock job, Deflater deflater){
+		deflater.reset();
+		deflater.setInput(job.data, 0, job.len);
+		deflater.finish();
+		job.compressed=new byte[MAX_BGZF_BLOCK];
+		final int limit=MAX_BGZF_BLOCK-8;
+		int clen=BGZF_HEADER.length;
+		while(!deflater.finished() && clen<limit){
+			clen+=deflater.deflate(job.compressed, clen, limit-clen);
+		}
+		if(!deflater.finished()){
+			job.clen=-1;
+			return;
+		}
+		System.arraycopy(BGZF_HEADER, 0, job.compressed, 0, BGZF_HEADER.length);
+		final CRC32 crc=new CRC32();
+		crc.update(job.data, 0, job.len);
+		clen=writeInt32(job.compressed, clen, (int)crc.getValue());
+		clen=writeInt32(job.compressed, clen, job.len);
+		job.compressed[16]=(byte)(clen-1);
+		job.compressed[17]=(byte)((clen-1)>>8);
+		job.clen=clen;
+	}
+
+	/** Write blocks in order, then the trailer, then close the underlying stream */
+	private void writerLoop(){
+		final CRC32 crc=new CRC32();
+		long isize=0;
+		try{
+			if(!bgzf){out.write(gzipHeader(compressionLevel));}
+			for(GzipBlock job=oqs.getOutput(); job!=null && !job.last(); job=oqs.getOutput()){
+				if(error!=null){continue;}//Drain so the producer never blocks
+				out.write(job.compressed, 0, job.clen);
+				if(!bgzf){
+					crc.update(job.data, 0, job.len);
+					isize+=job.len;
+				}
+			}
+			if(error==null){
+				if(bgzf){
+					out.write(BGZF_EOF);
+				}else{
+					byte[] trailer=new byte[8];
+					writeInt32(trailer, 0, (int)crc.getValue());
+					writeInt32(trailer, 4, (int)isize);
+					out.write(trailer);
+				}
+			}
+		}catch(IOException e){
+			setError(e);
+		}finally{
+			try{
+				out.close();
+			}catch(IOException e){
+				setError(e);
+			}
+			oqs.setFinished();
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	@Override
+	public void write(int b) throws IOException{
+		buffer[bufferPos++]=(byte)b;
+		if(bufferPos>=blockSize){submit(false);}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException{
+		if(closed){throw new IOException("Stream closed");}
+		while(len>0){
+			final int toWrite=Math.min(blockSize-bufferPos, len);
+			System.arraycopy(b, off, buffer, bufferPos, toWrite);
+			bufferPos+=toWrite;
+			off+=toWrite;
+			len-=toWrite;
+			if(bufferPos>=blockSize){submit(false);}
+		}
+	}
+
+	/**
+	 * Submits buffered data as a block; it is written once compressed.
+	 * Frequent flushes cost compression, since blocks get smaller.
+	 */
+	@Override
+	public void flush() throws IOException{
+		if(closed){return;}
+		if(bufferPos>0){submit(false);}
+	}
+
+	/** Submits the remaining data and waits until it is written and the underlying stream is closed */
+	@Override
+	public synchronized void close() throws IOException{
+		if(closed){return;}
+		if(bufferPos>0 || !bgzf){submit(true);}
+		closed=true;
+		oqs.poison();
+		oqs.waitForFinish();
+		if(error!=null){throw error;}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Hand the buffer to the workers and start a new one */
+	private void submit(boolean finish) throws IOException{
+		if(error!=null){throw error;}
+		final byte[] dict=(!bgzf && prevLen>=DICT_SIZE ? prev : null);
+		final GzipBlock job=new GzipBlock(nextId++, buffer, bufferPos, dict, finish);
+		oqs.addInput(job);
+		prev=buffer;
+		prevLen=bufferPos;
+		if(prevLen<DICT_SIZE){prev=null;}//Only full tails are used as dictionaries
+		else if(prevLen<prev.length){prev=Arrays.copyOf(prev, prevLen);}
+		buffer=new byte[blockSize];
+		bufferPos=0;
+	}
+
+	private synchronized void setError(IOException e){
+		if(error==null){error=e;}
+	}
+
+	private static byte[] gzipHeader(int level){
+		final int xfl=(level>=9 ? 2 : level<=1 ? 4 : 0);
+		return new byte[] {0x1f, (byte)0x8b, 8, 0, 0, 0, 0, 0, (byte)xfl, (byte)255};
+	}
+
+	private static int writeInt32(byte[] buf, int pos, int val){
+		buf[pos++]=(byte)val;
+		buf[pos++]=(byte)(val>>8);
+		buf[pos++]=(byte)(val>>16);
+		buf[pos++]=(byte)(val>>24);
+		return pos;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Classes        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Uncompressed input block, and its compressed form once a worker is done */
+	private static final class GzipBlock implements HasID{
+
+		GzipBlock(long id_, byte[] data_, int len_, byte[] dict_, boolean finish_){
+			id=id_;
+			data=data_;
+			len=len_;
+			dict=dict_;
+			finish=finish_;
+		}
+
+		@Override
+		public long id(){return id;}
+
+		@Override
+		public boolean poison(){return type==POISON;}
+
+		@Override
+		public boolean last(){return type==LAST;}
+
+		@Override
+		public GzipBlock makePoison(long id_){
+			GzipBlock x=new GzipBlock(id_, null, 0, null, false);
+			x.type=POISON;
+			return x;
+		}
+
+		@Override
+		public GzipBlock makeLast(long id_){
+			GzipBlock x=new GzipBlock(id_, null, 0, null, false);
+			x.type=LAST;
+			return x;
+		}
+
+		final long id;
+		final byte[] data;
+		final int len;
+		/** Previous block's data, whose last 32KB prime the deflater; gzip mode only */
+		final byte[] dict;
+		/** True for the block that ends the deflate stream; gzip mode only */
+		final boolean finish;
+
+		byte[] compressed;
+		/** Compressed length; in BGZF mode, of the whole member */
+		int clen;
+
+		private int type=NORMAL;
+		private static final int NORMAL=0, POISON=1, LAST=2;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final OutputStream out;
+	private final int workerThreads;
+	private final int compressionLevel;
+	private final boolean bgzf;
+	private final int blockSize;
+	private final OrderedQueueSystem<GzipBlock, GzipBlock> oqs;
+	private Thread[] workers;
+	private Thread writer;
+
+	private byte[] buffer;
+	private int bufferPos=0;
+	/** The last submitted block, if it is long enough to be a dictionary */
+	private byte[] prev;
+	private int prevLen=0;
+	private long nextId=0;
+	private boolean closed=false;
+	private volatile IOException error=null;
+
+	/** Uncompressed block size in gzip mode; pigz uses 128KB */
+	public static int BLOCK_SIZE=1<<17;
+	public static int DEFAULT_THREADS=8;
+
+	private static final int DICT_SIZE=32768;
+	/** Largest uncompressed BGZF block, as in htslib, so stored blocks still fit */
+	public static final int MAX_BGZF_BLOCK_SIZE=0xff00;
+	private static final int MAX_BGZF_BLOCK=65536;
+
+	/** gzip header with the BC subfield; BSIZE is filled in per block */
+	private static final byte[] BGZF_HEADER=new byte[] {
+		31, (byte)139, 8, 4, 0, 0, 0, 0, 0, (byte)255, 6, 0, 66, 67, 2, 0, 0, 0
+	};
+
+	/** Standard 28-byte empty block that ends a BGZF file */
+	private static final byte[] BGZF_EOF=new byte[] {
+		0x1f, (byte)0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00,
+		0x00, (byte)0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+		0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00,
+		0x00, 0x00, 0x00, 0x00
+	};
+}
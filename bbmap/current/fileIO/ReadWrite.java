@@ -33,6 +33,7 @@ import dna.Data;
 import shared.KillSwitch;
 import shared.Shared;
 import shared.Tools;
+import stream.BamStreamer;
 import stream.ConcurrentReadOutputStream;
 import stream.ConcurrentReadStreamInterface;
 import stream.MultiCros;
@@ -44,7 +45,6 @@ import stream.bam.BgzfInputStream;
 import stream.bam.BgzfInputStreamMT;
 import stream.bam.BgzfInputStreamMT2;
 import stream.bam.BgzfOutputStream;
-import stream.bam.BgzfOutputStreamMT;
 import stream.bam.BgzfSettings;
 import structures.ByteBuilder;
 
@@ -764,12 +764,13 @@ public class ReadWrite {
 		if(verbose){System.err.println("getGZipOutputStream("+fname+", "+append+", "+allowSubprocess+"); "+FORCE_BGZIP+", "+USE_BGZIP+", "+Data.BGZIP()+", "+USE_PIGZ+", "+USE_GZIP+", "+RAWMODE);}
 		final boolean bgzip=(USE_BGZIP && (ALLOW_NATIVE_BGZF || Data.BGZIP()));
 		if(bgzip && (FORCE_BGZIP || (PREFER_BGZIP && ZIPLEVEL<10))){return getBgzipStream(fname, append);}
-		if(FORCE_PIGZ || (allowSubprocess && Shared.threads()>=2)){
+		if(FORCE_PIGZ || (allowSubprocess && Shared.threads()>=2 && (!PREFER_NATIVE_GZIP_OUT || ZIPLEVEL>9))){
 			if((fname.endsWith(".vcf.gz") || fname.endsWith(".sam.gz") || (PREFER_BGZIP && ZIPLEVEL<10)) && bgzip){return getBgzipStream(fname, append);}
 			if(USE_PIGZ && Data.PIGZ()){return getPigzStream(fname, append);}
 			if(bgzip){return getBgzipStream(fname, append);}
 			if(USE_GZIP && Data.GZIP()/* && (Data.SH() /*|| fname.equals("stdout") || fname.startsWith("stdout."))*/){return getGzipStream(fname, append);}
 		}
+		if(Shared.threads()>=2){return getGzipStreamMT(fname, append);}
 		final OutputStream raw=getRawOutputStream(fname, append, false);
 		if(RAWMODE){return raw;}
 		try {
@@ -827,6 +828,28 @@ public class ReadWrite {
 		return out;
 	}
 	
+	/**
+	 * Creates an in-JVM multithreaded gzip output stream, a replacement for pigz
+	 * that needs no subprocess.  Levels above 9 are treated as 9.
+	 *
+	 * @param fname Output filename
+	 * @param append Whether to append to existing file
+	 * @return Gzip compressed output stream
+	 */
+	public static OutputStream getGzipStreamMT(String fname, boolean append){
+		if(verbose){System.err.println("getGzipStreamMT("+fname+")");}
+		int threads=Tools.min(MAX_ZIP_THREADS, Tools.max((int)((Shared.threads()+1)*ZIP_THREAD_MULT), 1));
+		threads=Tools.max(1, Tools.min(Shared.threads(), threads));
+		int zl=Tools.mid(ZIPLEVEL, 0, 9);
+		if(ALLOW_ZIPLEVEL_CHANGE && threads>=4 && zl>0 && zl<4){zl=4;}
+		if(zl<3){threads=Tools.min(threads, 12);}
+		else if(zl<5){threads=Tools.min(threads, 24);}
+		else if(zl<7){threads=Tools.min(threads, 40);}
+		final OutputStream raw=getRawOutputStream(fname, append, false);
+		if(RAWMODE){return raw;}
+		return new GzipOutputStreamMT(raw, threads, zl);
+	}
+	
 	/**
 	 * Creates FQZ compressed output stream optimized for FASTQ files.
 	 * @param fname Output filename
@@ -883,19 +906,18 @@ public class ReadWrite {
 		int zl=Tools.mid(ZIPLEVEL, 1, 9);
 //		System.err.println("A: ZIPLEVEL="+ZIPLEVEL+", ALLOW_CHANGE="+ALLOW_ZIPLEVEL_CHANGE+", zl="+zl);
 		if(nativeBgzfOut() || !Data.BGZIP()) {
-			if(zl>5) {zl=5;}//Required for native bgzip.
 			if(ALLOW_ZIPLEVEL_CHANGE){
 				if(zl<4 && zl>0 && threads>=16) {zl=4;}
 			}
 			if(zl<3){threads=Tools.min(threads, 16);}
 			else if(zl<5){threads=Tools.min(threads, 24);}
-			else if(zl<6){threads=Tools.min(threads, 64);}
+			else{threads=Tools.min(threads, 64);}
 //			System.err.println("B: ZIPLEVEL="+ZIPLEVEL+", ALLOW_CHANGE="+ALLOW_ZIPLEVEL_CHANGE+", zl="+zl);
 			final OutputStream raw=getRawOutputStream(fname, append, false);//TODO - should it be true or false?
 			if(RAWMODE){return raw;}
 			OutputStream out;
 			if(!BgzfSettings.USE_MULTITHREADED_BGZF) {out=new BgzfOutputStream(raw);}
-			else {out=new BgzfOutputStreamMT(raw, Tools.mid(1, 64, threads), zl);}
+			else {out=new GzipOutputStreamMT(raw, threads, zl, true);}
 			return out;
 		}
 		
@@ -1249,7 +1271,7 @@ public class ReadWrite {
 			if(SAMTOOLS_IGNORE_FLAG!=0){
 				command=command+" --num-filter=0/"+SAMTOOLS_IGNORE_FLAG;
 			}
-			return getInputStreamFromProcess(fname, command, false, true, true);
+			return getBamProcessStream(fname, command);
 		}else{
 			String command="samtools view -h";//Adding -@ 4 or 16 did not change speed
 //			new Exception().printStackTrace(); //123
@@ -1279,8 +1301,22 @@ public class ReadWrite {
 				}
 			}
 			//				System.err.println(command);
+			return getBamProcessStream(fname, command);
+		}
+	}
+	
+	/**
+	 * Runs samtools or sambamba view on a BAM file, restricted to BamStreamer.REGIONS if set.
+	 * A BED file is passed with -L; a region list is split into arguments after the filename.
+	 */
+	private static InputStream getBamProcessStream(String fname, String command){
+		final String regions=BamStreamer.REGIONS;
+		if(regions==null){
 			return getInputStreamFromProcess(fname, command, false, true, true);
+		}else if(new File(regions).isFile()){
+			return getInputStreamFromProcess(fname, command+" -L "+regions, false, true, true);
 		}
+		return getInputStreamFromProcess(fname, command+" "+fname+" "+regions.replace(',', ' '), false, false, true);
 	}
 	
 	/**
@@ -1431,6 +1467,8 @@ public class ReadWrite {
 		if(Shared.threads()<2 || Shared.LOW_MEMORY || fname.startsWith("jar:") || 
 				(!allowSubprocess && !ALLOW_NATIVE_BGZF)) {
 			//Use plain gzip stream
+		}else if(useParallelGunzip(fname)) {
+			return getParallelGunzipStream(fname);
 		}else if(USE_UNBGZIP && ALLOW_NATIVE_BGZF && PREFER_NATIVE_BGZF_IN) {
 			return getUnbgzipStream(fname);
 		}else if(allowSubprocess) {
@@ -1452,6 +1490,30 @@ public class ReadWrite {
 		return in;
 	}
 	
+	/**
+	 * Whether a file should be decompressed in-JVM by GzipInputStreamMT:
+	 * a large, ordinary gzip file on disk, with enough threads to beat a single inflater.
+	 * BGZF files are left to the BGZF readers, which need no speculation.
+	 */
+	private static boolean useParallelGunzip(String fname){
+		if(!PARALLEL_GUNZIP || FileFormat.isStdin(fname)) {return false;}
+		if(Tools.mid(PARALLEL_GUNZIP_THREADS, 1, Shared.threads())<PARALLEL_GUNZIP_MIN_THREADS) {return false;}
+		File f=new File(fname);
+		if(!f.isFile() || f.length()<2L*GzipInputStreamMT.CHUNK_SIZE) {return false;}
+		return !isBGZip(fname);
+	}
+	
+	/**
+	 * Creates a multithreaded in-JVM gzip input stream for ordinary gzip files.
+	 * @param fname Input filename
+	 * @return Gzip decompressed input stream
+	 */
+	public static InputStream getParallelGunzipStream(String fname){
+		if(verbose){System.err.println("getParallelGunzipStream("+fname+")");}
+		final int threads=Tools.mid(PARALLEL_GUNZIP_THREADS, 1, Shared.threads());
+		return new GzipInputStreamMT(getRawInputStream(fname, false), threads);
+	}
+	
 	/**
 	 * Creates gunzip input stream using external gzip command.
 	 * @param fname Input filename
@@ -2546,7 +2608,7 @@ public class ReadWrite {
 	}
 	
 	public static boolean nativeBgzfOut() {
-		return ALLOW_NATIVE_BGZF && ((PREFER_NATIVE_BGZF_OUT && ZIPLEVEL<=5) || !Data.BGZIP_THREADED());
+		return ALLOW_NATIVE_BGZF && (PREFER_NATIVE_BGZF_OUT || !Data.BGZIP_THREADED());
 	}
 	
 	/** {active, waiting, running} <br>
@@ -2581,7 +2643,16 @@ public class ReadWrite {
 	
 	public static boolean ALLOW_NATIVE_BGZF=true;
 	public static boolean PREFER_NATIVE_BGZF_IN=true;
-	public static boolean PREFER_NATIVE_BGZF_OUT=false;
+	public static boolean PREFER_NATIVE_BGZF_OUT=true;
+	/** Compress ordinary gzip output with GzipOutputStreamMT instead of pigz, except for levels above 9 */
+	public static boolean PREFER_NATIVE_GZIP_OUT=true;
+	
+	/** Decompress large non-BGZF gzip files with GzipInputStreamMT instead of unpigz or a single inflater */
+	public static boolean PARALLEL_GUNZIP=true;
+	/** Maximum decoder threads for GzipInputStreamMT */
+	public static int PARALLEL_GUNZIP_THREADS=GzipInputStreamMT.DEFAULT_THREADS;
+	/** GzipInputStreamMT is not used with fewer threads than this */
+	public static int PARALLEL_GUNZIP_MIN_THREADS=4;
 
 	public static boolean USE_READ_STREAM_SAM_WRITER=true;
 	public static boolean ALLOW_NATIVE_BAM_IN=true;
@@ -16,6 +16,12 @@ import shared.PreParser;
 import shared.Shared;
 import shared.Timer;
 import shared.Tools;
+import stream.FastaStreamer;
+import stream.FastqStreamer;
+import stream.ReadBatch;
+import stream.ReadView;
+import stream.Streamer;
+import structures.ListNum;
 
 /**
  * @author Brian Bushnell
@@ -121,9 +127,16 @@ public class CountGC {
 			}
 		}
 		
-		if(is==null){is=ReadWrite.getInputStream(in, false, true);}
+		//With spare threads, sequence files are parsed in parallel batches;
+		//otherwise the single-pass stream parsers are faster
+		final FileFormat ffb=(benchmark || is!=null || Shared.threads()<2 ? null :
+			FileFormat.testInput(in, FileFormat.FASTA, null, true, true));
+		final boolean batched=(ffb!=null && (ffb.fastq() || ffb.fasta()));
+		
+		if(is==null && !batched){is=ReadWrite.getInputStream(in, false, true);}
 		try {
 			if(benchmark){sum=bench2(is);}
+			else if(batched){counts=countBatched(ffb, out);}
 			else{
 				FileFormat ff=FileFormat.testInput(in, FileFormat.FASTA, null, true, true);
 				boolean fastq=ff.fastq();
@@ -136,7 +149,7 @@ public class CountGC {
 			e.printStackTrace();
 		}
 		try {
-			if(is!=System.in){is.close();}
+			if(is!=null && is!=System.in){is.close();}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -174,6 +187,68 @@ public class CountGC {
 		return sum;
 	}
 	
+	/**
+	 * Counts the bases of each record of a FASTA or FASTQ file.
+	 * Records are read as ReadBatches and looked at through a ReadView, so parsing
+	 * runs on the streamer's threads and no Read or array is made per record.
+	 * Output matches countFasta and countFastq, except that FASTA header text after
+	 * a tab is dropped rather than counted as bases.
+	 *
+	 * @param ff Input file
+	 * @param out Output file, or null for stdout
+	 * @return Overall counts [A, C, G, T, N, other]
+	 */
+	public static long[] countBatched(FileFormat ff, String out){
+		final boolean fastq=ff.fastq();
+		final Streamer st=(fastq ? new FastqStreamer(ff, Shared.threads(), 0, -1) :
+			new FastaStreamer(ff, Shared.threads(), 0, -1));
+		st.setBatchMode(true);
+		st.start();
+		
+		final TextStreamWriter tsw=(out==null ? null : new TextStreamWriter(out, true, false, false));
+		if(tsw!=null){tsw.start();}
+		final int[] counts=KillSwitch.allocInt1D(6);
+		final long[] overall=new long[6];
+		final StringBuilder hdr=new StringBuilder();
+		final ReadView rv=new ReadView();
+		boolean printed=false;
+		
+		for(ListNum<ReadBatch> ln=st.nextBatch(); ln!=null; ln=st.nextBatch()){
+			for(ReadBatch rb : ln){
+				final byte[] buf=rb.buffer();
+				for(int i=0, lim=rb.size(); i<lim; i++){
+					rv.set(rb, i);
+					
+					//Header runs to the first control character, as in the stream parsers
+					for(int j=rb.idStart(i), stop=rv.basesStart()-1; j<stop; j++){
+						final byte c=buf[j];
+						if(c<=slashr){break;}
+						if(!fastq || c!=at){hdr.append((char)c);}
+					}
+					for(int j=0, len=rv.length(); j<len; j++){counts[charToNum[rv.base(j)]]++;}
+					
+					if(hdr.length()>0 || shared.Vector.sum(counts)>0){
+						if(tsw!=null){tsw.print(toString2(hdr, counts));}else if(!SUMMARY_ONLY){System.out.print(toString2(hdr, counts));}
+						printed=true;
+						hdr.setLength(0);
+						for(int j=0; j<counts.length; j++){
+							overall[j]+=counts[j];
+							counts[j]=0;
+						}
+					}
+				}
+			}
+		}
+		//countFasta ends stdout with a println
+		if(printed && !fastq && tsw==null && !SUMMARY_ONLY){System.out.println();}
+		
+		if(tsw!=null){
+			tsw.poisonAndWait();
+		}
+		if(st.errorState()){throw new RuntimeException("Error reading "+ff.name());}
+		return overall;
+	}
+	
 	public static long[] countFasta(InputStream is, String out) throws IOException{
 		
 		long limsum=0;
@@ -32,8 +32,12 @@ import stream.ConcurrentReadInputStream;
 import stream.ConcurrentReadOutputStream;
 import stream.FASTQ;
 import stream.FastaReadInputStream;
+import stream.FastaStreamer;
+import stream.FastqStreamer;
 import stream.Read;
+import stream.ReadBatch;
 import stream.SamLine;
+import stream.Streamer;
 import structures.ListNum;
 import structures.LongList;
 import structures.Quantizer;
@@ -1551,6 +1555,20 @@ public class ReformatReads {
 			throw new RuntimeException("Can't precount reads from standard in, only from a file.");
 		}
 		
+		final Streamer st=makeBatchStreamer(maxReads);
+		if(st!=null){
+			long count=0, count2=0, bases=0;
+			for(ListNum<ReadBatch> ln=st.nextBatch(); ln!=null; ln=st.nextBatch()){
+				for(ReadBatch rb : ln){
+					count+=rb.pairCount();
+					count2+=rb.size();
+					bases+=rb.bases();
+				}
+			}
+			errorState|=st.errorState();
+			return new long[] {count, count2, bases};
+		}
+		
 		final ConcurrentReadInputStream cris;
 		{
 			cris=ConcurrentReadInputStream.getReadInputStream(maxReads, true, ffin1, ffin2, null, null);
@@ -1595,6 +1613,20 @@ public class ReformatReads {
 			throw new RuntimeException("Can't precount reads from standard in, only from a file.");
 		}
 		
+		SuperLongList sll=new SuperLongList(200000);
+		
+		final Streamer st=makeBatchStreamer(maxReads);
+		if(st!=null){
+			for(ListNum<ReadBatch> ln=st.nextBatch(); ln!=null; ln=st.nextBatch()){
+				for(ReadBatch rb : ln){
+					for(int i=0, lim=rb.size(); i<lim; i++){sll.add(rb.length(i));}
+				}
+			}
+			errorState|=st.errorState();
+			sll.sort();
+			return sll;
+		}
+		
 		final ConcurrentReadInputStream cris;
 		{
 			cris=ConcurrentReadInputStream.getReadInputStream(maxReads, true, ffin1, ffin2, null, null);
@@ -1605,8 +1637,6 @@ public class ReformatReads {
 		ListNum<Read> ln=cris.nextList();
 		ArrayList<Read> reads=(ln!=null ? ln.list : null);
 		
-		SuperLongList sll=new SuperLongList(200000);
-		
 		while(ln!=null && reads!=null && reads.size()>0){//ln!=null prevents a compiler potential null access warning
 			for(Read r : reads){
 				sll.add(r.length());
@@ -1624,6 +1654,32 @@ public class ReformatReads {
 		return sll;
 	}
 	
+	/**
+	 * Starts a batch-mode streamer for a pre-pass over a single FASTQ or FASTA file.
+	 * The pre-passes only need lengths, so records stay in the streamer's buffers
+	 * instead of becoming Reads.
+	 *
+	 * @param maxReads Maximum number of reads (pairs, if interleaved) to process
+	 * @return Started streamer, or null if the input needs a ConcurrentReadInputStream
+	 */
+	private Streamer makeBatchStreamer(long maxReads){
+		if(ffin2!=null){return null;}
+		final Streamer st;
+		if(ffin1.fastq()){
+			//FastqStreamer limits records, not pairs
+			final long max=(maxReads>0 && ffin1.interleaved() ? maxReads*2 : maxReads);
+			st=new FastqStreamer(ffin1, Shared.threads(), 0, max);
+		}else if(ffin1.fasta()){
+			st=new FastaStreamer(ffin1, Shared.threads(), 0, maxReads);
+		}else{
+			return null;
+		}
+		if(!st.setBatchMode(true)){return null;}
+		if(verbose){outstream.println("Counting Reads");}
+		st.start();
+		return st;
+	}
+	
 	/** Sets the random seed for sampling operations.
 	 * @param seed Random seed value for reproducible sampling */
 	public void setSampleSeed(long seed){
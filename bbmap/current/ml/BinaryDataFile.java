@@ -0,0 +1,339 @@
+package ml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import fileIO.ByteFile;
+import fileIO.FileFormat;
+import shared.LineParser1;
+import shared.Parse;
+import shared.Shared;
+import shared.Timer;
+import shared.Tools;
+
+/**
+ * Binary training-set format, an alternative to TSV for DataLoader.
+ * A fixed 32-byte header is followed by fixed-width rows of little-endian
+ * float32 or float16 values, in the same column order as the TSV:
+ * inputs, then the optional weight, then outputs.
+ * Rows are read through memory-mapped I/O, so loading needs no text parsing.
+ * <p>
+ * Header: magic (8 bytes), numInputs, numOutputs, weighted, bytesPerValue (4 bytes each),
+ * rows (8 bytes).
+ *
+ * @author Brandon Imstepf
+ * @date 8-7-2025
+ */
+public final class BinaryDataFile {
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Static Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Converts a TSV training set to binary.
+	 * Usage: java ml.BinaryDataFile in=data.tsv out=data.bbd half */
+	public static void main(String[] args){
+		Timer t=new Timer();
+		String in=null, out=null;
+		boolean half=false;
+		for(String arg : args){
+			String[] split=arg.split("=");
+			String a=split[0].toLowerCase();
+			String b=split.length>1 ? split[1] : null;
+			if(a.equals("in")){in=b;}
+			else if(a.equals("out")){out=b;}
+			else if(a.equals("half") || a.equals("float16")){half=Parse.parseBoolean(b);}
+			else{throw new RuntimeException("Unknown parameter "+arg);}
+		}
+		if(in==null || out==null){
+			throw new RuntimeException("Usage: java ml.BinaryDataFile in=<data.tsv> out=<data.bbd> half=<f>");
+		}
+		long rows=convert(in, out, half);
+		t.stop();
+		System.err.println("Wrote "+rows+" rows to "+out+" in "+t);
+	}
+
+	/** Stream a TSV training set into a binary file.
+	 * @return Rows written */
+	public static long convert(String tsv, String bin, boolean half){
+		ByteFile bf=ByteFile.makeByteFile(FileFormat.testInput(tsv, FileFormat.TEXT, null, true, false));
+		LineParser1 lp=new LineParser1(DataLoader.delimiter);
+		int numInputs=0, numOutputs=1;
+		boolean weighted=false;
+		Writer w=null;
+		float[] row=null;
+		for(byte[] line=bf.nextLine(); line!=null; line=bf.nextLine()){
+			if(line.length<1){continue;}
+			if(line[0]=='#'){
+				if(Tools.startsWith(line, "#dims")){
+					int[] dims=DataLoader.parseIntArray(line, DataLoader.delimiter, true);
+					numInputs=dims[0];
+					numOutputs=dims[1];
+					weighted=(dims.length>2 && dims[2]==1);
+				}
+				continue;
+			}
+			lp.set(line);
+			if(w==null){
+				if(numInputs==0){numInputs=lp.terms()-numOutputs-(weighted ? 1 : 0);}
+				w=new Writer(bin, numInputs, numOutputs, weighted, half);
+				row=new float[w.width];
+			}
+			assert(lp.terms()==row.length) : lp.terms()+" != "+row.length+": "+new String(line);
+			for(int i=0; i<row.length; i++){row[i]=lp.parseFloat(i);}
+			w.add(row);
+		}
+		bf.close();
+		if(w==null){throw new RuntimeException("No data rows in "+tsv);}
+		w.close();
+		return w.rows;
+	}
+
+	/** True if the file starts with the binary magic number. */
+	public static boolean isBinary(String fname){
+		File f=new File(fname);
+		if(!f.isFile() || f.length()<HEADER_SIZE){return false;}
+		byte[] magic=new byte[MAGIC.length];
+		try(InputStream is=new FileInputStream(f)){
+			if(is.read(magic)!=magic.length){return false;}
+		}catch(IOException e){
+			return false;
+		}
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/** Expands an IEEE 754 binary16 value; matches Float.float16ToFloat (Java 20+) except for NaN payloads. */
+	static float halfToFloat(short h){
+		final int sign=(h&0x8000)<<16, exp=(h>>>10)&0x1f, mant=h&0x3ff;
+		if(exp==0x1f){return Float.intBitsToFloat(sign|0x7f800000|(mant<<13));}//Inf or NaN
+		if(exp==0){//Zero or subnormal
+			final float f=mant*0x1p-24f;
+			return sign==0 ? f : -f;
+		}
+		return Float.intBitsToFloat(sign|((exp+112)<<23)|(mant<<13));
+	}
+
+	/** Rounds to the nearest IEEE 754 binary16 value; matches Float.floatToFloat16 (Java 20+) except for NaN payloads. */
+	static short floatToHalf(float f){
+		final int bits=Float.floatToRawIntBits(f);
+		final int sign=(bits>>>16)&0x8000, abs=bits&0x7fffffff;
+		if(abs>0x7f800000){//NaN; keep the quiet bit and fold the low payload bits in
+			return (short)(sign|0x7c00|((abs&0x7fe000)>>>13)|((abs&0x1ff0)>>>4)|(abs&0xf));
+		}
+		if(abs>=0x477ff000){return (short)(sign|0x7c00);}//Inf, or rounds up to it
+		if(abs<0x38800000){//Subnormal or zero; scaling by a power of 2 is exact
+			return (short)(sign|(int)Math.rint(Float.intBitsToFloat(abs)*0x1p24f));
+		}
+		final int mant=abs&0x7fffff, rem=mant&0x1fff;
+		int h=(((abs>>>23)-112)<<10)|(mant>>>13);
+		if(rem>0x1000 || (rem==0x1000 && (h&1)!=0)){h++;}//Round half to even; may carry into exponent
+		return (short)(sign|h);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Constructor          ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Open a binary data file and read its header. */
+	public BinaryDataFile(String fname_) throws IOException {
+		fname=fname_;
+		raf=new RandomAccessFile(fname, "r");
+		channel=raf.getChannel();
+		ByteBuffer header=ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while(header.hasRemaining() && channel.read(header, header.position())>0){}
+		header.flip();
+		byte[] magic=new byte[MAGIC.length];
+		header.get(magic);
+		if(!Arrays.equals(magic, MAGIC)){
+			close();
+			throw new IOException(fname+" is not a binary data file.");
+		}
+		numInputs=header.getInt();
+		numOutputs=header.getInt();
+		weighted=(header.getInt()!=0);
+		bytesPerValue=header.getInt();
+		assert(bytesPerValue==4 || bytesPerValue==2) : bytesPerValue;
+		width=numInputs+numOutputs+(weighted ? 1 : 0);
+		rowBytes=width*(long)bytesPerValue;
+		long r=header.getLong();
+		//A writer that did not finish leaves -1; trust the file size instead
+		rows=(r>=0 ? r : (channel.size()-HEADER_SIZE)/rowBytes);
+		assert(HEADER_SIZE+rows*rowBytes<=channel.size()) : "Truncated file "+fname;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Read up to maxRows rows into per-row arrays, as DataLoader does for TSV.
+	 * The file is mapped in chunks of whole rows so files over 2GB work.
+	 * @return Rows read
+	 */
+	public long read(long maxRows, ArrayList<float[]> inputList,
+			ArrayList<float[]> outputList, ArrayList<float[]> weightList) throws IOException {
+		final long lim=Tools.min(maxRows, rows);
+		final long rowsPerChunk=Tools.max(1, MAX_CHUNK/rowBytes);
+		final float[] row=new float[width];
+		for(long start=0; start<lim; start+=rowsPerChunk){
+			final int n=(int)Tools.min(rowsPerChunk, lim-start);
+			MappedByteBuffer mbb=channel.map(FileChannel.MapMode.READ_ONLY,
+					HEADER_SIZE+start*rowBytes, n*rowBytes);
+			mbb.order(ByteOrder.LITTLE_ENDIAN);
+			if(bytesPerValue==4){
+				FloatBuffer fb=mbb.asFloatBuffer();
+				for(int i=0; i<n; i++){
+					fb.get(row);
+					addRow(row, inputList, outputList, weightList);
+				}
+			}else{
+				ShortBuffer sb=mbb.asShortBuffer();
+				for(int i=0; i<n; i++){
+					for(int j=0; j<width; j++){row[j]=halfToFloat(sb.get());}
+					addRow(row, inputList, outputList, weightList);
+				}
+			}
+		}
+		return lim;
+	}
+
+	/** For readers that map their own regions */
+	FileChannel channel(){
+		return channel;
+	}
+
+	public void close(){
+		try{
+			raf.close();
+		}catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Private Methods       ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private void addRow(float[] row, ArrayList<float[]> inputList,
+			ArrayList<float[]> outputList, ArrayList<float[]> weightList){
+		int pos=numInputs;
+		inputList.add(Arrays.copyOf(row, numInputs));
+		if(weighted){
+			weightList.add(new float[] {row[pos]});
+			pos++;
+		}else{
+			weightList.add(new float[] {1});
+		}
+		outputList.add(Arrays.copyOfRange(row, pos, pos+numOutputs));
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Writer            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Writes rows in TSV column order; the row count is patched into the header on close. */
+	public static class Writer {
+
+		public Writer(String fname_, int numInputs_, int numOutputs_, boolean weighted_, boolean half_){
+			fname=fname_;
+			numInputs=numInputs_;
+			numOutputs=numOutputs_;
+			weighted=weighted_;
+			half=half_;
+			width=numInputs+numOutputs+(weighted ? 1 : 0);
+			try{
+				raf=new RandomAccessFile(fname, "rw");
+				raf.setLength(0);
+				channel=raf.getChannel();
+			}catch(IOException e){
+				throw new RuntimeException(e);
+			}
+			buffer=ByteBuffer.allocate(Tools.max(BUFFER_SIZE, width*4)).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(MAGIC);
+			buffer.putInt(numInputs).putInt(numOutputs).putInt(weighted ? 1 : 0).putInt(half ? 2 : 4);
+			buffer.putLong(-1);
+			assert(buffer.position()==HEADER_SIZE);
+		}
+
+		/** Add one row of width values: inputs, optional weight, outputs. */
+		public void add(float[] row){add(row, 0);}
+
+		/** Add the row of width values starting at row[off]. */
+		public void add(float[] row, int off){
+			assert(row.length>=off+width) : row.length+" < "+off+"+"+width;
+			if(buffer.remaining()<width*4){flush();}
+			if(half){
+				for(int i=off, lim=off+width; i<lim; i++){buffer.putShort(floatToHalf(row[i]));}
+			}else{
+				for(int i=off, lim=off+width; i<lim; i++){buffer.putFloat(row[i]);}
+			}
+			rows++;
+		}
+
+		public void close(){
+			flush();
+			try{
+				ByteBuffer bb=ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+				bb.putLong(rows).flip();
+				channel.write(bb, HEADER_SIZE-8);
+				raf.close();
+			}catch(IOException e){
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void flush(){
+			buffer.flip();
+			try{
+				while(buffer.hasRemaining()){channel.write(buffer);}
+			}catch(IOException e){
+				throw new RuntimeException(e);
+			}
+			buffer.clear();
+		}
+
+		public final String fname;
+		public final int numInputs, numOutputs, width;
+		public final boolean weighted, half;
+		public long rows=0;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private static final int BUFFER_SIZE=1<<20;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	public final String fname;
+	public final int numInputs;
+	public final int numOutputs;
+	public final boolean weighted;
+	/** 4 for float32, 2 for float16 */
+	public final int bytesPerValue;
+	/** Values per row */
+	public final int width;
+	public final long rowBytes;
+	public final long rows;
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+
+	public static final byte[] MAGIC="BBDATA1\n".getBytes();
+	public static final int HEADER_SIZE=32;
+	/** Largest region mapped at once */
+	private static final long MAX_CHUNK=Tools.min(1<<30, Shared.MAX_ARRAY_LEN);
+
+}
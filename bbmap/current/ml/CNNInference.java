@@ -0,0 +1,235 @@
+package ml;
+
+/**
+ * Frozen, read-only form of a trained CNNNetwork for scoring.
+ * The layer stack is shared by every copy and only its weights are read,
+ * so one model can serve all threads.  Each copy owns two ping-pong
+ * scratch buffers sized to the widest layer, so scoring allocates nothing
+ * and keeps none of the activations or gradients needed for training.
+ * A quantized network runs its hidden dense layers in int8, which is where
+ * most of the weight bytes are; convolutions and the output layer run in float
+ * over the int8-rounded weights.
+ *
+ * @author Brandon Imstepf
+ * @date 8-6-2025
+ */
+public final class CNNInference {
+
+    /**
+     * Freeze a network.  The network must not be trained further
+     * while this engine or any of its copies is in use.
+     */
+    public CNNInference(CNNNetwork net) {
+        this(net, true);
+    }
+
+    /**
+     * Freeze a network.
+     * @param int8 Run hidden dense layers in int8 if the network is quantized;
+     * otherwise they run in float over the int8-rounded weights
+     */
+    public CNNInference(CNNNetwork net, boolean int8) {
+        this(freeze(net, int8), net.numInputs());
+    }
+
+    private CNNInference(InferenceLayer[] layers_, int numInputs_) {
+        layers = layers_;
+        numInputs = numInputs_;
+        int max = 1, maxQuantized = 0, maxCols = 0;
+        for(InferenceLayer layer : layers) {
+            max = Math.max(max, layer.getOutputSize());
+            if(layer instanceof QuantizedDenseLayer) {
+                maxQuantized = Math.max(maxQuantized, layer.getInputSize());
+            } else if(layer instanceof ConvolutionLayer) {
+                maxCols = Math.max(maxCols, ((ConvolutionLayer) layer).colSize());
+            }
+        }
+        maxWidth = max;
+        maxQuantizedWidth = maxQuantized;
+        maxColWidth = maxCols;
+        bufferA = new float[maxWidth];
+        bufferB = new float[maxWidth];
+        qbuffer = new byte[maxQuantizedWidth];
+    }
+
+    /** The network's layer stack, with hidden dense layers quantized if requested and possible */
+    private static InferenceLayer[] freeze(CNNNetwork net, boolean int8) {
+        final InferenceLayer[] array = net.layers().toArray(new InferenceLayer[0]);
+        final float[] inScales = net.inScales();
+        if(!int8 || inScales == null) {return array;}
+        for(int i = 0; i < array.length; i++) {
+            if(array[i] instanceof DenseLayer && !(array[i] instanceof OutputLayer) && inScales[i] > 0) {
+                array[i] = new QuantizedDenseLayer((DenseLayer) array[i], inScales[i]);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Load and freeze a network written by CNNNetwork.saveNetwork.
+     * @return The engine, or null if the file could not be parsed
+     */
+    public static CNNInference load(String filename) {
+        return load(filename, true);
+    }
+
+    /**
+     * Load and freeze a network written by CNNNetwork.saveNetwork.
+     * @param int8 Run a quantized network's hidden dense layers in int8
+     * @return The engine, or null if the file could not be parsed
+     */
+    public static CNNInference load(String filename, boolean int8) {
+        CNNNetwork net = CNNNetwork.loadNetwork(filename);
+        return net == null ? null : new CNNInference(net, int8);
+    }
+
+    /** Create an engine sharing this one's weights, with its own scratch buffers */
+    public CNNInference copy() {
+        return new CNNInference(layers, numInputs);
+    }
+
+    /**
+     * Score one sample.  Not thread-safe; use one copy per thread.
+     * @param input At least numInputs() features; read only
+     * @return The output layer's sigmoid value
+     */
+    public float score(float[] input) {
+        assert(input.length >= numInputs) : input.length + " < " + numInputs;
+        float[] in = input, out = bufferA;
+        for(InferenceLayer layer : layers) {
+            if(layer instanceof QuantizedDenseLayer) {
+                ((QuantizedDenseLayer) layer).infer(in, 0, out, 0, qbuffer);
+            } else {
+                layer.infer(in, 0, out, 0);
+            }
+            in = out;
+            out = (out == bufferA ? bufferB : bufferA);
+        }
+        return in[0];
+    }
+
+    /**
+     * Score a block of samples.  Each layer runs over the whole block before
+     * the next layer starts, so its weights stay in cache across samples,
+     * and each convolution is a single GEMM over the block.
+     * Scores are identical to score() on each sample.
+     * Scratch grows to the largest batch seen, then is reused.
+     * Not thread-safe; use one copy per thread.
+     * @param input Flat row-major [batch x numInputs()] features; read only
+     * @param batch Number of samples
+     * @param scores Receives one sigmoid value per sample
+     */
+    public void scoreBatch(float[] input, int batch, float[] scores) {
+        assert(input.length >= batch * numInputs) : input.length + " < " + batch + "*" + numInputs;
+        assert(scores.length >= batch) : scores.length + " < " + batch;
+        if(batchA == null || batchA.length < batch * maxWidth) {
+            batchA = new float[batch * maxWidth];
+            batchB = new float[batch * maxWidth];
+            qbatch = new byte[batch * maxQuantizedWidth];
+            colBatch = new float[batch * maxColWidth];
+            productBatch = new float[maxColWidth > 0 ? batch * maxWidth : 0];
+        }
+        float[] in = input, out = batchA;
+        for(InferenceLayer layer : layers) {
+            if(layer instanceof QuantizedDenseLayer) {
+                ((QuantizedDenseLayer) layer).inferBatch(in, out, batch, qbatch);
+            } else if(layer instanceof ConvolutionLayer) {
+                ((ConvolutionLayer) layer).inferBatch(in, out, batch, colBatch, productBatch);
+            } else {
+                layer.inferBatch(in, out, batch);
+            }
+            in = out;
+            out = (out == batchA ? batchB : batchA);
+        }
+        System.arraycopy(in, 0, scores, 0, batch);
+    }
+
+    /**
+     * Score one sample in float, recording the largest input magnitude seen
+     * by each layer; these set the input scales for CNNNetwork.quantize.
+     * @param maxAbs Running maximum per layer index; numLayers() long
+     * @return The output layer's sigmoid value
+     */
+    public float calibrate(float[] input, float[] maxAbs) {
+        assert(maxQuantizedWidth == 0) : "Calibrate with a float engine.";
+        float[] in = input, out = bufferA;
+        for(int i = 0, width = numInputs; i < layers.length; i++) {
+            for(int j = 0; j < width; j++) {
+                maxAbs[i] = Math.max(maxAbs[i], Math.abs(in[j]));
+            }
+            layers[i].infer(in, 0, out, 0);
+            width = layers[i].getOutputSize();
+            in = out;
+            out = (out == bufferA ? bufferB : bufferA);
+        }
+        return in[0];
+    }
+
+    /**
+     * Input scales for CNNNetwork.quantize from calibrated maxima,
+     * so the largest input seen by each layer maps to 127.
+     */
+    public static float[] inScales(float[] maxAbs) {
+        float[] scales = new float[maxAbs.length];
+        for(int i = 0; i < maxAbs.length; i++) {
+            scales[i] = maxAbs[i] > 0 ? maxAbs[i] / 127 : 1;
+        }
+        return scales;
+    }
+
+    /** Bytes of weights and biases held by the layer stack */
+    public long weightBytes() {
+        long bytes = 0;
+        for(InferenceLayer layer : layers) {
+            if(layer instanceof QuantizedDenseLayer) {
+                QuantizedDenseLayer q = (QuantizedDenseLayer) layer;
+                bytes += q.weights.length + 8L * q.outputSize;
+            } else if(layer instanceof DenseLayer) {
+                DenseLayer d = (DenseLayer) layer;
+                bytes += 4L * (d.weights.length + d.bias.length);
+            } else if(layer instanceof ConvolutionLayer) {
+                ConvolutionLayer c = (ConvolutionLayer) layer;
+                bytes += 4L * (c.weights.length + c.bias.length);
+            }
+        }
+        return bytes;
+    }
+
+    /** Number of input features */
+    public int numInputs() {
+        return numInputs;
+    }
+
+    /** True if any layer runs in int8 */
+    public boolean isQuantized() {
+        return maxQuantizedWidth > 0;
+    }
+
+    /** Number of layers, including pooling and output */
+    public int numLayers() {
+        return layers.length;
+    }
+
+    /*--------------------------------------------------------------*/
+
+    /** Shared, read-only layer stack; trainable layers mixed with int8 ones */
+    private final InferenceLayer[] layers;
+    private final int numInputs;
+    /** Largest per-sample layer output */
+    private final int maxWidth;
+    /** Largest per-sample input of an int8 layer, or 0 */
+    private final int maxQuantizedWidth;
+    /** Largest per-sample im2col matrix of a convolution, or 0 */
+    private final int maxColWidth;
+    /** Per-copy scratch; layers alternate between these */
+    private final float[] bufferA, bufferB;
+    /** Per-copy scratch for the quantized input of an int8 layer */
+    private final byte[] qbuffer;
+    /** Per-copy [batch x maxWidth] scratch for scoreBatch, allocated on first use */
+    private float[] batchA, batchB;
+    /** Per-copy [batch x maxQuantizedWidth] scratch for scoreBatch */
+    private byte[] qbatch;
+    /** Per-copy im2col and GEMM scratch for convolutions in scoreBatch */
+    private float[] colBatch, productBatch;
+
+}
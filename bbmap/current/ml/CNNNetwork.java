@@ -3,9 +3,15 @@ package ml;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.io.PrintWriter;
 import java.io.IOException;
 
+import fileIO.ByteFile;
+import shared.Tools;
+import template.ThreadWaiter;
+
 
 /**
  * Convolutional Neural Network implementation.
@@ -42,6 +48,7 @@ public class CNNNetwork {
         outstream.println("Building network architecture...");
         
         layers = new ArrayList<>();
+        final Random randy = (seed >= 0 ? new Random(seed) : new Random());
         int currentSize = numInputs;
         int currentChannels = 1;  // Start with 1 channel
         int currentLength = numInputs;
@@ -52,8 +59,9 @@ public class CNNNetwork {
             int filterSize = i < filterSizes.length ? filterSizes[i] : 3;
             ConvolutionLayer conv = new ConvolutionLayer(
                 "Conv" + (i+1), currentChannels, currentLength, 
-                filterCounts[i], filterSize
+                filterCounts[i], filterSize, randy
             );
+            conv.propagateInput = (i > 0);
             layers.add(conv);
             currentChannels = conv.getOutputChannels();
             currentLength = conv.getOutputLength();
@@ -73,14 +81,14 @@ public class CNNNetwork {
         // Add dense layers
         for(int i = 0; i < denseLayers.length; i++) {
             DenseLayer dense = new DenseLayer(
-                "Dense" + (i+1), currentSize, denseLayers[i]
+                "Dense" + (i+1), currentSize, denseLayers[i], randy
             );
             layers.add(dense);
             currentSize = dense.getOutputSize();
         }
         
         // Final output layer (sigmoid for binary classification)
-        OutputLayer outputLayer = new OutputLayer("Output", currentSize);
+        OutputLayer outputLayer = new OutputLayer("Output", currentSize, randy);
         layers.add(outputLayer);
         
         outstream.println("\nNetwork architecture built with " + layers.size() + " layers");
@@ -108,28 +116,50 @@ public class CNNNetwork {
     /*--------------------------------------------------------------*/
 
     public void train(SampleSet trainData, SampleSet valData) {
+        train(trainData.samples, null, valData);
+    }
+    
+    /**
+     * Train from an out-of-core stream; only the validation set is held in memory.
+     * The stream must have been scanned, and is started here for all epochs.
+     */
+    public void train(SampleStream stream, SampleSet valData) {
+        stream.start(epochs);
+        try {
+            train(null, stream, valData);
+        } finally {
+            stream.stop();
+        }
+    }
+    
+    /**
+     * Shared training loop.
+     * @param trainSamples In-memory samples, shuffled each epoch; null if streaming
+     * @param stream Source of pre-shuffled batches; null if trainSamples is used
+     */
+    private void train(Sample[] trainSamples, SampleStream stream, SampleSet valData) {
         this.baseLearningRate = this.learningRate;
+        inScales = null; // Training moves weights off the int8 grid, so the result is saved as float
         
         outstream.println("Starting training for " + epochs + " epochs...");
         outstream.println("Batch size: " + batchSize);
         outstream.println("Base learning rate: " + baseLearningRate);
+        outstream.println("Threads: " + threads);
 
         outstream.println();
         // Get sample counts
-        int trainSize = trainData.samples.length;
         int valSize = valData.samples.length;
         
-        // Calculate positive/negative counts for metrics
-        int trainPositive = 0, trainNegative = 0;
-        for(Sample s : trainData.samples) {
-            if(s.goal[0] > 0.5f) trainPositive++;
-            else trainNegative++;
-        }
+        shuffleRandy = (seed >= 0 ? new Random(seed) : new Random());
+        packedInput = new float[batchSize * numInputs];
+        lossGradients = new float[batchSize];
+        if(threads > 1) {startWorkers();}
         
         // Progress tracking
         long startTime = System.currentTimeMillis();
         int totalBatches = 0;
         int samplesProcessed = 0;
+        final BatchStats epochStats = new BatchStats();
         
         // Training loop
         for(int epoch = 0; epoch < epochs; epoch++) {
@@ -137,104 +167,41 @@ public class CNNNetwork {
             outstream.println("\n=== Epoch " + (epoch + 1) + "/" + epochs + " ===");
             outstream.println("Current learning rate: " + String.format("%.6f", currentLearningRate) +  " (base * 0.95^" + epoch + ")");
 
-            float epochLoss = 0;
-            int epochCorrect = 0;
-            int epochTP = 0, epochFP = 0, epochTN = 0, epochFN = 0;
+            epochStats.clear();
             
-            // Shuffle training data
-            shuffleSamples(trainData.samples);
+            // Shuffle training data; streamed batches arrive shuffled
+            if(trainSamples != null) {shuffleSamples(trainSamples);}
+            int trainSize = 0;
             
             // Process mini-batches
-            for(int b = 0; b < trainSize; b += batchSize) {
-                int batchEnd = Math.min(b + batchSize, trainSize);
-                float batchLoss = 0;
-                int batchCorrect = 0;
-                int batchTP = 0, batchFP = 0, batchTN = 0, batchFN = 0;
-                
-                // Process each sample in batch
-                for(int i = b; i < batchEnd; i++) {
-                    Sample sample = trainData.samples[i];
-                    
-                    // Forward pass
-                    float[] output = forward(sample.in);
-                    
-            // Check output for NaN
-                if(Float.isNaN(output[0]) || Float.isInfinite(output[0])) {
-                    outstream.println("\n!!! NaN/Inf OUTPUT !!!");
-                    outstream.println("Epoch: " + (epoch+1) + ", Batch: " + totalBatches);
-                    outstream.println("Sample index: " + i);
-                    outstream.println("Output value: " + output[0]);
-                    outstream.println("Target value: " + sample.goal[0]);
-                    
-                    // Check some input values
-                    outstream.print("Input sample (first 10): [");
-                    for(int j = 0; j < Math.min(10, sample.in.length); j++) {
-                        outstream.print(sample.in[j]);
-                        if(j < 9) outstream.print(", ");
-                    }
-                    outstream.println("...]");
-                    
-                    // Skip this sample
-                    continue;
+            for(int next = 0; ; ) {
+                final Sample[] batchSamples;
+                final int b, batchEnd;
+                if(stream != null) {
+                    batchSamples = stream.nextBatch();
+                    if(batchSamples == null) {break;}
+                    b = 0;
+                    batchEnd = batchSamples.length;
+                } else {
+                    if(next >= trainSamples.length) {break;}
+                    batchSamples = trainSamples;
+                    b = next;
+                    batchEnd = Math.min(b + batchSize, trainSamples.length);
+                    next = batchEnd;
                 }
+                trainSize += batchEnd - b;
                 
-                // Calculate loss
-                float loss = BinaryCrossEntropyLoss.calculateLoss(output[0], sample.goal[0]);
-                
-                // Check loss for NaN
-                if(Float.isNaN(loss) || Float.isInfinite(loss)) {
-                    outstream.println("\n!!! NaN/Inf LOSS !!!");
-                    outstream.println("Epoch: " + (epoch+1) + ", Batch: " + totalBatches);
-                    outstream.println("Sample index: " + i);
-                    outstream.println("Output: " + output[0] + ", Target: " + sample.goal[0]);
-                    outstream.println("Loss calculation breakdown:");
-                    outstream.println("  -[" + sample.goal[0] + " * log(" + output[0] + ") + " + 
-                                    (1-sample.goal[0]) + " * log(" + (1-output[0]) + ")]");
-                    
-                    // Early stopping if this happens in first epoch
-                    if(epoch == 0 && totalBatches < 10) {
-                        outstream.println("Early NaN detected - stopping training!");
-                        return;
-                    }
-                    continue;
+                // Process the batch, split across workers if multithreaded
+                final boolean proceed;
+                if(workers != null) {
+                    proceed = trainBatchParallel(batchSamples, b, batchEnd, epoch, totalBatches, epochStats);
+                } else {
+                    proceed = trainSlice(layers, packedInput, lossGradients, batchSamples, 
+                        b, batchEnd, epochStats, epoch, totalBatches);
                 }
-                    batchLoss += loss;
-                    epochLoss += loss;
-                    
-                    // Track accuracy and confusion matrix
-                    boolean predicted = output[0] > 0.5f;
-                    boolean actual = sample.goal[0] > 0.5f;
-                    
-                    if(predicted == actual) {
-                        batchCorrect++;
-                        epochCorrect++;
-                    }
-                    
-                    // Update confusion matrix
-                    if(actual && predicted) {
-                        batchTP++; epochTP++;
-                    } else if(!actual && !predicted) {
-                        batchTN++; epochTN++;
-                    } else if(!actual && predicted) {
-                        batchFP++; epochFP++;
-                    } else {
-                        batchFN++; epochFN++;
-                    }
-                    
-                    // Calculate loss gradient
-                    float lossGrad = BinaryCrossEntropyLoss.calculateGradient(
-                        output[0], sample.goal[0]);
-
-                    // Check loss gradient for NaN
-                    if(Float.isNaN(lossGrad) || Float.isInfinite(lossGrad)) {
-                        outstream.println("\n!!! NaN/Inf GRADIENT !!!");
-                        outstream.println("Loss gradient: " + lossGrad);
-                        outstream.println("From output: " + output[0] + ", target: " + sample.goal[0]);
-                        continue;
-                    }
-                    
-                    // Backward pass
-                    backward(new float[]{lossGrad});
+                if(!proceed) {
+                    stopWorkers();
+                    return;
                 }
                 
                 // Update weights after batch
@@ -257,15 +224,15 @@ public class CNNNetwork {
                 
                 if(shouldPrint) {
                     // Calculate metrics
-                    float err = 1.0f - (float)epochCorrect / samplesProcessed;
-                    float fpr = epochFP > 0 ? (float)epochFP / (epochFP + epochTN) : 0;
-                    float fnr = epochFN > 0 ? (float)epochFN / (epochFN + epochTP) : 0;
-                    float avgLoss = epochLoss / samplesProcessed;
+                    float err = 1.0f - (float)epochStats.correct / samplesProcessed;
+                    float fpr = epochStats.fp > 0 ? (float)epochStats.fp / (epochStats.fp + epochStats.tn) : 0;
+                    float fnr = epochStats.fn > 0 ? (float)epochStats.fn / (epochStats.fn + epochStats.tp) : 0;
+                    float avgLoss = epochStats.loss / samplesProcessed;
 
                     // Sanity Check
                     if(err > 0.9) {
                         outstream.println("WARNING: Very high error rate: " + err);
-                        outstream.println("  Correct: " + epochCorrect + " / " + samplesProcessed);
+                        outstream.println("  Correct: " + epochStats.correct + " / " + samplesProcessed);
                         outstream.println("  This might indicate a problem!");
                     }
                                 
@@ -289,27 +256,32 @@ public class CNNNetwork {
             int valCorrect = 0;
             int valTP = 0, valFP = 0, valTN = 0, valFN = 0;
             
-            for(int i = 0; i < valSize; i++) {
-                Sample sample = valData.samples[i];
-                float[] output = forward(sample.in);
-                valLoss += BinaryCrossEntropyLoss.calculateLoss(
-                    output[0], sample.goal[0]);
-                
-                boolean predicted = output[0] > 0.5f;
-                boolean actual = sample.goal[0] > 0.5f;
-                
-                if(predicted == actual) valCorrect++;
+            for(int b = 0; b < valSize; b += batchSize) {
+                final int n = Math.min(batchSize, valSize - b);
+                pack(valData.samples, b, b + n, packedInput, numInputs);
+                float[] output = forwardBatch(packedInput, n);
                 
-                if(actual && predicted) valTP++;
-                else if(!actual && !predicted) valTN++;
-                else if(!actual && predicted) valFP++;
-                else valFN++;
+                for(int s = 0; s < n; s++) {
+                    Sample sample = valData.samples[b + s];
+                    valLoss += BinaryCrossEntropyLoss.calculateLoss(
+                        output[s], sample.goal[0]);
+                    
+                    boolean predicted = output[s] > 0.5f;
+                    boolean actual = sample.goal[0] > 0.5f;
+                    
+                    if(predicted == actual) valCorrect++;
+                    
+                    if(actual && predicted) valTP++;
+                    else if(!actual && !predicted) valTN++;
+                    else if(!actual && predicted) valFP++;
+                    else valFN++;
+                }
             }
             
             // Calculate epoch metrics
-            float trainErr = 1.0f - (float)epochCorrect / trainSize;
-            float trainFPR = epochFP > 0 ? (float)epochFP / (epochFP + epochTN) : 0;
-            float trainFNR = epochFN > 0 ? (float)epochFN / (epochFN + epochTP) : 0;
+            float trainErr = 1.0f - (float)epochStats.correct / trainSize;
+            float trainFPR = epochStats.fp > 0 ? (float)epochStats.fp / (epochStats.fp + epochStats.tn) : 0;
+            float trainFNR = epochStats.fn > 0 ? (float)epochStats.fn / (epochStats.fn + epochStats.tp) : 0;
             
             float valErr = 1.0f - (float)valCorrect / valSize;
             float valFPR = valFP > 0 ? (float)valFP / (valFP + valTN) : 0;
@@ -320,16 +292,219 @@ public class CNNNetwork {
                 epoch + 1, epochs));
             outstream.println(String.format(
                 "  Train - ERR: %.4f  FPR: %.4f  FNR: %.4f  Loss: %.4f",
-                trainErr, trainFPR, trainFNR, epochLoss/trainSize));
+                trainErr, trainFPR, trainFNR, epochStats.loss/trainSize));
             outstream.println(String.format(
                 "  Valid - ERR: %.4f  FPR: %.4f  FNR: %.4f  Loss: %.4f",
                 valErr, valFPR, valFNR, valLoss/valSize));
             outstream.println();
         }
+        stopWorkers();
         
         long totalTime = System.currentTimeMillis() - startTime;
         outstream.println("Training complete! Total time: " + formatTime(totalTime));
     }
+    
+    /**
+     * Batched forward and backward pass for samples [from, to) through a layer stack.
+     * Gradients accumulate in the stack's layers; metrics accumulate in stats.
+     * Called by the master thread on its own layers, or by workers on replicas.
+     * @param packed Scratch for the flattened inputs, at least (to-from)*numInputs
+     * @param lossGrads Scratch for per-sample loss gradients, at least to-from
+     * @return False if training should halt due to an early NaN loss
+     */
+    boolean trainSlice(ArrayList<Layer> stack, float[] packed, float[] lossGrads, 
+            Sample[] samples, int from, int to, BatchStats stats, int epoch, int batchNum) {
+        final int n = to - from;
+        if(n < 1) {return true;}
+        
+        // Forward pass
+        pack(samples, from, to, packed, numInputs);
+        final float[] output = forwardBatch(stack, packed, n);
+        
+        for(int s = 0; s < n; s++) {
+            final Sample sample = samples[from + s];
+            final float out = output[s];
+            lossGrads[s] = 0; // Skipped samples contribute no gradient
+            
+            // Check output for NaN
+            if(Float.isNaN(out) || Float.isInfinite(out)) {
+                outstream.println("\n!!! NaN/Inf OUTPUT !!!");
+                outstream.println("Epoch: " + (epoch+1) + ", Batch: " + batchNum);
+                outstream.println("Sample index: " + (from + s));
+                outstream.println("Output value: " + out);
+                outstream.println("Target value: " + sample.goal[0]);
+                
+                // Check some input values
+                outstream.print("Input sample (first 10): [");
+                for(int j = 0; j < Math.min(10, sample.in.length); j++) {
+                    outstream.print(sample.in[j]);
+                    if(j < 9) outstream.print(", ");
+                }
+                outstream.println("...]");
+                
+                // Skip this sample
+                continue;
+            }
+            
+            // Calculate loss
+            float loss = BinaryCrossEntropyLoss.calculateLoss(out, sample.goal[0]);
+            
+            // Check loss for NaN
+            if(Float.isNaN(loss) || Float.isInfinite(loss)) {
+                outstream.println("\n!!! NaN/Inf LOSS !!!");
+                outstream.println("Epoch: " + (epoch+1) + ", Batch: " + batchNum);
+                outstream.println("Sample index: " + (from + s));
+                outstream.println("Output: " + out + ", Target: " + sample.goal[0]);
+                outstream.println("Loss calculation breakdown:");
+                outstream.println("  -[" + sample.goal[0] + " * log(" + out + ") + " + 
+                                (1-sample.goal[0]) + " * log(" + (1-out) + ")]");
+                
+                // Early stopping if this happens in first epoch
+                if(epoch == 0 && batchNum < 10) {
+                    outstream.println("Early NaN detected - stopping training!");
+                    return false;
+                }
+                continue;
+            }
+            stats.loss += loss;
+            
+            // Track accuracy and confusion matrix
+            boolean predicted = out > 0.5f;
+            boolean actual = sample.goal[0] > 0.5f;
+            
+            if(predicted == actual) {
+                stats.correct++;
+            }
+            
+            // Update confusion matrix
+            if(actual && predicted) {
+                stats.tp++;
+            } else if(!actual && !predicted) {
+                stats.tn++;
+            } else if(!actual && predicted) {
+                stats.fp++;
+            } else {
+                stats.fn++;
+            }
+            
+            // Calculate loss gradient
+            float lossGrad = BinaryCrossEntropyLoss.calculateGradient(out, sample.goal[0]);
+            
+            // Check loss gradient for NaN
+            if(Float.isNaN(lossGrad) || Float.isInfinite(lossGrad)) {
+                outstream.println("\n!!! NaN/Inf GRADIENT !!!");
+                outstream.println("Loss gradient: " + lossGrad);
+                outstream.println("From output: " + out + ", target: " + sample.goal[0]);
+                continue;
+            }
+            lossGrads[s] = lossGrad;
+        }
+        
+        // Backward pass
+        backwardBatch(stack, lossGrads, n);
+        return true;
+    }
+    
+    /**
+     * Copy the inputs of samples [from, to) into a flat row-major buffer.
+     * Packed one-hot tails are expanded back to floats here.
+     * @param width Number of inputs per sample
+     */
+    static void pack(Sample[] samples, int from, int to, float[] dest, int width) {
+        for(int i = from, x = 0; i < to; i++, x += width) {
+            final Sample s = samples[i];
+            System.arraycopy(s.in, 0, dest, x, s.in.length);
+            if(s.packed != null) {PackedOneHot.expand(s.packed, dest, x + s.in.length);}
+        }
+    }
+    
+    /*--------------------------------------------------------------*/
+    /*----------------       Parallel Training       ----------------*/
+    /*--------------------------------------------------------------*/
+    
+    /**
+     * Split one mini-batch into contiguous slices, one per worker, and wait for them.
+     * Replica gradients are then reduced into the master layers in worker order,
+     * so results are reproducible for a fixed seed and thread count.
+     * @return False if any worker requested that training halt
+     */
+    private boolean trainBatchParallel(Sample[] samples, int from, int to, 
+            int epoch, int batchNum, BatchStats stats) {
+        final int perThread = (to - from + workers.size() - 1) / workers.size();
+        int submitted = 0;
+        for(CNNWorkerThread w : workers) {
+            int a = from + submitted * perThread;
+            int b = Math.min(to, a + perThread);
+            if(a >= b) {break;}
+            w.submit(samples, a, b, epoch, batchNum);
+            submitted++;
+        }
+        
+        for(int i = 0; i < submitted; i++) {
+            try {
+                doneQueue.take();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                i--;
+            }
+        }
+        
+        boolean proceed = true;
+        for(int t = 0; t < submitted; t++) {
+            CNNWorkerThread w = workers.get(t);
+            stats.add(w.stats);
+            proceed &= !w.stop;
+            for(int i = 0; i < layers.size(); i++) {
+                layers.get(i).addGradients(w.replica.get(i));
+            }
+        }
+        return proceed;
+    }
+    
+    /** Create one replica of the layer stack per thread and start the workers. */
+    private void startWorkers() {
+        doneQueue = new ArrayBlockingQueue<CNNWorkerThread>(threads);
+        workers = new ArrayList<CNNWorkerThread>(threads);
+        for(int t = 0; t < threads; t++) {
+            ArrayList<Layer> replica = new ArrayList<Layer>(layers.size());
+            for(Layer layer : layers) {
+                replica.add(layer.replicate());
+            }
+            workers.add(new CNNWorkerThread(t, this, replica, doneQueue, numInputs, batchSize));
+        }
+        for(CNNWorkerThread w : workers) {w.start();}
+    }
+    
+    /** Send poison to all workers and wait for them to exit. */
+    private void stopWorkers() {
+        if(workers == null) {return;}
+        for(CNNWorkerThread w : workers) {w.poison();}
+        ThreadWaiter.waitForThreadsToFinish(workers);
+        workers = null;
+        doneQueue = null;
+    }
+    
+    /** Running totals of loss and confusion matrix for training samples. */
+    static class BatchStats {
+        
+        void clear() {
+            loss = 0;
+            correct = tp = fp = tn = fn = 0;
+        }
+        
+        void add(BatchStats other) {
+            loss += other.loss;
+            correct += other.correct;
+            tp += other.tp;
+            fp += other.fp;
+            tn += other.tn;
+            fn += other.fn;
+        }
+        
+        float loss;
+        int correct;
+        int tp, fp, tn, fn;
+    }
 
     /**
      * Format time in seconds or minutes.
@@ -346,30 +521,28 @@ public class CNNNetwork {
      * Simple array shuffle using Fisher-Yates algorithm.
      */
     private void shuffleSamples(Sample[] samples) {
-        java.util.Random rand = new java.util.Random();
         for(int i = samples.length - 1; i > 0; i--) {
-            int j = rand.nextInt(i + 1);
+            int j = shuffleRandy.nextInt(i + 1);
             Sample temp = samples[i];
             samples[i] = samples[j];
             samples[j] = temp;
         }
     }
     /**
-     * Backward pass through the entire network.
+     * Batched backward pass through the entire layer stack.
      */
-    private void backward(float[] lossGradient) {
-        float[] gradient = lossGradient;
+    private void backwardBatch(ArrayList<Layer> stack, float[] lossGradients, int batch) {
+        float[] gradient = lossGradients;
         
         // Backward through layers in reverse order
-        for(int i = layers.size() - 1; i >= 0; i--) {
-            Layer layer = layers.get(i);
-            gradient = layer.backward(gradient);
+        for(int i = stack.size() - 1; i >= 0; i--) {
+            Layer layer = stack.get(i);
+            gradient = layer.backwardBatch(gradient, batch);
             
-            // ADD: Check for NaN after each layer
-            if(checkForNaN("After " + layer.getClass().getSimpleName() + " backward", gradient)) {
+            if(checkForNaN("After " + layer.getClass().getSimpleName() + " backwardBatch", 
+                    gradient, batch * layer.getInputSize())) {
                 outstream.println("Layer index: " + i);
                 outstream.println("Stopping backward pass due to NaN");
-                // You might want to skip weight update for this batch
                 return;
             }
         }
@@ -390,12 +563,85 @@ public class CNNNetwork {
      * @return The network output (probability for binary classification)
      */
     public float[] forward(float[] input) {
+        return forward(layers, input);
+    }
+    
+    private static float[] forward(ArrayList<Layer> stack, float[] input) {
         float[] current = input;
-        for(Layer layer : layers) {
+        for(Layer layer : stack) {
             current = layer.forward(current);
         }
         return current;
     }
+    
+    /**
+     * Batched forward pass through the entire network.
+     * @param input Flat row-major [batch x numInputs] features
+     * @param batch Number of samples
+     * @return Network outputs, one per sample; the buffer is reused by the next call
+     */
+    public float[] forwardBatch(float[] input, int batch) {
+        return forwardBatch(layers, input, batch);
+    }
+    
+    private static float[] forwardBatch(ArrayList<Layer> stack, float[] input, int batch) {
+        float[] current = input;
+        for(Layer layer : stack) {
+            current = layer.forwardBatch(current, batch);
+        }
+        return current;
+    }
+    
+    /** The layer stack, for building frozen inference engines */
+    ArrayList<Layer> layers() {
+        return layers;
+    }
+    
+    /**
+     * Calibrated input scales per layer index, used by the hidden dense layers;
+     * null unless the network was quantized or loaded from a quantized file.
+     */
+    float[] inScales() {
+        return inScales;
+    }
+    
+    /**
+     * Round every weight to int8 with one symmetric scale per filter or dense row,
+     * exactly as a quantized file stores them, and keep the input scales.
+     * Afterward saveNetwork writes the quantized format and CNNInference
+     * runs the hidden dense layers in int8.
+     * @param inScales_ Input value per quantization step for each layer index,
+     * from CNNInference.calibrate
+     */
+    public void quantize(float[] inScales_) {
+        assert(inScales_.length == layers.size()) : inScales_.length + " != " + layers.size();
+        for(Layer layer : layers) {
+            if(layer instanceof ConvolutionLayer) {
+                ConvolutionLayer conv = (ConvolutionLayer) layer;
+                roundRows(conv.weights, conv.filterWidth);
+            } else if(layer instanceof DenseLayer) {
+                DenseLayer dense = (DenseLayer) layer;
+                roundRows(dense.weights, dense.inputSize);
+            }
+        }
+        inScales = inScales_.clone();
+    }
+    
+    /** Replace each row of a flat weight array with its int8 values times the row scale */
+    private static void roundRows(float[] weights, int width) {
+        for(int w = 0; w < weights.length; w += width) {
+            final float scale = QuantizedDenseLayer.rowScale(weights, w, width);
+            final float mult = 1 / scale;
+            for(int i = w; i < w + width; i++) {
+                weights[i] = QuantizedDenseLayer.quantize(weights[i] * mult) * scale;
+            }
+        }
+    }
+    
+    /** Number of input features */
+    public int numInputs() {
+        return numInputs;
+    }
 
     /**
      * Set the network architecture.
@@ -432,24 +678,177 @@ public class CNNNetwork {
         outstream.println("  Dropout: " + dropout);
     }
 
+    /**
+     * Set the number of data-parallel training threads.
+     * Each thread trains a slice of every mini-batch on its own layer replica.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+    
+    /**
+     * Set the seed for weight initialization and shuffling.
+     * Negative values use a random seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Load a network written by saveNetwork.
+     * The architecture is rebuilt from the CONV, POOL, and D lines of each layer block;
+     * the last dense block becomes the sigmoid output layer.
+     * Quantized files are expanded to float weights, and their input scales are kept
+     * so CNNInference can run them in int8.
+     * @param filename A .bbnet file with a #cnn header
+     * @return The network, or null if the file could not be parsed
+     */
     public static CNNNetwork loadNetwork(String filename) {
-        // Implementation depends on your save format
-        // This is a placeholder - you'd parse the .bbnet file
-        // and reconstruct the network architecture and weights
         try {
-            // Load and parse the file
-            // Reconstruct layers and weights
-            // Return new CNNNetwork instance
-            return null; // Placeholder
+            ArrayList<byte[]> lines = ByteFile.toLines(filename);
+            
+            // Header
+            boolean cnn = false, quantized = false;
+            int inputs = -1, epochs = 0, samples = 0;
+            int pos = 0;
+            for(; pos < lines.size(); pos++) {
+                String line = new String(lines.get(pos)).trim();
+                if(line.startsWith("##layer")) {break;}
+                String[] split = line.split("\\s+");
+                if(line.equals("#cnn")) {cnn = true;}
+                else if(split[0].equals("#quantized")) {quantized = true;}
+                else if(split[0].equals("#dims")) {inputs = Integer.parseInt(split[1]);}
+                else if(split[0].equals("#epochs")) {epochs = Integer.parseInt(split[1]);}
+                else if(split[0].equals("#samples")) {samples = Integer.parseInt(split[1]);}
+            }
+            if(!cnn || inputs < 1) {
+                throw new RuntimeException(filename + " is not a CNN network file.");
+            }
+            
+            // Split the body into blocks of non-blank lines, one per layer
+            ArrayList<ArrayList<String[]>> blocks = new ArrayList<>();
+            ArrayList<Float> inScales = new ArrayList<>();
+            for(; pos < lines.size(); pos++) {
+                String line = new String(lines.get(pos)).trim();
+                if(line.startsWith("##layer")) {
+                    blocks.add(new ArrayList<>());
+                    inScales.add(0f);
+                } else if(line.startsWith("#inscale")) {
+                    inScales.set(blocks.size() - 1, Float.parseFloat(line.split("\\s+")[1]));
+                } else if(line.length() > 0 && !line.startsWith("#")) {
+                    blocks.get(blocks.size() - 1).add(line.split("\\s+"));
+                }
+            }
+            
+            CNNNetwork net = new CNNNetwork(inputs, 1);
+            net.epochs = epochs;
+            net.totalSamplesProcessed = samples;
+            net.layers = new ArrayList<>();
+            final Random randy = new Random(0); // Initial weights are overwritten
+            final int q = quantized ? 1 : 0; // Quantized rows hold a scale before the weights
+            int channels = 1, length = inputs, size = inputs;
+            int convNum = 0, poolNum = 0, denseNum = 0;
+            for(int b = 0; b < blocks.size(); b++) {
+                ArrayList<String[]> block = blocks.get(b);
+                String[] header = block.get(0);
+                if(header[0].equals("CONV")) {
+                    final int inChannels = Integer.parseInt(header[1]);
+                    final int filters = Integer.parseInt(header[2]);
+                    final int filterSize = Integer.parseInt(header[3]);
+                    assert(inChannels == channels) : "Channel mismatch in layer " + (b + 1);
+                    convNum++;
+                    ConvolutionLayer conv = new ConvolutionLayer("Conv" + convNum, 
+                            channels, length, filters, filterSize, randy);
+                    for(int f = 0; f < filters; f++) {
+                        String[] row = block.get(f + 1);
+                        conv.bias[f] = Float.parseFloat(row[1]);
+                        parseRow(row, 2, quantized, conv.weights, f * conv.filterWidth, conv.filterWidth);
+                    }
+                    net.layers.add(conv);
+                    channels = conv.getOutputChannels();
+                    length = conv.getOutputLength();
+                    size = conv.getOutputSize();
+                } else if(header[0].equals("POOL")) {
+                    poolNum++;
+                    MaxPoolingLayer pool = new MaxPoolingLayer("Pool" + poolNum, 
+                            channels, length, Integer.parseInt(header[1]));
+                    net.layers.add(pool);
+                    length = pool.getOutputLength();
+                    size = pool.getOutputSize();
+                } else if(header[0].startsWith("D")) {
+                    final int inputSize = Integer.parseInt(header[0].substring(1)) - 1;
+                    final int outputs = block.size() - 1;
+                    assert(block.get(1).length == inputSize + 1 + q) : "Row width mismatch in layer " + (b + 1);
+                    assert(inputSize == size) : "Size mismatch in layer " + (b + 1) + ": " + inputSize + " != " + size;
+                    final boolean last = (b == blocks.size() - 1);
+                    denseNum++;
+                    DenseLayer dense = last ? new OutputLayer("Output", size, randy) : 
+                        new DenseLayer("Dense" + denseNum, size, outputs, randy);
+                    assert(dense.outputSize == outputs) : "Output layer must have exactly one neuron.";
+                    for(int o = 0; o < outputs; o++) {
+                        String[] row = block.get(o + 1);
+                        dense.bias[o] = Float.parseFloat(row[0]);
+                        parseRow(row, 1, quantized, dense.weights, o * inputSize, inputSize);
+                    }
+                    net.layers.add(dense);
+                    channels = 1;
+                    length = size = outputs;
+                } else {
+                    throw new RuntimeException("Unknown layer type in " + filename + ": " + header[0]);
+                }
+            }
+            assert(net.layers.get(net.layers.size() - 1) instanceof OutputLayer) : "Missing output layer.";
+            if(quantized) {
+                net.inScales = new float[inScales.size()];
+                for(int i = 0; i < inScales.size(); i++) {net.inScales[i] = inScales.get(i);}
+            }
+            return net;
         } catch(Exception e) {
             e.printStackTrace();
             return null;
         }
     }
     
+    /**
+     * Parse the weights of one filter or dense row.
+     * @param from Index of the first weight, or of the row scale if quantized
+     */
+    private static void parseRow(String[] row, int from, boolean quantized, float[] weights, int dest, int len) {
+        if(quantized) {
+            final float scale = Float.parseFloat(row[from]);
+            for(int i = 0; i < len; i++) {
+                weights[dest + i] = (byte) Integer.parseInt(row[from + 1 + i]) * scale;
+            }
+        } else {
+            for(int i = 0; i < len; i++) {
+                weights[dest + i] = Float.parseFloat(row[from + i]);
+            }
+        }
+    }
+    
+    /**
+     * Check whether a .bbnet file holds a CNN rather than a CellNet.
+     * Only the header is read.
+     */
+    public static boolean isCNNFile(String filename) {
+        ByteFile bf = ByteFile.makeByteFile(filename, false);
+        boolean cnn = false;
+        for(byte[] line = bf.nextLine(); line != null && line.length > 0 && line[0] == '#'; line = bf.nextLine()) {
+            if(Tools.startsWith(line, "#cnn")) {cnn = true; break;}
+            if(Tools.startsWith(line, "##layer")) {break;}
+        }
+        bf.close();
+        return cnn;
+    }
+    
     // Check for NaN values in a float array
     private boolean checkForNaN(String location, float[] values) {
-        for(int i = 0; i < values.length; i++) {
+        return checkForNaN(location, values, values.length);
+    }
+    
+    // Check for NaN values in the first length elements of a float array
+    private boolean checkForNaN(String location, float[] values, int length) {
+        for(int i = 0; i < length; i++) {
             if(Float.isNaN(values[i]) || Float.isInfinite(values[i])) {
                 outstream.println("\n!!! NaN/Inf DETECTED !!!");
                 outstream.println("Location: " + location);
@@ -477,14 +876,18 @@ public class CNNNetwork {
     /*--------------------------------------------------------------*/
     /**
      * Save the network architecture and weights to a file.
+     * A quantized network is written as version 2, with each filter or dense row
+     * stored as its scale followed by int8 values, and an #inscale line per
+     * calibrated layer.
      * @param filename The output file name
      */
     public void saveNetwork(String filename) {
         try (PrintWriter writer = new PrintWriter(filename)) {
             // Header
             writer.println("##bbnet");
-            writer.println("#version 1");
+            writer.println("#version " + (inScales == null ? 1 : 2));
             writer.println("#cnn");  // Mark as CNN instead of dense
+            if(inScales != null) {writer.println("#quantized int8");}
             writer.println("#layers " + layers.size());
             writer.println("#epochs " + epochs);
             writer.println("#samples " + totalSamplesProcessed);
@@ -505,7 +908,11 @@ public class CNNNetwork {
             // Save each layer
             int layerNum = 1;
             for(Layer layer : layers) {
-                writer.println("##layer " + layerNum++);
+                writer.println("##layer " + layerNum);
+                if(inScales != null && inScales[layerNum - 1] > 0) {
+                    writer.println("#inscale " + inScales[layerNum - 1]);
+                }
+                layerNum++;
                 saveLayerWeights(writer, layer);
                 writer.println();
             }
@@ -527,12 +934,9 @@ public class CNNNetwork {
                 writer.print("F" + f + " ");
                 // Bias first
                 writer.print(conv.bias[f] + " ");
-                // Then all filter weights
-                for(int c = 0; c < conv.inputChannels; c++) {
-                    for(int k = 0; k < conv.filterSize; k++) {
-                        writer.print(conv.weights[f][c][k] + " ");
-                    }
-                }
+                // Then all filter weights, ordered by channel then position
+                assert(conv.weightIndex(f, conv.inputChannels - 1, conv.filterSize - 1) == (f + 1) * conv.filterWidth - 1);
+                printRow(writer, conv.weights, f * conv.filterWidth, conv.filterWidth);
                 writer.println();
             }
             
@@ -547,9 +951,7 @@ public class CNNNetwork {
                 // Bias first
                 writer.print(dense.bias[o] + " ");
                 // Then all input weights
-                for(int i = 0; i < dense.inputSize; i++) {
-                    writer.print(dense.weights[o][i] + " ");
-                }
+                printRow(writer, dense.weights, o * dense.inputSize, dense.inputSize);
                 writer.println();
             }
             
@@ -560,6 +962,22 @@ public class CNNNetwork {
         }
     }
     
+    /** Print one row of weights; if quantized, the row scale followed by int8 values */
+    private void printRow(PrintWriter writer, float[] weights, int from, int len) {
+        if(inScales == null) {
+            for(int i = from; i < from + len; i++) {
+                writer.print(weights[i] + " ");
+            }
+            return;
+        }
+        final float scale = QuantizedDenseLayer.rowScale(weights, from, len);
+        final float mult = 1 / scale;
+        writer.print(scale + " ");
+        for(int i = from; i < from + len; i++) {
+            writer.print(QuantizedDenseLayer.quantize(weights[i] * mult) + " ");
+        }
+    }
+    
     /*--------------------------------------------------------------*/
     /*----------------            Fields            ----------------*/
     /*--------------------------------------------------------------*/
@@ -576,8 +994,16 @@ public class CNNNetwork {
     private float learningRate; // Learning rate for weight updates
     private float dropout; // Dropout rate for regularization
     private ArrayList<Layer> layers; // List of layers in the network
+    private float[] inScales; // Calibrated int8 input scales per layer, or null if not quantized
     private float lastTrainError = 0;
     private float lastTrainFPR = 0; 
     private float lastTrainFNR = 0;
     private int totalSamplesProcessed = 0;
+    private int threads = 1; // Data-parallel training threads
+    private long seed = -1; // Seed for initialization and shuffling; negative is random
+    private Random shuffleRandy; // Shuffles training samples each epoch
+    private ArrayList<CNNWorkerThread> workers; // Data-parallel workers, or null if single-threaded
+    private ArrayBlockingQueue<CNNWorkerThread> doneQueue; // Workers report here when their slice is done
+    private float[] packedInput; // Flattened [batchSize x numInputs] inputs for the master thread
+    private float[] lossGradients; // Per-sample loss gradients for the master thread
 }
\ No newline at end of file
@@ -81,6 +81,7 @@ public class CNNTrainer {
             append=parser.append;
             
             if(dataIn==null) {dataIn=parser.in1;}
+            if(networkOut==null) {networkOut=parser.out1;}
         }
         
         validateParams();
@@ -149,6 +150,10 @@ public class CNNTrainer {
                 learningRate = Float.parseFloat(b);
             }else if(a.equals("dropout")){
                 dropout = Float.parseFloat(b);
+            }else if(a.equals("threads") || a.equals("t")){
+                threads = Shared.setThreads(b);
+            }else if(a.equals("seed")){
+                seed = Long.parseLong(b);
             }else if(a.equals("validate") || a.equals("validation") || a.equals("test")){
                 validateIn=b;
             }else if(arg.equals("evaluate")){
@@ -166,6 +171,12 @@ public class CNNTrainer {
             }else if(a.equals("vlines") || a.equals("vsamples")){
 				maxLinesV=Parse.parseIntKMG(b);
 				if(maxLinesV<0){maxLinesV=Integer.MAX_VALUE;}
+			}else if(a.equals("stream") || a.equals("outofcore")){
+                stream=Parse.parseBoolean(b);
+            }else if(a.equals("shufflebuffer") || a.equals("sbuf")){
+                shuffleBuffer=Parse.parseIntKMG(b);
+            }else if(a.equals("pack") || a.equals("packonehot")){
+                packInputs=Parse.parseBoolean(b);
 			}else if(a.equals("exclusive")){
                 exclusive=Parse.parseBoolean(b);
             }else if(a.equals("balance") || a.equals("balanced")){
@@ -194,7 +205,7 @@ public class CNNTrainer {
     private void validateParams(){
         assert(splitFraction>=0 && splitFraction<=1) : "Split fraction must be between 0 and 1";
         if(maxLines<0){maxLines=Integer.MAX_VALUE;}
-        if(maxLinesV<0){maxLinesV=maxLines;}
+        if(maxLinesV<0){maxLinesV=(stream ? Tools.min(maxLines, STREAM_MAX_VALIDATION) : maxLines);}
     }
     
     /*--------------------------------------------------------------*/
@@ -229,6 +240,11 @@ public class CNNTrainer {
     
     void process(Timer t){
     
+    if(stream && !evaluate && dataIn!=null){
+        processStreaming(t);
+        return;
+    }
+    
     //Load training data
     SampleSet[] trainData = null;
     if(dataIn!=null){
@@ -287,6 +303,8 @@ public class CNNTrainer {
             CNNNetwork network = new CNNNetwork(data.numInputs(), data.numOutputs());
             network.setArchitecture(filterCounts, filterSizes, poolSizes, denseLayers);
             network.setTrainingParams(epochs, batchSize, learningRate, dropout);
+            network.setThreads(Tools.mid(1, threads, batchSize));
+            network.setSeed(seed);
             network.initialize();
             
             outstream.println("\nStarting training...");
@@ -301,6 +319,55 @@ public class CNNTrainer {
     }
 }
     
+    /**
+     * Train without loading the training set into memory.
+     * Rows are streamed from disk each epoch; only validation rows are resident.
+     */
+    void processStreaming(Timer t){
+        if(!quiet) {outstream.println("Streaming "+dataIn);}
+        SampleStream ss = new SampleStream(dataIn, batchSize, shuffleBuffer, balance, 
+                (validateIn==null ? splitFraction : 0), maxLinesV, exclusive, maxLines, seed);
+        ss.packInputs=packInputs;
+        ss.scan();
+        if(validateIn!=null){
+            validateSet = loadData(validateIn, false, maxLinesV, false, 0, 0)[0];
+        }else{
+            validateSet = ss.validationSet();
+        }
+        if(validateSet==null){
+            throw new RuntimeException("No validation data; set split or validate.");
+        }
+        
+        t.stop();
+        outstream.println("\nData Scan Complete!");
+        outstream.println("Time: \t"+t);
+        outstream.println("\nTraining Stream:");
+        outstream.println("Samples/Epoch: \t"+ss.samplesPerEpoch());
+        outstream.println("Inputs: \t"+ss.numInputs());
+        outstream.println("Shuffle Buffer: \t"+shuffleBuffer);
+        outstream.println("\nValidation Set:");
+        outstream.println("Samples: \t"+validateSet.samples.length);
+        outstream.println("Positive: \t"+validateSet.numPositive);
+        outstream.println("Negative: \t"+validateSet.numNegative);
+        
+        outstream.println("\n" + "=".repeat(50));
+        outstream.println("Initializing CNN Network...");
+        CNNNetwork network = new CNNNetwork(ss.numInputs(), ss.numOutputs());
+        network.setArchitecture(filterCounts, filterSizes, poolSizes, denseLayers);
+        network.setTrainingParams(epochs, batchSize, learningRate, dropout);
+        network.setThreads(Tools.mid(1, threads, batchSize));
+        network.setSeed(seed);
+        network.initialize();
+        
+        outstream.println("\nStarting training...");
+        network.train(ss, validateSet);
+        
+        if(networkOut != null) {
+            outstream.println("\nSaving network to: " + networkOut);
+            network.saveNetwork(networkOut);
+        }
+    }
+    
     /*--------------------------------------------------------------*/
     /*----------------         Inner Methods        ----------------*/
     /*--------------------------------------------------------------*/
@@ -323,6 +390,7 @@ public class CNNTrainer {
         }
         
         for(SampleSet ss : ssa) {
+            if(packInputs) {PackedOneHot.pack(ss.matrix);}
             ss.makeSamples();
         }
         
@@ -383,7 +451,7 @@ public class CNNTrainer {
             outstream.println("\nFirst 5 samples:");
             for(int i=0; i<Math.min(5, data.samples.length); i++){
                 Sample s = data.samples[i];
-                outstream.println("Sample "+i+": inputs="+s.in.length+
+                outstream.println("Sample "+i+": inputs="+data.numInputs()+
                                 ", goal="+s.goal[0]+", positive="+s.positive);
             }
         }
@@ -403,13 +471,22 @@ public class CNNTrainer {
         
         outstream.println("\nRunning evaluation...");
         
-        // Process all samples
+        // Process all samples in batches
+        final int evalBatch = 256;
+        final int width = network.numInputs();
+        final float[] packed = new float[evalBatch * width];
+        float[] output = null;
         for(int i = 0; i < totalSamples; i++) {
             Sample sample = data.samples[i];
             
-            // Forward pass
-            float[] output = network.forward(sample.in);
-            float prediction = output[0];
+            // Forward pass for the next batch
+            final int s = i % evalBatch;
+            if(s == 0) {
+                final int n = Math.min(evalBatch, totalSamples - i);
+                CNNNetwork.pack(data.samples, i, i + n, packed, width);
+                output = network.forwardBatch(packed, n);
+            }
+            float prediction = output[s];
             float target = sample.goal[0];
             
             predictions[i] = prediction;
@@ -578,6 +655,18 @@ public class CNNTrainer {
     /** Set size for organizing data into subsets */
     private int setsize=1000;
     
+    /** Stream training data from disk instead of loading it */
+    private boolean stream=false;
+    
+    /** Samples held in the streaming shuffle buffer */
+    private int shuffleBuffer=100000;
+    
+    /** Default validation cap when streaming, so memory stays bounded */
+    private static final int STREAM_MAX_VALIDATION=100000;
+    
+    /** Store one-hot sequence columns as byte codes in resident samples */
+    private boolean packInputs=true;
+    
     /** Exclusive mode */
     private boolean exclusive=true;
     
@@ -615,6 +704,8 @@ public class CNNTrainer {
     private int batchSize = 32;             // Samples per mini-batch
     private float learningRate = 0.001f;    // How fast to learn
     private float dropout = 0.5f;           // Randomly drop neurons to prevent overfitting
+    private int threads = Shared.threads(); // Data-parallel worker threads per mini-batch
+    private long seed = -1;                 // Initialization and shuffle seed; negative is random
 
     
     /*--------------------------------------------------------------*/
@@ -0,0 +1,124 @@
+package ml;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Worker for data-parallel CNN training.
+ * Each worker owns a replica of the layer stack that shares weights with
+ * the master network, but has private activations and gradient buffers.
+ * The master hands each worker a slice of the mini-batch, waits for all
+ * slices, then reduces replica gradients in worker order before updating weights.
+ *
+ * @author Brandon Imstepf
+ * @date 8-4-2025
+ */
+class CNNWorkerThread extends Thread {
+
+	CNNWorkerThread(final int tid_, final CNNNetwork net_, final ArrayList<Layer> replica_,
+			final ArrayBlockingQueue<CNNWorkerThread> doneQueue_, final int numInputs, final int maxSlice){
+		tid=tid_;
+		net=net_;
+		replica=replica_;
+		doneQueue=doneQueue_;
+		packed=new float[maxSlice*numInputs];
+		lossGrads=new float[maxSlice];
+	}
+
+	//Called by start()
+	@Override
+	public void run(){
+		while(true) {
+			final Job job=getJob();
+			if(job==POISON) {break;}
+
+			stats.clear();
+			stop=!net.trainSlice(replica, packed, lossGrads, job.samples, 
+					job.from, job.to, stats, job.epoch, job.batchNum);
+
+			putDone();
+		}
+		success=true;
+	}
+
+	/** Assign samples [from, to) of the current mini-batch to this worker */
+	void submit(Sample[] samples, int from, int to, int epoch, int batchNum) {
+		putJob(new Job(samples, from, to, epoch, batchNum));
+	}
+
+	/** Tell this worker to exit */
+	void poison() {
+		putJob(POISON);
+	}
+
+	private Job getJob() {
+		Job job=null;
+		while(job==null) {
+			try {
+				job=jobQueue.take();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		return job;
+	}
+
+	private void putJob(Job job) {
+		boolean done=false;
+		while(!done) {
+			try {
+				jobQueue.put(job);
+				done=true;
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void putDone() {
+		boolean done=false;
+		while(!done) {
+			try {
+				doneQueue.put(this);
+				done=true;
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+
+	private static class Job {
+		Job(Sample[] samples_, int from_, int to_, int epoch_, int batchNum_){
+			samples=samples_;
+			from=from_;
+			to=to_;
+			epoch=epoch_;
+			batchNum=batchNum_;
+		}
+		final Sample[] samples;
+		final int from, to;
+		final int epoch, batchNum;
+	}
+
+	private static final Job POISON=new Job(null, 0, 0, 0, 0);
+
+	/*--------------------------------------------------------------*/
+
+	final int tid;
+	private final CNNNetwork net;
+	/** Private layer stack sharing weights with the master network */
+	final ArrayList<Layer> replica;
+	private final ArrayBlockingQueue<Job> jobQueue=new ArrayBlockingQueue<Job>(2);
+	private final ArrayBlockingQueue<CNNWorkerThread> doneQueue;
+	/** Flattened inputs and loss gradients for this worker's slice */
+	private final float[] packed, lossGrads;
+
+	/** Tallies for the most recent slice */
+	final CNNNetwork.BatchStats stats=new CNNNetwork.BatchStats();
+	/** True if the most recent slice requested that training halt */
+	boolean stop=false;
+	boolean success=false;
+
+}
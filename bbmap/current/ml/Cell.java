@@ -121,6 +121,23 @@ public class Cell extends Source {
 		}
 	}
 	
+	/**
+	 * Hogwild form of applyUpdates, called by worker threads mid-epoch with no lock.
+	 * This cell's weights array is the shared cell's, so only the bias needs to be written through.
+	 * Edges with no delta are not written; racing writes to one edge may lose an update.
+	 */
+	void applyUpdatesShared(Cell shared, float invSamples, float alpha) {
+		if(layer<1) {return;}
+		assert(weights==shared.weights);
+		if(biasDelta!=0) {
+			shared.bias=(float)(shared.bias+biasDelta*invSamples*alpha*biasAlphaMult);
+			biasDelta=0;
+		}
+		bias=shared.bias;
+		Vector.applyDeltas(weights, deltas, invSamples*alpha, 
+				edgeAmplitudeIncreaseThresh, edgeAmplitudeIncreaseMult, !CellNet.DENSE);
+	}
+
 	public void addError(float e) {
 		assert(error>=0);
 		error+=e;
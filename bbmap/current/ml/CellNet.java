@@ -679,6 +679,52 @@ private static BitSet pickEdges(int width, int edgeBlockSize, float density, Ran
 		samplesTrained+=samples;
 	}
 	
+	/*--------------------------------------------------------------*/
+	/*----------------           Hogwild            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Make a copy whose cells use this network's weight arrays, for Hogwild training.
+	 * Values, deltas, biases, and transposed weights stay private to the replica,
+	 * so workers read and update the shared weights without locking or copying the network.
+	 */
+	CellNet hogwildReplica() {
+		CellNet replica=copy(false);
+		for(int i=1; i<list.size(); i++) {
+			replica.list.get(i).weights=list.get(i).weights;
+		}
+		replica.weightsIn=null;
+		replica.makeWeightMatrices();
+		replica.hogwildSource=this;
+		return replica;
+	}
+
+	/** Load the shared biases and transpose the shared weights, at the start of a job */
+	void pullShared() {
+		assert(hogwildSource!=null);
+		final ArrayList<Cell> list2=hogwildSource.list;
+		for(int i=1; i<list.size(); i++) {
+			list.get(i).bias=list2.get(i).bias;
+		}
+		transpose();
+	}
+
+	/**
+	 * Apply accumulated deltas directly to the shared network, without locking, and clear them.
+	 * The transposed weights used by backprop are left as of the job start,
+	 * as they are for a copied network; forward passes read the live weights.
+	 * @param invSamples Inverse of the samples in the whole epoch, as in applyChanges
+	 */
+	void pushShared(float invSamples, float alpha) {
+		assert(hogwildSource!=null);
+		final ArrayList<Cell> list2=hogwildSource.list;
+		for(int i=1; i<list.size(); i++) {
+			list.get(i).applyUpdatesShared(list2.get(i), invSamples, alpha);
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+
 	public float getOutput(int outnum){
 		return net[layers-1][outnum].value();
 	}
@@ -1096,6 +1142,8 @@ private static BitSet pickEdges(int width, int edgeBlockSize, float density, Ran
 	float[][][] weightsOut;
 	int[][][] edgesIn;
 	int[][][] edgesOut;
+	/** Network whose weight arrays this replica shares, for Hogwild training */
+	private CellNet hogwildSource;
 	final int[] transposeCounter;//??
 	final int[] layerStart;//??
 	
@@ -1,173 +1,373 @@
 package ml;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import shared.Vector;
+
 /**
  * @author Brandon Imstepf
  * @date 7-11-2025
  * 1D Convolution layer for sequence data.
  * Handles multiple input channels from previous layers.
+ * Weights are stored flat as [numFilters][inputChannels][filterSize] so the
+ * inner loops run as contiguous shared.Vector kernels.
  */
 public class ConvolutionLayer extends Layer {
-    
-    public ConvolutionLayer(String name, int inputChannels, int inputLength, 
+
+    public ConvolutionLayer(String name, int inputChannels, int inputLength,
                            int numFilters, int filterSize) {
+        this(name, inputChannels, inputLength, numFilters, filterSize, new Random());
+    }
+
+    public ConvolutionLayer(String name, int inputChannels, int inputLength,
+                           int numFilters, int filterSize, Random rand) {
         this.name = name;
         this.inputChannels = inputChannels;
         this.inputLength = inputLength;
         this.numFilters = numFilters;
         this.filterSize = filterSize;
         this.outputLength = inputLength - filterSize + 1; // Valid convolution
-        
+        this.filterWidth = inputChannels * filterSize;
+
         // Initialize weights: [numFilters][inputChannels][filterSize]
-        Random rand = new Random();
-        weights = new float[numFilters][inputChannels][filterSize];
+        weights = new float[numFilters * filterWidth];
         bias = new float[numFilters];
-        
+
         // Xavier initialization
         float scale = (float)Math.sqrt(2.0 / (inputChannels * filterSize));
-        for(int f = 0; f < numFilters; f++) {
-            for(int c = 0; c < inputChannels; c++) {
-                for(int i = 0; i < filterSize; i++) {
-                    weights[f][c][i] = (float)(rand.nextGaussian() * scale);
-                }
-            }
-            bias[f] = 0;
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = (float)(rand.nextGaussian() * scale);
         }
-        
-        System.err.println(name + ": " + (inputChannels * inputLength) + " -> " + 
-                          (numFilters * outputLength) + 
-                          " (channels=" + inputChannels + "→" + numFilters + 
+
+        System.err.println(name + ": " + (inputChannels * inputLength) + " -> " +
+                          (numFilters * outputLength) +
+                          " (channels=" + inputChannels + "→" + numFilters +
                           ", length=" + inputLength + "→" + outputLength + ")");
     }
-    
+
+    /** Replica constructor; shares weights with source, but not gradients. */
+    private ConvolutionLayer(ConvolutionLayer source) {
+        this.name = source.name;
+        this.inputChannels = source.inputChannels;
+        this.inputLength = source.inputLength;
+        this.numFilters = source.numFilters;
+        this.filterSize = source.filterSize;
+        this.outputLength = source.outputLength;
+        this.filterWidth = source.filterWidth;
+        this.weights = source.weights;
+        this.bias = source.bias;
+        this.propagateInput = source.propagateInput;
+    }
+
     @Override
     public float[] forward(float[] input) {
         lastInput = input;
         float[] output = new float[numFilters * outputLength];
-        
-        // For each output filter
-        for(int f = 0; f < numFilters; f++) {
-            // For each output position
-            for(int pos = 0; pos < outputLength; pos++) {
-                float sum = bias[f];
-                
-                // Sum across all input channels
-                for(int c = 0; c < inputChannels; c++) {
-                    int channelOffset = c * inputLength;
-                    // Convolve with the filter
-                    for(int i = 0; i < filterSize; i++) {
-                        sum += input[channelOffset + pos + i] * weights[f][c][i];
-                    }
-                }
-                
-                // ReLU activation
-                output[f * outputLength + pos] = Math.max(0, sum);
-            }
-        }
-        
+        convolve(input, 0, output, 0);
         lastOutput = output;
         return output;
     }
-    
+
     @Override
     public float[] backward(float[] gradientIn) {
         // Clip incoming gradients to prevent explosion
-        for(int i = 0; i < gradientIn.length; i++) {
-            gradientIn[i] = Math.max(-5.0f, Math.min(5.0f, gradientIn[i]));
-        }
-            
+        Vector.clamp(gradientIn, 0, gradientIn.length, -5.0f, 5.0f);
+
         // Initialize gradient for input
         float[] gradientOut = new float[inputChannels * inputLength];
-        
+
         // Initialize weight gradients if needed
         if(weightGradients == null) {
-            weightGradients = new float[numFilters][inputChannels][filterSize];
+            weightGradients = new float[weights.length];
             biasGradients = new float[numFilters];
         }
-        
-        // For each filter
+
+        backpropagate(gradientIn, 0, lastInput, 0, gradientOut);
+
+        return gradientOut;
+    }
+
+    /**
+     * Batched forward pass as one GEMM over the whole batch; see convolveBatch.
+     * The unrolled input is kept for backwardBatch.
+     */
+    @Override
+    public float[] forwardBatch(float[] input, int batch) {
+        lastInput = input;
+        colBuffer = ensureCapacity(colBuffer, batch * colSize());
+        productBuffer = ensureCapacity(productBuffer, batch * getOutputSize());
+        batchOutput = ensureCapacity(batchOutput, batch * getOutputSize());
+        convolveBatch(input, batch, colBuffer, productBuffer, batchOutput);
+        lastOutput = batchOutput;
+        return batchOutput;
+    }
+
+    /**
+     * Batched backward pass as GEMMs over the columns unrolled by forwardBatch.
+     * With G the output gradients as [F x B*L], weight gradients are G * cols^T
+     * and column gradients are W^T * G; col2im then sums each input position's
+     * taps back into the [batch][channel][position] layout.
+     */
+    @Override
+    public float[] backwardBatch(float[] gradientIn, int batch) {
+        final int inSize = inputChannels * inputLength, outSize = numFilters * outputLength;
+        final int n = batch * outputLength;
+
+        // Clip incoming gradients to prevent explosion
+        Vector.clamp(gradientIn, 0, batch * outSize, -5.0f, 5.0f);
+
+        if(weightGradients == null) {
+            weightGradients = new float[weights.length];
+            biasGradients = new float[numFilters];
+        }
+
+        // Gather G into the forward product's buffer, which is no longer needed
+        final float[] g = productBuffer;
+        for(int s = 0; s < batch; s++) {
+            for(int f = 0; f < numFilters; f++) {
+                System.arraycopy(gradientIn, s * outSize + f * outputLength, g, f * n + s * outputLength, outputLength);
+            }
+        }
+
+        for(int f = 0, w = 0; f < numFilters; f++) {
+            final int row = f * n;
+            float gsum = 0;
+            for(int j = 0; j < n; j++) {gsum += g[row + j];}
+            biasGradients[f] += gsum;
+            for(int r = 0; r < filterWidth; r++, w++) {
+                weightGradients[w] += Vector.fma(g, row, colBuffer, r * n, n);
+            }
+        }
+
+        batchGradient = ensureCapacity(batchGradient, batch * inSize);
+        Arrays.fill(batchGradient, 0, batch * inSize, 0);
+        if(!propagateInput) {return batchGradient;}
+
+        // Column gradients overwrite the columns, whose last use was above
+        final float[] cols = colBuffer;
+        for(int t = 0; t < n; t += TILE) {
+            final int len = Math.min(TILE, n - t);
+            for(int r = 0; r < filterWidth; r++) {
+                Arrays.fill(cols, r * n + t, r * n + t + len, 0);
+                for(int f = 0, w = r; f < numFilters; f++, w += filterWidth) {
+                    Vector.addProduct(cols, r * n + t, g, f * n + t, weights[w], len);
+                }
+            }
+        }
+
+        // col2im
+        for(int c = 0, r = 0; c < inputChannels; c++) {
+            for(int k = 0; k < filterSize; k++, r++) {
+                for(int s = 0; s < batch; s++) {
+                    Vector.addProduct(batchGradient, s * inSize + c * inputLength + k, 
+                        cols, r * n + s * outputLength, 1f, outputLength);
+                }
+            }
+        }
+        return batchGradient;
+    }
+
+    @Override
+    void infer(float[] input, int inBase, float[] output, int outBase) {
+        convolve(input, inBase, output, outBase);
+    }
+
+    /** Allocates scratch; CNNInference calls the overload with its own buffers instead */
+    @Override
+    void inferBatch(float[] input, float[] output, int batch) {
+        inferBatch(input, output, batch, new float[batch * colSize()], new float[batch * getOutputSize()]);
+    }
+
+    /**
+     * Stateless batched inference through the same GEMM as forwardBatch.
+     * @param cols Scratch, at least batch*colSize() long
+     * @param product Scratch, at least batch*getOutputSize() long
+     */
+    void inferBatch(float[] input, float[] output, int batch, float[] cols, float[] product) {
+        convolveBatch(input, batch, cols, product, output);
+    }
+
+    /**
+     * Convolve a batch as one GEMM, product[F x B*L] = W[F x C*K] * cols[C*K x B*L].
+     * im2col copies input[s][c][k..k+L) into row (c,k) of cols for every sample s,
+     * so each row spans the batch.  The product runs in column tiles, which keeps
+     * one tile of cols in cache while every filter reads it.  Each element gets its
+     * bias and then its taps in the same (c,k) order as convolve(), so the results
+     * match per-sample inference exactly.  The product is then scattered back to
+     * [batch][filter][position] with ReLU.
+     * @param cols Scratch, at least batch*colSize() long
+     * @param product Scratch, at least batch*getOutputSize() long
+     * @param output Flat [batch x getOutputSize()] results
+     */
+    private void convolveBatch(float[] input, int batch, float[] cols, float[] product, float[] output) {
+        final int inSize = inputChannels * inputLength, outSize = numFilters * outputLength;
+        final int n = batch * outputLength;
+
+        // im2col
+        for(int c = 0, r = 0; c < inputChannels; c++) {
+            for(int k = 0; k < filterSize; k++, r++) {
+                for(int s = 0; s < batch; s++) {
+                    System.arraycopy(input, s * inSize + c * inputLength + k, cols, r * n + s * outputLength, outputLength);
+                }
+            }
+        }
+
+        // GEMM
+        for(int f = 0; f < numFilters; f++) {Arrays.fill(product, f * n, f * n + n, bias[f]);}
+        for(int t = 0; t < n; t += TILE) {
+            final int len = Math.min(TILE, n - t);
+            for(int f = 0, w = 0; f < numFilters; f++) {
+                for(int r = 0; r < filterWidth; r++, w++) {
+                    Vector.addProduct(product, f * n + t, cols, r * n + t, weights[w], len);
+                }
+            }
+        }
+
+        // Scatter and ReLU
+        for(int s = 0; s < batch; s++) {
+            for(int f = 0; f < numFilters; f++) {
+                final int o = s * outSize + f * outputLength;
+                System.arraycopy(product, f * n + s * outputLength, output, o, outputLength);
+                Vector.clamp(output, o, o + outputLength, 0, Float.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Convolve one sample with all filters and apply ReLU.
+     * Each (filter, channel, tap) adds a scaled input slice to the filter's output row.
+     */
+    private void convolve(float[] input, int inBase, float[] output, int outBase) {
         for(int f = 0; f < numFilters; f++) {
-            // For each output position
-            for(int i = 0; i < outputLength; i++) {
-                // Get gradient from this output position
-                float grad = gradientIn[f * outputLength + i];
-                
-                // Skip if gradient is zero (ReLU killed it)
-                if(grad == 0) continue;
-                
-                // For each input channel
-                for(int c = 0; c < inputChannels; c++) {
-                    // For each position in the filter
-                    for(int k = 0; k < filterSize; k++) {
-                        int inputIdx = c * inputLength + i + k;
-                        
-                        // Gradient with respect to input
-                        gradientOut[inputIdx] += grad * weights[f][c][k];
-                        
-                        // Gradient with respect to weights
-                        weightGradients[f][c][k] += grad * lastInput[inputIdx];
-                    }
+            final int o = outBase + f * outputLength;
+            Arrays.fill(output, o, o + outputLength, bias[f]);
+
+            for(int c = 0, w = f * filterWidth; c < inputChannels; c++) {
+                final int row = inBase + c * inputLength;
+                for(int k = 0; k < filterSize; k++, w++) {
+                    Vector.addProduct(output, o, input, row + k, weights[w], outputLength);
                 }
-                
-                // Gradient with respect to bias
-                biasGradients[f] += grad;
             }
+
+            // ReLU activation
+            Vector.clamp(output, o, o + outputLength, 0, Float.MAX_VALUE);
         }
-        
-        // CLIP GRADIENTS AFTER ALL ACCUMULATION IS DONE
+    }
+
+    /**
+     * Accumulate weight, bias, and input gradients for one sample.
+     * @param gradientIn Output gradients, starting at g0
+     * @param input Forward input, starting at inBase; gradientOut shares this layout
+     */
+    private void backpropagate(float[] gradientIn, int g0, float[] input, int inBase, float[] gradientOut) {
         for(int f = 0; f < numFilters; f++) {
-            for(int c = 0; c < inputChannels; c++) {
-                for(int k = 0; k < filterSize; k++) {
-                    // Clip gradients to prevent explosion
-                    weightGradients[f][c][k] = Math.max(-5.0f, Math.min(5.0f, weightGradients[f][c][k]));
+            final int g = g0 + f * outputLength;
+            float gsum = 0;
+            for(int pos = 0; pos < outputLength; pos++) {gsum += gradientIn[g + pos];}
+
+            // Gradient with respect to bias
+            biasGradients[f] += gsum;
+
+            for(int c = 0, w = f * filterWidth; c < inputChannels; c++) {
+                final int row = inBase + c * inputLength;
+                for(int k = 0; k < filterSize; k++, w++) {
+                    // Gradient with respect to weights
+                    weightGradients[w] += Vector.fma(gradientIn, g, input, row + k, outputLength);
+                    // Gradient with respect to input
+                    if(propagateInput) {
+                        Vector.addProduct(gradientOut, row + k, gradientIn, g, weights[w], outputLength);
+                    }
                 }
             }
-            // Also clip bias gradients
-            biasGradients[f] = Math.max(-5.0f, Math.min(5.0f, biasGradients[f]));
         }
-        
-        return gradientOut;
+    }
+
+    private void clipGradients() {
+        Vector.clamp(weightGradients, 0, weightGradients.length, -5.0f, 5.0f);
+        Vector.clamp(biasGradients, 0, numFilters, -5.0f, 5.0f);
     }
 
     @Override
     public void updateWeights(float learningRate) {
         if(weightGradients == null) return;
-        
-        // Update weights
-        for(int f = 0; f < numFilters; f++) {
-            for(int c = 0; c < inputChannels; c++) {
-                for(int k = 0; k < filterSize; k++) {
-                    weights[f][c][k] -= learningRate * weightGradients[f][c][k];
-                    weightGradients[f][c][k] = 0;  // Reset
-                }
-            }
-            bias[f] -= learningRate * biasGradients[f];
-            biasGradients[f] = 0;  // Reset
+        // Clip the gradients summed over the whole batch, on every thread count
+        clipGradients();
+
+        // Update weights and reset gradients
+        Vector.addProduct(weights, 0, weightGradients, 0, -learningRate, weights.length);
+        Arrays.fill(weightGradients, 0);
+        Vector.addProduct(bias, 0, biasGradients, 0, -learningRate, numFilters);
+        Arrays.fill(biasGradients, 0);
+    }
+
+    @Override
+    public Layer replicate() {
+        return new ConvolutionLayer(this);
+    }
+
+    @Override
+    public void addGradients(Layer replica) {
+        ConvolutionLayer other = (ConvolutionLayer)replica;
+        if(other.weightGradients == null) return;
+        if(weightGradients == null) {
+            weightGradients = new float[weights.length];
+            biasGradients = new float[numFilters];
         }
+
+        Vector.addProduct(weightGradients, 0, other.weightGradients, 0, 1f, weights.length);
+        Vector.addProduct(biasGradients, 0, other.biasGradients, 0, 1f, numFilters);
+        Arrays.fill(other.weightGradients, 0);
+        Arrays.fill(other.biasGradients, 0);
     }
 
-    
     @Override
     public int getOutputSize() {
         return numFilters * outputLength;
     }
 
+    @Override
+    public int getInputSize() {
+        return inputChannels * inputLength;
+    }
+
     public int getParameterCount() {
         return numFilters * inputChannels * filterSize + numFilters;
-    }    
-    
+    }
+
     public int getOutputChannels() { return numFilters; }
     public int getOutputLength() { return outputLength; }
-    
+
+    /** Per-sample length of the im2col matrix: filterWidth rows of outputLength */
+    final int colSize() {
+        return filterWidth * outputLength;
+    }
+
+    /** Index of weight (f, c, k) in the flat weight array */
+    final int weightIndex(int f, int c, int k) {
+        return f * filterWidth + c * filterSize + k;
+    }
+
     int inputChannels;
     int inputLength;
     int numFilters;
     int filterSize;
     int outputLength;
-    float[][][] weights;  // [numFilters][inputChannels][filterSize]
+    int filterWidth;  // inputChannels * filterSize
+    float[] weights;  // Flat [numFilters][inputChannels][filterSize]
     float[] bias;
-    float[][][] weightGradients;
+    float[] weightGradients;  // Same layout as weights
     float[] biasGradients;
     int stride = 1; // default stride
-}
\ No newline at end of file
+    /**
+     * False for the first layer, whose input gradient would only reach the raw
+     * features; backward then returns zeros instead of computing it.
+     */
+    boolean propagateInput = true;
+    /** forwardBatch's im2col matrix [filterWidth x batch*outputLength]; reused for column gradients */
+    private float[] colBuffer;
+    /** forwardBatch's GEMM result [numFilters x batch*outputLength]; reused for output gradients */
+    private float[] productBuffer;
+    /** GEMM columns per tile */
+    private static final int TILE = 512;
+}
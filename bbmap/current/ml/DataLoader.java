@@ -1,18 +1,21 @@
 package ml;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 
 import fileIO.ByteFile;
+import fileIO.ByteFileMapped;
 import fileIO.FileFormat;
 import shared.LineParser1;
 import shared.Parse;
 import shared.Shared;
 import shared.Tools;
 import structures.IntList;
+import template.ThreadWaiter;
 
 public class DataLoader {
 	
@@ -99,47 +102,24 @@ public class DataLoader {
 		final int max=(shuffleRaw ? Shared.MAX_ARRAY_LEN : maxLines);
 		
 		for(String f : fnames) {
+			if(BinaryDataFile.isBinary(f)) {
+				loadBinary(f, max, inputList, outputList, weightList);
+				if(validLines>=max) {break;}
+				continue;
+			}
 			FileFormat ff=FileFormat.testInput(f, FileFormat.TEXT, null, true, false);
+			if(max>=Shared.MAX_ARRAY_LEN && Shared.threads()>1 && ByteFileMapped.canMap(ff)) {
+				loadTextParallel(ff, inputList, outputList, weightList);
+				continue;
+			}
 			ByteFile bf=ByteFile.makeByteFile(ff);
 			for(s=bf.nextLine(); s!=null && validLines<max; s=bf.nextLine()){
 				if(s.length>0) {
 					if(s[0]=='#') {//TODO: When processing multiple files, 
-						if(Tools.startsWith(s, "#dims")) {
-							matrix.dims=parseIntArray(s, delimiter, true);
-							matrix.numInputs=matrix.dims[0];
-//							matrix.numOutputs=matrix.dims[matrix.dims.length-1];
-							matrix.numOutputs=matrix.dims[1];
-							weighted=(matrix.dims.length>2 && matrix.dims[2]==1);
-							assert(matrix.dims.length>1) : matrix.dims.length+", "+Arrays.toString(matrix.dims)+", '"+new String(s)+"'";
-						}else if(Tools.startsWith(s, "#inputs")) {
-							matrix.numInputs=parseInt(s);
-						}else if(Tools.startsWith(s, "#outputs")) {
-							matrix.numOutputs=parseInt(s);
-						}else if(Tools.startsWith(s, "##")) {
-							matrix.columns=new ArrayList<String>(Arrays.asList(new String(s).split("\t")));
-							matrix.columns.set(0, matrix.columns.get(0).substring(2));//Trim ##
-						}else {
-							//comment
-						}
+						parseHeader(s);
 					}else {
-						if(matrix.numInputs==0) {
-							int terms=Tools.split(s, 0, (byte)'\t').size();
-							matrix.numOutputs=1;
-							matrix.numInputs=terms-(matrix.numOutputs+(weighted ? 1 : 0));
-							System.err.println("Inferring "+matrix.numInputs+" inputs, "+matrix.numOutputs+" output, "+(weighted ? 1 : 0)+" weights.");
-						}
-						assert(matrix.numInputs>0 & matrix.numOutputs>0) : 
-							"Number of inputs and outputs must be in data file header, e.g. '#inputs 5'";
-						float[] inputs=new float[matrix.numInputs];
-						float[] outputs=new float[matrix.numOutputs];
-						float[] weights=new float[] {1};
-//						System.err.println("Attempting to parse line; i="+inputs.length+", o="+outputs.length+", w="+weights.length+", weighted="+weighted);
-						boolean valid=parseDataLine(s, inputs, outputs, weights);
-//						assert(false);
-						if(valid) {
-							inputList.add(inputs);
-							outputList.add(outputs);
-							weightList.add(weights);
+						inferDims(s);
+						if(addDataLine(s, lp, inputList, outputList, weightList)) {
 							validLines++;
 						}else {
 							invalidLines++;
@@ -167,6 +147,105 @@ public class DataLoader {
 //			", "+matrix.targetOutputRangeMax;
 	}
 	
+	/**
+	 * Parse an uncompressed text file with one thread per line range.
+	 * The header is read first, so every thread knows the dimensions;
+	 * rows keep their order in the file.
+	 */
+	private void loadTextParallel(FileFormat ff, ArrayList<float[]> inputList, 
+			ArrayList<float[]> outputList, ArrayList<float[]> weightList) {
+		ByteFileMapped bf=new ByteFileMapped(ff);
+		for(byte[] s=bf.nextLine(); s!=null; s=bf.nextLine()) {
+			if(s.length<1) {continue;}
+			if(s[0]!='#') {
+				inferDims(s);
+				break;
+			}
+			parseHeader(s);
+		}
+		bf.close();
+		
+		ByteFileMapped[] parts=ByteFileMapped.split(ff, Shared.threads());
+		ArrayList<ParseThread> alpt=new ArrayList<ParseThread>(parts.length);
+		for(ByteFileMapped part : parts) {alpt.add(new ParseThread(part));}
+		ThreadWaiter.startAndWait(alpt);
+		for(ParseThread pt : alpt) {
+			if(!pt.success) {throw new RuntimeException("Failed to parse "+ff.name());}
+			inputList.addAll(pt.inputList);
+			outputList.addAll(pt.outputList);
+			weightList.addAll(pt.weightList);
+			validLines+=pt.validLines;
+			invalidLines+=pt.invalidLines;
+		}
+	}
+	
+	/** Handle a '#' line: dimensions, input or output counts, or column names. */
+	private void parseHeader(byte[] s) {
+		if(Tools.startsWith(s, "#dims")) {
+			matrix.dims=parseIntArray(s, delimiter, true);
+			matrix.numInputs=matrix.dims[0];
+//			matrix.numOutputs=matrix.dims[matrix.dims.length-1];
+			matrix.numOutputs=matrix.dims[1];
+			weighted=(matrix.dims.length>2 && matrix.dims[2]==1);
+			assert(matrix.dims.length>1) : matrix.dims.length+", "+Arrays.toString(matrix.dims)+", '"+new String(s)+"'";
+		}else if(Tools.startsWith(s, "#inputs")) {
+			matrix.numInputs=parseInt(s);
+		}else if(Tools.startsWith(s, "#outputs")) {
+			matrix.numOutputs=parseInt(s);
+		}else if(Tools.startsWith(s, "##")) {
+			matrix.columns=new ArrayList<String>(Arrays.asList(new String(s).split("\t")));
+			matrix.columns.set(0, matrix.columns.get(0).substring(2));//Trim ##
+		}else {
+			//comment
+		}
+	}
+	
+	/** Infer the dimensions from the first data line if there was no header. */
+	private void inferDims(byte[] s) {
+		if(matrix.numInputs==0) {
+			int terms=Tools.split(s, 0, (byte)'\t').size();
+			matrix.numOutputs=1;
+			matrix.numInputs=terms-(matrix.numOutputs+(weighted ? 1 : 0));
+			System.err.println("Inferring "+matrix.numInputs+" inputs, "+matrix.numOutputs+" output, "+(weighted ? 1 : 0)+" weights.");
+		}
+		assert(matrix.numInputs>0 & matrix.numOutputs>0) : 
+			"Number of inputs and outputs must be in data file header, e.g. '#inputs 5'";
+	}
+	
+	/** Parse one data line and add it to the lists if it is valid. */
+	private boolean addDataLine(byte[] s, LineParser1 lp, ArrayList<float[]> inputList, 
+			ArrayList<float[]> outputList, ArrayList<float[]> weightList) {
+		float[] inputs=new float[matrix.numInputs];
+		float[] outputs=new float[matrix.numOutputs];
+		float[] weights=new float[] {1};
+//		System.err.println("Attempting to parse line; i="+inputs.length+", o="+outputs.length+", w="+weights.length+", weighted="+weighted);
+		boolean valid=parseDataLine(s, lp, inputs, outputs, weights);
+		if(valid) {
+			inputList.add(inputs);
+			outputList.add(outputs);
+			weightList.add(weights);
+		}
+		return valid;
+	}
+	
+	/** Read rows from a binary data file; no text parsing is needed. */
+	private void loadBinary(String f, long max, ArrayList<float[]> inputList, 
+			ArrayList<float[]> outputList, ArrayList<float[]> weightList) {
+		try {
+			BinaryDataFile bdf=new BinaryDataFile(f);
+			assert(matrix.numInputs==0 || matrix.numInputs==bdf.numInputs) : 
+				"Input count mismatch: "+matrix.numInputs+" vs "+bdf.numInputs+" in "+f;
+			matrix.numInputs=bdf.numInputs;
+			matrix.numOutputs=bdf.numOutputs;
+			matrix.dims=new int[] {bdf.numInputs, bdf.numOutputs};
+			weighted=bdf.weighted;
+			validLines+=bdf.read(max-validLines, inputList, outputList, weightList);
+			bdf.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	private static void shuffle(ArrayList<float[]> inputList, ArrayList<float[]> outputList, ArrayList<float[]> weightList, int maxLines) {
 		final int size=inputList.size();
 		ArrayList<Triple> list=new ArrayList<Triple>(inputList.size());
@@ -220,6 +299,10 @@ public class DataLoader {
 	}
 	
 	boolean parseDataLine(byte[] line, float[] inputs, float[] outputs, float[] weights) {
+		return parseDataLine(line, lp, inputs, outputs, weights);
+	}
+	
+	boolean parseDataLine(byte[] line, LineParser1 lp, float[] inputs, float[] outputs, float[] weights) {
 		lp.set(line);
 		int pos=0;
 		for(int i=0; i<inputs.length; i++) {
@@ -276,6 +359,35 @@ public class DataLoader {
 	
 	/*--------------------------------------------------------------*/
 	
+	/** Parses the data lines of one range of a text file. */
+	private class ParseThread extends Thread {
+		
+		ParseThread(ByteFileMapped bf_){bf=bf_;}
+		
+		@Override
+		public void run() {
+			for(byte[] s=bf.nextLine(); s!=null; s=bf.nextLine()) {
+				if(s.length<1 || s[0]=='#') {continue;}
+				if(addDataLine(s, lp, inputList, outputList, weightList)) {
+					validLines++;
+				}else {
+					invalidLines++;
+				}
+			}
+			bf.close();
+			success=true;
+		}
+		
+		final ByteFileMapped bf;
+		final LineParser1 lp=new LineParser1(delimiter);
+		final ArrayList<float[]> inputList=new ArrayList<float[]>();
+		final ArrayList<float[]> outputList=new ArrayList<float[]>();
+		final ArrayList<float[]> weightList=new ArrayList<float[]>();
+		long validLines=0;
+		long invalidLines=0;
+		boolean success=false;
+	}
+	
 	private static class Triple{
 		Triple(float[] in_, float[] out_, float[] w_){
 			in=in_;
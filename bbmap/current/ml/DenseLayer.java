@@ -1,37 +1,52 @@
 package ml;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import shared.Vector;
+
 /**
  * @author Brandon Imstepf
  * Last edited: @date 7-21-2025
  * Fully connected (dense) layer.
  * Every input connects to every output.
+ * Weights are stored flat as [outputSize][inputSize] so each row is a
+ * contiguous shared.Vector dot product.
  */
 public class DenseLayer extends Layer {
     
     public DenseLayer(String name, int inputSize, int outputSize) {
+        this(name, inputSize, outputSize, new Random());
+    }
+    
+    public DenseLayer(String name, int inputSize, int outputSize, Random rand) {
         this.name = name;
         this.inputSize = inputSize;
         this.outputSize = outputSize;
         
         // Initialize weights and biases
-        Random rand = new Random();
-        weights = new float[outputSize][inputSize];
+        weights = new float[outputSize * inputSize];
         bias = new float[outputSize];
         
         // Xavier initialization
         float scale = (float)Math.sqrt(2.0 / inputSize);
-        for(int i = 0; i < outputSize; i++) {
-            for(int j = 0; j < inputSize; j++) {
-                weights[i][j] = (float)(rand.nextGaussian() * scale);
-            }
-            bias[i] = 0;
+        for(int i = 0; i < weights.length; i++) {
+            weights[i] = (float)(rand.nextGaussian() * scale);
         }
         
         System.err.println(name + ": " + inputSize + " -> " + outputSize);
     }
     
+    /** Replica constructor; shares weights with source, but not gradients. */
+    DenseLayer(DenseLayer source) {
+        this.name = source.name;
+        this.inputSize = source.inputSize;
+        this.outputSize = source.outputSize;
+        this.weights = source.weights;
+        this.bias = source.bias;
+        this.useReLU = source.useReLU;
+    }
+    
     @Override
     public float[] forward(float[] input) {
         lastInput = input;
@@ -39,10 +54,7 @@ public class DenseLayer extends Layer {
         
         // Matrix multiplication: output = weights * input + bias
         for(int i = 0; i < outputSize; i++) {
-            float sum = bias[i];
-            for(int j = 0; j < inputSize; j++) {
-                sum += weights[i][j] * input[j];
-            }
+            float sum = bias[i] + Vector.fma(weights, i * inputSize, input, 0, inputSize);
             // ReLU activation for hidden layers
             output[i] = Math.max(0, sum);
         }
@@ -53,82 +65,187 @@ public class DenseLayer extends Layer {
     
     @Override
     public float[] backward(float[] gradientIn) {
-        // Gradient with respect to inputs
-        float[] gradientOut = new float[inputSize];
-        
         // Apply ReLU derivative
         float[] reluGradient = new float[outputSize];
         for(int i = 0; i < outputSize; i++) {
             reluGradient[i] = lastOutput[i] > 0 ? gradientIn[i] : 0;
         }
-        
-        // Backpropagate through weights
-        for(int j = 0; j < inputSize; j++) {
-            float sum = 0;
-            for(int i = 0; i < outputSize; i++) {
-                sum += weights[i][j] * reluGradient[i];
-            }
-            gradientOut[j] = sum;
-        }
+        return backpropagate(reluGradient);
+    }
+    
+    /**
+     * Single-sample counterpart of backpropagateBatch.
+     * @param delta Gradient at the pre-activation
+     */
+    final float[] backpropagate(float[] delta) {
+        // Gradient with respect to inputs
+        float[] gradientOut = new float[inputSize];
         
         // Store gradients for weight updates
         if(weightGradients == null) {
-            weightGradients = new float[outputSize][inputSize];
+            weightGradients = new float[weights.length];
             biasGradients = new float[outputSize];
         }
         
-        // Accumulate gradients
         for(int i = 0; i < outputSize; i++) {
-            for(int j = 0; j < inputSize; j++) {
-                weightGradients[i][j] += reluGradient[i] * lastInput[j];
+            final float d = delta[i];
+            if(d == 0) continue;
+            // Backpropagate through weights
+            Vector.addProduct(gradientOut, 0, weights, i * inputSize, d, inputSize);
+            // Accumulate gradients
+            Vector.addProduct(weightGradients, i * inputSize, lastInput, 0, d, inputSize);
+            biasGradients[i] += d;
+        }
+        
+        return gradientOut;
+    }
+
+    /**
+     * Batched forward pass as a GEMM: output[B x O] = input[B x I] * W^T + bias.
+     * Each weight row is reused across the whole batch while it is in cache.
+     */
+    @Override
+    public float[] forwardBatch(float[] input, int batch) {
+        lastInput = input;
+        batchOutput = ensureCapacity(batchOutput, batch * outputSize);
+        final float[] output = batchOutput;
+        
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            final float b = bias[i];
+            for(int s = 0, x = 0; s < batch; s++, x += inputSize) {
+                float sum = b + Vector.fma(weights, w, input, x, inputSize);
+                // ReLU activation for hidden layers
+                output[s * outputSize + i] = Math.max(0, sum);
             }
-            biasGradients[i] += reluGradient[i];
         }
         
-        // CLIP GRADIENTS AFTER ALL ACCUMULATION IS DONE
-        for(int i = 0; i < outputSize; i++) {
-            for(int j = 0; j < inputSize; j++) {
-                // Clip weight gradients
-                weightGradients[i][j] = Math.max(-5.0f, Math.min(5.0f, weightGradients[i][j]));
+        lastOutput = output;
+        return output;
+    }
+    
+    @Override
+    void infer(float[] input, int inBase, float[] output, int outBase) {
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            float sum = bias[i] + Vector.fma(weights, w, input, inBase, inputSize);
+            output[outBase + i] = Math.max(0, sum);
+        }
+    }
+    
+    /** Row-outer loop, so each weight row is read once per batch rather than once per sample */
+    @Override
+    void inferBatch(float[] input, float[] output, int batch) {
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            final float b = bias[i];
+            for(int s = 0, x = 0; s < batch; s++, x += inputSize) {
+                output[s * outputSize + i] = activate(b + Vector.fma(weights, w, input, x, inputSize));
             }
-            // Clip bias gradients
-            biasGradients[i] = Math.max(-5.0f, Math.min(5.0f, biasGradients[i]));
         }
+    }
+    
+    /** Hidden-layer activation (ReLU) */
+    float activate(float sum) {
+        return Math.max(0, sum);
+    }
+    
+    @Override
+    public float[] backwardBatch(float[] gradientIn, int batch) {
+        // Apply ReLU derivative
+        batchDelta = ensureCapacity(batchDelta, batch * outputSize);
+        for(int i = 0, lim = batch * outputSize; i < lim; i++) {
+            batchDelta[i] = lastOutput[i] > 0 ? gradientIn[i] : 0;
+        }
+        return backpropagateBatch(batchDelta, batch);
+    }
+    
+    /**
+     * Shared by hidden and output layers once the activation derivative is applied.
+     * @param delta Flat [batch x outputSize] gradient at the pre-activation
+     */
+    final float[] backpropagateBatch(float[] delta, int batch) {
+        batchGradient = ensureCapacity(batchGradient, batch * inputSize);
+        final float[] gradientOut = batchGradient;
+        Arrays.fill(gradientOut, 0, batch * inputSize, 0);
         
-        return gradientOut;  // Note: it's gradientOut, not outputGradient
+        if(weightGradients == null) {
+            weightGradients = new float[weights.length];
+            biasGradients = new float[outputSize];
+        }
+        
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            float bg = 0;
+            for(int s = 0, x = 0; s < batch; s++, x += inputSize) {
+                final float d = delta[s * outputSize + i];
+                if(d == 0) continue;
+                bg += d;
+                // Backpropagate through weights
+                Vector.addProduct(gradientOut, x, weights, w, d, inputSize);
+                // Accumulate weight gradients
+                Vector.addProduct(weightGradients, w, lastInput, x, d, inputSize);
+            }
+            biasGradients[i] += bg;
+        }
+        
+        return gradientOut;
+    }
+    
+    final void clipGradients() {
+        Vector.clamp(weightGradients, 0, weightGradients.length, -5.0f, 5.0f);
+        Vector.clamp(biasGradients, 0, outputSize, -5.0f, 5.0f);
     }
 
     @Override
     public void updateWeights(float learningRate) {
         if(weightGradients == null) return;
+        // Clip the gradients summed over the whole batch, on every thread count
+        clipGradients();
         
-        // Update weights and biases
-        for(int i = 0; i < outputSize; i++) {
-            for(int j = 0; j < inputSize; j++) {
-                weights[i][j] -= learningRate * weightGradients[i][j];
-                weightGradients[i][j] = 0;  // Reset gradient
-            }
-            bias[i] -= learningRate * biasGradients[i];
-            biasGradients[i] = 0;  // Reset gradient
-        }
+        // Update weights and biases, then reset gradients
+        Vector.addProduct(weights, 0, weightGradients, 0, -learningRate, weights.length);
+        Arrays.fill(weightGradients, 0);
+        Vector.addProduct(bias, 0, biasGradients, 0, -learningRate, outputSize);
+        Arrays.fill(biasGradients, 0);
     }
 
-
+    @Override
+    public Layer replicate() {
+        return new DenseLayer(this);
+    }
+    
+    @Override
+    public void addGradients(Layer replica) {
+        DenseLayer other = (DenseLayer)replica;
+        if(other.weightGradients == null) return;
+        if(weightGradients == null) {
+            weightGradients = new float[weights.length];
+            biasGradients = new float[outputSize];
+        }
+        
+        Vector.addProduct(weightGradients, 0, other.weightGradients, 0, 1f, weights.length);
+        Vector.addProduct(biasGradients, 0, other.biasGradients, 0, 1f, outputSize);
+        Arrays.fill(other.weightGradients, 0);
+        Arrays.fill(other.biasGradients, 0);
+    }
     
     @Override
     public int getOutputSize() {
         return outputSize;
     }
 
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
     public int getParameterCount() {
         return outputSize * inputSize + outputSize;
     }
     
     int inputSize;
     int outputSize;
-    float[][] weights;
+    float[] weights;  // Flat [outputSize][inputSize]
     float[] bias;
-    float[][] weightGradients;
+    float[] weightGradients;  // Same layout as weights
     float[] biasGradients;
+    float[] batchDelta; // Reusable pre-activation gradients for backwardBatch
     boolean useReLU = true; //
-}
\ No newline at end of file
+}
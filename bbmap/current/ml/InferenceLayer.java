@@ -0,0 +1,41 @@
+package ml;
+
+/**
+ * A layer that can score samples but not train.
+ * Every trainable Layer is one; QuantizedDenseLayer is only this,
+ * so it can never end up in a training network.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+abstract class InferenceLayer {
+    
+    /** Get the output size of this layer */
+    public abstract int getOutputSize();
+    
+    /** Get the per-sample input size of this layer */
+    public abstract int getInputSize();
+    
+    /**
+     * Stateless single-sample forward pass for frozen inference.
+     * Only weights are read, so one layer may serve many threads at once;
+     * nothing is stored for backprop and nothing is allocated.
+     * @param input Buffer holding getInputSize() features starting at inBase
+     * @param output Buffer receiving getOutputSize() values starting at outBase
+     */
+    abstract void infer(float[] input, int inBase, float[] output, int outBase);
+    
+    /**
+     * Stateless batched forward pass for frozen inference.
+     * Layers whose weights outgrow the cache override this to reuse
+     * each weight span across the whole batch.
+     * @param input Flat [batch x getInputSize()] features
+     * @param output Flat [batch x getOutputSize()] results
+     */
+    void inferBatch(float[] input, float[] output, int batch) {
+        final int inSize = getInputSize(), outSize = getOutputSize();
+        for(int s = 0; s < batch; s++) {
+            infer(input, s * inSize, output, s * outSize);
+        }
+    }
+}
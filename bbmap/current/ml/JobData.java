@@ -44,6 +44,10 @@ public class JobData {
 	
 	final CellNet immutableNet;
 	CellNet mutableNet;//Optional and mutable
+	/** If positive, mutableNet is a Hogwild replica and pushes its deltas after this many samples */
+	int hogwildBatch=0;
+	/** Inverse of the samples in the epoch, for Hogwild updates */
+	float hogwildInvSamples=0;
 	final ArrayBlockingQueue<JobResults> jobResultsQueue;
 
 	final int epoch;
@@ -6,13 +6,30 @@ package ml;
  * Base class for neural network layers.
  * Following BBTools pattern of simple, efficient classes.
  */
-public abstract class Layer {
+public abstract class Layer extends InferenceLayer {
     
     /** Forward pass - processes input and produces output */
     public abstract float[] forward(float[] input);
     
-    /** Get the output size of this layer */
-    public abstract int getOutputSize();
+    /**
+     * Batched forward pass.
+     * Input and output are flat row-major [batch x features] buffers.
+     * The returned array is owned by this layer and reused by the next call,
+     * so it may be longer than batch*getOutputSize().
+     * @param input Buffer holding batch samples of getInputSize() features
+     * @param batch Number of samples
+     * @return This layer's output buffer
+     */
+    public abstract float[] forwardBatch(float[] input, int batch);
+    
+    /**
+     * Batched backward pass; must follow forwardBatch with the same batch.
+     * Weight gradients for every sample are accumulated; updateWeights clips the sum.
+     * @param gradientIn Flat [batch x getOutputSize()] gradient from the next layer
+     * @param batch Number of samples
+     * @return This layer's input-gradient buffer, reused by the next call
+     */
+    public abstract float[] backwardBatch(float[] gradientIn, int batch);
     
     /** Layer name for debugging */
     protected String name;
@@ -22,6 +39,12 @@ public abstract class Layer {
     
     /** Store output for backward pass */
     protected float[] lastOutput;
+    
+    /** Reusable [batch x outputSize] output buffer for forwardBatch */
+    protected float[] batchOutput;
+    
+    /** Reusable [batch x inputSize] gradient buffer for backwardBatch */
+    protected float[] batchGradient;
 
     /**
      * Backward pass - compute gradients.
@@ -32,9 +55,32 @@ public abstract class Layer {
 
     /**
      * Update weights using accumulated gradients.
+     * Layers with parameters clip the accumulated gradients first.
      * @param learningRate Learning rate for gradient descent
      */
     public void updateWeights(float learningRate) {
         // Default: do nothing (for layers without parameters)
     }
+
+    /**
+     * Create a worker replica for data-parallel training.
+     * The replica shares this layer's weights but owns its own
+     * activations and gradient buffers.
+     * @return A new layer sharing weights with this one
+     */
+    public abstract Layer replicate();
+
+    /**
+     * Add a replica's accumulated gradients into this layer's gradients,
+     * then clear the replica's gradients.
+     * @param replica A layer created by replicate()
+     */
+    public void addGradients(Layer replica) {
+        // Default: do nothing (for layers without parameters)
+    }
+    
+    /** Return buf if it holds at least size elements, otherwise a larger array. */
+    protected static float[] ensureCapacity(float[] buf, int size) {
+        return (buf != null && buf.length >= size) ? buf : new float[size];
+    }
 }
\ No newline at end of file
@@ -125,6 +125,8 @@ public class Matrix {
 	
 	float[][][] data;
 	float[][] inputs, outputs, weights;
+	/** One-hot tails of inputs, if packed by PackedOneHot; inputs then hold only leading columns */
+	byte[][] packed;
 	
 	/*--------------------------------------------------------------*/
 	/*----------------        Static Fields         ----------------*/
@@ -20,6 +20,16 @@ public class MaxPoolingLayer extends Layer {
                           outputSize + " (channels=" + inputChannels + 
                           ", pool=" + poolSize + ")");
     }
+    
+    /** Replica constructor; pooling has no weights, so only dimensions are copied. */
+    private MaxPoolingLayer(MaxPoolingLayer source) {
+        this.name = source.name;
+        this.inputChannels = source.inputChannels;
+        this.inputLength = source.inputLength;
+        this.poolSize = source.poolSize;
+        this.outputLength = source.outputLength;
+        this.outputSize = source.outputSize;
+    }
         
     @Override
     public float[] forward(float[] input) {
@@ -73,16 +83,90 @@ public class MaxPoolingLayer extends Layer {
         return gradientOut;
     }
 
+    @Override
+    public float[] forwardBatch(float[] input, int batch) {
+        lastInput = input;
+        final int inSize = inputChannels * inputLength;
+        batchOutput = ensureCapacity(batchOutput, batch * outputSize);
+        if(batchMaxIndices == null || batchMaxIndices.length < batch * outputSize) {
+            batchMaxIndices = new int[batch * outputSize];
+        }
+        final float[] output = batchOutput;
+        
+        for(int s = 0; s < batch; s++) {
+            for(int c = 0; c < inputChannels; c++) {
+                final int channelOffset = s * inSize + c * inputLength;
+                final int outputOffset = s * outputSize + c * outputLength;
+                
+                for(int i = 0; i < outputLength; i++) {
+                    int maxIdx = channelOffset + i * poolSize;
+                    float maxVal = input[maxIdx];
+                    for(int j = 1; j < poolSize; j++) {
+                        float val = input[channelOffset + i * poolSize + j];
+                        if(val > maxVal) {
+                            maxVal = val;
+                            maxIdx = channelOffset + i * poolSize + j;
+                        }
+                    }
+                    output[outputOffset + i] = maxVal;
+                    batchMaxIndices[outputOffset + i] = maxIdx;
+                }
+            }
+        }
+        
+        lastOutput = output;
+        return output;
+    }
+    
+    @Override
+    public float[] backwardBatch(float[] gradientIn, int batch) {
+        final int inSize = inputChannels * inputLength;
+        batchGradient = ensureCapacity(batchGradient, batch * inSize);
+        java.util.Arrays.fill(batchGradient, 0, batch * inSize, 0);
+        
+        // Route gradients back to max positions; indices are absolute within the batch
+        for(int i = 0, lim = batch * outputSize; i < lim; i++) {
+            batchGradient[batchMaxIndices[i]] = gradientIn[i];
+        }
+        return batchGradient;
+    }
+
+    @Override
+    void infer(float[] input, int inBase, float[] output, int outBase) {
+        for(int c = 0; c < inputChannels; c++) {
+            final int channelOffset = inBase + c * inputLength;
+            final int outputOffset = outBase + c * outputLength;
+            for(int i = 0; i < outputLength; i++) {
+                final int start = channelOffset + i * poolSize;
+                float maxVal = input[start];
+                for(int j = 1; j < poolSize; j++) {
+                    maxVal = Math.max(maxVal, input[start + j]);
+                }
+                output[outputOffset + i] = maxVal;
+            }
+        }
+    }
+    
     @Override
     public void updateWeights(float learningRate) {
         // No weights to update in pooling layer
     }
     
+    @Override
+    public Layer replicate() {
+        return new MaxPoolingLayer(this);
+    }
+    
     @Override
     public int getOutputSize() {
         return outputSize;
     }
     
+    @Override
+    public int getInputSize() {
+        return inputChannels * inputLength;
+    }
+    
     // Need to know number of channels for dense layer
     public int getOutputChannels() { return inputChannels; }
     public int getOutputLength() { return outputLength; }
@@ -93,4 +177,5 @@ public class MaxPoolingLayer extends Layer {
     int outputLength;
     int outputSize;
     int[] maxIndices;  // Store indices of max values for backpropagation
+    int[] batchMaxIndices;  // Absolute indices of max values for backwardBatch
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package ml;
 
+import java.util.Random;
+
+import shared.Vector;
+
 /**
  * Output layer for binary classification.
  * Uses sigmoid activation instead of ReLU.
@@ -10,22 +14,32 @@ public class OutputLayer extends DenseLayer {
         super(name, inputSize, 1);  // Binary classification = 1 output
     }
     
+    public OutputLayer(String name, int inputSize, Random rand) {
+        super(name, inputSize, 1, rand);
+    }
+    
+    /** Replica constructor; shares weights with source, but not gradients. */
+    private OutputLayer(OutputLayer source) {
+        super(source);
+    }
+    
+    @Override
+    public Layer replicate() {
+        return new OutputLayer(this);
+    }
+    
     @Override
     public float[] forward(float[] input) {
         lastInput = input;
         float[] output = new float[1];
         
         // Linear combination
-        float sum = bias[0];
-        for(int j = 0; j < inputSize; j++) {
-            sum += weights[0][j] * input[j];
-        }
+        float sum = bias[0] + Vector.fma(weights, 0, input, 0, inputSize);
         
         // Sigmoid activation: 1 / (1 + e^-x)
         output[0] = 1.0f / (1.0f + (float)Math.exp(-sum));
         
         lastOutput = output;
-        lastZ = new float[]{sum};  // Store pre-activation for backward pass
         return output;
     }
     
@@ -34,35 +48,44 @@ public class OutputLayer extends DenseLayer {
         // gradientIn[0] contains the loss gradient
         // We need to multiply by sigmoid derivative: sigmoid'(z) = sigmoid(z) * (1 - sigmoid(z))
         float sigmoidDerivative = lastOutput[0] * (1.0f - lastOutput[0]);
-        float outputGradient = gradientIn[0] * sigmoidDerivative;
-        
-        // Gradient with respect to inputs
-        float[] gradientOut = new float[inputSize];
-        
-        for(int j = 0; j < inputSize; j++) {
-            gradientOut[j] = outputGradient * weights[0][j];
-        }
-        
-        // Store gradients for weight updates
-        if(weightGradients == null) {
-            weightGradients = new float[outputSize][inputSize];
-            biasGradients = new float[outputSize];
-        }
-        
-        // Accumulate gradients
-        for(int j = 0; j < inputSize; j++) {
-            weightGradients[0][j] += outputGradient * lastInput[j];
-        }
-        biasGradients[0] += outputGradient;
+        return backpropagate(new float[]{gradientIn[0] * sigmoidDerivative});
+    }
+    
+    @Override
+    public float[] forwardBatch(float[] input, int batch) {
+        lastInput = input;
+        batchOutput = ensureCapacity(batchOutput, batch);
+        final float b = bias[0];
         
-        // Clip gradients here too
-        for(int j = 0; j < inputSize; j++) {
-            weightGradients[0][j] = Math.max(-5.0f, Math.min(5.0f, weightGradients[0][j]));
+        for(int s = 0, x = 0; s < batch; s++, x += inputSize) {
+            float sum = b + Vector.fma(weights, 0, input, x, inputSize);
+            batchOutput[s] = 1.0f / (1.0f + (float)Math.exp(-sum));
         }
-        biasGradients[0] = Math.max(-5.0f, Math.min(5.0f, biasGradients[0]));
         
-        return gradientOut;
+        lastOutput = batchOutput;
+        return batchOutput;
     }
     
-    private float[] lastZ;  // Pre-activation values
+    @Override
+    void infer(float[] input, int inBase, float[] output, int outBase) {
+        float sum = bias[0] + Vector.fma(weights, 0, input, inBase, inputSize);
+        output[outBase] = 1.0f / (1.0f + (float)Math.exp(-sum));
+    }
+    
+    /** Sigmoid activation */
+    @Override
+    float activate(float sum) {
+        return 1.0f / (1.0f + (float)Math.exp(-sum));
+    }
+    
+    @Override
+    public float[] backwardBatch(float[] gradientIn, int batch) {
+        // Multiply by sigmoid derivative instead of ReLU
+        batchDelta = ensureCapacity(batchDelta, batch);
+        for(int s = 0; s < batch; s++) {
+            float y = lastOutput[s];
+            batchDelta[s] = gradientIn[s] * y * (1.0f - y);
+        }
+        return backpropagateBatch(batchDelta, batch);
+    }
 }
\ No newline at end of file
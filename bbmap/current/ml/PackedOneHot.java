@@ -0,0 +1,118 @@
+package ml;
+
+import java.util.Arrays;
+
+/**
+ * Compact storage for the one-hot sequence windows at the end of a feature vector.
+ * Each group of four columns holding at most a single 1 is stored as one byte:
+ * the index of the hot column (0-3 for A, C, G, T), or N when all four are zero.
+ * Leading columns that are not one-hot stay as floats in Sample.in.
+ * Packing is lossless, so a packed sample expands to exactly the original row.
+ *
+ * @author Brandon Imstepf
+ * @date 8-8-2025
+ */
+public final class PackedOneHot {
+
+    private PackedOneHot() {}
+
+    /**
+     * Pack the one-hot tail of every row of a matrix, before samples are made.
+     * Rows in m.inputs are replaced by their leading float columns.
+     * @return True if any columns were packed
+     */
+    public static boolean pack(Matrix m) {
+        final int width = m.numInputs();
+        final int start = findStart(m.inputs, width);
+        if(start >= width) {return false;}
+        final int bases = (width - start) / 4;
+        m.packed = new byte[m.inputs.length][];
+        for(int i = 0; i < m.inputs.length; i++) {
+            final float[] row = m.inputs[i];
+            final byte[] codes = new byte[bases];
+            for(int b = 0; b < bases; b++) {
+                codes[b] = encode(row, start + 4 * b);
+                assert(codes[b] >= 0) : "Row " + i + " column " + (start + 4 * b);
+            }
+            m.packed[i] = codes;
+            m.inputs[i] = Arrays.copyOf(row, start);
+        }
+        return true;
+    }
+
+    /**
+     * Find the first column of the packable tail: the smallest start, aligned to
+     * the end of the row, such that every 4-column group in [start, width) is
+     * one-hot or all zero in every row.
+     * @return width if nothing can be packed
+     */
+    static int findStart(float[][] inputs, int width) {
+        int start = width % 4;
+        for(float[] row : inputs) {
+            int rowStart = width;
+            while(rowStart - 4 >= start && encode(row, rowStart - 4) >= 0) {rowStart -= 4;}
+            start = Math.max(start, rowStart);
+            if(start >= width) {break;}
+        }
+        return start;
+    }
+
+    /**
+     * Code for the 4-column group starting at off.
+     * @return 0-3 for the hot column, N if none, or -1 if not one-hot
+     */
+    static byte encode(float[] row, int off) {
+        byte code = N;
+        for(int j = 0; j < 4; j++) {
+            final float f = row[off + j];
+            if(f == 1f && code == N) {
+                code = (byte)j;
+            } else if(f != 0f) {
+                return -1;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Write the one-hot columns for a packed window.
+     * @param dest Receives 4 floats per code, starting at off
+     */
+    public static void expand(byte[] codes, float[] dest, int off) {
+        Arrays.fill(dest, off, off + 4 * codes.length, 0f);
+        for(int b = 0; b < codes.length; b++) {
+            final int c = codes[b];
+            if(c < 4) {dest[off + 4 * b + c] = 1f;}
+        }
+    }
+
+    /**
+     * Write the one-hot columns for the first len raw bases; anything but ACGT is all zero.
+     * @return The index after the last column written
+     */
+    public static int expandBases(byte[] bases, int len, float[] dest, int off) {
+        Arrays.fill(dest, off, off + 4 * len, 0f);
+        for(int b = 0; b < len; b++, off += 4) {
+            final int c = BASE_CODES[bases[b] & 127];
+            if(c < 4) {dest[off + c] = 1f;}
+        }
+        return off;
+    }
+
+    /** Code for a base with no hot column */
+    public static final byte N = 4;
+
+    /**
+     * Base to code; only ACGT are hot, matching the training TSV.
+     * Unlike AminoAcid.baseToNumber, U is not treated as T.
+     */
+    private static final byte[] BASE_CODES = new byte[128];
+    static {
+        Arrays.fill(BASE_CODES, N);
+        BASE_CODES['A'] = BASE_CODES['a'] = 0;
+        BASE_CODES['C'] = BASE_CODES['c'] = 1;
+        BASE_CODES['G'] = BASE_CODES['g'] = 2;
+        BASE_CODES['T'] = BASE_CODES['t'] = 3;
+    }
+
+}
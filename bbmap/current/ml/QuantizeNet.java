@@ -0,0 +1,217 @@
+package ml;
+
+import java.io.PrintStream;
+
+import fileIO.ReadWrite;
+import shared.Parse;
+import shared.Parser;
+import shared.PreParser;
+import shared.Shared;
+import shared.Timer;
+import shared.Tools;
+
+/**
+ * Converts a trained CNN .bbnet to int8.
+ * Input scales are calibrated by running the float network over a sample of
+ * the training TSV; then weights are rounded to int8 per filter or dense row,
+ * and float and int8 scores are compared over the whole TSV.
+ * The quantized network is written in the version 2 .bbnet format,
+ * which callgenes and CNNInference load directly.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+public class QuantizeNet {
+
+    /*--------------------------------------------------------------*/
+    /*----------------        Initialization        ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /**
+     * Code entrance from the command line.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args){
+        Timer t=new Timer();
+        QuantizeNet x=new QuantizeNet(args);
+        x.process(t);
+        Shared.closeStream(x.outstream);
+    }
+
+    /**
+     * Constructor.
+     * @param args Command line arguments
+     */
+    public QuantizeNet(String[] args){
+
+        {//Preparse block for help, config files, and outstream
+            PreParser pp=new PreParser(args, getClass(), false);
+            args=pp.args;
+            outstream=pp.outstream;
+        }
+
+        ReadWrite.USE_PIGZ=ReadWrite.USE_UNPIGZ=true;
+        ReadWrite.setZipThreads(Shared.threads());
+
+        Parser parser=new Parser();
+        for(int i=0; i<args.length; i++){
+            String arg=args[i];
+            String[] split=arg.split("=");
+            String a=split[0].toLowerCase();
+            String b=split.length>1 ? split[1] : null;
+            if(b!=null && b.equalsIgnoreCase("null")){b=null;}
+
+            if(a.equals("in") || a.equals("net")){
+                netIn=b;
+            }else if(a.equals("data") || a.equals("tsv")){
+                dataFile=b;
+            }else if(a.equals("out")){
+                netOut=b;
+            }else if(a.equals("calibrate") || a.equals("samples")){
+                calibrationSamples=Parse.parseIntKMG(b);
+            }else if(a.equals("maxlines")){
+                maxLines=Parse.parseIntKMG(b);
+            }else if(a.equals("cutoff")){
+                cutoff=Float.parseFloat(b);
+            }else if(a.equals("verbose")){
+                verbose=Parse.parseBoolean(b);
+            }else if(parser.parse(arg, a, b)){
+                //do nothing
+            }else{
+                throw new RuntimeException("Unknown parameter "+arg);
+            }
+        }
+        overwrite=parser.overwrite;
+
+        if(netIn==null){throw new RuntimeException("Input network required: in=<net.bbnet>");}
+        if(dataFile==null){throw new RuntimeException("Calibration data required: data=<train.tsv>");}
+        assert(calibrationSamples>0) : calibrationSamples;
+        if(netOut!=null && !Tools.testOutputFiles(overwrite, false, false, netOut)){
+            throw new RuntimeException("\n\noverwrite="+overwrite+"; Can't write to output file "+netOut+"\n");
+        }
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------         Outer Methods        ----------------*/
+    /*--------------------------------------------------------------*/
+
+    void process(Timer t){
+        CNNNetwork net=CNNNetwork.loadNetwork(netIn);
+        if(net==null){throw new RuntimeException("Could not load "+netIn);}
+        if(net.inScales()!=null){throw new RuntimeException(netIn+" is already quantized.");}
+
+        SampleSet ss=DataLoader.load(dataFile, maxLines, false, 0, -1, false, 0)[0];
+        ss.makeSamples();
+        final Sample[] samples=ss.samples;
+        if(samples.length<1){throw new RuntimeException("No samples in "+dataFile);}
+        assert(samples[0].in.length>=net.numInputs()) : samples[0].in.length+" < "+net.numInputs();
+        outstream.println("Loaded "+samples.length+" samples.");
+
+        //Float scores, and input ranges over evenly spaced calibration samples
+        final CNNInference floatEngine=new CNNInference(net, false);
+        final float[] floatScores=new float[samples.length];
+        final float[] maxAbs=new float[floatEngine.numLayers()];
+        final int calSamples=Tools.min(calibrationSamples, samples.length);
+        for(int i=0; i<calSamples; i++){
+            floatEngine.calibrate(samples[(int)(i*(long)samples.length/calSamples)].in, maxAbs);
+        }
+        final long floatBytes=floatEngine.weightBytes();
+        final long floatNanos=scoreAll(floatEngine, samples, floatScores);
+
+        //Quantize; this rounds the shared weights, so the float engine is done
+        net.quantize(CNNInference.inScales(maxAbs));
+        final CNNInference int8Engine=new CNNInference(net);
+        final float[] int8Scores=new float[samples.length];
+        final long int8Nanos=scoreAll(int8Engine, samples, int8Scores);
+
+        if(netOut!=null){
+            net.saveNetwork(netOut);
+            verifySaved(samples, int8Scores);
+        }
+
+        report(samples, floatScores, int8Scores, calSamples, floatBytes, int8Engine.weightBytes(), floatNanos, int8Nanos);
+        t.stop();
+        outstream.println();
+        outstream.println("Time:                         \t"+t);
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------         Inner Methods        ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /** @return Elapsed nanoseconds, after an untimed warmup pass so both engines are compiled */
+    private static long scoreAll(CNNInference engine, Sample[] samples, float[] scores){
+        for(int i=0, lim=Tools.min(samples.length, 1000); i<lim; i++){
+            scores[i]=engine.score(samples[i].in);
+        }
+        final long start=System.nanoTime();
+        for(int i=0; i<samples.length; i++){
+            scores[i]=engine.score(samples[i].in);
+        }
+        return System.nanoTime()-start;
+    }
+
+    /** Reload the written network and confirm it scores as the in-memory one did */
+    private void verifySaved(Sample[] samples, float[] int8Scores){
+        CNNInference reloaded=CNNInference.load(netOut);
+        if(reloaded==null || !reloaded.isQuantized()){
+            throw new RuntimeException("Could not reload "+netOut+" as a quantized network.");
+        }
+        double maxDif=0;
+        for(int i=0, lim=Tools.min(samples.length, 10000); i<lim; i++){
+            maxDif=Math.max(maxDif, Math.abs(reloaded.score(samples[i].in)-int8Scores[i]));
+        }
+        if(verbose || maxDif>1e-4){
+            outstream.println("Max score difference after reloading "+netOut+": "+String.format("%.3g", maxDif));
+        }
+    }
+
+    private void report(Sample[] samples, float[] floatScores, float[] int8Scores, int calSamples,
+            long floatBytes, long int8Bytes, long floatNanos, long int8Nanos){
+        long agree=0, floatCorrect=0, int8Correct=0, positives=0;
+        double sumDif=0, maxDif=0;
+        for(int i=0; i<samples.length; i++){
+            final boolean goal=samples[i].goal[0]>=0.5f;
+            final boolean f=floatScores[i]>=cutoff, q=int8Scores[i]>=cutoff;
+            final double dif=Math.abs(floatScores[i]-int8Scores[i]);
+            if(goal){positives++;}
+            if(f==q){agree++;}
+            if(f==goal){floatCorrect++;}
+            if(q==goal){int8Correct++;}
+            sumDif+=dif;
+            maxDif=Math.max(maxDif, dif);
+        }
+        final double n=samples.length;
+        outstream.println();
+        outstream.println("Samples:                      \t"+samples.length+" ("+positives+" positive)");
+        outstream.println("Calibration Samples:          \t"+calSamples);
+        outstream.println("Cutoff:                       \t"+cutoff);
+        outstream.println("Float32 Accuracy:             \t"+String.format("%.4f%%", 100*floatCorrect/n));
+        outstream.println("Int8 Accuracy:                \t"+String.format("%.4f%%", 100*int8Correct/n));
+        outstream.println("Agreement at Cutoff:          \t"+String.format("%.4f%%", 100*agree/n)+
+                " ("+(samples.length-agree)+" differ)");
+        outstream.println("Mean Abs Score Difference:    \t"+String.format("%.3g", sumDif/n));
+        outstream.println("Max Abs Score Difference:     \t"+String.format("%.3g", maxDif));
+        outstream.println("Float32 Weight Bytes:         \t"+floatBytes);
+        outstream.println("Int8 Weight Bytes:            \t"+int8Bytes);
+        outstream.println("Float32 Scoring:              \t"+String.format("%.2f us/sample", floatNanos/(1000*n)));
+        outstream.println("Int8 Scoring:                 \t"+String.format("%.2f us/sample", int8Nanos/(1000*n)));
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------            Fields            ----------------*/
+    /*--------------------------------------------------------------*/
+
+    private String netIn=null;
+    private String dataFile=null;
+    private String netOut=null;
+    /** Samples used to find each layer's input range */
+    private int calibrationSamples=10000;
+    private int maxLines=Integer.MAX_VALUE;
+    private float cutoff=0.5f;
+    private boolean overwrite=true;
+    private boolean verbose=false;
+
+    private PrintStream outstream=System.err;
+
+}
@@ -0,0 +1,131 @@
+package ml;
+
+import shared.Vector;
+
+/**
+ * Int8 form of a hidden DenseLayer, for frozen inference only.
+ * It is not a Layer, so it cannot be trained, replicated or saved.
+ * Each weight row is stored as signed bytes with one float scale, so the row is
+ * a quarter the size of the float row; inputs are quantized to bytes with a single
+ * scale found by calibration, and each row is an int32 dot product.
+ * Inputs beyond the calibrated range are clamped to it.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+final class QuantizedDenseLayer extends InferenceLayer {
+
+    /**
+     * Quantize a trained hidden layer.
+     * @param source Layer to copy; its weights are read, not kept
+     * @param inScale_ Input value per quantization step, from calibration
+     */
+    QuantizedDenseLayer(DenseLayer source, float inScale_) {
+        assert(!(source instanceof OutputLayer)) : "The output layer stays in float.";
+        assert(inScale_ > 0) : inScale_;
+        name = source.name;
+        inputSize = source.inputSize;
+        outputSize = source.outputSize;
+        inScale = inScale_;
+        bias = source.bias.clone();
+        weights = new byte[outputSize * inputSize];
+        outScale = new float[outputSize];
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            final float scale = rowScale(source.weights, w, inputSize);
+            quantize(source.weights, w, weights, w, inputSize, 1 / scale);
+            outScale[i] = scale * inScale;
+        }
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------          Inference           ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /**
+     * Single-sample inference with caller-owned scratch.
+     * @param qbuf Receives the quantized input; at least getInputSize() long
+     */
+    void infer(float[] input, int inBase, float[] output, int outBase, byte[] qbuf) {
+        quantize(input, inBase, qbuf, 0, inputSize, 1 / inScale);
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            final int sum = Vector.fma(weights, w, qbuf, 0, inputSize);
+            output[outBase + i] = Math.max(0, bias[i] + sum * outScale[i]);
+        }
+    }
+
+    /**
+     * Row-outer batched inference, so each byte row is read once per batch.
+     * @param qbuf Receives the quantized inputs; at least batch*getInputSize() long
+     */
+    void inferBatch(float[] input, float[] output, int batch, byte[] qbuf) {
+        quantize(input, 0, qbuf, 0, batch * inputSize, 1 / inScale);
+        for(int i = 0, w = 0; i < outputSize; i++, w += inputSize) {
+            final float b = bias[i], scale = outScale[i];
+            for(int s = 0, x = 0; s < batch; s++, x += inputSize) {
+                final int sum = Vector.fma(weights, w, qbuf, x, inputSize);
+                output[s * outputSize + i] = Math.max(0, b + sum * scale);
+            }
+        }
+    }
+
+    /** Allocates scratch; CNNInference calls the overload with its own buffer instead */
+    @Override
+    void infer(float[] input, int inBase, float[] output, int outBase) {
+        infer(input, inBase, output, outBase, new byte[inputSize]);
+    }
+
+    @Override
+    void inferBatch(float[] input, float[] output, int batch) {
+        inferBatch(input, output, batch, new byte[batch * inputSize]);
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------        Static Methods        ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /** Symmetric int8 scale for a span of values: the largest magnitude maps to 127 */
+    static float rowScale(float[] values, int from, int len) {
+        float max = 0;
+        for(int i = from, lim = from + len; i < lim; i++) {
+            max = Math.max(max, Math.abs(values[i]));
+        }
+        return max > 0 ? max / 127 : 1;
+    }
+
+    /** Round values times mult to the nearest int8, clamped to +-127 */
+    static void quantize(float[] values, int from, byte[] dest, int destFrom, int len, float mult) {
+        Vector.quantize(values, from, dest, destFrom, mult, len);
+    }
+
+    static byte quantize(float x) {
+        return Vector.quantize(x);
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------          Accessors           ----------------*/
+    /*--------------------------------------------------------------*/
+
+    @Override
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /*--------------------------------------------------------------*/
+
+    /** Name of the source layer */
+    final String name;
+    final int inputSize;
+    final int outputSize;
+    /** Flat [outputSize][inputSize] int8 weights */
+    final byte[] weights;
+    /** Per-row weight scale times inScale; converts an int32 row sum back to float */
+    final float[] outScale;
+    final float[] bias;
+    /** Input value per quantization step */
+    final float inScale;
+}
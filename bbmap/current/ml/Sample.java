@@ -112,6 +112,8 @@ public class Sample implements Comparable<Sample> {
 	float pivot=0;
 	
 	final float[] in;
+	/** Packed one-hot tail of the inputs, or null; see PackedOneHot */
+	byte[] packed;
 	final float[] goal;
 	final float[] result;//Can't be volatile
 	final float weight;//TODO
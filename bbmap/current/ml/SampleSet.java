@@ -25,6 +25,7 @@ public class SampleSet implements Cloneable {
 		
 		for(int i=0; i<samples.length; i++) {
 			Sample s=new Sample(matrix.inputs[i], matrix.outputs[i], matrix.weights[i][0], i);
+			if(matrix.packed!=null){s.packed=matrix.packed[i];}
 			samples[i]=s;
 		}
 		
@@ -0,0 +1,428 @@
+package ml;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import fileIO.ByteFile;
+import fileIO.FileFormat;
+import shared.LineParser1;
+import shared.Tools;
+
+/**
+ * Out-of-core source of training batches, for datasets larger than the heap.
+ * A background thread reads rows from disk and sends them through a shuffle
+ * buffer into fixed-size batches, keeping a few batches prefetched.  Memory is
+ * bounded by the shuffle buffer, the prefetch queue, and the validation set.
+ * <p>
+ * Binary data files (BinaryDataFile) are read in memory-mapped chunks, visited
+ * in a different random order each epoch; TSV files are read sequentially, so
+ * their randomness comes only from the shuffle buffer.
+ * <p>
+ * Validation rows are picked by a hash of the row number, so the same rows are
+ * held out on every pass without storing an index.  Balancing follows
+ * DataLoader's balance=: the minority class is oversampled until it reaches
+ * balance times the majority count, here by emitting each minority row a random
+ * whole or fractional number of extra times.
+ *
+ * @author Brandon Imstepf
+ * @date 8-8-2025
+ */
+public class SampleStream {
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Constructor          ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * @param fname_ A binary data file or TSV
+	 * @param batchSize_ Samples per emitted batch
+	 * @param bufferSize_ Shuffle buffer size in samples
+	 * @param balance_ As DataLoader balance; 0 disables
+	 * @param splitFraction_ Fraction of rows to hold out for validation
+	 * @param maxValidation_ Most validation rows to keep
+	 * @param exclusive_ If false, held-out rows are also trained on
+	 * @param maxRows_ Most rows to read per pass
+	 * @param seed_ Shuffle seed; negative is random
+	 */
+	public SampleStream(String fname_, int batchSize_, int bufferSize_, float balance_,
+			float splitFraction_, int maxValidation_, boolean exclusive_, long maxRows_, long seed_){
+		fname=fname_;
+		batchSize=batchSize_;
+		bufferSize=Tools.max(1, bufferSize_);
+		balance=balance_;
+		splitFraction=splitFraction_;
+		maxValidation=maxValidation_;
+		exclusive=exclusive_;
+		maxRows=maxRows_;
+		seed=(seed_>=0 ? seed_ : new Random().nextLong());
+		binary=BinaryDataFile.isBinary(fname);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Make one pass over the data to count classes and collect validation rows.
+	 * Must be called before start().
+	 */
+	public void scan(){
+		validationRows=new ArrayList<float[]>();
+		lastValidationRow=Long.MAX_VALUE;
+		mode=SCAN;
+		readPass(0);
+		if(validationRows.size()>=maxValidation){
+			//Rows hashed to validation past this point are trained on instead
+			lastValidationRow=lastValidationCandidate;
+		}
+
+		final long target=(long)(Tools.max(positive, negative)*balance);
+		if(balance>0 && (positive<1 || negative<1)){
+			throw new RuntimeException("Can't balance with zero examples: pos="+positive+", neg="+negative);
+		}
+		posMult=(balance>0 && positive<target ? target/(double)positive : 1);
+		negMult=(balance>0 && negative<target ? target/(double)negative : 1);
+		samplesPerEpoch=(long)(positive*posMult+negative*negMult);
+	}
+
+	/** Start the prefetch thread, which produces the given number of epochs. */
+	public void start(final int epochs){
+		assert(validationRows!=null) : "Call scan() first.";
+		queue=new ArrayBlockingQueue<Sample[]>(PREFETCH);
+		thread=new Thread(){
+			@Override
+			public void run(){
+				mode=STREAM;
+				try{
+					for(int epoch=0; epoch<epochs && !stopped; epoch++){
+						randy=new Random(seed+epoch);
+						bufferCount=0;
+						batch=new Sample[batchSize];
+						batchCount=0;
+						readPass(epoch);
+						drainBuffer();
+						if(batchCount>0){put(Arrays.copyOf(batch, batchCount));}
+						put(END);
+					}
+				}catch(Throwable t){
+					//Wake the consumer; nextBatch() rethrows the error
+					error=t;
+					put(END);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Next training batch of the current epoch.
+	 * Rethrows any error that stopped the prefetch thread.
+	 * @return Samples, or null at the end of the epoch
+	 */
+	public Sample[] nextBatch(){
+		checkError();
+		Sample[] b=null;
+		while(b==null){
+			try{
+				b=queue.take();
+			}catch(InterruptedException e){
+				e.printStackTrace();
+			}
+		}
+		if(b==END){checkError();}
+		return b==END ? null : b;
+	}
+
+	/** Throw the prefetch thread's error, if it had one. */
+	private void checkError(){
+		final Throwable t=error;
+		if(t==null){return;}
+		if(t instanceof Error){throw (Error)t;}
+		throw new RuntimeException("Prefetch thread failed reading "+fname, t);
+	}
+
+	/** Stop the prefetch thread early; pending batches are discarded. */
+	public void stop(){
+		stopped=true;
+		if(queue!=null){queue.clear();}
+	}
+
+	/** Held-out rows as an in-memory set, built by scan() */
+	public SampleSet validationSet(){
+		if(validationRows.isEmpty()){return null;}
+		Matrix m=new Matrix();
+		m.numInputs=numInputs;
+		m.numOutputs=numOutputs;
+		m.dims=new int[] {numInputs, numOutputs};
+		m.inputs=new float[validationRows.size()][];
+		m.outputs=new float[validationRows.size()][];
+		m.weights=new float[validationRows.size()][];
+		for(int i=0; i<m.inputs.length; i++){
+			float[] row=validationRows.get(i);
+			m.inputs[i]=Arrays.copyOf(row, numInputs);
+			m.weights[i]=new float[] {weighted ? row[numInputs] : 1};
+			int pos=numInputs+(weighted ? 1 : 0);
+			m.outputs[i]=Arrays.copyOfRange(row, pos, pos+numOutputs);
+		}
+		m.data=new float[][][] {m.inputs, m.outputs, m.weights};
+		m.initializeRange();
+		if(packInputs){PackedOneHot.pack(m);}
+		SampleSet ss=new SampleSet(m);
+		ss.makeSamples();
+		return ss;
+	}
+
+	public int numInputs(){return numInputs;}
+	public int numOutputs(){return numOutputs;}
+	/** Expected training samples per epoch after balancing */
+	public long samplesPerEpoch(){return samplesPerEpoch;}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Reading              ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Read every row once, passing each to accept(). */
+	private void readPass(int epoch){
+		try{
+			if(binary){readBinary(epoch);}
+			else{readText();}
+		}catch(IOException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	/** Read a binary file in mapped chunks; chunk order is shuffled when streaming. */
+	private void readBinary(int epoch) throws IOException {
+		BinaryDataFile bdf=new BinaryDataFile(fname);
+		setDims(bdf.numInputs, bdf.numOutputs, bdf.weighted);
+		final long rows=Tools.min(maxRows, bdf.rows);
+		final int chunks=(int)((rows+CHUNK_ROWS-1)/CHUNK_ROWS);
+		final int[] order=new int[chunks];
+		for(int i=0; i<chunks; i++){order[i]=i;}
+		if(mode==STREAM){
+			Random r=new Random(seed^(epoch*0x9E3779B97F4A7C15L));
+			for(int i=chunks-1; i>0; i--){
+				int j=r.nextInt(i+1);
+				int t=order[i]; order[i]=order[j]; order[j]=t;
+			}
+		}
+
+		final FileChannel channel=bdf.channel();
+		final float[] row=new float[bdf.width];
+		for(int c=0; c<chunks && !stopped; c++){
+			final long first=order[c]*(long)CHUNK_ROWS;
+			final int n=(int)Tools.min(CHUNK_ROWS, rows-first);
+			MappedByteBuffer mbb=channel.map(FileChannel.MapMode.READ_ONLY,
+					BinaryDataFile.HEADER_SIZE+first*bdf.rowBytes, n*bdf.rowBytes);
+			mbb.order(ByteOrder.LITTLE_ENDIAN);
+			if(bdf.bytesPerValue==4){
+				FloatBuffer fb=mbb.asFloatBuffer();
+				for(int i=0; i<n; i++){
+					fb.get(row);
+					accept(row, first+i);
+				}
+			}else{
+				ShortBuffer sb=mbb.asShortBuffer();
+				for(int i=0; i<n; i++){
+					for(int j=0; j<row.length; j++){row[j]=BinaryDataFile.halfToFloat(sb.get());}
+					accept(row, first+i);
+				}
+			}
+		}
+		bdf.close();
+	}
+
+	/** Read a TSV sequentially, with the same header handling as DataLoader. */
+	private void readText(){
+		ByteFile bf=ByteFile.makeByteFile(FileFormat.testInput(fname, FileFormat.TEXT, null, true, false));
+		LineParser1 lp=new LineParser1(DataLoader.delimiter);
+		int ins=0, outs=1;
+		boolean wt=DataLoader.weighted;
+		float[] row=null;
+		long rowNum=0;
+		for(byte[] line=bf.nextLine(); line!=null && rowNum<maxRows && !stopped; line=bf.nextLine()){
+			if(line.length<1){continue;}
+			if(line[0]=='#'){
+				if(Tools.startsWith(line, "#dims")){
+					int[] dims=DataLoader.parseIntArray(line, DataLoader.delimiter, true);
+					ins=dims[0];
+					outs=dims[1];
+					wt=(dims.length>2 && dims[2]==1);
+				}
+				continue;
+			}
+			lp.set(line);
+			if(row==null){
+				if(ins==0){ins=lp.terms()-outs-(wt ? 1 : 0);}
+				setDims(ins, outs, wt);
+				row=new float[ins+outs+(wt ? 1 : 0)];
+			}
+			assert(lp.terms()==row.length) : lp.terms()+" != "+row.length;
+			for(int i=0; i<row.length; i++){row[i]=lp.parseFloat(i);}
+			accept(row, rowNum);
+			rowNum++;
+		}
+		bf.close();
+	}
+
+	private void setDims(int ins, int outs, boolean wt){
+		assert(numInputs==0 || numInputs==ins) : numInputs+" != "+ins;
+		numInputs=ins;
+		numOutputs=outs;
+		weighted=wt;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Processing           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Handle one row; the row array is reused by the caller. */
+	private void accept(float[] row, long rowNum){
+		final boolean holdout=isHoldout(rowNum);
+		final boolean validation=holdout && rowNum<=lastValidationRow;
+		final float goal=row[numInputs+(weighted ? 1 : 0)];
+		final boolean pos=(goal>=0.5f);
+		if(mode==SCAN){
+			boolean kept=false;
+			if(holdout && validationRows.size()<maxValidation){
+				validationRows.add(row.clone());
+				lastValidationCandidate=rowNum;
+				kept=true;
+			}
+			if(!kept || !exclusive){
+				if(pos){positive++;}else{negative++;}
+			}
+			return;
+		}
+		if(validation && exclusive){return;}
+
+		final double mult=(pos ? posMult : negMult);
+		int copies=(int)mult;
+		if(randy.nextDouble()<mult-copies){copies++;}
+		if(copies<1){return;}
+
+		float[] in=Arrays.copyOf(row, numInputs);
+		int p=numInputs;
+		float weight=1;
+		if(weighted){weight=row[p]; p++;}
+		float[] out=Arrays.copyOfRange(row, p, p+numOutputs);
+		Sample s=new Sample(in, out, weight, (int)rowNum);
+		for(int i=0; i<copies; i++){addToBuffer(s);}
+	}
+
+	/** Reservoir-style shuffle: once full, each new sample evicts a random resident. */
+	private void addToBuffer(Sample s){
+		if(buffer==null){buffer=new Sample[bufferSize];}
+		if(bufferCount<bufferSize){
+			buffer[bufferCount]=s;
+			bufferCount++;
+			return;
+		}
+		final int j=randy.nextInt(bufferSize);
+		emit(buffer[j]);
+		buffer[j]=s;
+	}
+
+	/** Emit the rest of the shuffle buffer in random order at the end of a pass. */
+	private void drainBuffer(){
+		for(int i=bufferCount-1; i>=0; i--){
+			int j=randy.nextInt(i+1);
+			emit(buffer[j]);
+			buffer[j]=buffer[i];
+			buffer[i]=null;
+		}
+		bufferCount=0;
+	}
+
+	private void emit(Sample s){
+		batch[batchCount]=s;
+		batchCount++;
+		if(batchCount>=batchSize){
+			put(batch);
+			batch=new Sample[batchSize];
+			batchCount=0;
+		}
+	}
+
+	private void put(Sample[] b){
+		while(!stopped){
+			try{
+				queue.put(b);
+				return;
+			}catch(InterruptedException e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/** Deterministic pseudo-random holdout decision for a row */
+	private boolean isHoldout(long rowNum){
+		if(splitFraction<=0){return false;}
+		long x=(rowNum+1)*0x9E3779B97F4A7C15L+seed;
+		x^=(x>>>31);
+		x*=0xBF58476D1CE4E5B9L;
+		x^=(x>>>29);
+		return (x>>>11)*0x1.0p-53<splitFraction;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Store the validation set's one-hot columns as byte codes */
+	public boolean packInputs=true;
+
+	private final String fname;
+	private final int batchSize;
+	private final int bufferSize;
+	private final float balance;
+	private final float splitFraction;
+	private final int maxValidation;
+	private final boolean exclusive;
+	private final long maxRows;
+	private final long seed;
+	private final boolean binary;
+
+	private int numInputs, numOutputs;
+	private boolean weighted;
+
+	private long positive, negative;
+	private double posMult=1, negMult=1;
+	private long samplesPerEpoch;
+
+	private ArrayList<float[]> validationRows;
+	/** Rows hashed to validation after this were not kept, and are trained on */
+	private long lastValidationRow=Long.MAX_VALUE;
+	private long lastValidationCandidate=-1;
+
+	/** Owned by the prefetch thread while streaming */
+	private Random randy;
+	private Sample[] buffer;
+	private int bufferCount;
+	private Sample[] batch;
+	private int batchCount;
+
+	private int mode=SCAN;
+	private ArrayBlockingQueue<Sample[]> queue;
+	private Thread thread;
+	private volatile boolean stopped=false;
+	/** Set by the prefetch thread if it dies */
+	private volatile Throwable error=null;
+
+	private static final int SCAN=0, STREAM=1;
+	/** Batches buffered ahead of the trainer */
+	private static final int PREFETCH=8;
+	/** Rows per mapped chunk; also the unit of chunk shuffling */
+	private static final int CHUNK_ROWS=4096;
+	private static final Sample[] END=new Sample[0];
+
+}
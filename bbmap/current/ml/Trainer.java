@@ -478,6 +478,10 @@ public class Trainer implements Accumulator<WorkerThread> {
 				launchInThread=Parse.parseBoolean(b);
 			}else if(a.equals("setlock") || a.equals("usesetlock")){
 				useSetLock=Parse.parseBoolean(b);
+			}else if(a.equals("hogwild") || a.equals("lockfree")){
+				hogwild=Parse.parseBoolean(b);
+			}else if(a.equals("hogwildbatch") || a.equals("pushinterval")){
+				hogwildBatch=Parse.parseIntKMG(b);
 			}else if(a.equals("shuffle")){
 				SampleSet.shuffle=Parse.parseBoolean(b);
 			}else if(a.equals("shuffle2") || a.equals("shufflesubset")){
@@ -870,6 +874,7 @@ public class Trainer implements Accumulator<WorkerThread> {
 					+plural("trainer thread", networksPerCycle)+", "+ss+plural("job", jobsPerEpoch)+"/trainer/batch"
 					+", "+pluralES("batch", maxEpochs)+", "+plural("cycle", cycles)
 					+" to train "+plural("network", networksPerCycle*cycles)+" total.");
+			if(hogwild) {outstream.println("Hogwild: workers update shared weights every "+plural("sample", hogwildBatch)+".");}
 		}
 		
 		networkQueue=new ArrayBlockingQueue<CellNet>(networksPerCycle);
@@ -1610,6 +1615,13 @@ public class Trainer implements Accumulator<WorkerThread> {
 	boolean useSetLock=true;//Nuanced but mostly good
 	static boolean setNetInWorkerThread=true;//Higher concurrency per net but more CPU usage
 	static boolean copyNetInWorkerThread=false;//Lower concurrency per net but less CPU usage
+	/** 
+	 * Workers train replicas that share each network's weight arrays, 
+	 * applying their deltas directly every hogwildBatch samples with no locking or merging.
+	 * Nondeterministic, even with a fixed seed.
+	 */
+	boolean hogwild=false;
+	int hogwildBatch=16;
 
 //#simd=f 2385.891  16x    648m4.438s
 //#tft    1439.468  12x    291m4.056s
@@ -22,6 +22,7 @@ public class TrainerThread extends Thread {
 		
 		orderedJobs=parent.orderedJobs;
 		launchInThread=parent.launchInThread;
+		hogwildBatch=(parent.hogwild ? Tools.max(1, parent.hogwildBatch) : 0);
 		jobResultsQueue=new ArrayBlockingQueue<JobResults>(jobsPerEpoch);
 		workerQueue=parent.workerQueue;
 		launchQueue=(launchInThread ? new ArrayBlockingQueue<JobData>(2) : null);
@@ -75,7 +76,7 @@ public class TrainerThread extends Thread {
 		
 		subnets=new CellNet[jobsPerEpoch];
 		for(int i=0; i<subnets.length; i++){
-			subnets[i]=net0.copy(false);
+			subnets[i]=(hogwildBatch>0 ? net0.hogwildReplica() : net0.copy(false));
 		}
 		
 		setLock=parent.useSetLock ? new ReentrantReadWriteLock() : null;
@@ -370,7 +371,7 @@ public class TrainerThread extends Thread {
 		mprof.log();//2: 90239 / 140357
 //		}
 		
-		gatherResults(net0, jobResultsQueue, training, jobs);
+		gatherResults(net0, jobResultsQueue, training && hogwildBatch<1, jobs);
 		lock();
 		mprof.log();//3: 561312/661228
 		//System.err.println("M done waiting for threads.");
@@ -385,7 +386,12 @@ public class TrainerThread extends Thread {
 			//		errorRate=weightedErrorRate;
 			mprof.log();//4: 154/143
 			
-			net0.applyChanges(samplesThisEpoch, (float)alpha);
+			if(hogwildBatch>0) {//Workers already applied their deltas to the shared weights
+				net0.epochsTrained++;
+				net0.samplesTrained+=samplesThisEpoch;
+			}else {
+				net0.applyChanges(samplesThisEpoch, (float)alpha);
+			}
 			mprof.log();//5: 2356/2134
 			anneal();
 			mprof.log();//6: 2635/2623
@@ -530,7 +536,7 @@ public class TrainerThread extends Thread {
 
 		int sent=0;
 		int jobs=0;
-		final CellNet immutableNet=Trainer.copyNetInWorkerThread ||  Trainer.setNetInWorkerThread ? net0.copy(false) : null;
+		final CellNet immutableNet=hogwildBatch<1 && (Trainer.copyNetInWorkerThread ||  Trainer.setNetInWorkerThread) ? net0.copy(false) : null;
 		for(int jid=0; jid<jobsPerEpoch; jid++){
 			ArrayList<Sample> list=new ArrayList<Sample>(listLen);
 			int idx=jid;
@@ -549,7 +555,11 @@ public class TrainerThread extends Thread {
 //					backprop, weightMult, sort, true, list, null, jid);
 			
 			final JobData job;
-			if(Trainer.copyNetInWorkerThread){
+			if(hogwildBatch>0){
+				job=new JobData(null, jobResultsQueue, epoch, toProcess, alpha, 
+						backprop, weightMult, sort, false, list, null, setLock, jid, jobsPerEpoch);
+				setHogwild(job, numSamples);
+			}else if(Trainer.copyNetInWorkerThread){
 				job=new JobData(immutableNet, jobResultsQueue, epoch, toProcess, alpha, 
 						backprop, weightMult, sort, true, list, null, setLock, jid, jobsPerEpoch);
 			}else{
@@ -595,13 +605,17 @@ public class TrainerThread extends Thread {
 		
 		//This does not seem to change anything...
 //		final CellNet immutableNet=Trainer.copyNetInWorkerThread ||  Trainer.setNetInWorkerThread ? net0.copy(false) : null;
-		final CellNet immutableNet=Trainer.copyNetInWorkerThread ||  Trainer.setNetInWorkerThread ? net00.setFrom(net0, false) : null;
+		final CellNet immutableNet=hogwildBatch<1 && (Trainer.copyNetInWorkerThread ||  Trainer.setNetInWorkerThread) ? net00.setFrom(net0, false) : null;
 		unlock();
 		for(int jid=0; jid<jobsPerEpoch; jid++){
 			
 			final int toProcess=(numSamples-jid+jobsPerEpoch-1)/jobsPerEpoch;//I think this is right
 			final JobData job;
-			if(Trainer.copyNetInWorkerThread){
+			if(hogwildBatch>0){
+				job=new JobData(null, jobResultsQueue, epoch, numSamples, alpha, 
+						backprop, weightMult, false, false, null, set, setLock, jid, jobsPerEpoch);
+				setHogwild(job, numSamples);
+			}else if(Trainer.copyNetInWorkerThread){
 				job=new JobData(immutableNet, jobResultsQueue, epoch, numSamples, alpha, 
 						backprop, weightMult, false, true, null, set, setLock, jid, jobsPerEpoch);
 			}else{
@@ -630,6 +644,17 @@ public class TrainerThread extends Thread {
 		return jobs;
 	}
 	
+	/** 
+	 * Point a job at its Hogwild replica, which shares net0's weights.
+	 * Workers then apply their deltas as they go, scaled by the whole epoch's sample count,
+	 * so the master has nothing to accumulate.
+	 */
+	private void setHogwild(JobData job, int epochSamples) {
+		job.mutableNet=subnets[job.jid];
+		job.hogwildBatch=hogwildBatch;
+		job.hogwildInvSamples=1f/Tools.max(1, epochSamples);
+	}
+	
 	private void gatherResults(final CellNet net0, final ArrayBlockingQueue<JobResults> mq, 
 			final boolean accumulate, final int numJobs) {
 		if(orderedJobs) {
@@ -887,6 +912,8 @@ public class TrainerThread extends Thread {
 	private final CellNet net0;//Basis network
 	private final CellNet net00;//A copy
 	private final CellNet[] subnets; //Copies for worker threads (if they don't make copies themselves)
+	/** Samples between lock-free weight updates per worker; 0 disables Hogwild */
+	private final int hogwildBatch;
 
 	/*--------------------------------------------------------------*/
 	
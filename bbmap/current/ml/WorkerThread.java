@@ -105,7 +105,13 @@ class WorkerThread extends Thread implements Comparable<WorkerThread> {
 		}
 		
 		
-		if(job.doCopy) {//TODO: If job size is zero, a null net can be returned
+		if(job.hogwildBatch>0) {//Replica sharing the trainer's weights; nothing to copy
+			net=job.mutableNet;
+			synchronized(net) {
+				net.clear();
+				net.pullShared();
+			}
+		}else if(job.doCopy) {//TODO: If job size is zero, a null net can be returned
 //			assert(Trainer.copyNetInWorkerThread);//Not currently true for scanner threads
 			assert(job.mutableNet==null);
 			net=job.immutableNet.copy(false);//Works, but the reason is uncertain
@@ -152,6 +158,8 @@ class WorkerThread extends Thread implements Comparable<WorkerThread> {
 //			}
 //		}
 
+		final int batch=(backprop ? job.hogwildBatch : 0);
+		int unpushed=0;
 		if(job.set!=null) {
 			for(int i=job.jid; i<maxSamples; i+=job.jobsPerEpoch) {
 				Sample s=job.set[i];
@@ -159,6 +167,7 @@ class WorkerThread extends Thread implements Comparable<WorkerThread> {
 					processSample(s, backprop, weightMult);
 					samplesProcessed++;
 				}
+				if(batch>0 && ++unpushed>=batch) {pushShared(); unpushed=0;}
 			}
 		}else {
 			for(int i=0; i<maxSamples; i++) {
@@ -167,11 +176,18 @@ class WorkerThread extends Thread implements Comparable<WorkerThread> {
 					processSample(s, backprop, weightMult);
 					samplesProcessed++;
 				}
+				if(batch>0 && ++unpushed>=batch) {pushShared(); unpushed=0;}
 			}
 		}
+		if(unpushed>0) {pushShared();}
 		return samplesProcessed;
 	}
 
+	/** Apply this job's pending deltas straight to the shared weights */
+	private void pushShared() {
+		net.pushShared(job.hogwildInvSamples, (float)job.alpha);
+	}
+
 	void sendResults(int samplesProcessed, JobData job) {
 		assert(maxSamples==samplesProcessed || samples==null) : maxSamples+", "+samplesProcessed+", "+(samples==null ? job.set.length : samples.size());
 		JobResults jr=new JobResults(maxSamples>0 ? net : null, epoch, samplesProcessed, tid, job.jid,
@@ -3,7 +3,6 @@ package prok;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import fileIO.ByteFile;
 import fileIO.ByteStreamWriter;
@@ -22,6 +21,8 @@ import structures.IntList;
  * This class is designed to analyze paired prokaryotic fna and gff files
  * to calculate the patterns in coding and noncoding frames, start and stop sites.
  * It outputs a pgm file.
+ * Genomes are processed in parallel by PGMTools.buildModel; with model=,
+ * they are added to an existing model instead of starting from an empty one.
  * @author Brian Bushnell
  * @date Sep 27, 2018
  *
@@ -74,9 +75,9 @@ public class AnalyzeGenes {
 			out=parser.out1;
 		}
 		
-		if(alignRibo){
-			//Load sequences
-			ProkObject.loadConsensusSequenceFromFile(false, false);
+		if(!modelList.isEmpty()){
+			//Load the base model first, since it sets the k-mer lengths for new counts
+			base=PGMTools.loadAndMerge(Tools.fixExtension(modelList));
 		}
 		
 		fixExtensions(); //Add or remove .gz or .bz2 as needed
@@ -84,7 +85,7 @@ public class AnalyzeGenes {
 		checkStatics(); //Adjust file-related static fields as needed for this program
 		
 		//Determine how many threads may be used
-		threads=Tools.min(fnaList.size(), Shared.threads(), Tools.max(32, Shared.CALC_LOGICAL_PROCESSORS()/2));
+		threads=PGMTools.defaultBuildThreads(fnaList.size());
 		
 		ffout=FileFormat.testOutput(out, FileFormat.PGM, null, true, overwrite, append, false);
 	}
@@ -114,6 +115,9 @@ public class AnalyzeGenes {
 			}else if(a.equals("gff") || a.equals("ingff") || a.equals("gffin")){
 				assert(b!=null);
 				Tools.addFiles(b, gffList);
+			}else if(a.equals("model") || a.equals("pgm") || a.equals("base")){
+				assert(b!=null);
+				Tools.addFiles(b, modelList);
 			}else if(a.equals("verbose")){
 				verbose=Parse.parseBoolean(b);
 				ReadWrite.verbose=verbose;
@@ -136,20 +140,7 @@ public class AnalyzeGenes {
 			}
 		}
 
-		if(gffList.isEmpty()){
-			for(String s : fnaList){
-				String prefix=ReadWrite.stripExtension(s);
-				String gff=prefix+".gff";
-				File f=new File(gff);
-				if(!f.exists()){
-					String gz=gff+".gz";
-					f=new File(gz);
-					assert(f.exists() && f.canRead()) : "Can't read file "+gff; //Possible bug: assertion may fail in production builds
-					gff=gz;
-				}
-				gffList.add(gff);
-			}
-		}
+		if(gffList.isEmpty()){gffList=PGMTools.impliedGffs(fnaList);}
 		assert(gffList.size()==fnaList.size()) : "Number of fna and gff files do not match: "+fnaList.size()+", "+gffList.size();
 		return parser;
 	}
@@ -173,6 +164,7 @@ public class AnalyzeGenes {
 		ArrayList<String> foo=new ArrayList<String>();
 		foo.addAll(fnaList);
 		foo.addAll(gffList);
+		foo.addAll(modelList);
 		if(!Tools.testInputFiles(false, true, foo.toArray(new String[0]))){
 			throw new RuntimeException("\nCan't read some input files.\n");  
 		}
@@ -198,18 +190,14 @@ public class AnalyzeGenes {
 	
 	/**
 	 * Main processing method that executes the gene analysis pipeline.
-	 * Creates gene models either single-threaded or multi-threaded based on configuration.
+	 * Builds the gene model with up to threads files in parallel, on top of the base model if present.
 	 * Outputs results to PGM file format and reports processing statistics.
 	 * @param t Timer for tracking execution time
 	 */
 	void process(Timer t){
 		
-		final GeneModel pgm;
-		if(Shared.threads()<2 || fnaList.size()<2){
-			pgm=makeModelST();
-		}else{
-			pgm=spawnThreads();
-		}
+		final GeneModel pgm=PGMTools.buildModel(base, fnaList, gffList, threads);
+		errorState|=GeneModel.errorState;
 		
 		ByteStreamWriter bsw=ByteStreamWriter.makeBSW(ffout);
 		
@@ -299,129 +287,6 @@ public class AnalyzeGenes {
 		return sb.toString();
 	}
 	
-	/*--------------------------------------------------------------*/
-	/*----------------         Inner Methods        ----------------*/
-	/*--------------------------------------------------------------*/
-	
-	//TODO: Process each file in a thread.
-	/**
-	 * Creates gene model using single-threaded processing.
-	 * Processes each FNA/GFF file pair sequentially.
-	 * @return Combined GeneModel from all processed files
-	 */
-	private GeneModel makeModelST(){
-		GeneModel pgmSum=new GeneModel(true);
-		
-		for(int i=0; i<fnaList.size(); i++){
-			String fna=fnaList.get(i);
-			String gff=gffList.get(i);
-			pgmSum.process(fna, gff);
-		}
-		return pgmSum;
-	}
-	
-	/*--------------------------------------------------------------*/
-	/*----------------       Thread Management      ----------------*/
-	/*--------------------------------------------------------------*/
-	
-	/** Spawn process threads */
-	private GeneModel spawnThreads(){
-		
-		//Do anything necessary prior to processing
-		
-		final AtomicInteger aint=new AtomicInteger(0);
-		
-		//Fill a list with FileThreads
-		ArrayList<FileThread> alpt=new ArrayList<FileThread>(threads);
-		for(int i=0; i<threads; i++){
-			alpt.add(new FileThread(aint));
-		}
-		
-		//Start the threads
-		for(FileThread pt : alpt){
-			pt.start();
-		}
-		
-		//Wait for threads to finish
-		GeneModel pgm=waitForThreads(alpt);
-		
-		//Do anything necessary after processing
-		return pgm;
-	}
-	
-	/**
-	 * Waits for all processing threads to complete and aggregates results.
-	 * Collects gene models from each thread and combines statistics.
-	 * @param alpt List of FileThread instances to wait for
-	 * @return Combined GeneModel from all threads
-	 */
-	private GeneModel waitForThreads(ArrayList<FileThread> alpt){
-		
-		GeneModel pgm=new GeneModel(false);
-		
-		//Wait for completion of all threads
-		boolean success=true;
-		for(FileThread pt : alpt){
-			
-			//Wait until this thread has terminated
-			while(pt.getState()!=Thread.State.TERMINATED){
-				try {
-					//Attempt a join operation
-					pt.join();
-				} catch (InterruptedException e) {
-					//Potentially handle this, if it is expected to occur
-					e.printStackTrace();
-				}
-			}
-			
-			//Accumulate per-thread statistics
-			pgm.add(pt.pgm);
-			
-			success&=pt.success;
-			errorState|=pt.errorStateT;
-		}
-		
-		//Track whether any threads failed
-		if(!success){errorState=true;}
-		return pgm;
-	}
-	
-	/*--------------------------------------------------------------*/
-	/*----------------         Inner Classes        ----------------*/
-	/*--------------------------------------------------------------*/
-	
-	/** Worker thread for processing FNA/GFF file pairs in parallel.
-	 * Each thread claims files from shared counter and processes them independently. */
-	private class FileThread extends Thread {
-		
-		/** Constructs a FileThread with shared file counter.
-		 * @param fnum_ Atomic counter for claiming files to process */
-		FileThread(AtomicInteger fnum_){
-			fnum=fnum_;
-			pgm=new GeneModel(true);
-		}
-		
-		@Override
-		public void run(){
-			for(int i=fnum.getAndIncrement(); i<fnaList.size(); i=fnum.getAndIncrement()){
-				String fna=fnaList.get(i);
-				String gff=gffList.get(i);
-				errorStateT=pgm.process(fna, gff)|errorState;
-//				System.err.println("Processed "+fna+" in "+this.toString());
-			}
-			success=true;
-		}
-		
-		/** Atomic counter for claiming files in multi-threaded processing */
-		private final AtomicInteger fnum;
-		/** Thread-local gene model for accumulating statistics */
-		private final GeneModel pgm;
-		/** Thread-local error state tracking */
-		boolean errorStateT=false;
-		/** Thread-local success flag indicating completion status */
-		boolean success=false;
-	}
-	
 	/*--------------------------------------------------------------*/
 	/*----------------            Fields            ----------------*/
 	/*--------------------------------------------------------------*/
@@ -430,6 +295,10 @@ public class AnalyzeGenes {
 	private ArrayList<String> fnaList=new ArrayList<String>();
 	/** List of input GFF annotation files paired with FASTA files */
 	private ArrayList<String> gffList=new ArrayList<String>();
+	/** Existing models to add the new genomes to */
+	private ArrayList<String> modelList=new ArrayList<String>();
+	/** Merged existing models, or null to build from scratch */
+	private GeneModel base=null;
 	/** List of taxonomic IDs (unused in current implementation) */
 	private IntList taxList=new IntList();
 	/** Output file path for PGM results */
@@ -37,7 +37,6 @@ import ml.CellNetParser;
 
 // HELPER HOOK: Import the helper class
 import prok.CallGenesHelper;
-import prok.CallGenesHelper.ContigStats;
 import prok.CallGenesHelper.GeneQuad;
 
 /**
@@ -101,7 +100,7 @@ public class CallGenes extends ProkObject {
         assert(outGff != null) : "outGff null after parsing. Args: " + Arrays.toString(args);
               
               // HELPER HOOK: Initialize the helper. This creates the log directory.
-              helper.initialize(fnaList, outstream, outGff, compareToGff);
+              helper.initialize(outstream, outGff, compareToGff);
       
         fixExtensions();
       
@@ -227,20 +226,6 @@ public class CallGenes extends ProkObject {
 				extendedStats=Parse.parseBoolean(b);
 			}
 			
-			else if(a.equalsIgnoreCase("setbias16s")) {
-				GeneCaller.biases[r16S]=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("setbias18s")) {
-				GeneCaller.biases[r18S]=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("setbias23s")) {
-				GeneCaller.biases[r23S]=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("setbias5s")) {
-				GeneCaller.biases[r5S]=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("setbiastRNA")) {
-				GeneCaller.biases[tRNA]=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("setbiasCDS")) {
-				GeneCaller.biases[CDS]=Float.parseFloat(b);
-			}
-			
 			else if(a.equals("ordered")){
 				ordered=Parse.parseBoolean(b);
 			}
@@ -253,70 +238,8 @@ public class CallGenes extends ProkObject {
 				mode=RECODE;
 			}
 			
-			else if(a.equalsIgnoreCase("minlen") || a.equals("minlength")){
-				minLen=Integer.parseInt(b);
-			}else if(a.equals("maxoverlapss") || a.equals("overlapss") || a.equals("overlapsamestrand") || a.equals("moss") || a.equalsIgnoreCase("maxOverlapSameStrand")){
-				maxOverlapSameStrand=Integer.parseInt(b);
-			}else if(a.equals("maxoverlapos") || a.equals("overlapos") || a.equals("overlapoppositestrand") || a.equals("moos") || a.equalsIgnoreCase("maxOverlapOppositeStrand")){
-				maxOverlapOppositeStrand=Integer.parseInt(b);
-			}else if(a.equalsIgnoreCase("minStartScore")){
-				minStartScore=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("minStopScore")){
-				minStopScore=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("minInnerScore") || a.equalsIgnoreCase("minKmerScore")){
-				minKmerScore=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("minOrfScore") || a.equalsIgnoreCase("minScore")){
-				minOrfScore=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("minAvgScore")){
-				minAvgScore=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("breakLimit")){
-				GeneCaller.breakLimit=Integer.parseInt(b);
-			}else if(a.equalsIgnoreCase("e1")){
-				Orf.e1=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("e2")){
-				Orf.e2=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("e3")){
-				Orf.e3=Float.parseFloat(b);
-			}
-			else if(a.equalsIgnoreCase("f1")){
-				Orf.f1=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("f2")){
-				Orf.f2=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("f3")){
-				Orf.f3=Float.parseFloat(b);
-			}
-			else if(a.equalsIgnoreCase("p0")){
-				GeneCaller.p0=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p1")){
-				GeneCaller.p1=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p2")){
-				GeneCaller.p2=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p3")){
-				GeneCaller.p3=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p4")){
-				GeneCaller.p4=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p5")){
-				GeneCaller.p5=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("p6")){
-				GeneCaller.p6=Float.parseFloat(b);
-			}
-			else if(a.equalsIgnoreCase("q1")){
-				GeneCaller.q1=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("q2")){
-				GeneCaller.q2=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("q3")){
-				GeneCaller.q3=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("q4")){
-				GeneCaller.q4=Float.parseFloat(b);
-			}else if(a.equalsIgnoreCase("q5")){
-				GeneCaller.q5=Float.parseFloat(b);
-			}
-			else if(a.equalsIgnoreCase("lookback")){
-				GeneCaller.lookbackPlus=GeneCaller.lookbackMinus=Integer.parseInt(b);
-			}else if(a.equalsIgnoreCase("lookbackplus")){
-				GeneCaller.lookbackPlus=Integer.parseInt(b);
-			}else if(a.equalsIgnoreCase("lookbackminus")){
-				GeneCaller.lookbackMinus=Integer.parseInt(b);
+			else if(parseCallerStatic(arg, a, b)){
+				//do nothing
 			}
 			
 			// Neural Network Parameters are handled by CallGenesHelper
@@ -349,6 +272,102 @@ public class CallGenes extends ProkObject {
 		return parser;
 	}
 	
+	/**
+	 * Parses gene-calling parameters that are shared by every CallGenes instance:
+	 * score thresholds, overlaps, RNA biases, and GeneCaller tuning.
+	 * Also used by CallGenesServer.
+	 * @return true if the parameter was recognized
+	 */
+	static boolean parseCallerStatic(String arg, String a, String b){
+		if(a.equalsIgnoreCase("setbias16s")) {
+			GeneCaller.biases[r16S]=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("setbias18s")) {
+			GeneCaller.biases[r18S]=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("setbias23s")) {
+			GeneCaller.biases[r23S]=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("setbias5s")) {
+			GeneCaller.biases[r5S]=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("setbiastRNA")) {
+			GeneCaller.biases[tRNA]=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("setbiasCDS")) {
+			GeneCaller.biases[CDS]=Float.parseFloat(b);
+		}
+		else if(a.equalsIgnoreCase("minlen") || a.equals("minlength")){
+			minLen=Integer.parseInt(b);
+		}else if(a.equals("maxoverlapss") || a.equals("overlapss") || a.equals("overlapsamestrand") || a.equals("moss") || a.equalsIgnoreCase("maxOverlapSameStrand")){
+			maxOverlapSameStrand=Integer.parseInt(b);
+		}else if(a.equals("maxoverlapos") || a.equals("overlapos") || a.equals("overlapoppositestrand") || a.equals("moos") || a.equalsIgnoreCase("maxOverlapOppositeStrand")){
+			maxOverlapOppositeStrand=Integer.parseInt(b);
+		}else if(a.equalsIgnoreCase("minStartScore")){
+			minStartScore=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("minStopScore")){
+			minStopScore=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("minInnerScore") || a.equalsIgnoreCase("minKmerScore")){
+			minKmerScore=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("minOrfScore") || a.equalsIgnoreCase("minScore")){
+			minOrfScore=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("minAvgScore")){
+			minAvgScore=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("breakLimit")){
+			GeneCaller.breakLimit=Integer.parseInt(b);
+		}else if(a.equalsIgnoreCase("windowThreads") || a.equals("wt")){
+			GeneCaller.windowThreads=Integer.parseInt(b);
+		}else if(a.equalsIgnoreCase("windowLength") || a.equalsIgnoreCase("windowLen")){
+			GeneCaller.windowLength=Parse.parseIntKMG(b);
+		}else if(a.equalsIgnoreCase("minWindowedLength") || a.equalsIgnoreCase("minWindowedLen")){
+			GeneCaller.minWindowedLength=Parse.parseIntKMG(b);
+		}else if(a.equalsIgnoreCase("e1")){
+			Orf.e1=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("e2")){
+			Orf.e2=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("e3")){
+			Orf.e3=Float.parseFloat(b);
+		}
+		else if(a.equalsIgnoreCase("f1")){
+			Orf.f1=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("f2")){
+			Orf.f2=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("f3")){
+			Orf.f3=Float.parseFloat(b);
+		}
+		else if(a.equalsIgnoreCase("p0")){
+			GeneCaller.p0=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p1")){
+			GeneCaller.p1=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p2")){
+			GeneCaller.p2=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p3")){
+			GeneCaller.p3=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p4")){
+			GeneCaller.p4=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p5")){
+			GeneCaller.p5=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("p6")){
+			GeneCaller.p6=Float.parseFloat(b);
+		}
+		else if(a.equalsIgnoreCase("q1")){
+			GeneCaller.q1=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("q2")){
+			GeneCaller.q2=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("q3")){
+			GeneCaller.q3=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("q4")){
+			GeneCaller.q4=Float.parseFloat(b);
+		}else if(a.equalsIgnoreCase("q5")){
+			GeneCaller.q5=Float.parseFloat(b);
+		}
+		else if(a.equalsIgnoreCase("lookback")){
+			GeneCaller.lookbackPlus=GeneCaller.lookbackMinus=Integer.parseInt(b);
+		}else if(a.equalsIgnoreCase("lookbackplus")){
+			GeneCaller.lookbackPlus=Integer.parseInt(b);
+		}else if(a.equalsIgnoreCase("lookbackminus")){
+			GeneCaller.lookbackMinus=Integer.parseInt(b);
+		}else{
+			return false;
+		}
+		return true;
+	}
+	
 	/** Add or remove .gz or .bz2 as needed */
 	private void fixExtensions(){
 		fnaList=Tools.fixExtension(fnaList);
@@ -622,6 +641,7 @@ private void spawnThreads(final ConcurrentReadInputStream cris, final ByteStream
 	           ConcurrentReadOutputStream rosAmino, ConcurrentReadOutputStream ros16S, ConcurrentReadOutputStream ros18S, GeneModel pgm){
 	       
 	       final int threads=Shared.threads();
+	       GeneCaller.setSpareThreads(0);
 
 		// Brandon 9-15 Assertion
 		assert(bswGff != null) : "ByteStreamWriter null. ffoutGff=" + ffoutGff;
@@ -822,6 +842,8 @@ private void spawnThreads(final ConcurrentReadInputStream cris, final ByteStream
 		public void run() {
 			helper.initializeThreadObjects();
 			processInner();
+			// Out of contigs; lend this core to threads still working on long ones
+			GeneCaller.addSpareThreads(1);
 			success = true;
 		}
 
@@ -3,39 +3,36 @@ package prok;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
-import java.util.Collections;
 import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import dna.AminoAcid;
+import ml.CNNInference;
+import ml.CNNNetwork;
 import ml.CellNet;
 import ml.CellNetParser;
+import ml.PackedOneHot;
 import stream.ConcurrentReadOutputStream;
 import stream.Read;
 import structures.ByteBuilder;
-import fileIO.ByteFile;
 import fileIO.ByteStreamWriter;
 import tracker.EntropyTracker;
 import java.io.File;
 import java.util.List;
 
 import shared.Shared;
-import shared.LineParser1;
-import gff.GffLine;
+import shared.Tools;
 
 public class CallGenesHelper {
 
     // RECORDS
     public record ContigStats(double gcRatio, double entropy) {}
     public record GeneQuad(String contig, int start, int stop, byte strand) {}
-    private record TrueGeneData(HashSet<GeneQuad> set, int totalRows, int geneRows) {}
     private record ScoreData(String orfId, float originalScore, float modifiedScore) {}
     public record GffStats(int truePositives, int falsePositives, int falseNegatives, int refCount) {}
 
@@ -46,7 +43,11 @@ public class CallGenesHelper {
     private boolean nofilter = false;
     private boolean seqMode = false;
     private CellNet net0;
-    private Map<String, ContigStats> contigMetrics;
+    /** GC and entropy of the contig being processed, computed from its bases */
+    private ContigStats contigStats;
+    /** Shared reader of truegenes=, handing each thread the truth for its contig */
+    private TruthGffStream truthStream;
+    /** Truth CDS of the contig being processed, or null without truegenes= */
     private HashSet<GeneQuad> trueGeneSet;
     private int totalGffRows = 0;
     private int totalGffGeneRows = 0;
@@ -71,12 +72,17 @@ public class CallGenesHelper {
     
     // Neural Network Fields
     private static CellNet primaryNet = null;
+    private static CNNInference primaryCnn = null;
     private static float nnCutoff = 0.5f;
     private static float nnStrength = 0.5f;
     private static boolean nnDebug = false;
     private static float nnMinScore = 0.0f;
     private static boolean nnAllOrfs = false;
     private static float prefilterCutoff = 0.1f;
+    /** ORFs per batched CNN call; 0 scores each ORF as it is visited */
+    private static int nnBatchSize = 64;
+    /** Run a quantized CNN's hidden dense layers in int8; false runs its rounded weights in float */
+    private static boolean nnInt8 = true;
     private static final AtomicLong VECTOR_DEBUG_SEED = new AtomicLong(1L);
     private static final int BASE_FEATURE_COUNT = 8;
     private enum NnMultiplierMode {
@@ -137,7 +143,11 @@ public class CallGenesHelper {
     
     // Thread-local neural network fields
     private CellNet threadNeuralNet = null;
+    private CNNInference threadCnn = null;
     private float[] threadFeatureVector = null;
+    private float[] threadFeatureMatrix = null;
+    private float[] threadBatchScores = null;
+    private final ArrayList<Orf> threadBatchOrfs = new ArrayList<>();
     private boolean vectorDebugEnabled = false;
     private double vectorDebugProbability = 0.0;
     private Random vectorDebugRandom = null;
@@ -145,7 +155,7 @@ public class CallGenesHelper {
     // Logging Fields
     private boolean enableLogging = true;
     private String logDirectoryPath = null;
-    private final ArrayList<Float> finalScores = new ArrayList<>();
+    private final ScoreSummary finalScores = new ScoreSummary();
     private int truePositives = 0;
     private int falsePositives = 0;
     private int threadTruePositives = 0;
@@ -153,8 +163,6 @@ public class CallGenesHelper {
     private ByteStreamWriter scoreCsvStream = null;
     private static final AtomicBoolean SCORE_HEADER_WRITTEN = new AtomicBoolean(false);
     private static final AtomicLong SCORE_ENTRY_SEQUENCE = new AtomicLong(0L);
-    private Set<GeneQuad> calledCdsQuads = new HashSet<>();
-    private Set<GeneQuad> threadCalledCdsQuads = new HashSet<>();
 
     // PUBLIC METHODS
 
@@ -228,6 +236,18 @@ public class CallGenesHelper {
             nnAllOrfs = shared.Parse.parseBoolean(b);
             return true;
         }
+        if (a.equals("nnbatch")) {
+            if (b == null || Tools.startsWithLetter(b)) {
+                nnBatchSize = shared.Parse.parseBoolean(b) ? 64 : 0;
+            } else {
+                nnBatchSize = Math.max(0, shared.Parse.parseIntKMG(b));
+            }
+            return true;
+        }
+        if (a.equals("nnint8") || a.equals("int8")) {
+            nnInt8 = shared.Parse.parseBoolean(b);
+            return true;
+        }
         if (a.equals("prefilter_cutoff")) {
             prefilterCutoff = Float.parseFloat(b);
             return true;
@@ -263,20 +283,19 @@ public class CallGenesHelper {
         return false;
     }
 
-    public void initialize(ArrayList<String> fnaList, PrintStream outstream, String outGff, String compareToGff) {
+    /**
+     * Load the network and open truegenes=.  Contig statistics are computed per contig
+     * and the truth gff is streamed, so memory does not grow with the assembly.
+     */
+    public void initialize(PrintStream outstream, String outGff, String compareToGff) {
         this.compareToGff = compareToGff;
         if (trueGenesFile != null) {
-            try {
-                TrueGeneData data = loadTrueGeneSet(trueGenesFile);
-                this.trueGeneSet = data.set();
-                this.totalGffRows = data.totalRows();
-                this.totalGffGeneRows = data.geneRows();
-                oracle.setTruthLookup(this::isTrueGene);
-            } catch (IOException e) { outstream.println("ERROR: Failed to load true genes file: " + trueGenesFile); e.printStackTrace(); }
+            truthStream = new TruthGffStream(trueGenesFile, TruthGffStream.window(Shared.threads()));
+            oracle.setTruthLookup(this::isTrueGene);
         } else {
             oracle.setTruthLookup(null);
         }
-        if (netFile != null) {
+        if (netFile != null && !CNNNetwork.isCNNFile(netFile)) {
             net0 = CellNetParser.load(netFile);
             assert(net0 != null) : "Net file is null or incorrectly loaded: " + netFile;
         }
@@ -286,14 +305,6 @@ public class CallGenesHelper {
             loadNeuralNetwork(outstream);
         }
         
-        if (fnaList != null && !fnaList.isEmpty()) {
-            try {
-                String fastaFile = fnaList.get(0);
-                Map<String, String> contigSequences = readFastaFile(fastaFile);
-                this.contigMetrics = calculateContigMetrics(contigSequences);
-            } catch (IOException e) { outstream.println("ERROR: Failed to read FASTA for contig metrics."); e.printStackTrace(); this.contigMetrics = new HashMap<>(); }
-        }
-
         if (enableLogging && outGff != null) {
             File logDir = getLogDirectory(outGff);
             if (!logDir.exists()) {
@@ -306,9 +317,7 @@ public class CallGenesHelper {
     public CallGenesHelper getThreadLocalCopy() {
         CallGenesHelper copy = new CallGenesHelper();
         copy.net0 = this.net0;
-        copy.contigMetrics = this.contigMetrics;
-        assert(this.contigMetrics == null || copy.contigMetrics != null) : "contigMetrics was lost during thread copy.";
-        copy.trueGeneSet = this.trueGeneSet;
+        copy.truthStream = this.truthStream;
         copy.nofilter = this.nofilter;
         copy.seqMode = this.seqMode;
         copy.cutoff = this.cutoff;
@@ -316,10 +325,9 @@ public class CallGenesHelper {
         copy.trueGenesFile = this.trueGenesFile;
         copy.enableLogging = this.enableLogging;
         copy.compareToGff = this.compareToGff;
-        copy.calledCdsQuads = this.calledCdsQuads;
         copy.oracle.setMode(this.oracle.getMode());
         copy.oracle.setNeutralScore(nnCutoff);
-        if (this.trueGeneSet != null) {
+        if (this.truthStream != null) {
             copy.oracle.setTruthLookup(copy::isTrueGene);
         }
         copy.oracleDebugEnabled = this.oracleDebugEnabled;
@@ -352,6 +360,15 @@ public class CallGenesHelper {
             }           
             // Increment assertion counter
             threadCloneAssertions++;
+        } else if (primaryCnn != null) {
+            // Frozen CNN: weights are shared, only scratch buffers are per-thread
+            copy.threadCnn = primaryCnn.copy();
+            copy.threadFeatureVector = new float[primaryCnn.numInputs()];
+            if (nnBatchSize > 0) {
+                copy.threadFeatureMatrix = new float[nnBatchSize * primaryCnn.numInputs()];
+                copy.threadBatchScores = new float[nnBatchSize];
+            }
+            threadCloneAssertions++;
         }
         copy.vectorDebugEnabled = this.vectorDebugEnabled;
         copy.vectorDebugProbability = this.vectorDebugProbability;
@@ -380,6 +397,12 @@ public class CallGenesHelper {
         }
         assert contig.id != null && !contig.id.contains(" ") : "Failed to trim contig ID: " + originalId;
 
+        // Per-contig inputs, computed here rather than loaded for the whole assembly
+        contigStats = calculateContigStats(contig.bases, threadEntropyTracker);
+        if (truthStream != null) {
+            trueGeneSet = truthStream.take(contig.id);
+        }
+
         // Set up neural network integration in GeneCaller
         caller.setHelper(this);
         caller.setCurrentContigRead(contig);
@@ -408,7 +431,7 @@ public class CallGenesHelper {
             if (enableLogging) {
                 for (Orf orf : finalOrfs) {
                     if (orf.type == ProkObject.CDS) {
-                        this.finalScores.add(orf.orfScore); // Add to thread-local list
+                        this.finalScores.add(orf.orfScore); // Add to thread-local summary
                         if (trueGeneSet != null) {
                             GeneQuad orfQuad = new GeneQuad(contig.id, orf.start + 1, orf.stop + 1, (byte)orf.strand);
                             if (trueGeneSet.contains(orfQuad)) {
@@ -417,11 +440,13 @@ public class CallGenesHelper {
                                 threadFalsePositives++;
                             }
                         }
-                        threadCalledCdsQuads.add(new GeneQuad(contig.id, orf.start + 1, orf.stop + 1, (byte)orf.strand));
                     }
                 }
             }
         }
+        if (enableLogging && scoreCsvStream != null && trueGeneSet != null) {
+            appendFalseNegativesToScores(scoreCsvStream, contig.id, trueGeneSet, finalOrfs);
+        }
         
         return finalOrfs;
     }
@@ -431,17 +456,18 @@ public class CallGenesHelper {
         if(this.enableLogging) {
             this.truePositives += threadHelper.threadTruePositives;
             this.falsePositives += threadHelper.threadFalsePositives;
-            this.finalScores.addAll(threadHelper.finalScores);
-            this.calledCdsQuads.addAll(threadHelper.threadCalledCdsQuads);
+            this.finalScores.add(threadHelper.finalScores);
         }
     }
     
     public void printFinalStats(PrintStream outstream) {
+        if (truthStream != null) {
+            truthStream.finish();
+            totalGffRows = (int)truthStream.totalRows;
+            totalGffGeneRows = (int)truthStream.geneRows;
+        }
         if (enableLogging) {
             writeLogFile();
-            if (scoreCsvStream != null && trueGeneSet != null) {
-                appendFalseNegativesToScores(scoreCsvStream);
-            }
         }
         if (trueGenesFile != null) {
             outstream.println();
@@ -449,6 +475,16 @@ public class CallGenesHelper {
             outstream.println("Total Rows detected in .gff = " + totalGffRows);
             outstream.println(".gff Gene Rows = " + totalGffGeneRows);
             outstream.println("Total Matches = " + totalMatches);
+            outstream.println("Unmatched .gff Genes = " + truthStream.dropped);
+            if (truthStream.dropped > 0) {
+                outstream.println("Warning: " + truthStream.dropped + " genes in " + trueGenesFile
+                    + " are on contigs that were not in the input.");
+            }
+            if (truthStream.misordered > 0) {
+                throw new RuntimeException(truthStream.misordered + " genes in " + trueGenesFile
+                    + " were read after or dropped before their contig was called, so they were labeled as negatives.\n"
+                    + "The truegenes gff must list contigs in the same order as the fasta.");
+            }
         }
     }
 
@@ -457,7 +493,7 @@ public class CallGenesHelper {
         assert(orfList != null) : "Orf list cannot be null.";
         assert(contig != null && contig.id != null) : "Contig and its ID cannot be null.";
 
-        final boolean trainingMode = (this.trueGenesFile != null && this.net0 == null);
+        final boolean trainingMode = (this.trueGenesFile != null && this.net0 == null && primaryCnn == null);
         final String contigId = contig.id.split("\\s+")[0];
 
         for (Orf orf : orfList) {
@@ -490,9 +526,7 @@ public class CallGenesHelper {
 
             // Append the VECTOR attribute. This 'if' is now redundant but safe to keep.
             if (trainingMode && orf.type == ProkObject.CDS) {
-                ContigStats stats = contigMetrics.get(contigId);
-                assert(stats != null) : "ContigStats missing for key: " + contigId;
-                String vectorString = generateFeatureVector(orf, contig, stats, threadEntropyTracker, trueGeneSet, seqMode);
+                String vectorString = generateFeatureVector(orf, contig, contigStats, threadEntropyTracker, trueGeneSet, seqMode);
                 if (vectorString.endsWith("\t1")) { this.threadMatchCount++; }
                 bb.append(";VECTOR=");
                 for (int i = 0; i < vectorString.length(); i++) {
@@ -510,14 +544,14 @@ public class CallGenesHelper {
         }
 
         // Don't create a log file if no genes were scored.
-        if (finalScores.isEmpty() && trueGeneSet == null && compareToGff == null) {
+        if (finalScores.isEmpty() && truthStream == null && compareToGff == null) {
             return;
         }
 
         try (PrintStream ps = new PrintStream(new File(logDirectoryPath, "log.txt"))) {
             
             // FP/FN rates
-            if (trueGeneSet != null && !trueGeneSet.isEmpty()) {
+            if (truthStream != null && totalGffGeneRows > 0) {
                 int totalCalledCds = truePositives + falsePositives;
                 float fpRate = (totalCalledCds > 0) ? (float)falsePositives / totalCalledCds : 0;
                 
@@ -553,28 +587,10 @@ public class CallGenesHelper {
             
             // Scores
             if(!finalScores.isEmpty()){
-                Collections.sort(finalScores);
-                float minScore = finalScores.get(0);
-                float maxScore = finalScores.get(finalScores.size() - 1);
-                
-                double sum = 0;
-                for (float score : finalScores) {
-                    sum += score;
-                }
-                double avgScore = sum / finalScores.size();
-                
-                float medianScore;
-                int size = finalScores.size();
-                if (size % 2 == 0) {
-                    medianScore = (finalScores.get(size / 2 - 1) + finalScores.get(size / 2)) / 2.0f;
-                } else {
-                    medianScore = finalScores.get(size / 2);
-                }
-
-                ps.println("Highest score: " + maxScore);
-                ps.println("Lowest score: " + minScore);
-                ps.println("Average score: " + avgScore);
-                ps.println("Median score: " + medianScore);
+                ps.println("Highest score: " + finalScores.max());
+                ps.println("Lowest score: " + finalScores.min());
+                ps.println("Average score: " + finalScores.mean());
+                ps.println("Median score: " + finalScores.median());
             }
 
         } catch (IOException e) {
@@ -584,29 +600,38 @@ public class CallGenesHelper {
         }
     }
 
+    /**
+     * Compare called CDS to a reference gff, one contig at a time.
+     * The query is walked in file order and each contig's reference block is joined to it.
+     * Reference blocks are never dropped, so a reference in another order is still joined
+     * correctly; it just holds more of the reference in memory.
+     */
     private GffStats gradeGff(String queryGffPath, String refGffPath) throws IOException {
-        Map<GeneQuad, GffLine> refMap = loadGffToMap(refGffPath);
-        Map<GeneQuad, GffLine> queryMap = loadGffToMap(queryGffPath);
+        TruthGffStream query = new TruthGffStream(queryGffPath, 0);
+        TruthGffStream ref = new TruthGffStream(refGffPath, Integer.MAX_VALUE);
 
         int truePositives = 0;
         int falsePositives = 0;
-
-        for (GeneQuad queryQuad : queryMap.keySet()) {
-            if (refMap.containsKey(queryQuad)) {
-                truePositives++;
-            } else {
-                falsePositives++;
+        for (TruthGffStream.ContigGenes cg = query.next(); cg != null; cg = query.next()) {
+            HashSet<GeneQuad> refGenes = ref.take(cg.contig());
+            for (GeneQuad queryQuad : cg.genes()) {
+                if (refGenes.contains(queryQuad)) {
+                    truePositives++;
+                } else {
+                    falsePositives++;
+                }
             }
         }
-
-        int falseNegatives = 0;
-        for (GeneQuad refQuad : refMap.keySet()) {
-            if (!queryMap.containsKey(refQuad)) {
-                falseNegatives++;
-            }
+        query.finish();
+        ref.finish();
+        if (ref.misordered > 0) {
+            System.err.println("Warning: " + ref.misordered + " genes in " + refGffPath
+                + " were not graded because their contig's lines are not all together.");
         }
 
-        return new GffStats(truePositives, falsePositives, falseNegatives, refMap.size());
+        int refCount = (int)ref.genes;
+        int falseNegatives = refCount - truePositives;
+        return new GffStats(truePositives, falsePositives, falseNegatives, refCount);
     }
 
     public void setScoreWriter(ByteStreamWriter bsw) {
@@ -650,7 +675,7 @@ public class CallGenesHelper {
         assert(contigStats != null) : 
                 "ContigStats lookup failed for contig ID: '" + contigRead.id + "'. " +
                 "Attempted lookup with short key: '" + contigRead.id.split("\\s+")[0] + "'. " +
-                "This key was not found in the metrics map. Available keys: " + contigMetrics.keySet();
+                "processContig must compute the contig's stats first.";
     
         int start = orf.start;
         int stop = orf.stop;
@@ -764,82 +789,11 @@ public class CallGenesHelper {
     
     // --- STATIC HELPER METHODS ---
     
-private static Map<String, String> readFastaFile(String filePath) throws IOException {
-    Map<String, String> sequences = new HashMap<>();
-    ByteFile bf = null;
-    try {
-        bf = ByteFile.makeByteFile(filePath, true);
-        ByteBuilder currentSequence = new ByteBuilder();
-        String currentContigId = null;
-        for (byte[] line = bf.nextLine(); line != null; line = bf.nextLine()) {
-            if (line.length == 0) { continue; }
-            if (line[0] == '>') {
-                if (currentContigId != null) {
-                    sequences.put(currentContigId, currentSequence.toString());
-                }
-                int end = 1;
-                while (end < line.length && line[end] > ' ') { end++; }
-                currentContigId = (end > 1) ? new String(line, 1, end - 1) : "";
-                currentSequence.clear();
-            } else {
-                for (byte b : line) {
-                    if (b > ' ') { currentSequence.append(b); }
-                }
-            }
-        }
-        if (currentContigId != null) {
-            sequences.put(currentContigId, currentSequence.toString());
-        }
-    } finally {
-        if (bf != null) { bf.close(); }
-    }
-    return sequences;
-}
-
-    private static Map<String, ContigStats> calculateContigMetrics(Map<String, String> contigSequences) {
-        Map<String, ContigStats> contigMetrics = new HashMap<>();
-        EntropyTracker et = new EntropyTracker(5, 50, false);
-        for (Map.Entry<String, String> entry : contigSequences.entrySet()) {
-            String sequence = entry.getValue();
-            double gcRatio = gcRatio(sequence.getBytes(), 0, sequence.length() -1);
-            double entropy = et.averageEntropy(sequence.getBytes(), false);
-            contigMetrics.put(entry.getKey(), new ContigStats(gcRatio, entropy));
-        }
-        return contigMetrics;
-    }
-
-    private static TrueGeneData loadTrueGeneSet(String gffFilePath) throws IOException {
-        int totalRows = 0, geneRows = 0;
-        HashSet<GeneQuad> trueGeneSet = new HashSet<>();
-        ByteFile bf = null;
-        LineParser1 lp = new LineParser1('\t');
-        try {
-            bf = ByteFile.makeByteFile(gffFilePath, true);
-            for (byte[] line = bf.nextLine(); line != null; line = bf.nextLine()) {
-                if (line.length == 0 || line[0] == '#') { continue; }
-                totalRows++;
-                lp.set(line);
-                if (lp.terms() > 7) {
-                    String type = lp.parseString(2);
-                    if ("CDS".equalsIgnoreCase(type)) {
-                        geneRows++;
-                        try {
-                            String contig = lp.parseString(0);
-                            int start = lp.parseInt(3);
-                            int stop = lp.parseInt(4);
-                            String strandValue = lp.parseString(6);
-                            byte strand = (byte) (strandValue != null && strandValue.length() > 0 && strandValue.charAt(0) == '+' ? 0 : 1);
-                            trueGeneSet.add(new GeneQuad(contig, start, stop, strand));
-                        } catch (Exception e) {
-                            // Malformed line; skip but continue processing
-                        }
-                    }
-                }
-            }
-        } finally {
-            if (bf != null) { bf.close(); }
-        }
-        return new TrueGeneData(trueGeneSet, totalRows, geneRows);
+    /** GC ratio and average entropy of a whole contig, for its feature vector fields */
+    static ContigStats calculateContigStats(byte[] bases, EntropyTracker et) {
+        double gcRatio = gcRatio(bases, 0, bases.length - 1);
+        double entropy = et.averageEntropy(bases, false);
+        return new ContigStats(gcRatio, entropy);
     }
 
     private static float gcRatio(byte[] bases, int from, int to) {
@@ -894,6 +848,11 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
         }
         
         try {
+            if (CNNNetwork.isCNNFile(netFile)) {
+                loadConvolutionalNetwork(outstream);
+                return;
+            }
+            
             // Load the neural network
             primaryNet = CellNetParser.load(netFile);
             
@@ -932,34 +891,116 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
     }
     
     /**
-     * Modify ORF score using neural network prediction
-     * Algorithm: mult = NN_output / cutoff; final_mult = ((mult - 1) × strength) + 1; modified_score = original_score × final_mult
+     * Load a .bbnet file written by CNNTrainer as a frozen inference engine
      */
-    public void modifyOrfScoreWithNeuralNetwork(Orf orf, Read contigRead) {
-        assert(threadNeuralNet != null) : "SCORE_MOD_ASSERTION: Thread neural network is null";
-        assert(threadFeatureVector != null) : "SCORE_MOD_ASSERTION: Thread feature vector is null";
-        assert(orf != null) : "SCORE_MOD_ASSERTION: ORF is null";
-        assert(contigRead != null) : "SCORE_MOD_ASSERTION: Contig read is null";
-
-        final CallGenesOracle.Mode oracleMode = oracle.getMode();
-        final boolean bypassFilters = (oracleMode == CallGenesOracle.Mode.TRUTH);
+    private void loadConvolutionalNetwork(PrintStream outstream) {
+        primaryCnn = CNNInference.load(netFile, nnInt8);
+        if (primaryCnn == null) {
+            outstream.println("WARNING: Failed to load CNN from file: " + netFile);
+            return;
+        }
+        if (nnDebug) {
+            outstream.println("DEBUG: Successfully loaded CNN from: " + netFile);
+            outstream.println("DEBUG: Network inputs: " + primaryCnn.numInputs());
+            outstream.println("DEBUG: Network layers: " + primaryCnn.numLayers());
+            outstream.println("DEBUG: Int8 layers: " + primaryCnn.isQuantized());
+        }
+        netLoadAssertions++;
+    }
+    
+    /**
+     * Score every CDS candidate of a contig with the neural network before path finding.
+     * With a CNN, candidates passing the prefilter are gathered into a feature matrix
+     * and scored in blocks of nnbatch; with nnbatch=0 each ORF is scored in turn.
+     * Both give the same scores, since scoreBatch matches score() bit for bit.
+     * Either way the modified scores are left on the Orfs for GeneCaller.findPath.
+     */
+    public void scoreOrfsWithNeuralNetwork(ArrayList<Orf>[] orfLists, Read contigRead) {
+        final boolean batched = (threadCnn != null && threadFeatureMatrix != null && 
+                oracle.getMode() != CallGenesOracle.Mode.TRUTH && 
+                oracle.getMode() != CallGenesOracle.Mode.NEUTRAL);
+        for (ArrayList<Orf> list : orfLists) {
+            if (list == null) { continue; }
+            for (Orf orf : list) {
+                if (orf.type != ProkObject.CDS) { continue; }
+                if (!batched) {
+                    modifyOrfScoreWithNeuralNetwork(orf, contigRead);
+                } else if (passesNeuralPrefilter(orf, false)) {
+                    addToBatch(orf, contigRead);
+                }
+            }
+        }
+        if (batched) { flushBatch(contigRead); }
+    }
+    
+    /** Append one ORF's features to the pending batch, scoring the batch when full */
+    private void addToBatch(Orf orf, Read contigRead) {
+        final int width = threadCnn.numInputs();
+        final int row = threadBatchOrfs.size();
+        final int featureLength = generateFeatureVectorDirect(orf, contigRead, threadFeatureVector);
+        if (shouldEmitVectorDebug()) {
+            emitVectorDebugVector(orf, contigRead, threadFeatureVector, featureLength);
+        }
+        System.arraycopy(threadFeatureVector, 0, threadFeatureMatrix, row * width, width);
+        threadBatchOrfs.add(orf);
+        if (threadBatchOrfs.size() >= nnBatchSize) { flushBatch(contigRead); }
+    }
+    
+    /** Score all pending ORFs in one network call and apply the results */
+    private void flushBatch(Read contigRead) {
+        final int batch = threadBatchOrfs.size();
+        if (batch == 0) { return; }
+        threadCnn.scoreBatch(threadFeatureMatrix, batch, threadBatchScores);
+        for (int i = 0; i < batch; i++) {
+            final float advisoryScore = threadBatchScores[i];
+            assert(!Float.isNaN(advisoryScore) && !Float.isInfinite(advisoryScore)) : "SCORE_MOD_ASSERTION: Neural network output is NaN or infinite: " + advisoryScore;
+            applyAdvisoryScore(threadBatchOrfs.get(i), contigRead, advisoryScore, null);
+        }
+        threadBatchOrfs.clear();
+    }
+    
+    /**
+     * Apply the score prefilter and minimum score gates.
+     * ORFs failing the per-base prefilter get a score of -1.
+     * @return True if the ORF should be scored by the network
+     */
+    private boolean passesNeuralPrefilter(Orf orf, boolean bypassFilters) {
         final float originalScore = orf.orfScore;
         final float scorePerBase = orf.length() > 0 ? (originalScore / orf.length()) : 0f;
-        final boolean verboseTarget = false;
 
         if (!bypassFilters && !nnAllOrfs && scorePerBase < prefilterCutoff) {
             orf.orfScore = -1;
-            return;
+            return false;
         }
 
         scoreModificationCalls++;
         if (!bypassFilters && !nnAllOrfs && originalScore < nnMinScore) {
-            return;
+            return false;
         }
 
         if (scoreModificationCalls % 10000 == 0) {
             System.err.println("DEBUG: Neural network called " + scoreModificationCalls + " times. Current ORF: " + orf.start + "-" + orf.stop + ", score: " + originalScore);
         }
+        return true;
+    }
+    
+    /**
+     * Modify ORF score using neural network prediction
+     * Algorithm: mult = NN_output / cutoff; final_mult = ((mult - 1) × strength) + 1; modified_score = original_score × final_mult
+     */
+    public void modifyOrfScoreWithNeuralNetwork(Orf orf, Read contigRead) {
+        assert(threadNeuralNet != null || threadCnn != null) : "SCORE_MOD_ASSERTION: Thread neural network is null";
+        assert(threadFeatureVector != null) : "SCORE_MOD_ASSERTION: Thread feature vector is null";
+        assert(orf != null) : "SCORE_MOD_ASSERTION: ORF is null";
+        assert(contigRead != null) : "SCORE_MOD_ASSERTION: Contig read is null";
+
+        final CallGenesOracle.Mode oracleMode = oracle.getMode();
+        final boolean bypassFilters = (oracleMode == CallGenesOracle.Mode.TRUTH);
+        final float originalScore = orf.orfScore;
+
+        if (!passesNeuralPrefilter(orf, bypassFilters)) {
+            return;
+        }
 
         GeneQuad orfQuad = null;
         float advisoryScore;
@@ -979,12 +1020,16 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
                 if (emitVectorDebug) {
                     emitVectorDebugVector(orf, contigRead, threadFeatureVector, featureLength);
                 }
-                threadNeuralNet.applyInput(threadFeatureVector);
-                threadNeuralNet.feedForward();
-                float[] output = threadNeuralNet.getOutput();
-                assert(output != null && output.length > 0) : "SCORE_MOD_ASSERTION: Neural network output is null or empty";
-                assert(!Float.isNaN(output[0]) && !Float.isInfinite(output[0])) : "SCORE_MOD_ASSERTION: Neural network output is NaN or infinite: " + output[0];
-                advisoryScore = output[0];
+                if (threadCnn != null) {
+                    advisoryScore = threadCnn.score(threadFeatureVector);
+                } else {
+                    threadNeuralNet.applyInput(threadFeatureVector);
+                    threadNeuralNet.feedForward();
+                    float[] output = threadNeuralNet.getOutput();
+                    assert(output != null && output.length > 0) : "SCORE_MOD_ASSERTION: Neural network output is null or empty";
+                    advisoryScore = output[0];
+                }
+                assert(!Float.isNaN(advisoryScore) && !Float.isInfinite(advisoryScore)) : "SCORE_MOD_ASSERTION: Neural network output is NaN or infinite: " + advisoryScore;
             } catch (Exception e) {
                 if (nnDebug) {
                     System.err.println("ERROR: Neural network score modification failed: " + e.getMessage());
@@ -994,6 +1039,17 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
                 return;
             }
         }
+        applyAdvisoryScore(orf, contigRead, advisoryScore, orfQuad);
+    }
+    
+    /**
+     * Combine the advisory score with the ORF's original score and record the result.
+     * @param orfQuad Truth-mode key for this ORF, or null to build it on demand
+     */
+    private void applyAdvisoryScore(Orf orf, Read contigRead, float advisoryScore, GeneQuad orfQuad) {
+        final CallGenesOracle.Mode oracleMode = oracle.getMode();
+        final float originalScore = orf.orfScore;
+        final boolean verboseTarget = false;
 
         if (oracleMode == CallGenesOracle.Mode.TRUTH) {
             if (advisoryScore <= 0f) {
@@ -1215,15 +1271,24 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
         return false;
     }
 
+    /**
+     * Sets the contig stats used by generateFeatureVectorDirect, which processContig
+     * normally computes for each contig.  Package-private so the prok benchmarks can
+     * generate features without calling genes through processContig.
+     */
+    void setContigStats(ContigStats stats) {
+        contigStats = stats;
+    }
+
     /**
      * Optimized feature vector generation that directly populates float array
      * Avoids expensive string operations and parsing
+     * Package-private so the prok benchmarks can time it.
      */
-    private int generateFeatureVectorDirect(Orf orf, Read contigRead, float[] featureVector) {
+    int generateFeatureVectorDirect(Orf orf, Read contigRead, float[] featureVector) {
         // Get cached contig stats
-        String contigIdShort = contigRead.id.split("\\s+")[0];
-        ContigStats stats = contigMetrics.get(contigIdShort);
-        assert(stats != null) : "ContigStats missing for contig: " + contigIdShort;
+        ContigStats stats = contigStats;
+        assert(stats != null) : "ContigStats missing for contig: " + contigRead.id;
         
         int start = orf.start;
         int stop = orf.stop;
@@ -1301,61 +1366,33 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
      * Optimized one-hot encoding directly into float array
      */
     private int encodeOneHotDirect(byte[] bases, float[] featureVector, int startIdx) {
-        int idx = startIdx;
-        for (byte base : bases) {
-            // Ensure there is enough space for 4 floats per base
-            if (idx + 4 > featureVector.length) {
-                if (nnDebug) {
-                    System.err.println("WARNING: Feature vector overflow while encoding base at index " + idx);
-                }
-                break;
-            }
-            char c = (char) base;
-            switch (c) {
-                case 'A': case 'a':
-                    featureVector[idx++] = 1.0f; featureVector[idx++] = 0.0f;
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    break;
-                case 'C': case 'c':
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 1.0f;
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    break;
-                case 'G': case 'g':
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    featureVector[idx++] = 1.0f; featureVector[idx++] = 0.0f;
-                    break;
-                case 'T': case 't':
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 1.0f;
-                    break;
-                default:
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    featureVector[idx++] = 0.0f; featureVector[idx++] = 0.0f;
-                    break;
-            }
+        // Ensure there is enough space for 4 floats per base
+        int len = Math.min(bases.length, (featureVector.length - startIdx) / 4);
+        if (len < bases.length && nnDebug) {
+            System.err.println("WARNING: Feature vector overflow while encoding base at index " + (startIdx + 4 * len));
         }
-        return idx;
+        return PackedOneHot.expandBases(bases, Math.max(len, 0), featureVector, startIdx);
     }
 
     /**
      * Check if neural network is available for this thread
      */
     public boolean hasNeuralNetwork() {
-        return threadNeuralNet != null;
+        return threadNeuralNet != null || threadCnn != null;
     }
     
     /**
      * Get neural network status information
      */
     public String getNeuralNetworkStatus() {
-        if (primaryNet == null) {
+        if (primaryNet == null && primaryCnn == null) {
             return "No neural network loaded";
         }
         
         StringBuilder sb = new StringBuilder();
         sb.append("Neural Network Status:\n");
-        sb.append("  Primary network loaded: ").append(primaryNet != null).append("\n");
-        sb.append("  Thread network available: ").append(threadNeuralNet != null).append("\n");
+        sb.append("  Primary network loaded: ").append(primaryNet != null || primaryCnn != null).append("\n");
+        sb.append("  Thread network available: ").append(hasNeuralNetwork()).append("\n");
         sb.append("  Network file: ").append(netFile != null ? netFile : "none").append("\n");
         sb.append("  Cutoff: ").append(nnCutoff).append("\n");
         sb.append("  Strength: ").append(nnStrength).append("\n");
@@ -1376,29 +1413,6 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
         scoreModificationCalls = 0;
     }
 
-    private static Map<GeneQuad, GffLine> loadGffToMap(String filePath) throws IOException {
-        Map<GeneQuad, GffLine> map = new HashMap<>();
-        ByteFile bf = null;
-        try {
-            bf = ByteFile.makeByteFile(filePath, true);
-            for (byte[] line = bf.nextLine(); line != null; line = bf.nextLine()) {
-                if (line.length == 0 || line[0] == '#') { continue; }
-                GffLine gffLine = new GffLine(line);
-                if ("CDS".equalsIgnoreCase(gffLine.type)) {
-                    try {
-                        GeneQuad quad = new GeneQuad(gffLine.seqid, gffLine.start, gffLine.stop, (byte)gffLine.strand);
-                        map.put(quad, gffLine);
-                    } catch (Exception e) {
-                        System.err.println("Warning: Skipping malformed GFF line: " + new String(line));
-                    }
-                }
-            }
-        } finally {
-            if (bf != null) { bf.close(); }
-        }
-        return map;
-    }
-
     // --- PRIVATE HELPER METHODS ---
 
     private File getLogDirectory(String outGff) {
@@ -1412,14 +1426,26 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
         return (parentDir == null) ? new File(name) : new File(parentDir, name);
     }
 
-    private void appendFalseNegativesToScores(ByteStreamWriter writer) {
-        if (trueGeneSet == null || calledCdsQuads == null) {
+    /**
+     * Write a score row for each truth CDS of one contig that was not called.
+     * @param contigId Contig name, up to the first whitespace
+     * @param truth Truth CDS of the contig
+     * @param called Final Orfs of the contig; may be null
+     */
+    private void appendFalseNegativesToScores(ByteStreamWriter writer, String contigId, HashSet<GeneQuad> truth, ArrayList<Orf> called) {
+        if (truth.isEmpty()) {
             return;
         }
 
         // Find genes in true set that were not in the called set
-        Set<GeneQuad> falseNegatives = new HashSet<>(trueGeneSet);
-        falseNegatives.removeAll(calledCdsQuads);
+        Set<GeneQuad> falseNegatives = new HashSet<>(truth);
+        if (called != null) {
+            for (Orf orf : called) {
+                if (orf.type == ProkObject.CDS) {
+                    falseNegatives.remove(new GeneQuad(contigId, orf.start + 1, orf.stop + 1, (byte)orf.strand));
+                }
+            }
+        }
 
         for (GeneQuad fn : falseNegatives) {
             String orfId = fn.contig() + "_" + (fn.start() - 1);
@@ -1428,9 +1454,81 @@ private static Map<String, String> readFastaFile(String filePath) throws IOExcep
             bb.append(orfId).append(',');
             bb.append("0.0000").append(','); // Original Score
             bb.append("0.0000").append(','); // Modified Score
+            bb.append("0.0000").append(','); // Advisory Score
             bb.append(length).append(','); // Length
             bb.append("FN").nl(); // Status
-            writer.add(bb, 0); // Use a dummy numeric ID
+            writer.add(bb, SCORE_ENTRY_SEQUENCE.getAndIncrement());
+        }
+    }
+
+    /**
+     * Min, max, mean, and median of CDS scores in constant memory.
+     * The median is read from a histogram over the top 16 bits of each float's
+     * order-preserving bit pattern, so it is exact to about 3 significant digits.
+     */
+    static final class ScoreSummary {
+
+        void add(float score) {
+            count++;
+            sum += score;
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+            if (bins == null) { bins = new long[1 << 16]; }
+            bins[bin(score)]++;
+        }
+
+        void add(ScoreSummary other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.bins == null) { return; }
+            if (bins == null) { bins = new long[1 << 16]; }
+            for (int i = 0; i < bins.length; i++) { bins[i] += other.bins[i]; }
+        }
+
+        boolean isEmpty() { return count == 0; }
+        float min() { return min; }
+        float max() { return max; }
+        double mean() { return sum / count; }
+
+        /** @return The middle score, or the mean of the two middle scores, to bin precision */
+        float median() {
+            if (count == 0) { return 0f; }
+            return (count % 2 == 0) ? (scoreAtRank(count / 2 - 1) + scoreAtRank(count / 2)) / 2.0f : scoreAtRank(count / 2);
+        }
+
+        private float scoreAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < bins.length; i++) {
+                seen += bins[i];
+                if (seen > rank) {
+                    return Tools.max(min, Tools.min(max, binCenter(i)));
+                }
+            }
+            return max;
         }
+
+        /** Bits of x as an int that sorts like x */
+        private static int orderedBits(float x) {
+            int bits = Float.floatToIntBits(x);
+            return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+        }
+
+        private static int bin(float x) {
+            return (orderedBits(x) >>> 16) ^ 0x8000;
+        }
+
+        private static float binCenter(int bin) {
+            int key = ((bin ^ 0x8000) << 16) | 0x8000;
+            return Float.intBitsToFloat(key ^ ((key >> 31) & 0x7FFFFFFF));
+        }
+
+        private long count = 0;
+        private double sum = 0;
+        private float min = Float.POSITIVE_INFINITY;
+        private float max = Float.NEGATIVE_INFINITY;
+        /** Counts per bin, allocated on the first score */
+        private long[] bins;
     }
 }
@@ -0,0 +1,378 @@
+package prok;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import dna.Data;
+import server.ServerTools;
+import shared.KillSwitch;
+import shared.Parse;
+import shared.Parser;
+import shared.PreParser;
+import shared.Shared;
+import shared.Timer;
+import shared.Tools;
+import stream.Read;
+import structures.ByteBuilder;
+
+/**
+ * Long-running gene-calling server.
+ * Loads the gene model, long kmers, consensus sequences, and neural network once,
+ * then calls genes on fasta posted over HTTP, so repeated jobs skip JVM startup and loading.
+ * Each request runs on its own handler thread with its own GeneCaller and
+ * CallGenesHelper copy, as each CallGenes ProcessThread does, so jobs run concurrently.
+ * <p>
+ * POST fasta, plain or gzipped, to /gff for gff, or to /amino for translated genes.
+ * Bodies over maxbody, or gzipped bodies inflating past maxinflated, get a 413.
+ * /stats reports totals and /kill/code stops the server when launched with killcode=.
+ *
+ * @author Brandon Imstepf
+ * @date 8-11-2025
+ */
+public class CallGenesServer extends ProkObject {
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Startup           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Command line entrance */
+	public static void main(String[] args) throws Exception {
+		Timer t=new Timer();
+		@SuppressWarnings("unused")
+		CallGenesServer cgs=new CallGenesServer(args);
+
+		t.stop("Time: ");
+
+		System.err.println("Ready!");
+	}
+
+	/** Constructor */
+	public CallGenesServer(String[] args) throws Exception {
+
+		{//Preparse block for help, config files, and outstream
+			PreParser pp=new PreParser(args, getClass(), false);
+			args=pp.args;
+			outstream=pp.outstream;
+		}
+
+		Read.JUNK_MODE=Read.FIX_JUNK;
+		helper=new CallGenesHelper();
+
+		int port_=3070;
+		String killCode_=null;
+		ArrayList<String> pgmList=new ArrayList<String>();
+
+		//Create a parser object
+		Parser parser=new Parser();
+
+		//Parse each argument
+		for(int i=0; i<args.length; i++){
+			String arg=args[i];
+
+			//Break arguments into their constituent parts, in the form of "a=b"
+			String[] split=arg.split("=");
+			String a=split[0].toLowerCase();
+			String b=split.length>1 ? split[1] : null;
+			if(b!=null && b.equalsIgnoreCase("null")){b=null;}
+
+			if(a.equals("verbose")){
+				verbose=Parse.parseBoolean(b);
+			}else if(a.equals("port")){
+				port_=Integer.parseInt(b);
+			}else if(a.equals("kill") || a.equals("killcode")){
+				killCode_=b;
+			}else if(a.equals("handlerthreads") || a.equals("jobs")){
+				handlerThreads=Integer.parseInt(b);
+			}else if(a.equals("maxbody")){
+				maxBodyBytes=Parse.parseKMG(b);
+			}else if(a.equals("maxinflated")){
+				maxInflatedBytes=Parse.parseKMG(b);
+			}else if(a.equals("pgm") || a.equals("gm") || a.equals("model")){
+				assert(b!=null);
+				if(b.equalsIgnoreCase("auto") || b.equalsIgnoreCase("default")){
+					pgmList.add(Data.findPath("?model.pgm"));
+				}else{
+					Tools.addFiles(b, pgmList);
+				}
+			}else if(PGMTools.parseStatic(arg, a, b)){
+				//do nothing
+			}else if(helper.parse(arg, a, b)){
+				//do nothing
+			}else if(CallGenes.parseCallerStatic(arg, a, b)){
+				//do nothing
+			}else if(ProkObject.parse(arg, a, b)){
+				//do nothing
+			}else if(parser.parse(arg, a, b)){
+				//do nothing
+			}else{
+				throw new RuntimeException("Unknown parameter "+arg);
+			}
+		}
+		if(pgmList.isEmpty()){pgmList.add(Data.findPath("?model.pgm"));}
+		pgmList=Tools.fixExtension(pgmList);
+
+		port=port_;
+		killCode=killCode_;
+
+		//Load everything a CallGenes run would load
+		pgm=PGMTools.loadAndMerge(pgmList);
+		if(call16S || call18S || call23S || calltRNA || call5S){
+			loadLongKmers();
+			loadConsensusSequenceFromFile(false, false);
+		}
+		helper.initialize(outstream, null, null);
+
+		httpServer=HttpServer.create(new InetSocketAddress(port), 0);
+		httpServer.createContext("/", new CallHandler(false));
+		httpServer.createContext("/gff", new CallHandler(false));
+		httpServer.createContext("/amino", new CallHandler(true));
+		httpServer.createContext("/stats", new StatsHandler());
+		if(killCode!=null){
+			httpServer.createContext("/kill", new KillHandler());
+		}
+
+		handlerThreads=handlerThreads>0 ? handlerThreads : Tools.max(2, Shared.threads());
+		GeneCaller.setSpareThreads(Shared.threads());
+		httpServer.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(handlerThreads));
+		httpServer.start();
+		outstream.println("Listening on port "+port+" with "+handlerThreads+" handler threads.");
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Handlers           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Calls genes on a posted fasta */
+	class CallHandler implements HttpHandler {
+
+		CallHandler(boolean amino_){
+			amino=amino_;
+		}
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			final long startTime=System.nanoTime();
+			final ArrayList<Read> reads;
+			try{
+				reads=parseFasta(readBody(t));
+			}catch(BodyTooLargeException e){
+				ServerTools.reply("\nERROR: "+e.getMessage()+"\n", "text/plain", t, verbose, 413, true);
+				return;
+			}catch(Exception e){
+				ServerTools.reply("\nERROR: Could not read the request body: "+e+"\n", "text/plain", t, verbose, 400, true);
+				return;
+			}
+			if(reads.isEmpty()){
+				ServerTools.reply("\nERROR: POST a fasta to /gff or /amino.\n", "text/plain", t, verbose, 400, true);
+				return;
+			}
+
+			final ByteBuilder bb;
+			try{
+				bb=callGenes(reads, amino);
+			}catch(Throwable e){
+				e.printStackTrace();
+				ServerTools.reply("\nERROR: "+e+"\n", "text/plain", t, verbose, 500, true);
+				return;
+			}
+			ServerTools.reply(bb.toBytes(), "text/plain", t, verbose, 200, true);
+
+			jobs.incrementAndGet();
+			bytesOut.addAndGet(bb.length());
+			elapsedTime.addAndGet(System.nanoTime()-startTime);
+			if(verbose){outstream.println("Called genes on "+reads.size()+" contigs from "+ServerTools.getClientAddress(t));}
+		}
+
+		final boolean amino;
+	}
+
+	/** Reports totals since startup */
+	class StatsHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			ServerTools.reply(makeStats(), "text/plain", t, verbose, 200, true);
+		}
+
+	}
+
+	/** Handles requests to kill the server */
+	class KillHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			String rparam=t.getRequestURI().getPath();
+			String[] params=rparam.split("/");
+			InetSocketAddress remote=t.getRemoteAddress();
+			if(params.length>2 && params[2].equals(killCode)){
+				ServerTools.reply("Success.", "text/plain", t, verbose, 200, true);
+				System.err.println("Killed by remote address "+remote);
+				KillSwitch.killSilent();
+			}
+			if(verbose){System.err.println("Bad kill from address "+remote);}
+			ServerTools.reply("\nERROR: Bad kill code.\n", "text/plain", t, verbose, 403, true);
+		}
+
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Gene Calling         ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Call genes on one job's contigs with a private caller and helper.
+	 * @param amino Return translated genes as fasta instead of gff
+	 */
+	ByteBuilder callGenes(ArrayList<Read> reads, boolean amino){
+		final CallGenesHelper jobHelper=helper.getThreadLocalCopy();
+		jobHelper.initializeThreadObjects();
+		final GeneCaller caller=CallGenes.makeGeneCaller(pgm);
+
+		final ByteBuilder bb=new ByteBuilder();
+		if(!amino){bb.append("##gff-version 3\n");}
+		long genes=0, bases=0;
+		GeneCaller.addSpareThreads(-1);//This job's thread is busy
+		try{
+			for(Read r : reads){
+				bases+=r.length();
+				ArrayList<Orf> list=jobHelper.processContig(r, caller, pgm, null, null, null);
+				if(list==null || list.isEmpty()){continue;}
+				genes+=list.size();
+				if(amino){
+					ArrayList<Read> prots=CallGenes.translate(r, list);
+					if(prots!=null){
+						for(Read p : prots){p.toFasta(bb).nl();}
+					}
+				}else{
+					jobHelper.formatGffOutput(bb, list, r);
+				}
+			}
+		}finally{
+			GeneCaller.addSpareThreads(1);
+		}
+		contigsIn.addAndGet(reads.size());
+		basesIn.addAndGet(bases);
+		genesOut.addAndGet(genes);
+		return bb;
+	}
+
+	/**
+	 * Read the request body, decompressing it if it is gzipped.
+	 * @throws BodyTooLargeException If the body exceeds maxbody or inflates past maxinflated
+	 */
+	private byte[] readBody(HttpExchange t) throws IOException {
+		final String declared=t.getRequestHeaders().getFirst("Content-Length");
+		if(declared!=null && Long.parseLong(declared.trim())>maxBodyBytes){
+			throw new BodyTooLargeException("Request body of "+declared.trim()+" bytes exceeds maxbody="+maxBodyBytes);
+		}
+		final byte[] raw;
+		try(InputStream is=t.getRequestBody()){
+			raw=readLimited(is, maxBodyBytes, "maxbody");
+		}
+		final boolean gzipped=(raw.length>=2 && (raw[0]&0xFF)==0x1F && (raw[1]&0xFF)==0x8B);
+		if(!gzipped){return raw;}
+		try(InputStream is=new GZIPInputStream(new ByteArrayInputStream(raw))){
+			return readLimited(is, maxInflatedBytes, "maxinflated");
+		}
+	}
+
+	/** Read a stream to the end, failing as soon as it passes limit bytes */
+	private static byte[] readLimited(InputStream is, long limit, String flag) throws IOException {
+		final ByteBuilder bb=new ByteBuilder();
+		final byte[] buf=new byte[65536];
+		for(int r=is.read(buf); r>=0; r=is.read(buf)){
+			if(bb.length()+(long)r>limit){
+				throw new BodyTooLargeException("Request body exceeds "+flag+"="+limit);
+			}
+			bb.append(buf, 0, r);
+		}
+		return bb.toBytes();
+	}
+
+	/** Signals a request body over the configured size limits; answered with 413 */
+	private static class BodyTooLargeException extends IOException {
+		private static final long serialVersionUID=1L;
+		BodyTooLargeException(String msg){super(msg);}
+	}
+
+	/** Split a fasta body into contigs */
+	static ArrayList<Read> parseFasta(byte[] body){
+		ArrayList<Read> reads=new ArrayList<Read>();
+		ByteBuilder bases=new ByteBuilder();
+		String id=null;
+		for(int a=0, b=0; a<body.length; a=b+1){
+			b=a;
+			while(b<body.length && body[b]!='\n'){b++;}
+			int lim=b;
+			if(lim>a && body[lim-1]=='\r'){lim--;}
+			if(lim<=a){continue;}
+			if(body[a]=='>'){
+				if(id!=null){addContig(id, bases, reads);}
+				id=new String(body, a+1, lim-a-1);
+				bases.clear();
+			}else{
+				for(int i=a; i<lim; i++){
+					if(body[i]>' '){bases.append(body[i]);}
+				}
+			}
+		}
+		if(id!=null){addContig(id, bases, reads);}
+		return reads;
+	}
+
+	private static void addContig(String id, ByteBuilder bases, ArrayList<Read> reads){
+		reads.add(new Read(bases.toBytes(), null, id, reads.size()));
+	}
+
+	/** Totals since startup */
+	String makeStats(){
+		ByteBuilder bb=new ByteBuilder();
+		bb.append("Jobs:     \t").append(jobs.get()).nl();
+		bb.append("Contigs:  \t").append(contigsIn.get()).nl();
+		bb.append("Bases:    \t").append(basesIn.get()).nl();
+		bb.append("Genes:    \t").append(genesOut.get()).nl();
+		bb.append("Bytes Out:\t").append(bytesOut.get()).nl();
+		long n=jobs.get();
+		bb.append("Avg Time: \t").append(n<1 ? 0 : elapsedTime.get()/(n*1000000.0), 2).append(" ms").nl();
+		return bb.toString();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Resident model shared by all jobs */
+	private final GeneModel pgm;
+	/** Template for the per-job helper copies; holds the loaded network */
+	private final CallGenesHelper helper;
+
+	public final int port;
+	public final String killCode;
+	public final HttpServer httpServer;
+	private int handlerThreads=-1;
+	/** Largest accepted request body, as sent */
+	private long maxBodyBytes=500000000L;
+	/** Largest accepted gzipped request body after decompression */
+	private long maxInflatedBytes=1500000000L;
+
+	private final AtomicLong jobs=new AtomicLong(0);
+	private final AtomicLong contigsIn=new AtomicLong(0);
+	private final AtomicLong basesIn=new AtomicLong(0);
+	private final AtomicLong genesOut=new AtomicLong(0);
+	private final AtomicLong bytesOut=new AtomicLong(0);
+	private final AtomicLong elapsedTime=new AtomicLong(0);
+
+	private PrintStream outstream=System.err;
+	public boolean verbose=false;
+
+}
@@ -135,8 +135,7 @@ public class FrameStats {
 	 * normalized by the inverse average for scoring purposes.
 	 */
 	void calculate(){
-		average=(float)((validSums[1]+1.0)/(validSums[0]+validSums[1]+1.0));
-		invAvg=1.0f/average;
+		calculateAverage();
 		
 		for(int a=0; a<frames; a++){
 			for(int b=0; b<kMax; b++){
@@ -147,6 +146,13 @@ public class FrameStats {
 		}
 	}
 	
+	/** Calculates the average and its inverse from validSums, leaving probs unchanged.
+	 * Used when probs were loaded rather than calculated. */
+	void calculateAverage(){
+		average=(float)((validSums[1]+1.0)/(validSums[0]+validSums[1]+1.0));
+		invAvg=1.0f/average;
+	}
+	
 	/**
 	 * Calculates a statistical score for a genomic position based on k-mer patterns.
 	 * Analyzes k-mers in multiple frames around the specified point and computes
@@ -193,6 +199,34 @@ public class FrameStats {
 		return score*invFrames;
 	}
 	
+	/**
+	 * Same as scorePoint(point, bases), but reads k-mers from a precomputed track
+	 * instead of rebuilding them for every point.
+	 * Windows extending before the sequence start fall back to the base-level method,
+	 * which pads with A.
+	 * @param point Position of the reference point
+	 * @param bases Sequence in the same orientation as track
+	 * @param track K-mer codes for bases
+	 * @return Same score as scorePoint(point, bases)
+	 */
+	float scorePoint(int point, byte[] bases, KmerTrack track){
+		final int start=point-leftOffset;
+		if(start<0 || k>KmerTrack.MAX_K){return scorePoint(point, bases);}
+		
+		float score=0;
+		final int lim=Tools.min(frames, track.length-start-k+1);
+		for(int frame=0, i=start+k-1; frame<lim; frame++, i++){
+			final int kmer=track.kmer(i, k);
+			if(kmer>=0){
+				float prob=probs[frame][kmer];
+				float dif=prob-0.99f;
+				score+=dif;
+			}
+		}
+		
+		return score*invFrames;
+	}
+	
 	/**
 	 * Processes a sequence to accumulate k-mer counts for CDS frame analysis.
 	 * Uses a validFrames array to indicate which frames contain valid coding sequences.
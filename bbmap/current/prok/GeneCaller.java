@@ -4,6 +4,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import aligner.IDAligner;
 import aligner.SingleStateAlignerFlat2;
@@ -11,6 +12,7 @@ import aligner.SingleStateAlignerFlat3;
 import aligner.SingleStateAlignerFlatFloat;
 import dna.AminoAcid;
 import shared.KillSwitch;
+import shared.Shared;
 import shared.Tools;
 import stream.Read;
 import structures.FloatList;
@@ -101,10 +103,27 @@ public class GeneCaller extends ProkObject {
 		final String name=r.id;
 		final byte[] bases=r.bases;
 
-		//Lists of all longest orfs per frame
-		ArrayList<Orf>[] frameLists=makeOrfs(name, bases, minLen);
+		//K-mer codes per strand, shared by all scoring passes
+		final KmerTrack[] tracks=new KmerTrack[] {new KmerTrack(bases, 0), new KmerTrack(bases, 1)};
+
 		//Lists of all high-scoring orfs per frame, with potentially multiple orfs sharing stops.
-		ArrayList<Orf>[] brokenLists=(breakOrfs ? breakOrfs(frameLists, bases) : frameLists);
+		ArrayList<Orf>[] brokenLists;
+		final int extra=(windowThreads==1 || bases.length<minWindowedLength ? 0 : 
+			takeSpareThreads((windowThreads<1 ? Shared.threads() : windowThreads)-1));
+		if(extra>0){
+			try{
+				brokenLists=makeOrfsWindowed(name, bases, tracks, breakOrfs, 1+extra);
+			}finally{
+				spareThreads.addAndGet(extra);
+			}
+		}else{
+			//Longest orf per stop in all six frames
+			orfBuffer.clear();
+			for(int strand=0; strand<2; strand++){
+				orfBuffer.scanStrand(tracks[strand], strand, minLen, 0, bases.length);
+			}
+			brokenLists=makeOrfs(name, orfBuffer, bases, tracks, breakOrfs);
+		}
 		if(!breakOrfs) {
 			for(int i=0; i<brokenLists.length; i++) {
 				if(brokenLists[i]==null) {brokenLists[i]=new ArrayList<Orf>(1);}
@@ -114,7 +133,7 @@ public class GeneCaller extends ProkObject {
 		ArrayList<Orf>[] rnaLists=null;
 		final int rlen=r.length();
 		if(calltRNA || (call16S && rlen>800) || (call23S && rlen>1500) || call5S || (call18S && rlen>1000)){
-			rnaLists=makeRnas(name, bases);
+			rnaLists=makeRnas(name, bases, tracks);
 			if(rnaLists[0]!=null && !rnaLists[0].isEmpty()) {
 				brokenLists[0].addAll(rnaLists[0]);
 				Collections.sort(brokenLists[0]);
@@ -163,15 +182,7 @@ public class GeneCaller extends ProkObject {
 		
 		// Score ORFs with neural network before pathfinding
 		if (helper != null && helper.hasNeuralNetwork() && currentContigRead != null) {
-			for (ArrayList<Orf> list : brokenLists) {
-				if (list != null) {
-					for (Orf orf : list) {
-						if (orf.type == CDS) {
-							helper.modifyOrfScoreWithNeuralNetwork(orf, currentContigRead);
-						}
-					}
-				}
-			}
+			helper.scoreOrfsWithNeuralNetwork(brokenLists, currentContigRead);
 		}
 
 		stCds2.add(brokenLists);
@@ -199,17 +210,18 @@ public class GeneCaller extends ProkObject {
 	 * There IS overlap between frames.
 	 * All Orfs come out flipped to + orientation. 
 	 * */
-	ArrayList<Orf>[] makeRnas(String name, byte[] bases){
+	ArrayList<Orf>[] makeRnas(String name, byte[] bases, KmerTrack[] tracks){
 		@SuppressWarnings("unchecked")
 		ArrayList<Orf>[] array=new ArrayList[2];
 		array[0]=new ArrayList<Orf>();
 		array[1]=new ArrayList<Orf>();
 		final float[] scores=new float[bases.length];
+		final float[] probs=new float[bases.length];
 		final int[] kmersSeen=(lsuKmers==null && ssuKmers==null && trnaKmers==null && r5SKmers==null) ? null : new int[bases.length];
 		for(int strand=0; strand<2; strand++){
 			for(StatsContainer sc : pgm.rnaContainers){
 				if(ProkObject.callType(sc.type)){
-					ArrayList<Orf> list=makeRnasForStrand(name, bases, strand, sc, scores, (sc.kmerSet()==null ? null : kmersSeen), false, -1);//TODO: Make this loop through all RNA types
+					ArrayList<Orf> list=makeRnasForStrand(name, bases, tracks[strand], strand, sc, scores, probs, (sc.kmerSet()==null ? null : kmersSeen), false, -1);//TODO: Make this loop through all RNA types
 					if(strand==1 && list!=null){
 						for(Orf orf : list){
 							assert(orf.strand==strand);
@@ -225,21 +237,47 @@ public class GeneCaller extends ProkObject {
 		return array;
 	}
 	
+	/**
+	 * Looks up the inner k-mer probability of every position once per RNA type.
+	 * @param scores Receives the running sum of probabilities
+	 * @param probs Receives each probability, or UNDEFINED or INCOMPLETE
+	 */
+	private static void fillRnaProbs(byte[] bases, KmerTrack track, FrameStats inner, float[] scores, float[] probs){
+		final int k=inner.k;
+		float currentScoreAbs=0;
+		for(int pos=0; pos<bases.length; pos++){
+			assert(bases[pos]>=0 && bases[pos]<128) : "Invalid base b="+((int)bases[pos])+"; pos="+pos+"\n"+new String(bases)+"\n";
+			float prob=UNDEFINED;
+			if(track.defined(pos)){
+				final int kmer=track.kmer(pos, k);
+				if(kmer>=0){
+					prob=inner.probs[0][kmer];
+					currentScoreAbs+=prob;
+				}else{
+					prob=INCOMPLETE;
+				}
+			}
+			probs[pos]=prob;
+			scores[pos]=currentScoreAbs;
+		}
+	}
+	
 	/** Designed for quickly calling a single SSU */
 	public Orf makeRna(String name, byte[] bases, int type){
 		final float[] scores=new float[bases.length];//TODO: Big and slow; make a FloatList?
+		final float[] probs=new float[bases.length];
 		StatsContainer sc=pgm.allContainers[type];
 		final int[] kmersSeen=(sc.kmerSet()==null ? null : new int[bases.length]);//TODO: IntList?
 		
 		int strand=0;
-		ArrayList<Orf> list=makeRnasForStrand(name, bases, strand, sc, scores, kmersSeen, true, -1);
+		ArrayList<Orf> list=makeRnasForStrand(name, bases, new KmerTrack(bases, strand), strand, sc, scores, probs, kmersSeen, true, -1);
 		final Orf best1=pickBest(list);
 		assert(best1==null || best1.start>=0 && best1.stop<bases.length) : bases.length+"\n"+best1;
 		if(best1!=null && best1.orfScore>-999){return best1;}
 		
 		strand++;
 		AminoAcid.reverseComplementBasesInPlace(bases);
-		list=makeRnasForStrand(name, bases, strand, sc, scores, kmersSeen, true, -1);
+		list=makeRnasForStrand(name, bases, new KmerTrack(bases, 0), strand, sc, scores, probs, kmersSeen, true, -1);
 		AminoAcid.reverseComplementBasesInPlace(bases);
 		if(strand==1 && list!=null){
 			for(Orf orf : list){
@@ -265,49 +303,168 @@ public class GeneCaller extends ProkObject {
 	}
 	
 	/** 
-	 * Generates lists of all max-length non-overlapping Orfs per frame.
-	 * There IS overlap between frames.
-	 * All Orfs come out flipped to + orientation. 
-	 * */
-	static ArrayList<Orf>[] makeOrfs(String name, byte[] bases, int minlen){
+	 * Makes Orfs from the longest Orf per stop in buf: every high-scoring Orf per stop
+	 * if breakOrfs, otherwise one Orf per entry.
+	 * Bases are reverse-complemented in place for the minus strand, then restored.
+	 * @return Lists of orfs per frame.
+	 */
+	private ArrayList<Orf>[] makeOrfs(String name, OrfBuffer buf, byte[] bases, KmerTrack[] tracks, boolean breakOrfs){
 		@SuppressWarnings("unchecked")
-		int orfs=0;
-		ArrayList<Orf>[] array=new ArrayList[6];
+		ArrayList<Orf>[] lists=new ArrayList[6];
+		for(int fnum=0; fnum<6; fnum++){lists[fnum]=new ArrayList<Orf>();}
 		for(int strand=0; strand<2; strand++){
-			for(int frame=0; frame<3; frame++){
-				ArrayList<Orf> list=makeOrfsForFrame(name, bases, frame, strand, minlen);
-				orfs+=(list==null ? 0 : list.size());
-				array[frame+3*strand]=list;
-				if(strand==1 && list!=null){
-					for(Orf orf : list){
-						assert(orf.frame==frame);
-						assert(orf.strand==strand);
-						orf.flip();
-					}
+			addOrfs(name, buf, strand, bases, tracks[strand], breakOrfs, lists);
+			AminoAcid.reverseComplementBasesInPlace(bases);
+		}
+		if(breakOrfs){
+			for(ArrayList<Orf> list : lists){Collections.sort(list);}
+		}
+		return lists;
+	}
+	
+	/**
+	 * Adds Orfs for the entries of buf on one strand to lists[frame+3*strand],
+	 * in buffer order.  Unbroken Orfs stay in native orientation; broken ones are flipped to plus.
+	 * @param sbases Bases oriented for this strand
+	 * @param track K-mer track for the same orientation as sbases
+	 */
+	private void addOrfs(String name, OrfBuffer buf, int strand, byte[] sbases, KmerTrack track, boolean breakOrfs, ArrayList<Orf>[] lists){
+		for(int i=0, size=buf.size(); i<size; i++){
+			if(buf.strand(i)!=strand){continue;}
+			final int frame=buf.frame(i);
+			final ArrayList<Orf> list=lists[frame+3*strand];
+			if(breakOrfs){
+				ArrayList<Orf> temp=breakOrf(name, buf.start(i), buf.stop(i), strand, frame, sbases, track);
+				if(temp!=null){list.addAll(temp);}
+			}else{
+				list.add(new Orf(name, buf.start(i), buf.stop(i), strand, frame, sbases, false, CDS));
+			}
+		}
+	}
+	
+	/**
+	 * Multithreaded equivalent of makeOrfs followed by breakOrfs, for long contigs.
+	 * The contig is cut into windows, and each window owns the Orfs whose stop codon ends inside it.
+	 * A window's scan starts back at the previous in-frame stop, so neighboring windows overlap
+	 * by one Orf per frame and the merged lists are identical to the single-threaded ones.
+	 * Minus-strand windows read a reverse-complemented copy, so bases are never modified.
+	 * @param name Contig name
+	 * @param bases Contig bases
+	 * @param tracks K-mer tracks per strand
+	 * @param breakOrfs Break Orfs at each start codon, as in breakOrfs
+	 * @param maxThreads Upper limit on threads
+	 * @return Lists of orfs per frame.
+	 */
+	private ArrayList<Orf>[] makeOrfsWindowed(String name, byte[] bases, KmerTrack[] tracks, boolean breakOrfs, int maxThreads){
+		final byte[][] strands=new byte[][] {bases, AminoAcid.reverseComplementBases(bases)};
+		final int windows=(int)((bases.length+(long)windowLength-1)/windowLength);
+		@SuppressWarnings("unchecked")
+		final ArrayList<Orf>[][] results=new ArrayList[windows][];
+		final AtomicInteger nextWindow=new AtomicInteger(0);
+		
+		final int threads=Tools.min(maxThreads, windows);
+		ArrayList<WindowThread> alwt=new ArrayList<WindowThread>(threads);
+		for(int i=0; i<threads; i++){
+			alwt.add(new WindowThread(name, strands, tracks, breakOrfs, results, nextWindow));
+		}
+		for(WindowThread wt : alwt){wt.start();}
+		
+		boolean success=true;
+		for(WindowThread wt : alwt){
+			while(wt.getState()!=Thread.State.TERMINATED){
+				try {
+					wt.join();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
 				}
 			}
-			AminoAcid.reverseComplementBasesInPlace(bases);
+			success&=wt.success;
+			//Accumulate the statistics from the worker's private caller
+			stCds.add(wt.caller.stCds);
+			geneStopsMade+=wt.caller.geneStopsMade;
+			geneStartsMade+=wt.caller.geneStartsMade;
 		}
-//		System.err.print("orfs="+orfs+", ");
-		return array;
+		if(!success){throw new RuntimeException("A window thread failed on contig "+name);}
+		
+		//Windows are in stop order, so concatenation reproduces the single-threaded lists
+		@SuppressWarnings("unchecked")
+		ArrayList<Orf>[] lists=new ArrayList[6];
+		for(int fnum=0; fnum<6; fnum++){
+			int size=0;
+			for(ArrayList<Orf>[] result : results){size+=result[fnum].size();}
+			ArrayList<Orf> list=new ArrayList<Orf>(size);
+			for(ArrayList<Orf>[] result : results){list.addAll(result[fnum]);}
+			if(breakOrfs){Collections.sort(list);}
+			lists[fnum]=list;
+		}
+		return lists;
+	}
+	
+	/**
+	 * Makes and optionally breaks the Orfs of one window in all six frames.
+	 * Each thread breaks Orfs with its own GeneCaller so that statistics are not shared.
+	 */
+	private class WindowThread extends Thread {
+		
+		WindowThread(String name_, byte[][] strands_, KmerTrack[] tracks_, boolean breakOrfs_, ArrayList<Orf>[][] results_, AtomicInteger nextWindow_){
+			name=name_;
+			strands=strands_;
+			tracks=tracks_;
+			breakOrfs=breakOrfs_;
+			results=results_;
+			nextWindow=nextWindow_;
+			caller=new GeneCaller(minLen, maxOverlapSameStrand, maxOverlapOppositeStrand,
+					minStartScore, minStopScore, minInnerScore, minOrfScore, minAvgScore, pgm);
+			caller.generateAllCandidates=generateAllCandidates;
+			caller.keepAtLeastOneOrf=keepAtLeastOneOrf;
+		}
+		
+		@Override
+		public void run(){
+			for(int w=nextWindow.getAndIncrement(); w<results.length; w=nextWindow.getAndIncrement()){
+				results[w]=processWindow(w);
+			}
+			success=true;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private ArrayList<Orf>[] processWindow(int w){
+			final int len=strands[0].length;
+			final int from=w*windowLength;
+			final int to=(int)Tools.min(len, from+(long)windowLength);
+			ArrayList<Orf>[] lists=new ArrayList[6];
+			for(int fnum=0; fnum<6; fnum++){lists[fnum]=new ArrayList<Orf>();}
+			final OrfBuffer buf=caller.orfBuffer;
+			buf.clear();
+			for(int strand=0; strand<2; strand++){
+				buf.scanStrand(tracks[strand], strand, minLen, from, to);
+				caller.addOrfs(name, buf, strand, strands[strand], tracks[strand], breakOrfs, lists);
+			}
+			return lists;
+		}
+		
+		final String name;
+		final byte[][] strands;
+		final KmerTrack[] tracks;
+		final boolean breakOrfs;
+		final ArrayList<Orf>[][] results;
+		final AtomicInteger nextWindow;
+		final GeneCaller caller;
+		boolean success=false;
 	}
 	
 	/**
 	 * Dynamic programming phase.
+	 * Runs over the rows of orfTable, so predecessors are row indices;
+	 * the Orfs on the best path are returned.
 	 * @param frameLists
 	 * @param bases
 	 * @return
 	 */
 	private ArrayList<Orf> findPath(ArrayList<Orf>[] frameLists, byte[] bases){
-		ArrayList<Orf> all=new ArrayList<Orf>();
-		for(ArrayList<Orf> list : frameLists){all.addAll(list);}
-		if(all.isEmpty()){return all;}
-		Collections.sort(all);
-		
-		for(Orf orf : all){
-			orf.pathScorePlus=-999999;
-			orf.pathScoreMinus=-999999;
-		}
+		final OrfTable t=orfTable;
+		final int size=t.fillPath(frameLists);
+		if(size<1){return new ArrayList<Orf>();}
 		
 		int[] lastPositionScored=KillSwitch.allocInt1D(6);
 		Arrays.fill(lastPositionScored, -1);
@@ -316,44 +473,46 @@ public class GeneCaller extends ProkObject {
 		int[] bestIndexPlus=KillSwitch.allocInt1D(6);
 		//Index of highest-scoring ORF in this frame, with prev on the minus strand
 		int[] bestIndexMinus=KillSwitch.allocInt1D(6);
-		//Highest-scoring ORF in this frame, with prev on the plus strand
-		Orf[] bestOrfPlus=new Orf[6];
-		//Highest-scoring ORF in this frame, with prev on the minus strand
-		Orf[] bestOrfMinus=new Orf[6];
+		//Highest-scoring row in this frame, with prev on the plus strand
+		int[] bestRowPlus=new int[] {-1, -1, -1, -1, -1, -1};
+		//Highest-scoring row in this frame, with prev on the minus strand
+		int[] bestRowMinus=new int[] {-1, -1, -1, -1, -1, -1};
 
 		int[][] bestIndex=new int[][] {bestIndexPlus, bestIndexMinus};
-		Orf[][] bestOrf=new Orf[][] {bestOrfPlus, bestOrfMinus};
-		
-		for(Orf orf : all){
-			final int myListNum=3*orf.strand+orf.frame;
-			calcPathScore(orf, frameLists, lastPositionScored, bestIndex);
-			if(bestOrfPlus[myListNum]==null || orf.pathScorePlus>=bestOrfPlus[myListNum].pathScorePlus){
-				bestOrfPlus[myListNum]=orf;
+		int[][] bestRow=new int[][] {bestRowPlus, bestRowMinus};
+		
+		for(int row=0; row<size; row++){
+			final int myListNum=t.list[row];
+			calcPathScore(row, t, lastPositionScored, bestIndex);
+			t.finishRow(row);
+			if(bestRowPlus[myListNum]<0 || t.pathScorePlus[row]>=t.pathScorePlus[bestRowPlus[myListNum]]){
+				bestRowPlus[myListNum]=row;
 				bestIndexPlus[myListNum]=lastPositionScored[myListNum];
-				assert(frameLists[myListNum].get(lastPositionScored[myListNum])==orf);
+				assert(t.frameRows[myListNum][lastPositionScored[myListNum]]==row);
 			}
-			if(bestOrfMinus[myListNum]==null || orf.pathScoreMinus>=bestOrfMinus[myListNum].pathScoreMinus){
-				bestOrfMinus[myListNum]=orf;
+			if(bestRowMinus[myListNum]<0 || t.pathScoreMinus[row]>=t.pathScoreMinus[bestRowMinus[myListNum]]){
+				bestRowMinus[myListNum]=row;
 				bestIndexMinus[myListNum]=lastPositionScored[myListNum];
-				assert(frameLists[myListNum].get(lastPositionScored[myListNum])==orf);
+				assert(t.frameRows[myListNum][lastPositionScored[myListNum]]==row);
 			}
 		}
 		
-		Orf best=bestOrf[0][0];
-		for(Orf[] array : bestOrf){
-			for(Orf orf : array){
-				if(best==null || (orf!=null && orf.pathScore()>best.pathScore())){
-					best=orf;
+		int best=bestRow[0][0];
+		for(int[] array : bestRow){
+			for(int row : array){
+				if(best<0 || (row>=0 && t.pathScore[row]>t.pathScore[best])){
+					best=row;
 				}
 			}
 		}
 		ArrayList<Orf> bestPath=new ArrayList<Orf>();
-		for(Orf orf=best; orf!=null; orf=orf.prev()){
+		for(int row=best; row>=0; row=t.prev(row)){
+			final Orf orf=t.orfs[row];
 			bestPath.add(orf);
 		if(helper!=null && helper.shouldLogOracleDebug(orf)){
-			float prevScore=(orf.prev()==null ? 0 : orf.prev().pathScore());
+			float prevScore=(t.prev(row)<0 ? 0 : t.pathScore[t.prev(row)]);
 			helper.logOracleDebug("path includes "+helper.formatOrfForDebug(orf)+
-					" pathScore="+orf.pathScore()+" prevScore="+prevScore+" orfScore="+orf.orfScore);
+					" pathScore="+t.pathScore[row]+" prevScore="+prevScore+" orfScore="+orf.orfScore);
 		}
 			if(orf.type==CDS){geneStartsOut++;}
 			else if(orf.type==tRNA){tRNAOut++;}
@@ -362,84 +521,77 @@ public class GeneCaller extends ProkObject {
 			else if(orf.type==r5S){r5SOut++;}
 			else if(orf.type==r18S){r18SOut++;}
 		}
+		t.clearPath();
 		Collections.sort(bestPath);
 		return bestPath;
 	}
 	
 	/**
-	 * Calculate the best path to this ORF.
-	 * @param orf
-	 * @param frameLists
+	 * Calculate the best path to this row.
+	 * @param row
+	 * @param t
 	 * @param lastPositionScored
 	 * @param bestIndex
 	 */
-	private void calcPathScore(Orf orf, ArrayList<Orf>[] frameLists, int[] lastPositionScored, int[][] bestIndex){
-		final int myListNum=3*orf.strand+orf.frame;
-
-//		System.err.println("* "+orf);
-//		System.err.println("* "+Arrays.toString(lastPositionScored));
-//		System.err.println();
+	private void calcPathScore(int row, OrfTable t, int[] lastPositionScored, int[][] bestIndex){
+		final int myListNum=t.list[row];
 		
 		for(int listStrand=0; listStrand<2; listStrand++){
 			for(int listFrame=0; listFrame<3; listFrame++){
 				int listNum=listFrame+3*listStrand;
-				ArrayList<Orf> list=frameLists[listNum];
 				int lastPos=lastPositionScored[listNum];
 				int bestPos=bestIndex[listStrand][listNum];
 				if(listStrand==0){
-					calcPathScorePlus(orf, list, listStrand, lastPos, bestPos);
+					calcPathScorePlus(row, t, listNum, listStrand, lastPos, bestPos);
 				}else{
-					calcPathScoreMinus(orf, list, listStrand, lastPos, bestPos);
+					calcPathScoreMinus(row, t, listNum, listStrand, lastPos, bestPos);
 				}
 			}
 		}
 		
-//		System.err.println(myListNum+", "+Arrays.toString(lastPositionScored)+", "+frameLists[myListNum].size());
-		
 		lastPositionScored[myListNum]++;
-		assert(frameLists[myListNum].get(lastPositionScored[myListNum])==orf) : myListNum+"\n"+orf+"\n"+frameLists[myListNum].get(lastPositionScored[myListNum])+"\n"
-			+Arrays.toString(lastPositionScored)+"\n"+frameLists[myListNum].get(lastPositionScored[myListNum]+1);
+		assert(t.frameRows[myListNum][lastPositionScored[myListNum]]==row) : myListNum+"\n"+t.orfs[row]+"\n"
+			+Arrays.toString(lastPositionScored);
 		
 		//These are sanity checks to make sure that the path did not break in the middle.
 		//Safe to disable.
-//		assert(orf.prevPlus!=null || orf.stop<100000);
-//		assert(orf.prevMinus!=null || orf.stop<100000);
-//		assert(orf.pathScore>-10) : orf.pathScore+"\n"+orf+"\n"+orf.prev+"\n";
+//		assert(t.prevPlus[row]>=0 || t.stop[row]<100000);
+//		assert(t.prevMinus[row]>=0 || t.stop[row]<100000);
 	}
 	
 	/**
-	 * Calculate the best path to this ORF from a plus-strand previous ORF.
-	 * @param orf
-	 * @param list
+	 * Calculate the best path to this row from a plus-strand previous ORF.
+	 * @param row
+	 * @param t
+	 * @param listNum List of the candidate previous rows
 	 * @param listStrand
 	 * @param lastPos
 	 * @param bestPos
 	 */
-	private void calcPathScorePlus(final Orf orf, final ArrayList<Orf> list, final int listStrand, final int lastPos, final int bestPos){
+	private void calcPathScorePlus(final int row, final OrfTable t, final int listNum, final int listStrand, final int lastPos, final int bestPos){
 		assert(listStrand==0);
 		if(lastPos<0){
-			if(orf.prevPlus==null){
-				orf.pathScorePlus=orf.orfScore;
-				orf.pathLengthPlus=1;
+			if(t.prevPlus[row]<0){
+				t.pathScorePlus[row]=t.orfScore[row];
+				t.pathLengthPlus[row]=1;
 			}
 			return;
 		}
-		if(list.isEmpty()){return;}
+		if(t.frameSize[listNum]<1){return;}
 		
-//		System.err.println("\nExamining   \t"+orf+"\nlastPos="+lastPos+", bestPos="+bestPos+", sameFrame="+sameFrame);
+		final int[] list=t.frameRows[listNum];
 		boolean found=false;
-		final boolean sameStrand=(orf.strand==listStrand);
+		final boolean sameStrand=(t.strand[row]==listStrand);
 		final int maxOverlap=(sameStrand ? maxOverlapSameStrand : maxOverlapOppositeStrand);
 		for(int i=lastPos, min=Tools.max(0, bestPos-lookbackPlus); i>=min || (i>0 && !found); i--){
-			Orf prev=list.get(i);
-			assert(prev!=orf) : prev;
-//			System.err.println("Comparing to \t"+prev);
-			if(orf.isValidPrev(prev, maxOverlap)){
-				int overlap=Tools.max(0, prev.stop-orf.start+1);
-				float orfScore=overlap==0 ? orf.orfScore : orf.calcOrfScore(overlap);
+			final int prev=list[i];
+			assert(prev!=row) : t.orfs[prev];
+			if(t.isValidPrev(row, prev, maxOverlap)){
+				int overlap=Tools.max(0, t.stop[prev]-t.start[row]+1);
+				float orfScore=overlap==0 ? t.orfScore[row] : t.calcOrfScore(row, overlap);
 				
-				final float prevScore=prev.pathScore();
-				final int prevLength=prev.pathLength();
+				final float prevScore=t.pathScore[prev];
+				final int prevLength=t.pathLength[prev];
 				
 				float pathScore;
 				final int pathLength;
@@ -449,58 +601,53 @@ public class GeneCaller extends ProkObject {
 					pathScore+=p0+p1*(Tools.mid(p5*(p2+pathLength), p6*(p3-pathLength), p4));
 				}else{
 					pathLength=1;
-					pathScore=prev.pathScore()+orfScore;
+					pathScore=prevScore+orfScore;
 					pathScore+=q1+Tools.mid(q2*prevLength, q3+q4*prevLength, q5);
 				}
 				
 				if(overlap<1 && prevScore>0){found=true;}
-				if(pathScore>=orf.pathScorePlus){
-					orf.pathScorePlus=pathScore;
-					orf.prevPlus=prev;
-					orf.pathLengthPlus=pathLength;
-//					System.err.println("Set as best");
+				if(pathScore>=t.pathScorePlus[row]){
+					t.pathScorePlus[row]=pathScore;
+					t.prevPlus[row]=prev;
+					t.pathLengthPlus[row]=pathLength;
 				}
 			}
-//			if(found && prev.stop<maxOverlap-2000 && orf.prevPlus!=null){
-//				System.err.println("Breaking");
-//				break;
-//			}
 		}
 	}
 	
 	/**
-	 * Calculate the best path to this ORF from a minus-strand previous ORF.
-	 * @param orf
-	 * @param list
+	 * Calculate the best path to this row from a minus-strand previous ORF.
+	 * @param row
+	 * @param t
+	 * @param listNum List of the candidate previous rows
 	 * @param listStrand
 	 * @param lastPos
 	 * @param bestPos
 	 */
-	private void calcPathScoreMinus(final Orf orf, final ArrayList<Orf> list, final int listStrand, final int lastPos, final int bestPos){
+	private void calcPathScoreMinus(final int row, final OrfTable t, final int listNum, final int listStrand, final int lastPos, final int bestPos){
 		assert(listStrand==1);
 		if(lastPos<0){
-			if(orf.prevMinus==null){
-				orf.pathScoreMinus=orf.orfScore;
-				orf.pathLengthMinus=1;
+			if(t.prevMinus[row]<0){
+				t.pathScoreMinus[row]=t.orfScore[row];
+				t.pathLengthMinus[row]=1;
 			}
 			return;
 		}
-		if(list.isEmpty()){return;}
+		if(t.frameSize[listNum]<1){return;}
 		
-//		System.err.println("\nExamining   \t"+orf+"\nlastPos="+lastPos+", bestPos="+bestPos+", sameFrame="+sameFrame);
+		final int[] list=t.frameRows[listNum];
 		boolean found=false;
-		final boolean sameStrand=(orf.strand==listStrand);
+		final boolean sameStrand=(t.strand[row]==listStrand);
 		final int maxOverlap=(sameStrand ? maxOverlapSameStrand : maxOverlapOppositeStrand);
 		for(int i=lastPos, min=Tools.max(0, bestPos-lookbackMinus); i>=min || (i>0 && !found); i--){
-			Orf prev=list.get(i);
-			assert(prev!=orf) : prev;
-//			System.err.println("Comparing to \t"+prev);
-			if(orf.isValidPrev(prev, maxOverlap)){
-				int overlap=Tools.max(0, prev.stop-orf.start+1);
-				float orfScore=overlap==0 ? orf.orfScore : orf.calcOrfScore(overlap);
+			final int prev=list[i];
+			assert(prev!=row) : t.orfs[prev];
+			if(t.isValidPrev(row, prev, maxOverlap)){
+				int overlap=Tools.max(0, t.stop[prev]-t.start[row]+1);
+				float orfScore=overlap==0 ? t.orfScore[row] : t.calcOrfScore(row, overlap);
 				
-				final float prevScore=prev.pathScore();
-				final int prevLength=prev.pathLength();
+				final float prevScore=t.pathScore[prev];
+				final int prevLength=t.pathLength[prev];
 				
 				float pathScore;
 				final int pathLength;
@@ -510,91 +657,27 @@ public class GeneCaller extends ProkObject {
 					pathScore+=p0+p1*(Tools.mid(p5*(p2+pathLength), p6*(p3-pathLength), p4));
 				}else{
 					pathLength=1;
-					pathScore=prev.pathScore()+orfScore;
+					pathScore=prevScore+orfScore;
 					pathScore+=q1+Tools.mid(q2*prevLength, q3+q4*prevLength, q5);
 				}
 				if(overlap<1 && prevScore>0){found=true;}
-				if(pathScore>=orf.pathScoreMinus){
-					orf.pathScoreMinus=pathScore;
-					orf.prevMinus=prev;
-					orf.pathLengthMinus=pathLength;
-//					System.err.println("Set as best");
+				if(pathScore>=t.pathScoreMinus[row]){
+					t.pathScoreMinus[row]=pathScore;
+					t.prevMinus[row]=prev;
+					t.pathLengthMinus[row]=pathLength;
 				}
 			}
-//			if(found && prev.stop<maxOverlap-2000 && orf.prevMinus!=null){
-//				System.err.println("Breaking");
-//				break;
-//			}
 		}
 	}
 	
-	/** 
-	 * Generates a list of maximal-length Orfs only (non-overlapping).
-	 * All Orfs come out in native orientation (unflipped). 
-	 * */
-	static ArrayList<Orf> makeOrfsForFrame(String name, byte[] bases, int startFrame, int strand, int minlen){
-//		assert(false) : "TODO";
-		assert(minlen>=3);
-		if(bases==null || bases.length<minlen){return null;}
-		ArrayList<Orf> orfs=new ArrayList<Orf>();
-		if(!ProkObject.callCDS){return orfs;}
-//		int mask=63;
-		int code=0;
-		int start=-2;
-		int frame=0;
-		int pos=startFrame;
-		
-		
-		for(; pos<bases.length; pos++){
-			byte b=bases[pos];
-			int x=AminoAcid.baseToNumber[b];
-//			code=((code<<2)|x)&mask;
-			code=((code<<2)|x);
-			frame++;
-			if(frame==3){
-				frame=0;
-				if(start>=0){
-					if(GeneModel.isStopCodon(code) || code<0){//NOTE: This adds a stop codon wherever there are Ns.
-						int len=pos-start+1;
-						if(len>=minlen){
-							Orf f=new Orf(name, start, pos, strand, startFrame, bases, true, CDS);
-							orfs.add(f);
-						}
-						start=-1;
-					}
-				}else{
-					if(start==-2 || (start<0 && GeneModel.isStartCodon(code))){
-						start=pos-2;
-					}
-				}
-				code=0;
-			}
-		}
-
-		//Add a stop codon at the sequence end.
-		if(start>=0){
-			pos--;
-			while(frame!=3 && frame!=-1){
-				pos--;
-				frame--;
-			}
-			int len=pos-start+1;
-			if(len>=minlen){
-				assert(pos<bases.length) : start+", "+pos+", "+bases.length;
-				Orf f=new Orf(name, start, pos, strand, startFrame, bases, true, CDS);
-				orfs.add(f);
-			}
-		}
-
-//		System.err.print(" *"+orfs.size()+"* ");
-		return orfs;
-	}
-	
 	/** 
 	 * Generates a list of maximal-length RNAs (non-overlapping).
 	 * All RNAs come out in native orientation (unflipped). 
+	 * The first call for a type fills probs with each position's inner k-mer probability
+	 * (UNDEFINED for non-ACGT, INCOMPLETE before k defined bases) and scores with their prefix sums;
+	 * calls that retry with a higher bias reuse both instead of rescanning k-mers.
 	 * */
-	ArrayList<Orf> makeRnasForStrand(String name, byte[] bases, int strand, StatsContainer sc, float[] scores, int[] kmersSeen, boolean quitEarly, float bias){
+	ArrayList<Orf> makeRnasForStrand(String name, byte[] bases, KmerTrack track, int strand, StatsContainer sc, float[] scores, float[] probs, int[] kmersSeen, boolean quitEarly, float bias){
 		final int window=sc.lengthAvg;
 		if(bases==null || bases.length*2<window){return null;}
 		ArrayList<Orf> orfs=new ArrayList<Orf>(sc.type==tRNA ? 32 : 8);
@@ -603,17 +686,13 @@ public class GeneCaller extends ProkObject {
 //		final FrameStats start=sc.start;
 //		final FrameStats stop=sc.stop;
 		
-		final int k=inner.k;
-		final int mask=inner.mask;
 //		final float invLen=sc.invLengthAvg;
 		final int halfWindow=window/2;
 		final int maxWindow=(int)(window*1.5f);
 		final int maxWindow2=(int)(window*2.5f);
 //		final int slop=Tools.max(50, window/8);
-		int len=0;
-		int kmer=0;
 		float currentScore=0;
-		float currentScoreAbs=0;
+		if(bias<=-1){fillRnaProbs(bases, track, inner, scores, probs);}
 		bias=(bias>-1 ? bias : biases[sc.type]);
 		final float maxBias=biases[sc.type]*1.45f;
 		
@@ -625,17 +704,11 @@ public class GeneCaller extends ProkObject {
 		int maxPos=0;
 		
 		for(int pos=0; pos<bases.length; pos++){
-			final byte b=bases[pos];
-			assert(b>=0 && b<128) : "Invalid base b="+((int)b)+"; pos="+pos+"\n"+new String(bases)+"\n";
-			final int x=AminoAcid.baseToNumber[b];
-			kmer=((kmer<<2)|x)&mask;
+			final float prob=probs[pos];
 			
-			if(x>=0){
-				len++;
-				if(len>=k){
-					float prob=inner.probs[0][kmer];
+			if(prob!=UNDEFINED){
+				if(prob!=INCOMPLETE){
 					float dif=prob-bias;//Prob above 1 is more likely than average
-					currentScoreAbs+=prob;
 					currentScore=Tools.max(0, currentScore+dif);
 				}
 				
@@ -654,7 +727,7 @@ public class GeneCaller extends ProkObject {
 							if(bias<=maxBias){
 								orfs=null;
 								float biasMult=(rnaLen>8*window ? 1.2f : rnaLen>4*window ? 1.1f : 1.05f);
-								return makeRnasForStrand(name, bases, strand, sc, scores, kmersSeen, quitEarly, bias*biasMult);
+								return makeRnasForStrand(name, bases, track, strand, sc, scores, probs, kmersSeen, quitEarly, bias*biasMult);
 							}
 						}
 						if(rnaLen<=maxWindow2){
@@ -679,11 +752,7 @@ public class GeneCaller extends ProkObject {
 //					System.out.println(pos+"\t"+currentScore);
 //				}
 				
-			}else{
-				len=0;
-				kmer=0;
 			}
-			scores[pos]=currentScoreAbs;
 		}
 		
 //		System.err.println("size="+orfs.size()+", type="+Orf.typeStrings[sc.type]);
@@ -696,7 +765,7 @@ public class GeneCaller extends ProkObject {
 					if(bias<=maxBias){
 						orfs=null;
 						float biasMult=(rnaLen>8*window ? 1.2f : rnaLen>4*window ? 1.1f : 1.05f);
-						return makeRnasForStrand(name, bases, strand, sc, scores, kmersSeen, quitEarly, bias*biasMult);
+						return makeRnasForStrand(name, bases, track, strand, sc, scores, probs, kmersSeen, quitEarly, bias*biasMult);
 					}
 				}
 				if(rnaLen<=maxWindow2){
@@ -721,7 +790,7 @@ public class GeneCaller extends ProkObject {
 		for(int i=0; i<orfs.size(); i++){
 			Orf orf=orfs.get(i);
 //			System.err.println(orf.orfScore);
-			boolean good=refineRna(orf, bases, strand, sc, scores, kmersSeen);
+			boolean good=refineRna(orf, bases, track, strand, sc, scores, kmersSeen);
 			if(orf.orfScore<cutoff || !good){
 				if(verbose){System.err.println("REJECT: "+orf.toStringFlipped());}
 				orfs.set(i, null);
@@ -792,7 +861,7 @@ public class GeneCaller extends ProkObject {
 		}
 	}
 	
-	boolean refineRna(Orf orf, byte[] bases, int strand, StatsContainer sc, float[] scores, int[] kmersSeen){
+	boolean refineRna(Orf orf, byte[] bases, KmerTrack track, int strand, StatsContainer sc, float[] scores, int[] kmersSeen){
 		if(orf==null){return false;}
 		if(verbose){System.err.println("REFINE: "+orf.toStringFlipped());}
 		final int window=sc.lengthAvg;
@@ -823,7 +892,7 @@ public class GeneCaller extends ProkObject {
 			final int left=leftmost;
 			final int right=Tools.min(bases.length-1, orf.stop+slop-window);
 			final float thresh=cutoff3[sc.type];
-			fillPoints(left, right, bases, sc.start, thresh, starts, startScores);
+			fillPoints(left, right, bases, track, sc.start, thresh, starts, startScores);
 		}
 		if(verbose){System.err.println("starts: "+starts.size);}
 //		if((orf.start+"").startsWith("146") || true){System.err.println(starts);}
@@ -833,7 +902,7 @@ public class GeneCaller extends ProkObject {
 			final int left=Tools.max(0, orf.start-slop+window);
 			final int right=rightmost;
 			final float thresh=cutoff4[sc.type];
-			fillPoints(left, right, bases, sc.stop, thresh, stops, stopScores);
+			fillPoints(left, right, bases, track, sc.stop, thresh, stops, stopScores);
 		}
 		if(verbose){System.err.println("stops: "+stops.size);}
 //		if((orf.start+"").startsWith("146") || true){System.err.println(stops);}
@@ -1058,7 +1127,7 @@ public class GeneCaller extends ProkObject {
 		return true;
 	}
 	
-	void fillPoints(final int left, final int right, final byte[] bases, final FrameStats fs, float thresh, final IntList points, final FloatList scores){
+	void fillPoints(final int left, final int right, final byte[] bases, final KmerTrack track, final FrameStats fs, float thresh, final IntList points, final FloatList scores){
 		points.clear();
 		scores.clear();
 		final float minThresh=thresh;//thresh*0.05f;
@@ -1068,7 +1137,7 @@ public class GeneCaller extends ProkObject {
 			points.clear();
 			scores.clear();
 			for(int i=left; i<right; i++){
-				float score=fs.scorePoint(i, bases);
+				float score=fs.scorePoint(i, bases, track);
 //				System.err.println(i+", "+score);
 				if(score>=thresh){
 					points.add(i);
@@ -1079,51 +1148,18 @@ public class GeneCaller extends ProkObject {
 		}
 	}
 	
-	/**
-	 * Generate all possible genes from each Orf, and return them in a new set of lists.
-	 * @param frameLists
-	 * @param bases
-	 * @return Lists of orfs.
-	 */
-	private ArrayList<Orf>[] breakOrfs(ArrayList<Orf>[] frameLists, byte[] bases){
-
-		@SuppressWarnings("unchecked")
-		ArrayList<Orf>[] brokenLists=new ArrayList[6];
-		for(int strand=0; strand<2; strand++){
-			for(int frame=0; frame<3; frame++){
-				int fnum=frame+3*strand;
-				ArrayList<Orf> longest=frameLists[fnum]; //Longest Orf per stop
-				ArrayList<Orf> broken=new ArrayList<Orf>(); //All high scoring Orfs, including multiple per stop, with different starts
-				if(longest!=null) {
-					for(Orf orf : longest){
-						assert(orf.frame==frame);
-						assert(orf.strand==strand);
-						ArrayList<Orf> temp=breakOrf(orf, bases);
-						if(temp!=null){
-							broken.addAll(temp);
-						}
-					}
-				}
-				Collections.sort(broken);
-				brokenLists[fnum]=broken;
-			}
-			//Reverse-complement bases after processing each strand
-			AminoAcid.reverseComplementBasesInPlace(bases);
-		}
-		return brokenLists;
-	}
-	
 	/**
 	 * Generate an Orf for each possible start codon.
 	 * Retain only the high-scoring ones.
-	 * @param longest Longest open reading frame for a given stop.
+	 * The longest open reading frame for a given stop is passed in native-strand coordinates.
+	 * @param start First base of the longest Orf.
+	 * @param stop Last base of its stop codon.
 	 * @param bases Bases, oriented for this Orf.
-	 * @return List of Orfs.
+	 * @param track K-mer track for the same orientation as bases.
+	 * @return List of Orfs, or null if no start was considered.
 	 */
-	private ArrayList<Orf> breakOrf(Orf longest, byte[] bases){
-		assert(longest.start<longest.stop);
-		final int flipped=longest.flipped();
-		if(flipped==1){longest.flip();}//Now the orf is aligned to its native strand
+	private ArrayList<Orf> breakOrf(String name, int start, int stop, int strand, int frame, byte[] bases, KmerTrack track){
+		assert(start<stop);
 		
 		geneStopsMade++;
 		
@@ -1131,11 +1167,7 @@ public class GeneCaller extends ProkObject {
 		final FrameStats startStats=pgm.statsCDS.start;
 		final FrameStats stopStats=pgm.statsCDS.stop;
 		
-		final String name=longest.scafName;
-		final int start=longest.start;
-		final int stop=longest.stop;
-		final int strand=longest.strand;
-		final int max=Tools.min(longest.stop-2, longest.stop-minLen+4);
+		final int max=Tools.min(stop-2, stop-minLen+4);
 
 		assert(pgm!=null) : pgm;
 		assert(pgm.statsCDS!=null) : pgm;
@@ -1143,29 +1175,22 @@ public class GeneCaller extends ProkObject {
 		assert(pgm.statsCDS.inner.k>0) : pgm.statsCDS.inner;
 		
 		final int k=innerStats.k;
-		final int mask=~((-1)<<(2*k));
+		final int firstKmer=start+k-1;//Inner k-mers may not extend before the start
 
-		final float stopScore=stopStats.scorePoint(longest.stop, bases);
+		final float stopScore=stopStats.scorePoint(stop, bases, track);
 		stCds.geneStopScoreSum+=stopScore;
 		stCds.geneStopScoreCount++;
 		
-		ArrayList<Orf> broken=new ArrayList<Orf>();
+		//Starts are scored as primitives; only those that pass filtering become Orfs
+		final OrfTable table=orfTable;
+		table.clearStarts();
 		int created=0;
 		
-		int codon=0;
-		int kmer=0;
-		int len=0;
-		int numKmers=0;
 		float currentScore=0;
 		for(int pos=start, currentFrame=0; pos<=stop; pos++){
-			final byte b=bases[pos];
-			final int x=AminoAcid.baseToNumber[b];
-			codon=((codon<<2)|x);
-			kmer=((kmer<<2)|x)&mask;
-			
-			if(x>=0){
-				len++;
-				if(len>=k){
+			if(pos>=firstKmer){
+				final int kmer=track.kmer(pos, k);
+				if(kmer>=0){
 					float prob=innerStats.probs[currentFrame][kmer];
 					float dif=prob-0.99f;//Prob above 1 is more likely than average
 					currentScore+=dif;
@@ -1177,22 +1202,19 @@ public class GeneCaller extends ProkObject {
 //							"\tasStart="+Tools.format("%.4f", pgm.calcStartScore(pos-2, bases))+"\tasStop="+Tools.format("%.4f", stopStats.scorePoint(pos, bases))+
 //							"\tcodon="+AminoAcid.kmerToString(kmer, 3)+" frame="+(currentFrame));
 				}
-			}else{
-				len=0;
-				kmer=0;
 			}
 			
 			currentFrame++;
 //			outstream.println("pos="+pos+", codon="+AminoAcid.kmerToString(kmer, 3)+", frame="+currentFrame+", start="+start+", isStartCodon="+pgm.isStartCodon(codon));
 			if(currentFrame>2){
 				currentFrame=0;
-				if(pos<max && created<breakLimit && (pos==start+2 || pgm.isStartCodon(codon))){
+				if(pos<max && created<breakLimit && (pos==start+2 || pgm.isStartCodon(track.kmer(pos, 3)))){
 //					outstream.println(x);
 					int glen=stop-pos+3;
 					assert(glen>=minLen) : "glen="+glen+", minLen="+minLen+", pos="+pos+", max="+max+", start="+start;
 					
 					int oStart=pos-2;
-					float startScore=startStats.scorePoint(oStart, bases);
+					float startScore=startStats.scorePoint(oStart, bases, track);
 
 					stCds.geneStartScoreSum+=startScore;
 					stCds.geneStartScoreCount++;
@@ -1201,77 +1223,64 @@ public class GeneCaller extends ProkObject {
 					stCds.lengthCount++;
 					
 					if((startScore>=minStartScore || pos<6) /* && stopScore>=minStopScore /*|| broken.isEmpty()*/){
-						Orf orf=new Orf(name, pos-2, stop, strand, longest.frame, bases, false, longest.type);
-						
 						geneStartsMade++;
-						orf.kmerScore=currentScore;
-						orf.startScore=startScore;
-						orf.stopScore=stopScore;
-
-						assert(orf.frame==longest.frame);
-						assert(orf.strand==strand);
-
-						if(strand==1){orf.flip();}
-						broken.add(orf);
+						table.addStart(oStart, currentScore, startScore);
 						created++;
 					}
 				}
-				codon=0;
 			}
 		}
 		
-		final int size=broken.size();
+		final int size=table.startCount;
 		final int sizeCutoff=Tools.max(5, size/2);
-		if(size<1){return broken;}
-		Orf best=broken.get(0);
-		Orf bestStart=broken.get(0);
+		if(size<1){return null;}
+		final int[] cStart=table.cStart;
+		final float[] cKmerScore=table.cKmerScore, cStartScore=table.cStartScore, cOrfScore=table.cOrfScore;
+		int best=0;
+		int bestStart=0;
 		for(int i=0; i<size; i++){
-			Orf orf=broken.get(i);
-			
 			//This fixes scores because they were generated together, from start to stop, to make this O(N) instead of O(N^2).
-			orf.kmerScore=currentScore-orf.kmerScore;
-			orf.orfScore=orf.calcOrfScore();
-			if(orf.orfScore>=best.orfScore){best=orf;}
-			if(orf.startScore>=bestStart.startScore){bestStart=orf;}
+			cKmerScore[i]=currentScore-cKmerScore[i];
+			final int len=stop-cStart[i]+1;
+			final float avgKmerScore=Orf.averageKmerScore(cKmerScore[i], len);
+			cOrfScore[i]=Orf.calcOrfScore(cStartScore[i], stopScore, avgKmerScore, len, 0);
+			if(cOrfScore[i]>=cOrfScore[best]){best=i;}
+			if(cStartScore[i]>=cStartScore[bestStart]){bestStart=i;}
 			
-			stCds.geneInnerScoreSum+=orf.averageKmerScore();
+			stCds.geneInnerScoreSum+=avgKmerScore;
 			stCds.geneInnerScoreCount++;
 		}
 		
-		//Sort to by score descending to eliminate low-scoring copies. 
-		if(broken.size()>1){Collections.sort(broken, PFeature.featureComparatorScore);}
-
-		// Brandon: Generate all candidates
-  		// ---- START MODIFICATION ----
-        if (!generateAllCandidates) {
-            //Sort to by score descending to eliminate low-scoring copies.
-            if(broken.size()>1){Collections.sort(broken, PFeature.featureComparatorScore);}
-
-            int removed=0;
-            for(int i=0; i<size; i++){//Fix scores because they were generated together...
-                Orf orf=broken.get(i);
-                if(keepAtLeastOneOrf && i==0) {
-                    //skip
-                }else if(orf.averageKmerScore()<minInnerScore || orf.orfScore<minOrfScore || 
-						orf.orfScore/orf.length()<minAvgScore || 
-						orf.orfScore<0.5f*best.orfScore-10 || (orf.startScore<bestStart.startScore-0.55f && orf.kmerScore<best.kmerScore*1.1f && orf!=best)){
-                    broken.set(i, null);
-                    removed++;
-                }else if(i>sizeCutoff){
-                    broken.set(i, null);
-                    removed++;
-                }
-            }
-            if(removed>0){
-                Tools.condenseStrict(broken);
-            }
-        }
-        // ---- END MODIFICATION ----
+		//Sort by score descending to eliminate low-scoring copies. 
+		final int[] order=table.sortStartsByScore(strand);
+		ArrayList<Orf> broken=new ArrayList<Orf>(generateAllCandidates ? size : Tools.min(size, sizeCutoff+1));
+		for(int rank=0; rank<size; rank++){
+			final int i=order[rank];
+			
+			// Brandon: Generate all candidates
+			if(!generateAllCandidates && !(keepAtLeastOneOrf && rank==0)){
+				final int len=stop-cStart[i]+1;
+				if(Orf.averageKmerScore(cKmerScore[i], len)<minInnerScore || cOrfScore[i]<minOrfScore || 
+						cOrfScore[i]/len<minAvgScore || 
+						cOrfScore[i]<0.5f*cOrfScore[best]-10 || (cStartScore[i]<cStartScore[bestStart]-0.55f && cKmerScore[i]<cKmerScore[best]*1.1f && i!=best)){
+					continue;
+				}else if(rank>sizeCutoff){
+					continue;
+				}
+			}
+			
+			Orf orf=new Orf(name, cStart[i], stop, strand, frame, bases, false, CDS);
+			orf.kmerScore=cKmerScore[i];
+			orf.startScore=cStartScore[i];
+			orf.stopScore=stopScore;
+			orf.orfScore=cOrfScore[i];
+			if(strand==1){orf.flip();}
+			broken.add(orf);
+		}
 
 		geneStartsRetained+=broken.size();
 		geneStopsRetained+=( !broken.isEmpty() ? 1 : 0);
 		
-		if(flipped==1){longest.flip();}
 		return broken;
 	}
 	
@@ -1430,6 +1439,11 @@ public class GeneCaller extends ProkObject {
 	static float[] scoreMult=new float[] {1f, 1.0f, 35f, 80f, 1.25f, 35f};//score mult
 	static float[] biases=new float[] {1f, 1.45f, 1.30f, 1.30f, 1.55f, 1.50f};
 	
+	/** Longest Orfs of the current contig or window; reused across contigs */
+	final OrfBuffer orfBuffer=new OrfBuffer();
+	/** Start candidates and path rows; reused across contigs */
+	final OrfTable orfTable=new OrfTable();
+	
 	long geneStopsMade=0;
 	long geneStartsMade=0;
 	long geneStartsRetained=0;
@@ -1496,6 +1510,42 @@ public class GeneCaller extends ProkObject {
 	}
 	
 	public boolean keepAtLeastOneOrf=false;
+	
+	/** Markers in RNA probability arrays; real probabilities are never negative */
+	private static final float UNDEFINED=-2f, INCOMPLETE=-1f;
+	
+	/**
+	 * Add to the threads that are free to help with long contigs, or subtract a busy one.
+	 * CallGenes adds each thread that runs out of contigs; the server subtracts
+	 * each running job from Shared.threads().
+	 */
+	public static void addSpareThreads(int x){spareThreads.addAndGet(x);}
+	
+	/** Set the number of threads free to help with long contigs */
+	public static void setSpareThreads(int x){spareThreads.set(x);}
+	
+	/** Take up to max spare threads; they must be given back with addSpareThreads */
+	private static int takeSpareThreads(int max){
+		for(int x=spareThreads.get(); x>0 && max>0; x=spareThreads.get()){
+			final int take=Tools.min(x, max);
+			if(spareThreads.compareAndSet(x, x-take)){return take;}
+		}
+		return 0;
+	}
+	
+	/** 
+	 * Most threads used to find and break Orfs within a single long contig, including
+	 * the calling thread; 1 disables windowing and -1 allows Shared.threads().
+	 * Threads beyond the caller are taken from spareThreads, so cores that are
+	 * still calling genes on other contigs are never oversubscribed.
+	 */
+	public static int windowThreads=-1;
+	/** Idle threads available to window long contigs; 0 unless set by a driver such as CallGenes */
+	private static final AtomicInteger spareThreads=new AtomicInteger(0);
+	/** Contigs at least this long are split into windows and processed by windowThreads */
+	public static int minWindowedLength=1000000;
+	/** Bases per window */
+	public static int windowLength=250000;
 
 	private static ThreadLocal<SingleStateAlignerFlat2> localSSA=new ThreadLocal<SingleStateAlignerFlat2>();
 	private static ThreadLocal<SingleStateAlignerFlat3> localSSA3=new ThreadLocal<SingleStateAlignerFlat3>();
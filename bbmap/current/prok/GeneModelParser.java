@@ -56,10 +56,12 @@ public class GeneModelParser {
 	/**
 	 * Loads a complete gene model from the specified file.
 	 * Creates a parser instance and processes the entire file to build the model.
+	 * Binary snapshots written by PGMTools are loaded directly.
 	 * @param fname Path to the gene model file
 	 * @return A fully populated GeneModel with all statistics containers
 	 */
 	public static GeneModel loadModel(String fname) {
+		if(PGMSnapshot.isSnapshot(fname)){return PGMSnapshot.load(fname);}
 		GeneModelParser gmp=new GeneModelParser(fname);
 		return gmp.parse();
 	}
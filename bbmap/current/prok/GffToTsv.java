@@ -1,11 +1,20 @@
 package prok;
 
-import java.util.ArrayDeque;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import fileIO.ByteFile;
 import fileIO.ByteStreamWriter;
-import shared.LineParser1;
+import fileIO.ReadWrite;
+import ml.BinaryDataFile;
+import shared.Parse;
+import shared.Shared;
+import shared.Timer;
+import shared.Tools;
 import structures.ByteBuilder;
+import structures.FloatList;
 
 /**
  * Converts a GFF file with custom VECTOR attributes into a TSV file suitable
@@ -14,113 +23,367 @@ import structures.ByteBuilder;
  * embeds the contig ID (which may contain commas or digits) ahead of the
  * numeric payload, so this implementation pulls numeric tokens from the end of
  * the attribute until all feature (and optional label) columns are captured.
+ * With binary=t (or an out file ending in .bbd) rows are written in the
+ * ml.BinaryDataFile format instead, which DataLoader reads without parsing;
+ * half=t stores float16 values.
+ * <p>
+ * in= may be a comma-delimited list of GFF files or a folder of them; files are
+ * converted in parallel, one per thread. Rows are written to out in input order,
+ * or, if out contains '#', to one shard per input with '#' replaced by the
+ * input's base name. VECTOR attributes are located and tokenized in place on
+ * the line bytes, so no Strings are made per row.
  */
 public class GffToTsv {
 
     private static final int FEATURE_COLUMNS = 356;
     private static final int LABEL_COLUMNS = 1; // present when true genes are known
     private static final int MAX_NUMERIC_COLUMNS = FEATURE_COLUMNS + LABEL_COLUMNS;
+    private static final byte[] VECTOR_KEY = "VECTOR=".getBytes();
+    /** Buffered bytes (or floats) per input before trying to hand them to the writer */
+    private static final int FLUSH_SIZE = 1 << 20;
 
     public static void main(String[] args) {
-        String inFile = null;
-        String outFile = null;
+        Timer t = new Timer();
+        GffToTsv x = new GffToTsv(args);
+        x.process(t);
+    }
+
+    public GffToTsv(String[] args) {
+        String inArg = null;
+        Boolean binary_ = null;
+        boolean half_ = false;
+        int threads_ = Shared.threads();
 
         for (String arg : args) {
             String[] split = arg.split("=");
             String key = split[0].toLowerCase();
             String value = split.length > 1 ? split[1] : null;
 
-            if (key.equals("in")) { inFile = value; }
+            if (key.equals("in")) { inArg = value; }
             else if (key.equals("out")) { outFile = value; }
+            else if (key.equals("binary") || key.equals("bin")) { binary_ = Parse.parseBoolean(value); }
+            else if (key.equals("half") || key.equals("float16")) { half_ = Parse.parseBoolean(value); }
+            else if (key.equals("threads") || key.equals("t")) { threads_ = Integer.parseInt(value); }
         }
 
-        if (inFile == null || outFile == null) {
-            System.err.println("Usage: java prok.GffToTsv in=<file.gff> out=<file.tsv>");
+        if (inArg == null || outFile == null) {
+            System.err.println("Usage: java prok.GffToTsv in=<file.gff,folder> out=<file.tsv> binary=<f> half=<f> threads=<auto>");
             System.exit(1);
         }
+        inFiles = expandInputs(inArg);
+        binary = (binary_ == null ? outFile.endsWith(".bbd") : binary_);
+        half = half_;
+        sharded = outFile.indexOf('#') >= 0;
+        threads = Tools.mid(1, threads_, inFiles.length);
+    }
 
-        System.err.println("Converting " + inFile + " to " + outFile);
+    /** Convert every input, with one thread per file. */
+    void process(Timer t) {
+        System.err.println("Converting " + (inFiles.length == 1 ? inFiles[0] : inFiles.length + " files")
+                + " to " + outFile);
+        if (!sharded && !binary) {
+            writer = new ByteStreamWriter(outFile, true, false, true);
+            writer.start();
+        }
 
-        ByteFile reader = null;
-        ByteStreamWriter writer = null;
-        LineParser1 parser = new LineParser1('\t');
-        ByteBuilder bb = new ByteBuilder(4096);
+        ArrayList<ConvertThread> alpt = new ArrayList<ConvertThread>(threads);
+        for (int i = 0; i < threads; i++) { alpt.add(new ConvertThread()); }
+        for (ConvertThread pt : alpt) { pt.start(); }
         long written = 0;
+        for (ConvertThread pt : alpt) {
+            while (pt.getState() != Thread.State.TERMINATED) {
+                try {
+                    pt.join();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            written += pt.rowsOut;
+        }
 
-        try {
-            reader = ByteFile.makeByteFile(inFile, true);
-            writer = new ByteStreamWriter(outFile, true, false, true);
-            writer.start();
+        if (writer != null) { writer.poisonAndWait(); }
+        if (binWriter != null) { binWriter.close(); }
+        t.stop();
+        System.err.println("Conversion complete. Wrote " + written + " rows in " + t);
+    }
 
-            for (byte[] line = reader.nextLine(); line != null; line = reader.nextLine()) {
-                if (line.length == 0 || line[0] == '#') { continue; }
-                parser.set(line);
-                if (parser.terms() < 9) { continue; }
+    /*--------------------------------------------------------------*/
+    /*----------------        Per-File Work         ----------------*/
+    /*--------------------------------------------------------------*/
 
-                String attributes = parser.parseString(8);
-                int vectorIndex = attributes.indexOf("VECTOR=");
-                if (vectorIndex < 0) { continue; }
+    private class ConvertThread extends Thread {
 
-                String vectorData = attributes.substring(vectorIndex + 7);
-                int semi = vectorData.indexOf(';');
-                if (semi >= 0) { vectorData = vectorData.substring(0, semi); }
+        @Override
+        public void run() {
+            for (int fnum = nextFile.getAndIncrement(); fnum < inFiles.length; fnum = nextFile.getAndIncrement()) {
+                try {
+                    convert(fnum);
+                } catch (Exception e) {
+                    System.err.println("ERROR converting " + inFiles[fnum]);
+                    e.printStackTrace();
+                }
+                // Even a failed file must release its turn, or later files would wait forever
+                finishTurn(fnum);
+            }
+        }
+
+        /**
+         * Convert one GFF. Rows are buffered and handed to the shared writer
+         * whenever it is this file's turn, so the first file streams and later
+         * ones hold at most their own output until the files before them finish.
+         */
+        private void convert(int fnum) {
+            final String inFile = inFiles[fnum];
+            ByteFile reader = ByteFile.makeByteFile(inFile, true);
+            ByteStreamWriter shardWriter = null;
+            BinaryDataFile.Writer shardBin = null;
+            if (sharded) {
+                // Binary shards are opened at the first row, when the label count is known
+                if (!binary) {
+                    shardWriter = new ByteStreamWriter(outFile.replace("#", ReadWrite.stripToCore(inFile)), true, false, true);
+                    shardWriter.start();
+                }
+            }
+
+            ByteBuilder bb = new ByteBuilder(4096);
+            FloatList rows = new FloatList(4096);
+            int width = -1;
+            final int[] starts = new int[MAX_NUMERIC_COLUMNS], stops = new int[MAX_NUMERIC_COLUMNS];
 
-                ArrayDeque<String> numericTokens = extractNumericTokens(vectorData);
-                if (numericTokens.size() < FEATURE_COLUMNS) {
+            for (byte[] line = reader.nextLine(); line != null; line = reader.nextLine()) {
+                if (line.length == 0 || line[0] == '#') { continue; }
+                final int attrStart = tabStart(line, 8);
+                if (attrStart < 0) { continue; }
+                final int vStart = indexOf(line, VECTOR_KEY, attrStart);
+                if (vStart < 0) { continue; }
+                final int a = vStart + VECTOR_KEY.length;
+                int b = a;
+                while (b < line.length && line[b] != ';' && line[b] != '\t') { b++; }
+
+                final int numTokens = extractNumericTokens(line, a, b, starts, stops);
+                if (numTokens < FEATURE_COLUMNS) {
                     System.err.println("WARNING: Skipping line due to insufficient numeric columns (found "
-                            + numericTokens.size() + ")");
+                            + numTokens + ")");
                     continue;
                 }
 
-                bb.clear();
-                boolean first = true;
-                for (String token : numericTokens) {
-                    if (!first) { bb.append('\t'); }
-                    bb.append(token);
-                    first = false;
+                if (binary) {
+                    if (width < 0) { width = numTokens; }
+                    if (numTokens != width) {
+                        System.err.println("WARNING: Skipping line with " + numTokens
+                                + " numeric columns; expected " + width);
+                        continue;
+                    }
+                    for (int i = 0; i < numTokens; i++) { rows.add(Parse.parseFloat(line, starts[i], stops[i])); }
+                } else {
+                    for (int i = 0; i < numTokens; i++) {
+                        if (i > 0) { bb.tab(); }
+                        bb.append(line, starts[i], stops[i] - starts[i]);
+                    }
+                    bb.nl();
+                }
+                rowsOut++;
+
+                if (sharded) {
+                    if (shardWriter != null && bb.length() >= FLUSH_SIZE) {
+                        shardWriter.print(bb);
+                        bb.clear();
+                    } else if (binary && rows.size >= FLUSH_SIZE) {
+                        if (shardBin == null) { shardBin = openBinary(outFile.replace("#", ReadWrite.stripToCore(inFile)), width); }
+                        writeRows(shardBin, rows, width);
+                    }
+                } else if ((bb.length() >= FLUSH_SIZE || rows.size >= FLUSH_SIZE) && isTurn(fnum)) {
+                    emit(bb, rows, width);
                 }
+            }
+            reader.close();
 
-                writer.println(bb.toString());
-                written++;
+            if (sharded) {
+                if (shardWriter != null) {
+                    shardWriter.print(bb);
+                    shardWriter.poisonAndWait();
+                } else if (binary && width > 0) {
+                    if (shardBin == null) { shardBin = openBinary(outFile.replace("#", ReadWrite.stripToCore(inFile)), width); }
+                    writeRows(shardBin, rows, width);
+                    shardBin.close();
+                }
+            } else {
+                waitForTurn(fnum);
+                emit(bb, rows, width);
             }
+        }
 
-            System.err.println("Conversion complete. Wrote " + written + " rows.");
+        long rowsOut = 0;
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (reader != null) { reader.close(); }
-            if (writer != null) { writer.poisonAndWait(); }
+    /** Write buffered rows to the shared output; caller must hold the turn. */
+    private void emit(ByteBuilder bb, FloatList rows, int width) {
+        if (binary) {
+            if (rows.size == 0) { return; }
+            if (binWriter == null) { binWriter = openBinary(outFile, width); }
+            if (width != binWriter.width) {
+                System.err.println("WARNING: Skipping " + (rows.size / width) + " rows with " + width
+                        + " numeric columns; expected " + binWriter.width);
+                rows.clear();
+                return;
+            }
+            writeRows(binWriter, rows, width);
+        } else {
+            writer.print(bb);
+            bb.clear();
         }
     }
 
-    private static ArrayDeque<String> extractNumericTokens(String vectorData) {
-        ArrayDeque<String> tokens = new ArrayDeque<>(MAX_NUMERIC_COLUMNS);
-        int end = vectorData.length();
-        int numericCount = 0;
+    private BinaryDataFile.Writer openBinary(String fname, int width) {
+        // Labels are present only when true genes were known
+        return new BinaryDataFile.Writer(fname, FEATURE_COLUMNS, width - FEATURE_COLUMNS, false, half);
+    }
 
-        while (end > 0) {
-            int start = vectorData.lastIndexOf(',', end - 1);
-            int tokenStart = (start < 0) ? 0 : start + 1;
-            String token = vectorData.substring(tokenStart, end).trim();
+    private static void writeRows(BinaryDataFile.Writer bw, FloatList rows, int width) {
+        for (int i = 0; i < rows.size; i += width) { bw.add(rows.array, i); }
+        rows.clear();
+    }
 
-            if (!token.isEmpty()) {
-                try {
-                    Double.parseDouble(token);
-                    tokens.addFirst(token);
-                    numericCount++;
-                    if (numericCount == MAX_NUMERIC_COLUMNS) {
-                        break;
-                    }
-                } catch (NumberFormatException e) {
-                    break; // reached textual contig segment
-                }
+    private synchronized boolean isTurn(int fnum) {
+        return nextOut == fnum;
+    }
+
+    private synchronized void waitForTurn(int fnum) {
+        while (nextOut != fnum) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
+        }
+    }
+
+    private synchronized void finishTurn(int fnum) {
+        if (sharded) { return; }
+        waitForTurn(fnum);
+        nextOut++;
+        notifyAll();
+    }
 
-            if (start < 0) { break; }
+    /*--------------------------------------------------------------*/
+    /*----------------        Byte Parsing          ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /**
+     * Find numeric comma-delimited tokens in line[a, b), scanning back from the end
+     * until a non-numeric token (the contig ID) or MAX_NUMERIC_COLUMNS is reached.
+     * Token bounds are written in left-to-right order, trimmed of whitespace.
+     * @return Number of tokens found
+     */
+    static int extractNumericTokens(byte[] line, int a, int b, int[] starts, int[] stops) {
+        int count = 0;
+        int end = b;
+        while (end > a && count < MAX_NUMERIC_COLUMNS) {
+            int start = end - 1;
+            while (start >= a && line[start] != ',') { start--; }
+            int ts = start + 1, te = end;
+            while (ts < te && line[ts] <= ' ') { ts++; }
+            while (te > ts && line[te - 1] <= ' ') { te--; }
+            if (ts < te) {
+                if (!isNumeric(line, ts, te)) { break; } // reached textual contig segment
+                starts[count] = ts;
+                stops[count] = te;
+                count++;
+            }
+            if (start < a) { break; }
             end = start;
         }
+        // Tokens were collected right to left
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int x = starts[i]; starts[i] = starts[j]; starts[j] = x;
+            x = stops[i]; stops[i] = stops[j]; stops[j] = x;
+        }
+        return count;
+    }
 
-        return tokens;
+    /** True for a decimal number with optional sign, fraction, and exponent. */
+    static boolean isNumeric(byte[] line, int a, int b) {
+        int i = a;
+        if (i < b && (line[i] == '-' || line[i] == '+')) { i++; }
+        int digits = 0;
+        while (i < b && Tools.isDigit(line[i])) { i++; digits++; }
+        if (i < b && line[i] == '.') {
+            i++;
+            while (i < b && Tools.isDigit(line[i])) { i++; digits++; }
+        }
+        if (digits == 0) { return false; }
+        if (i < b && (line[i] == 'e' || line[i] == 'E')) {
+            i++;
+            if (i < b && (line[i] == '-' || line[i] == '+')) { i++; }
+            int expDigits = 0;
+            while (i < b && Tools.isDigit(line[i])) { i++; expDigits++; }
+            if (expDigits == 0) { return false; }
+        }
+        return i == b;
     }
+
+    /** Index of the first byte of tab-delimited field term, or -1 if the line is shorter. */
+    private static int tabStart(byte[] line, int term) {
+        int i = 0;
+        for (int t = 0; t < term; i++) {
+            if (i >= line.length) { return -1; }
+            if (line[i] == '\t') { t++; }
+        }
+        return i;
+    }
+
+    private static int indexOf(byte[] line, byte[] key, int from) {
+        outer:
+        for (int i = from, lim = line.length - key.length; i <= lim; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (line[i + j] != key[j]) { continue outer; }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------           Inputs             ----------------*/
+    /*--------------------------------------------------------------*/
+
+    /** Split a comma-delimited list, expanding folders to the GFF files they contain. */
+    private static String[] expandInputs(String arg) {
+        ArrayList<String> list = new ArrayList<String>();
+        for (String s : arg.split(",")) {
+            File f = new File(s);
+            if (f.isDirectory()) {
+                String[] names = f.list();
+                Arrays.sort(names);
+                for (String name : names) {
+                    if (name.endsWith(".gff") || name.endsWith(".gff.gz") || name.endsWith(".gff3")
+                            || name.endsWith(".gff3.gz")) {
+                        list.add(new File(f, name).getPath());
+                    }
+                }
+            } else {
+                list.add(s);
+            }
+        }
+        if (list.isEmpty()) { throw new RuntimeException("No GFF files found in " + arg); }
+        return list.toArray(new String[0]);
+    }
+
+    /*--------------------------------------------------------------*/
+    /*----------------            Fields            ----------------*/
+    /*--------------------------------------------------------------*/
+
+    private String outFile = null;
+    private final String[] inFiles;
+    private final boolean binary;
+    private final boolean half;
+    /** Write one output per input instead of one combined output */
+    private final boolean sharded;
+    private final int threads;
+
+    private final AtomicInteger nextFile = new AtomicInteger(0);
+    /** Index of the input whose rows go to the shared output next */
+    private int nextOut = 0;
+    private ByteStreamWriter writer;
+    private BinaryDataFile.Writer binWriter;
 }
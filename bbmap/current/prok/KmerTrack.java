@@ -0,0 +1,77 @@
+package prok;
+
+import dna.AminoAcid;
+import shared.Vector;
+
+/**
+ * Precomputed 2-bit k-mer codes for one strand of a contig.
+ * GeneCaller builds one per strand before calling genes, so the start, stop,
+ * inner and RNA scoring passes look k-mers up instead of rebuilding them from bases.
+ * Each entry packs the length of the run of defined bases ending at that position,
+ * capped at MAX_RUN, above the codes of the last MAX_K bases.
+ * Any k up to MAX_K can be read from the same track.
+ *
+ * @author Brandon Imstepf
+ * @date 8-10-2025
+ */
+final class KmerTrack {
+
+	/**
+	 * Build the track for one strand without modifying bases.
+	 * @param bases Contig bases in plus orientation
+	 * @param strand 0 for bases as given, 1 for their reverse-complement
+	 */
+	KmerTrack(byte[] bases, int strand){
+		length=bases.length;
+		entries=new int[length];
+		int code=0, run=0;
+		for(int i=0; i<length; i++){
+			final int x=(strand==0 ? AminoAcid.baseToNumber[bases[i]] :
+				AminoAcid.baseToComplementNumber[bases[length-1-i]]);
+			if(x>=0){
+				code=((code<<2)|x)&CODE_MASK;
+				run=Math.min(run+1, MAX_RUN);
+			}else{
+				code=0;
+				run=0;
+			}
+			entries[i]=(run<<SHIFT)|code;
+		}
+	}
+
+	/**
+	 * @return Code of the k-mer ending at i, or -1 if any of its bases is undefined.
+	 * K-mers extending before position 0 are undefined.
+	 */
+	int kmer(int i, int k){
+		assert(k<=MAX_K) : k;
+		final int e=entries[i];
+		return (e>>>SHIFT)>=k ? e&~((-1)<<(2*k)) : -1;
+	}
+
+	/** @return True if the base at i is A, C, G, or T */
+	boolean defined(int i){
+		return entries[i]>=(1<<SHIFT);
+	}
+
+	/**
+	 * Classify the codon ending at each position in [from, to) as in Vector.classifyCodons.
+	 * @param stopMask Bit c is set if codon code c is a stop
+	 * @param startMask Bit c is set if codon code c is a start
+	 * @param flags Per-position output, at least to long
+	 */
+	void classifyCodons(int from, int to, long stopMask, long startMask, byte[] flags){
+		Vector.classifyCodons(entries, from, to, SHIFT, stopMask, startMask, flags);
+	}
+
+	final int length;
+	private final int[] entries;
+
+	/** Longest k-mer a track can return */
+	static final int MAX_K=12;
+	private static final int SHIFT=2*MAX_K;
+	private static final int CODE_MASK=~((-1)<<SHIFT);
+	/** Run lengths are capped so entries stay non-negative */
+	private static final int MAX_RUN=127;
+
+}
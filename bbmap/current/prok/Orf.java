@@ -79,15 +79,36 @@ public class Orf extends PFeature {
 	 * @return Calculated score
 	 */
 	public float calcOrfScore(int overlap){
+		return calcOrfScore(startScore, stopScore, averageKmerScore(), length(), overlap);
+	}
+	
+	/**
+	 * calcOrfScore from component scores, for candidates held in primitive arrays.
+	 * @param avgKmerScore As from averageKmerScore
+	 * @param length Length in bases
+	 * @param overlap Overlap with the previous gene
+	 * @return Calculated score
+	 */
+	static float calcOrfScore(float startScore, float stopScore, float avgKmerScore, int length, int overlap){
+		return calcOrfScore(scoreFactor(startScore, stopScore, avgKmerScore), length, overlap);
+	}
+	
+	/** The part of calcOrfScore that does not depend on length or overlap */
+	static double scoreFactor(float startScore, float stopScore, float avgKmerScore){
 		double a=Math.sqrt(Tools.max(f1, e1+startScore));
 //		double b=Math.sqrt(f2/*Tools.max(f2, e2+stopScore)*/);//This is better, ignoring stopscore completely
 		double b=Math.sqrt(Tools.max(f2, e2+0.35f*stopScore));
-		double c=Tools.max(f3, e3+averageKmerScore());
+		double c=Tools.max(f3, e3+avgKmerScore);
 		assert(a!=Double.NaN);
 		assert(b!=Double.NaN);
 		assert(c!=Double.NaN);
 		c=4*Math.pow(c, 2.2);
-		double d=(0.1*a*b*c*(Math.pow(length()-overlap, 2.5)-(overlap<1 ? 0 : Math.pow(overlap+50, 2))));//TODO: Adjust these constants
+		return 0.1*a*b*c;
+	}
+	
+	/** calcOrfScore from a scoreFactor */
+	static float calcOrfScore(double factor, int length, int overlap){
+		double d=(factor*(Math.pow(length-overlap, 2.5)-(overlap<1 ? 0 : Math.pow(overlap+50, 2))));//TODO: Adjust these constants
 		if(d>0){d=Math.sqrt(d);}
 		assert(d!=Double.NaN);
 		return (float)d;
@@ -99,7 +120,12 @@ public class Orf extends PFeature {
 	 * @return Average k-mer score normalized by effective ORF length
 	 */
 	public float averageKmerScore(){
-		return kmerScore/(length()-GeneModel.kInnerCDS-2); //This slightly affects score if kInnerCDS is changed
+		return averageKmerScore(kmerScore, length());
+	}
+	
+	/** averageKmerScore for a k-mer score sum and length in bases */
+	static float averageKmerScore(float kmerScore, int length){
+		return kmerScore/(length-GeneModel.kInnerCDS-2); //This slightly affects score if kInnerCDS is changed
 	}
 	
 	/*--------------------------------------------------------------*/
@@ -120,33 +146,6 @@ public class Orf extends PFeature {
 		return true;
 	}
 
-	/** Returns the best path score from either plus or minus strand predecessors */
-	public float pathScore() {return Tools.max(pathScorePlus, pathScoreMinus);}
-	/**
-	 * Returns the path score for a specific predecessor strand.
-	 * @param prevStrand Strand of predecessor (0=plus, other=minus)
-	 * @return Path score for the specified strand
-	 */
-	public float pathScore(int prevStrand) {return prevStrand==0 ? pathScorePlus : pathScoreMinus;}
-
-	/** Returns the best predecessor ORF based on highest path score */
-	public Orf prev(){return pathScorePlus>=pathScoreMinus ? prevPlus : prevMinus;}
-	/**
-	 * Returns the predecessor ORF for a specific strand.
-	 * @param prevStrand Strand of predecessor (0=plus, other=minus)
-	 * @return Predecessor ORF for the specified strand
-	 */
-	public Orf prev(int prevStrand){return prevStrand==0 ? prevPlus : prevMinus;}
-
-	/**
-	 * Returns the path length for a specific predecessor strand.
-	 * @param prevStrand Strand of predecessor (0=plus, other=minus)
-	 * @return Number of ORFs in the path for the specified strand
-	 */
-	public int pathLength(int prevStrand){return prevStrand==0 ? pathLengthPlus : pathLengthMinus;}
-	/** Returns the path length for the best scoring predecessor strand */
-	public int pathLength(){return pathScorePlus>=pathScoreMinus ? pathLengthPlus : pathLengthMinus;}
-	
 	/*--------------------------------------------------------------*/
 	/*----------------           ToString           ----------------*/
 	/*--------------------------------------------------------------*/
@@ -317,22 +316,6 @@ public class Orf extends PFeature {
 	/** Overall quality score calculated for this ORF */
 	public float orfScore;
 
-	//Path scores are for pathfinding phase
-	
-	/** Best path score when preceded by a plus-strand ORF */
-	public float pathScorePlus;
-	/** Number of ORFs in the best plus-strand path ending at this ORF */
-	public int pathLengthPlus=1;
-	/** Previous ORF in the best plus-strand path */
-	public Orf prevPlus;
-	
-	/** Best path score when preceded by a minus-strand ORF */
-	public float pathScoreMinus;
-	/** Number of ORFs in the best minus-strand path ending at this ORF */
-	public int pathLengthMinus=1;
-	/** Previous ORF in the best minus-strand path */
-	public Orf prevMinus;
-	
 	/** Feature type identifier (CDS, tRNA, rRNA variants) */
 	public final int type;
 	
@@ -0,0 +1,139 @@
+package prok;
+
+import java.util.Arrays;
+
+import shared.Tools;
+import shared.Vector;
+
+/**
+ * Primitive buffer of the longest Orf for each stop codon, as parallel arrays.
+ * Each strand is scanned once: every codon end is classified from the strand's
+ * KmerTrack in one vectorized pass, and the three frames then step through those flags.
+ * GeneCaller keeps one buffer per thread and creates Orf objects only for entries
+ * it keeps, so the longest Orfs of a contig are never allocated as objects.
+ * Coordinates are in the native orientation of each entry's strand.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+final class OrfBuffer {
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Scanning           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Remove all entries; arrays are kept for reuse */
+	void clear(){size=0;}
+
+	/**
+	 * Add the longest Orfs of all three frames of one strand whose stop codon ends in [from, to).
+	 * Entries are grouped by frame and ordered by stop within a frame, matching one scan per frame.
+	 * A frame's scan starts after the last stop (or codon containing N) that ends before from,
+	 * so a window's entries are exactly the corresponding slice of the whole-strand entries.
+	 * @param track K-mer track of the strand
+	 * @param strand 0 for plus, 1 for minus
+	 * @param minlen Shortest Orf to keep, in bases
+	 */
+	void scanStrand(KmerTrack track, int strand, int minlen, int from, int to){
+		assert(minlen>=3);
+		assert(to<=track.length) : to+", "+track.length;
+		if(!ProkObject.callCDS || track.length<minlen){return;}
+		final int[] scanStarts=new int[3];
+		int lo=to;
+		for(int frame=0; frame<3; frame++){
+			scanStarts[frame]=findScanStart(track, frame, from);
+			lo=Tools.min(lo, scanStarts[frame]+2);
+		}
+		if(flags==null || flags.length<to){flags=new byte[Tools.max(to, (int)Tools.min(Integer.MAX_VALUE-8, 2L*to))];}
+		track.classifyCodons(lo, to, stopMask(), startMask(), flags);
+
+		for(int frame=0; frame<3; frame++){
+			final int scanStart=scanStarts[frame];
+			int start=(scanStart==frame ? -2 : -1);//A scan from the sequence start opens an Orf on the first codon
+			int end=scanStart+2;
+			for(; end<to; end+=3){
+				final byte f=flags[end];
+				if(start>=0){
+					if((f&Vector.STOP_CODON)!=0){//NOTE: This adds a stop codon wherever there are Ns.
+						if(end-start+1>=minlen){add(start, end, strand, frame);}
+						start=-1;
+					}
+				}else if(start==-2 || (f&Vector.START_CODON)!=0){
+					start=end-2;
+				}
+			}
+
+			//Add a stop codon at the sequence end.
+			if(start>=0 && to==track.length){
+				final int stop=end-3;//End of the last complete codon
+				if(stop-start+1>=minlen){add(start, stop, strand, frame);}
+			}
+		}
+	}
+
+	/**
+	 * Finds where an in-frame scan must begin to reproduce the state at from:
+	 * just after the last stop codon (or codon containing N) that ends before from.
+	 * The first codon never counts, since a scan from the sequence start opens an Orf on it.
+	 * @return The codon start position, or startFrame if the scan must start at the beginning
+	 */
+	private static int findScanStart(KmerTrack track, int startFrame, int from){
+		final int first=startFrame+2;//End of the first codon
+		for(int end=from-1-Math.floorMod(from-1-first, 3); end>first; end-=3){
+			final int code=track.kmer(end, 3);
+			if(code<0 || GeneModel.isStopCodon(code)){return end+1;}
+		}
+		return startFrame;
+	}
+
+	private static long stopMask(){return toMask(GeneModel.isStopCodon);}
+	private static long startMask(){return toMask(GeneModel.isStartCodon);}
+
+	/** @return Bit c set for each codon code c flagged in the table */
+	private static long toMask(boolean[] isCodon){
+		long mask=0;
+		for(int code=0; code<64; code++){
+			if(isCodon[code]){mask|=(1L<<code);}
+		}
+		return mask;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Entries            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	void add(int start, int stop, int strand, int frame){
+		if(size>=starts.length){
+			final int newLen=(int)Tools.min(Integer.MAX_VALUE-8, 2L*starts.length);
+			starts=Arrays.copyOf(starts, newLen);
+			stops=Arrays.copyOf(stops, newLen);
+			strands=Arrays.copyOf(strands, newLen);
+			frames=Arrays.copyOf(frames, newLen);
+		}
+		starts[size]=start;
+		stops[size]=stop;
+		strands[size]=(byte)strand;
+		frames[size]=(byte)frame;
+		size++;
+	}
+
+	int size(){return size;}
+	int start(int i){return starts[i];}
+	int stop(int i){return stops[i];}
+	int strand(int i){return strands[i];}
+	int frame(int i){return frames[i];}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private int[] starts=new int[256];
+	private int[] stops=new int[256];
+	private byte[] strands=new byte[256];
+	private byte[] frames=new byte[256];
+	private int size=0;
+
+	/** Codon flags per position of the strand being scanned */
+	private byte[] flags;
+
+}
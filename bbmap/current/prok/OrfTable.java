@@ -0,0 +1,198 @@
+package prok;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import shared.Tools;
+
+/**
+ * Primitive tables for the two phases of gene calling that touch every candidate.
+ * Start candidates hold each start codon considered for one stop while breakOrf scores
+ * them, so only the starts that pass filtering become Orfs.
+ * The path table holds one row per Orf of a contig, sorted by stop, and per-frame
+ * index lists into it; findPath runs its dynamic programming over these rows,
+ * so predecessors are indices rather than Orf references.
+ * Each GeneCaller owns one table and reuses its arrays across stops and contigs.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+final class OrfTable {
+
+	/*--------------------------------------------------------------*/
+	/*----------------       Start Candidates       ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Remove all start candidates */
+	void clearStarts(){startCount=0;}
+
+	/**
+	 * Add a start candidate for the current stop.
+	 * @param start First base of the start codon, in native-strand coordinates
+	 * @param kmerSum Running inner k-mer score at the start codon
+	 */
+	void addStart(int start, float kmerSum, float startScore){
+		if(startCount>=cStart.length){
+			final int newLen=2*cStart.length;
+			cStart=Arrays.copyOf(cStart, newLen);
+			cKmerScore=Arrays.copyOf(cKmerScore, newLen);
+			cStartScore=Arrays.copyOf(cStartScore, newLen);
+			cOrfScore=Arrays.copyOf(cOrfScore, newLen);
+			cOrder=Arrays.copyOf(cOrder, newLen);
+		}
+		cStart[startCount]=start;
+		cKmerScore[startCount]=kmerSum;
+		cStartScore[startCount]=startScore;
+		startCount++;
+	}
+
+	/**
+	 * Order start candidates by orfScore descending, as PFeature.featureComparatorScore
+	 * orders the flipped Orfs: ties go to the lower start on plus, the higher on minus.
+	 * @return Candidate indices in that order, valid for the first startCount entries
+	 */
+	int[] sortStartsByScore(int strand){
+		for(int i=0; i<startCount; i++){//Insertion sort; there are at most breakLimit starts
+			int j=i;
+			for(; j>0 && scoreBefore(i, cOrder[j-1], strand); j--){cOrder[j]=cOrder[j-1];}
+			cOrder[j]=i;
+		}
+		return cOrder;
+	}
+
+	private boolean scoreBefore(int a, int b, int strand){
+		if(cOrfScore[a]<cOrfScore[b]){return false;}
+		if(cOrfScore[b]<cOrfScore[a]){return true;}
+		return strand==0 ? cStart[a]<cStart[b] : cStart[a]>cStart[b];
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------             Path             ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Load every Orf of a contig, sorted by stop then start, with path scores reset.
+	 * @param frameLists Orfs per list number, frame+3*strand, each already sorted
+	 * @return Number of rows
+	 */
+	int fillPath(ArrayList<Orf>[] frameLists){
+		int n=0;
+		for(ArrayList<Orf> list : frameLists){n+=list.size();}
+		ensurePathCapacity(n);
+		n=0;
+		for(ArrayList<Orf> list : frameLists){
+			for(Orf orf : list){orfs[n++]=orf;}
+		}
+		Arrays.sort(orfs, 0, n);
+		size=n;
+
+		Arrays.fill(frameSize, 0);
+		for(int i=0; i<n; i++){
+			final Orf orf=orfs[i];
+			start[i]=orf.start;
+			stop[i]=orf.stop;
+			final int listNum=3*orf.strand+orf.frame;
+			strand[i]=(byte)orf.strand;
+			list[i]=(byte)listNum;
+			orfScore[i]=orf.orfScore;
+			scoreFactor[i]=Orf.scoreFactor(orf.startScore, orf.stopScore, orf.averageKmerScore());
+			pathScorePlus[i]=pathScoreMinus[i]=-999999;
+			pathLengthPlus[i]=pathLengthMinus[i]=1;
+			prevPlus[i]=prevMinus[i]=-1;
+
+			int[] rows=frameRows[listNum];
+			if(frameSize[listNum]>=rows.length){
+				rows=frameRows[listNum]=Arrays.copyOf(rows, (int)Tools.min(Integer.MAX_VALUE-8, 2L*rows.length));
+			}
+			rows[frameSize[listNum]++]=i;
+		}
+		return n;
+	}
+
+	private void ensurePathCapacity(int n){
+		if(n<=orfs.length){return;}
+		final int len=(int)Tools.min(Integer.MAX_VALUE-8, Tools.max(n, 2L*orfs.length));
+		orfs=new Orf[len];
+		start=new int[len];
+		stop=new int[len];
+		strand=new byte[len];
+		list=new byte[len];
+		orfScore=new float[len];
+		scoreFactor=new double[len];
+		pathScorePlus=new float[len];
+		pathScoreMinus=new float[len];
+		pathLengthPlus=new int[len];
+		pathLengthMinus=new int[len];
+		prevPlus=new int[len];
+		prevMinus=new int[len];
+		pathScore=new float[len];
+		pathLength=new int[len];
+	}
+
+	/** Release Orf references after a contig so they can be collected */
+	void clearPath(){
+		Arrays.fill(orfs, 0, size, null);
+		size=0;
+	}
+
+	/** Same as Orf.isValidPrev, for rows */
+	boolean isValidPrev(int row, int prev, int maxOverlap){
+		if(stop[prev]>=stop[row] || stop[prev]>=start[row]+maxOverlap || start[prev]>=start[row]){return false;}
+		if(list[prev]==list[row] && stop[prev]>=start[row]){return false;}
+		return true;
+	}
+
+	/** Same as Orf.calcOrfScore, for a row */
+	float calcOrfScore(int row, int overlap){
+		return Orf.calcOrfScore(scoreFactor[row], stop[row]-start[row]+1, overlap);
+	}
+
+	/**
+	 * Record the best path score and length of a row whose predecessors are all scored,
+	 * so later rows read one value instead of comparing both strands.
+	 */
+	void finishRow(int row){
+		final boolean plus=pathScorePlus[row]>=pathScoreMinus[row];
+		pathScore[row]=Tools.max(pathScorePlus[row], pathScoreMinus[row]);
+		pathLength[row]=plus ? pathLengthPlus[row] : pathLengthMinus[row];
+	}
+
+	/** Best predecessor row, or -1 */
+	int prev(int row){return pathScorePlus[row]>=pathScoreMinus[row] ? prevPlus[row] : prevMinus[row];}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	int startCount=0;
+	int[] cStart=new int[64];
+	/** Running k-mer score at each start; breakOrf converts these to per-Orf sums */
+	float[] cKmerScore=new float[64];
+	float[] cStartScore=new float[64];
+	float[] cOrfScore=new float[64];
+	private int[] cOrder=new int[64];
+
+	/** Number of path rows */
+	int size=0;
+	/** The Orf of each row, returned for rows on the best path */
+	Orf[] orfs=new Orf[0];
+	int[] start, stop;
+	byte[] strand;
+	/** List number, frame+3*strand */
+	byte[] list;
+	float[] orfScore;
+	/** Orf.scoreFactor, for rescoring with an overlap */
+	double[] scoreFactor;
+	float[] pathScorePlus, pathScoreMinus;
+	int[] pathLengthPlus, pathLengthMinus;
+	/** Best predecessor row per predecessor strand, or -1 */
+	int[] prevPlus, prevMinus;
+	/** Best path score and length over both predecessor strands, set by finishRow */
+	float[] pathScore;
+	int[] pathLength;
+
+	/** Rows of each list number, frame+3*strand, in stop order */
+	final int[][] frameRows=new int[6][64];
+	final int[] frameSize=new int[6];
+
+}
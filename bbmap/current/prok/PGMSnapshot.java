@@ -0,0 +1,328 @@
+package prok;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import shared.Tools;
+import stream.Read;
+import structures.LongHashSet;
+
+/**
+ * Binary snapshot of a GeneModel plus the reference data CallGenes loads at startup:
+ * the long k-mer sets and the rRNA consensus reads.
+ * The text pgm must be parsed and its probabilities recalculated, and the k-mer sets
+ * are rebuilt from fasta; a snapshot stores counts and probabilities as written,
+ * so loading is one memory-mapped pass.
+ * Written by PGMTools with snapshot=t, and detected by magic number wherever
+ * GeneModelParser.loadModel is used.
+ * <p>
+ * Layout, little-endian: magic (8 bytes); model header (numFiles, taxIDs, processed
+ * counts, base counts); 6 StatsContainers, each with length totals and inner, start,
+ * and stop FrameStats (name, k, frames, offset, valid sums, counts, probs);
+ * 4 k-mer sets (type, k, size, values); 4 rRNA consensus arrays (count, then id, bases, and
+ * quals per read), with a count of -1 for an array that was not loaded.
+ *
+ * @author Brandon Imstepf
+ * @date 8-11-2025
+ */
+public class PGMSnapshot {
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Static Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** True if the file starts with the snapshot magic number. */
+	public static boolean isSnapshot(String fname){
+		if(fname==null){return false;}
+		File f=new File(fname);
+		if(!f.isFile() || f.length()<MAGIC.length){return false;}
+		byte[] magic=new byte[MAGIC.length];
+		try(InputStream is=new FileInputStream(f)){
+			if(is.read(magic)!=magic.length){return false;}
+		}catch(IOException e){
+			return false;
+		}
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/**
+	 * Write a model and the currently enabled k-mer sets and consensus reads.
+	 * Loads that reference data first if it has not been loaded.
+	 * @param overwrite Permission to replace an existing file
+	 */
+	public static void write(GeneModel gm, String fname, boolean overwrite){
+		if(!Tools.testOutputFiles(overwrite, false, false, fname)){
+			throw new RuntimeException("\n\noverwrite="+overwrite+"; Can't write to output file "+fname+"\n");
+		}
+		ProkObject.loadLongKmers();
+		ProkObject.loadConsensusSequenceFromFile(false, false);
+		try(RandomAccessFile raf=new RandomAccessFile(fname, "rw")){
+			raf.setLength(0);
+			PGMSnapshot snap=new PGMSnapshot(raf.getChannel());
+			snap.writeModel(gm);
+			snap.writeKmers();
+			snap.writeConsensus();
+			snap.flush();
+		}catch(IOException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Load a snapshot.  K-mer sets matching the current k-mer lengths and all stored
+	 * consensus reads are installed in ProkObject, so the later loadLongKmers and
+	 * loadConsensusSequenceFromFile calls only fill in what the snapshot lacks.
+	 * @return The model, with statics set as by GeneModelParser
+	 */
+	public static GeneModel load(String fname){
+		final MappedByteBuffer mbb;
+		try(RandomAccessFile raf=new RandomAccessFile(fname, "r")){
+			FileChannel channel=raf.getChannel();
+			assert(channel.size()<Integer.MAX_VALUE) : "Snapshot too large: "+fname;
+			mbb=channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}catch(IOException e){
+			throw new RuntimeException(e);
+		}
+		mbb.order(ByteOrder.LITTLE_ENDIAN);
+		byte[] magic=new byte[MAGIC.length];
+		mbb.get(magic);
+		if(!Arrays.equals(magic, MAGIC)){
+			throw new RuntimeException(fname+" is not a pgm snapshot.");
+		}
+		GeneModel gm=readModel(mbb);
+		readKmers(mbb);
+		readConsensus(mbb);
+		assert(!mbb.hasRemaining()) : mbb.remaining()+" trailing bytes in "+fname;
+		gm.setStatics();
+		return gm;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Reading            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private static GeneModel readModel(ByteBuffer bb){
+		GeneModel gm=new GeneModel(false);
+		gm.numFiles=bb.getInt();
+		for(int i=0, lim=bb.getInt(); i<lim; i++){gm.taxIds.add(bb.getInt());}
+		gm.readsProcessed=bb.getLong();
+		gm.basesProcessed=bb.getLong();
+		gm.genesProcessed=bb.getLong();
+		gm.filesProcessed=bb.getLong();
+		for(int i=0; i<gm.baseCounts.length; i++){gm.baseCounts[i]=bb.getLong();}
+
+		final int containers=bb.getInt();
+		assert(containers==gm.allContainers.length) : containers;
+		for(int i=0; i<containers; i++){
+			StatsContainer sc=gm.allContainers[bb.getInt()];
+			sc.lengthCount=bb.getLong();
+			sc.lengthSum=bb.getLong();
+			sc.setInner(readFrameStats(bb));
+			sc.setStart(readFrameStats(bb));
+			sc.setStop(readFrameStats(bb));
+			sc.calculateLength();
+		}
+		return gm;
+	}
+
+	private static FrameStats readFrameStats(ByteBuffer bb){
+		String name=readString(bb);
+		int k=bb.getInt(), frames=bb.getInt(), offset=bb.getInt();
+		FrameStats fs=new FrameStats(name, k, frames, offset);
+		fs.validSums[0]=bb.getLong();
+		fs.validSums[1]=bb.getLong();
+		for(long[][] matrix : fs.counts){
+			for(long[] row : matrix){bb.asLongBuffer().get(row); skip(bb, row.length*8);}
+		}
+		for(float[] row : fs.probs){bb.asFloatBuffer().get(row); skip(bb, row.length*4);}
+		fs.calculateAverage();
+		return fs;
+	}
+
+	private static void readKmers(ByteBuffer bb){
+		for(int i=0, lim=bb.getInt(); i<lim; i++){
+			final int type=bb.getInt(), k=bb.getInt(), size=bb.getInt();
+			if(size<0){continue;}
+			final boolean use=(k==ProkObject.kLongLen(type) && ProkObject.kmerSet(type)==null);
+			if(!use){
+				skip(bb, size*8);
+				continue;
+			}
+			LongHashSet set=new LongHashSet(Tools.max(1000, (int)(size/0.7f)));
+			for(int j=0; j<size; j++){set.add(bb.getLong());}
+			ProkObject.setKmerSet(type, set);
+		}
+	}
+
+	private static void readConsensus(ByteBuffer bb){
+		for(int i=0, lim=bb.getInt(); i<lim; i++){
+			final int type=bb.getInt(), count=bb.getInt();
+			if(count<0){continue;}
+			Read[] array=new Read[count];
+			for(int j=0; j<count; j++){
+				String id=readString(bb);
+				byte[] bases=readBytes(bb);
+				byte[] quals=readBytes(bb);
+				array[j]=new Read(bases, quals, id, j);
+			}
+			if(ProkObject.consensusReads(type)==null){ProkObject.setConsensusReads(type, array);}
+		}
+	}
+
+	private static String readString(ByteBuffer bb){
+		return new String(readBytes(bb));
+	}
+
+	/** @return Bytes with a length prefix, or null for a length of -1 */
+	private static byte[] readBytes(ByteBuffer bb){
+		int len=bb.getInt();
+		if(len<0){return null;}
+		byte[] array=new byte[len];
+		bb.get(array);
+		return array;
+	}
+
+	private static void skip(ByteBuffer bb, int bytes){
+		bb.position(bb.position()+bytes);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Writing            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private PGMSnapshot(FileChannel channel_){
+		channel=channel_;
+		buffer=ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(MAGIC);
+	}
+
+	private void writeModel(GeneModel gm){
+		reserve(8);
+		buffer.putInt(gm.numFiles);
+		buffer.putInt(gm.taxIds.size);
+		for(int i=0; i<gm.taxIds.size; i++){
+			reserve(4);
+			buffer.putInt(gm.taxIds.get(i));
+		}
+		reserve(8*(4+gm.baseCounts.length));
+		buffer.putLong(gm.readsProcessed);
+		buffer.putLong(gm.basesProcessed);
+		buffer.putLong(gm.genesProcessed);
+		buffer.putLong(gm.filesProcessed);
+		for(long x : gm.baseCounts){buffer.putLong(x);}
+
+		reserve(4);
+		buffer.putInt(gm.allContainers.length);
+		for(StatsContainer sc : gm.allContainers){
+			reserve(20);
+			buffer.putInt(sc.type);
+			buffer.putLong(sc.lengthCount);
+			buffer.putLong(sc.lengthSum);
+			for(FrameStats fs : sc.statsArray){writeFrameStats(fs);}
+		}
+	}
+
+	private void writeFrameStats(FrameStats fs){
+		writeBytes(fs.name.getBytes());
+		reserve(28);
+		buffer.putInt(fs.k).putInt(fs.frames).putInt(fs.leftOffset);
+		buffer.putLong(fs.validSums[0]).putLong(fs.validSums[1]);
+		for(long[][] matrix : fs.counts){
+			for(long[] row : matrix){
+				reserve(row.length*8);
+				for(long x : row){buffer.putLong(x);}
+			}
+		}
+		for(float[] row : fs.probs){
+			reserve(row.length*4);
+			for(float x : row){buffer.putFloat(x);}
+		}
+	}
+
+	private void writeKmers(){
+		reserve(4);
+		buffer.putInt(KMER_TYPES.length);
+		for(int type : KMER_TYPES){
+			LongHashSet set=ProkObject.kmerSet(type);
+			reserve(12);
+			buffer.putInt(type).putInt(ProkObject.kLongLen(type)).putInt(set==null ? -1 : set.size());
+			if(set==null){continue;}
+			int written=0;
+			//toArray includes the table's empty-slot markers, which are negative
+			for(long x : set.toArray()){
+				if(x>=0){
+					reserve(8);
+					buffer.putLong(x);
+					written++;
+				}
+			}
+			assert(written==set.size()) : written+", "+set.size();
+		}
+	}
+
+	private void writeConsensus(){
+		reserve(4);
+		buffer.putInt(CONSENSUS_TYPES.length);
+		for(int type : CONSENSUS_TYPES){
+			Read[] array=ProkObject.consensusReads(type);
+			reserve(8);
+			buffer.putInt(type).putInt(array==null ? -1 : array.length);
+			if(array==null){continue;}
+			for(Read r : array){
+				writeBytes(r.id.getBytes());
+				writeBytes(r.bases);
+				writeBytes(r.quality);
+			}
+		}
+	}
+
+	private void writeBytes(byte[] array){
+		reserve(4);
+		buffer.putInt(array==null ? -1 : array.length);
+		if(array==null){return;}
+		for(int pos=0; pos<array.length; ){
+			if(!buffer.hasRemaining()){flush();}
+			int len=Tools.min(buffer.remaining(), array.length-pos);
+			buffer.put(array, pos, len);
+			pos+=len;
+		}
+	}
+
+	/** Flush if fewer than bytes remain; bytes must fit in an empty buffer */
+	private void reserve(int bytes){
+		assert(bytes<=BUFFER_SIZE) : bytes;
+		if(buffer.remaining()<bytes){flush();}
+	}
+
+	private void flush(){
+		buffer.flip();
+		try{
+			while(buffer.hasRemaining()){channel.write(buffer);}
+		}catch(IOException e){
+			throw new RuntimeException(e);
+		}
+		buffer.clear();
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	public static final byte[] MAGIC="BBPGM01\n".getBytes();
+	/** Types with a long k-mer set; 18S shares the SSU set */
+	private static final int[] KMER_TYPES={ProkObject.r16S, ProkObject.r23S, ProkObject.r5S, ProkObject.tRNA};
+	private static final int[] CONSENSUS_TYPES={ProkObject.r16S, ProkObject.r18S, ProkObject.r23S, ProkObject.r5S};
+	private static final int BUFFER_SIZE=1<<20;
+
+}
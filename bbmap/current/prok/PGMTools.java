@@ -3,6 +3,7 @@ package prok;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import dna.Data;
 import fileIO.ByteStreamWriter;
@@ -18,7 +19,9 @@ import structures.ByteBuilder;
 
 /**
  * Static helpers for manipulating pgm files.
- * main() merges pgm files.
+ * main() merges pgm files, and can add genomes to the merged model
+ * with fna= and gff=, so an existing model is extended without reprocessing
+ * the genomes it was built from.
  * @author Brian Bushnell
  * @date Sep 24, 2018
  *
@@ -29,7 +32,7 @@ public class PGMTools extends ProkObject {
 	/*----------------             Main             ----------------*/
 	/*--------------------------------------------------------------*/
 	
-	/** Combines multiple pgm files into a single file */
+	/** Combines multiple pgm files and optionally new genomes into a single file */
 	public static void main(String[] args){
 		
 		//Start a timer immediately upon code entrance.
@@ -44,8 +47,11 @@ public class PGMTools extends ProkObject {
 		ProkObject.call18S=true;
 		boolean overwrite=true;
 		boolean allowDupes=false;
+		boolean snapshot=false;
 		String out=null;
 		ArrayList<String> in=new ArrayList<String>(); 
+		ArrayList<String> fnaList=new ArrayList<String>();
+		ArrayList<String> gffList=new ArrayList<String>();
 		
 		{
 			Parser parser=new Parser();
@@ -59,10 +65,22 @@ public class PGMTools extends ProkObject {
 				if(a.equals("in")){
 					assert(b!=null);
 					Tools.addFiles(b, in);
+				}else if(a.equals("fna") || a.equals("infna") || a.equals("genome") || a.equals("genomes")){
+					assert(b!=null);
+					Tools.addFiles(b, fnaList);
+				}else if(a.equals("gff") || a.equals("ingff")){
+					assert(b!=null);
+					Tools.addFiles(b, gffList);
 				}else if(parseStatic(arg, a, b)){
 					//do nothing
 				}else if(a.equals("allowdupes") || a.equals("allowduplicates") || a.equals("dupes")){
 					allowDupes=Parse.parseBoolean(b);
+				}else if(a.equals("snapshot") || a.equals("binary")){
+					snapshot=Parse.parseBoolean(b);
+				}else if(a.equals("alignribo") || a.equals("align")){
+					AnalyzeGenes.alignRibo=Parse.parseBoolean(b);
+				}else if(a.equals("adjustendpoints")){
+					AnalyzeGenes.adjustEndpoints=Parse.parseBoolean(b);
 				}else if(a.equals("addcdsonly")){
 					GeneModel.ADD_CDS_ONLY=Parse.parseBoolean(b);
 				}else if(a.equals("verbose")){
@@ -84,11 +102,35 @@ public class PGMTools extends ProkObject {
 			out=parser.out1;
 		}
 		
-		checkFileExistence(in, out, overwrite, allowDupes);
+		if(gffList.isEmpty()){gffList=impliedGffs(fnaList);}
+		fnaList=Tools.fixExtension(fnaList);
+		gffList=Tools.fixExtension(gffList);
+		assert(gffList.size()==fnaList.size()) : "Number of fna and gff files do not match: "+fnaList.size()+", "+gffList.size();
+		if(in.isEmpty() && fnaList.isEmpty()){throw new RuntimeException("Error - at least one input file is required.");}
+		if(snapshot && out==null){throw new RuntimeException("Error - snapshot=t requires an output file, out=");}
 		
-		ArrayList<GeneModel> models=loadModels(in);
-		GeneModel gm=mergeModels(models);
-		boolean errorState=writeModel(gm, out, overwrite);
+		ArrayList<String> allIn=new ArrayList<String>(in);
+		allIn.addAll(fnaList);
+		allIn.addAll(gffList);
+		checkFileExistence(allIn, out, overwrite, allowDupes);
+		
+		GeneModel gm=(in.isEmpty() ? null : mergeModels(loadModels(in)));
+		if(!fnaList.isEmpty()){
+			gm=buildModel(gm, fnaList, gffList, defaultBuildThreads(fnaList.size()));
+			outstream.println("Added "+fnaList.size()+" genome"+(fnaList.size()==1 ? "" : "s")+
+					(in.isEmpty() ? "" : " to "+in.size()+" model"+(in.size()==1 ? "" : "s"))+".");
+		}
+		if(snapshot){
+			PGMSnapshot.write(gm, out, overwrite);
+		}else{
+			GeneModel.errorState|=writeModel(gm, out, overwrite);
+		}
+		t.stop();
+		outstream.println("Time: \t"+t);
+		
+		if(GeneModel.errorState){
+			throw new RuntimeException("PGMTools terminated in an error state; the output may be corrupt.");
+		}
 		
 		//Close the print stream if it was redirected
 		Shared.closeStream(outstream);
@@ -278,6 +320,130 @@ public class PGMTools extends ProkObject {
 		return mergeModels(models);
 	}
 	
+	/*--------------------------------------------------------------*/
+	/*----------------        Model Building        ----------------*/
+	/*--------------------------------------------------------------*/
+	
+	/**
+	 * Trains a model on genome/gff pairs, processing files in parallel.
+	 * Each thread claims pairs from a shared counter and trains its own GeneModel;
+	 * the thread models are then merged with GeneModel.add.
+	 * Since a model is a sum of counts, adding genomes to a base model gives the same
+	 * result as building from the base model's genomes plus the new ones.
+	 * K-mer lengths and offsets come from the current statics, which loading the
+	 * base model sets, so the new counts always match the base model's layout.
+	 * @param base Existing model to add the new genomes to, or null to start empty
+	 * @param fnaList Genome fasta files
+	 * @param gffList Gff files, paired with fnaList by index
+	 * @param threads Maximum number of threads
+	 * @return base with the new genomes added, or a new model if base was null
+	 */
+	public static GeneModel buildModel(GeneModel base, ArrayList<String> fnaList, ArrayList<String> gffList, int threads){
+		assert(fnaList.size()==gffList.size()) : "Number of fna and gff files do not match: "+fnaList.size()+", "+gffList.size();
+		threads=Tools.max(1, Tools.min(threads, fnaList.size()));
+		if(AnalyzeGenes.alignRibo){
+			//rRNA endpoints are refined by alignment to the consensus sequences
+			ProkObject.loadConsensusSequenceFromFile(false, false);
+		}
+		
+		final AtomicInteger next=new AtomicInteger(0);
+		ArrayList<BuildThread> alpt=new ArrayList<BuildThread>(threads);
+		for(int i=0; i<threads; i++){
+			alpt.add(new BuildThread(fnaList, gffList, next));
+		}
+		if(threads==1){
+			alpt.get(0).run();//Process in this thread
+		}else{
+			for(BuildThread pt : alpt){pt.start();}
+		}
+		
+		GeneModel pgm=(base!=null ? base : threads==1 ? null : new GeneModel(false));
+		boolean success=true;
+		for(BuildThread pt : alpt){
+			
+			//Wait until this thread has terminated
+			while(threads>1 && pt.getState()!=Thread.State.TERMINATED){
+				try {
+					pt.join();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+			
+			//Accumulate per-thread models
+			if(pgm==null){
+				pgm=pt.pgm;
+			}else{
+				pgm.add(pt.pgm);
+			}
+			success&=pt.success;
+			GeneModel.errorState|=pt.errorStateT;
+		}
+		if(!success){GeneModel.errorState=true;}
+		return pgm;
+	}
+	
+	/** Default thread count for building from this many genomes */
+	public static int defaultBuildThreads(int files){
+		return Tools.min(files, Shared.threads(), Tools.max(32, Shared.CALC_LOGICAL_PROCESSORS()/2));
+	}
+	
+	/**
+	 * Gff files implied by genome file names: the same prefix with .gff or .gff.gz.
+	 * @param fnaList Genome fasta files
+	 * @return One gff name per genome
+	 */
+	public static ArrayList<String> impliedGffs(ArrayList<String> fnaList){
+		ArrayList<String> gffList=new ArrayList<String>(fnaList.size());
+		for(String s : fnaList){
+			String prefix=ReadWrite.stripExtension(s);
+			String gff=prefix+".gff";
+			File f=new File(gff);
+			if(!f.exists()){
+				String gz=gff+".gz";
+				f=new File(gz);
+				assert(f.exists() && f.canRead()) : "Can't read file "+gff; //Possible bug: assertion may fail in production builds
+				gff=gz;
+			}
+			gffList.add(gff);
+		}
+		return gffList;
+	}
+	
+	/** Worker thread that trains one GeneModel on the genome/gff pairs it claims */
+	private static class BuildThread extends Thread {
+		
+		/**
+		 * @param next_ Shared counter for claiming file pairs
+		 */
+		BuildThread(ArrayList<String> fnaList_, ArrayList<String> gffList_, AtomicInteger next_){
+			fnaList=fnaList_;
+			gffList=gffList_;
+			next=next_;
+			pgm=new GeneModel(true);
+		}
+		
+		@Override
+		public void run(){
+			for(int i=next.getAndIncrement(); i<fnaList.size(); i=next.getAndIncrement()){
+				errorStateT|=pgm.process(fnaList.get(i), gffList.get(i));
+				if(verbose){outstream.println("Processed "+fnaList.get(i)+" in "+getName());}
+			}
+			success=true;
+		}
+		
+		private final ArrayList<String> fnaList;
+		private final ArrayList<String> gffList;
+		/** Shared counter for claiming file pairs */
+		private final AtomicInteger next;
+		/** Thread-local model for accumulating statistics */
+		final GeneModel pgm;
+		/** True if processing any file failed */
+		boolean errorStateT=false;
+		/** True if this thread finished normally */
+		boolean success=false;
+	}
+	
 	/**
 	 * Writes gene model to specified output file path.
 	 * @param pgm Gene model to write
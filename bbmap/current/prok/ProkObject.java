@@ -144,6 +144,15 @@ public abstract class ProkObject {
 		return consensusReads;
 	}
 	
+	/** Installs preloaded consensus reads, as from a PGMSnapshot. */
+	static synchronized void setConsensusReads(int type, Read[] array) {
+		if(type==r16S){r16SSequence=array;}
+		else if(type==r23S){r23SSequence=array;}
+		else if(type==r18S){r18SSequence=array;}
+		else if(type==r5S){r5SSequence=array;}
+		else{assert(false) : type;}
+	}
+	
 	/**
 	 * Gets the k-mer set for a given gene type.
 	 * @param type The gene type constant
@@ -154,6 +163,15 @@ public abstract class ProkObject {
 		return set;
 	}
 	
+	/** Installs a preloaded k-mer set, as from a PGMSnapshot; 18S shares the SSU set. */
+	static synchronized void setKmerSet(int type, LongHashSet set) {
+		if(type==tRNA){trnaKmers=set;}
+		else if(type==r16S || type==r18S){ssuKmers=set;}
+		else if(type==r23S){lsuKmers=set;}
+		else if(type==r5S){r5SKmers=set;}
+		else{assert(false) : type;}
+	}
+	
 	/**
 	 * Gets the long k-mer length for a given gene type.
 	 * @param type The gene type constant
@@ -208,15 +226,16 @@ public abstract class ProkObject {
 	 * Loads long k-mer sets for all enabled gene types from reference files.
 	 * Thread-safe method that loads SSU, LSU, 5S, and tRNA k-mers as configured.
 	 * Only loads once per execution to avoid redundant file I/O.
+	 * Sets already installed from a PGMSnapshot are kept.
 	 */
 	public static synchronized void loadLongKmers(){
 //		assert(ssuKmers==null);
 //		assert(false) : load5Skmers+", "+kLong5s;
 		if(loadedLongKmers){return;}
-		if(loadSSUkmers){ssuKmers=loadLongKmersByType(kLongSSU, "ssu");}
-		if(loadLSUkmers){lsuKmers=loadLongKmersByType(kLongLSU, "lsu");}
-		if(load5Skmers){r5SKmers=loadLongKmersByType(kLong5S, "5S");}
-		if(loadtRNAkmers){trnaKmers=loadLongKmersByType(kLongTRna, "tRNA");}
+		if(loadSSUkmers && ssuKmers==null){ssuKmers=loadLongKmersByType(kLongSSU, "ssu");}
+		if(loadLSUkmers && lsuKmers==null){lsuKmers=loadLongKmersByType(kLongLSU, "lsu");}
+		if(load5Skmers && r5SKmers==null){r5SKmers=loadLongKmersByType(kLong5S, "5S");}
+		if(loadtRNAkmers && trnaKmers==null){trnaKmers=loadLongKmersByType(kLongTRna, "tRNA");}
 		loadedLongKmers=true;
 	}
 	
@@ -321,6 +340,7 @@ public abstract class ProkObject {
 	 * Loads consensus sequences for all enabled ribosomal RNA types from reference files.
 	 * Thread-safe method that optionally filters out mitochondrial and chloroplast sequences.
 	 * Only loads once per execution to avoid redundant file I/O.
+	 * Sequences already installed from a PGMSnapshot are kept, and filtered as requested.
 	 *
 	 * @param removeMito Whether to remove mitochondrial sequences
 	 * @param removeChloro Whether to remove chloroplast sequences
@@ -328,10 +348,10 @@ public abstract class ProkObject {
 	public static synchronized void loadConsensusSequenceFromFile(boolean removeMito, boolean removeChloro){
 		if(loadedConsensusSequence){return;}
 //		assert(r16SSequence==null);
-		if(load16SSequence){r16SSequence=loadConsensusSequenceType("16S", removeMito, removeChloro);}
-		if(load18SSequence){r18SSequence=loadConsensusSequenceType("18S", removeMito, removeChloro);}
-		if(load23SSequence){r23SSequence=loadConsensusSequenceType("23S", removeMito, removeChloro);}
-		if(load5SSequence){r5SSequence=loadConsensusSequenceType("5S", removeMito, removeChloro);}
+		if(load16SSequence){r16SSequence=loadOrFilter(r16SSequence, "16S", removeMito, removeChloro);}
+		if(load18SSequence){r18SSequence=loadOrFilter(r18SSequence, "18S", removeMito, removeChloro);}
+		if(load23SSequence){r23SSequence=loadOrFilter(r23SSequence, "23S", removeMito, removeChloro);}
+		if(load5SSequence){r5SSequence=loadOrFilter(r5SSequence, "5S", removeMito, removeChloro);}
 		if(loadtRNASequence){trnaSequence=loadConsensusSequenceType("tRNA", removeMito, removeChloro);}
 		loadedConsensusSequence=true;
 	}
@@ -364,6 +384,14 @@ public abstract class ProkObject {
 		return array;
 	}
 	
+	/** Returns preloaded sequences with organelles removed as requested, or loads them if absent. */
+	private static Read[] loadOrFilter(Read[] array, String prefix, boolean removeMito, boolean removeChloro){
+		if(array==null){return loadConsensusSequenceType(prefix, removeMito, removeChloro);}
+		if(removeMito){array=stripOrganelle(array, "mito");}
+		if(removeChloro){array=stripOrganelle(array, "plastid");}
+		return array;
+	}
+	
 	/**
 	 * Loads consensus sequences from a FASTA or FASTQ file.
 	 * @param fname The input filename
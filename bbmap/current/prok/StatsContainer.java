@@ -246,6 +246,11 @@ class StatsContainer {
 		for(int i=0; i<statsArray.length; i++){
 			statsArray[i].calculate();
 		}
+		calculateLength();
+	}
+	
+	/** Computes average length and its inverse from lengthSum and lengthCount. */
+	void calculateLength(){
 		lengthAvg=(int)(lengthSum/Tools.max(1.0, lengthCount));
 		invLengthAvg=1f/Tools.max(1, lengthAvg);
 	}
@@ -0,0 +1,216 @@
+package prok;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import fileIO.ByteFile;
+import prok.CallGenesHelper.GeneQuad;
+import shared.LineParser1;
+
+/**
+ * Streams the CDS lines of a gff one contig at a time, as sets of GeneQuads,
+ * so truth sets and gff comparisons never hold a whole annotation in memory.
+ * Gene calling threads take the block for the contig they are working on;
+ * blocks read past while looking for it are held until their contig is taken.
+ * The gff must list contigs in assembly order, as any gff called from the assembly does.
+ * Then the held blocks are the contigs in flight on other threads, and a held block
+ * more than window blocks behind the newest taken block is dropped as unmatched.
+ * A contig with no block reads ahead at most until window blocks are held,
+ * so memory is proportional to the window, which callers scale by thread count.
+ * With an unbounded window nothing is dropped and any order is joined correctly,
+ * at the cost of holding the blocks read past.
+ * <p>
+ * A gff in a different order than the assembly is detected rather than trusted:
+ * CDS whose block was read only after its contig was taken, or dropped before it was,
+ * are counted in misordered, since those contigs were given an empty set.
+ *
+ * @author Brandon Imstepf
+ * @date 8-12-2025
+ */
+final class TruthGffStream {
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * @param fname Gff file
+	 * @param window_ Maximum number of contig blocks held for other threads
+	 */
+	TruthGffStream(String fname, int window_){
+		bf=ByteFile.makeByteFile(fname, true);
+		window=window_;
+	}
+
+	/** Window size for a run with this many threads */
+	static int window(int threads){
+		return Math.max(8192, 512*threads);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Remove and return the CDS of a contig.
+	 * @param contig Contig name, up to the first whitespace
+	 * @return The contig's CDS, or an empty set if the gff has none for it
+	 */
+	synchronized HashSet<GeneQuad> take(String contig){
+		taken.add(contig);
+		Long lost=droppedContigs.remove(contig);
+		if(lost!=null){//Its block was dropped as unmatched; the gff is not in assembly order
+			misordered+=lost;
+			dropped-=lost;
+		}
+		ContigGenes cg=held.remove(contig);
+		while(cg==null && held.size()<window){
+			ContigGenes next=readBlock();
+			if(next==null){break;}
+			if(next.contig.equals(contig)){
+				cg=next;
+			}else if(!passed(next)){
+				hold(next);
+			}
+		}
+		if(cg==null){return new HashSet<GeneQuad>();}
+		newest=Math.max(newest, cg.index);
+
+		//Drop blocks whose contigs were passed long ago; they are not in the assembly
+		for(Iterator<ContigGenes> iter=held.values().iterator(); iter.hasNext(); ){
+			ContigGenes old=iter.next();
+			if(old.index>=newest-window){break;}
+			iter.remove();
+			dropped+=old.genes.size();
+			droppedContigs.merge(old.contig, (long)old.genes.size(), Long::sum);
+		}
+		return cg.genes;
+	}
+
+	/**
+	 * Read the next block in file order, ignoring held blocks.
+	 * For walking a gff sequentially, such as the query side of a comparison.
+	 * @return The next contig's CDS, or null at the end of the file
+	 */
+	synchronized ContigGenes next(){
+		return readBlock();
+	}
+
+	/** Read the rest of the file so row counts are complete, and close it */
+	synchronized void finish(){
+		for(ContigGenes cg=readBlock(); cg!=null; cg=readBlock()){
+			if(!passed(cg)){dropped+=cg.genes.size();}
+		}
+		for(ContigGenes cg : held.values()){dropped+=cg.genes.size();}
+		held.clear();
+		droppedContigs.clear();
+		if(bf!=null){
+			bf.close();
+			bf=null;
+		}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** 
+	 * Count a block read after its contig was already taken,
+	 * which means the gff is not in assembly order.
+	 * @return True if the block's contig was already taken
+	 */
+	private boolean passed(ContigGenes cg){
+		if(!taken.contains(cg.contig)){return false;}
+		misordered+=cg.genes.size();
+		return true;
+	}
+
+	private void hold(ContigGenes cg){
+		ContigGenes prev=held.get(cg.contig);
+		if(prev==null){
+			held.put(cg.contig, cg);
+		}else{//The contig was split across non-adjacent blocks
+			prev.genes.addAll(cg.genes);
+		}
+	}
+
+	/** @return The next run of CDS lines sharing a contig, or null */
+	private ContigGenes readBlock(){
+		if(bf==null){return null;}
+		ContigGenes cg=null;
+		if(pending!=null){
+			cg=new ContigGenes(pending.contig(), new HashSet<GeneQuad>(), blocksRead++);
+			addGene(cg, pending);
+			pending=null;
+		}
+		for(byte[] line=bf.nextLine(); line!=null; line=bf.nextLine()){
+			if(line.length==0 || line[0]=='#'){continue;}
+			totalRows++;
+			lp.set(line);
+			if(lp.terms()<=7 || !"CDS".equalsIgnoreCase(lp.parseString(2))){continue;}
+			geneRows++;
+			final GeneQuad quad;
+			try{
+				String strandValue=lp.parseString(6);
+				byte strand=(byte)(strandValue!=null && strandValue.length()>0 && strandValue.charAt(0)=='+' ? 0 : 1);
+				quad=new GeneQuad(lp.parseString(0), lp.parseInt(3), lp.parseInt(4), strand);
+			}catch(Exception e){
+				continue;//Malformed line; skip but continue processing
+			}
+			if(cg==null){
+				cg=new ContigGenes(quad.contig(), new HashSet<GeneQuad>(), blocksRead++);
+			}else if(!cg.contig.equals(quad.contig())){
+				pending=quad;
+				return cg;
+			}
+			addGene(cg, quad);
+		}
+		bf.close();
+		bf=null;
+		return cg;
+	}
+
+	private void addGene(ContigGenes cg, GeneQuad quad){
+		if(cg.genes.add(quad)){genes++;}
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Classes        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Distinct CDS of one contig; index is the block's position in the file */
+	record ContigGenes(String contig, HashSet<GeneQuad> genes, long index) {}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private ByteFile bf;
+	private final LineParser1 lp=new LineParser1('\t');
+	/** First CDS of the next block, read while finishing the current one */
+	private GeneQuad pending=null;
+	/** Blocks read past by take, in file order */
+	private final LinkedHashMap<String, ContigGenes> held=new LinkedHashMap<String, ContigGenes>();
+	private final int window;
+	private long blocksRead=0;
+	/** Index of the latest block handed out by take */
+	private long newest=0;
+
+	/** Non-comment lines read */
+	long totalRows=0;
+	/** CDS lines read */
+	long geneRows=0;
+	/** Distinct CDS read, counted per block */
+	long genes=0;
+	/** Distinct CDS in blocks that were never taken */
+	long dropped=0;
+	/** Distinct CDS that missed their contig because the gff is in a different order */
+	long misordered=0;
+	/** Contigs passed to take */
+	private final HashSet<String> taken=new HashSet<String>();
+	/** CDS counts of blocks dropped before their contig was taken */
+	private final HashMap<String, Long> droppedContigs=new HashMap<String, Long>();
+
+}
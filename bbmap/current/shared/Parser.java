@@ -44,7 +44,6 @@ import stream.SamStreamer;
 import stream.SamReadInputStream;
 import stream.SamWriter;
 import stream.StreamerFactory;
-import stream.bam.BgzfOutputStreamMT;
 import stream.bam.BgzfSettings;
 import structures.IntList;
 import tax.TaxTree;
@@ -751,6 +750,8 @@ public class Parser {
 		}else if(a.equalsIgnoreCase("bf4") || a.equalsIgnoreCase("bytefile4")){
 			ByteFile.FORCE_MODE_BF4=Parse.parseBoolean(b);
 			if(ByteFile.FORCE_MODE_BF4) {ByteFile.FORCE_MODE_BF1=ByteFile.FORCE_MODE_BF2=false;}
+		}else if(a.equalsIgnoreCase("bfm") || a.equalsIgnoreCase("bytefilemapped") || a.equalsIgnoreCase("mmap")){
+			ByteFile.FORCE_MODE_BFM=Parse.parseBoolean(b);
 		}else if(a.equalsIgnoreCase("bf4threads") || a.equalsIgnoreCase("bfthreads")){
 			ByteFile4.DEFAULT_THREADS=Integer.parseInt(b);
 		}else if(a.equals("utot")){
@@ -1243,14 +1244,25 @@ public class Parser {
 			BgzfSettings.USE_MULTITHREADED_BGZF=Parse.parseBoolean(b);
 		}else if(a.equals("nativebgzipmt") || a.equals("nativebgzfmt") || a.equals("multithreadedbgzf")){
 			BgzfSettings.USE_MULTITHREADED_BGZF=Parse.parseBoolean(b);
+		}else if(a.equals("nativegzip") || a.equals("nativegzipout") || a.equals("prefernativegzip")){
+			ReadWrite.PREFER_NATIVE_GZIP_OUT=Parse.parseBoolean(b);
+		}else if(a.equals("parallelgunzip") || a.equals("pgunzip") || a.equals("gunzipmt")){
+			ReadWrite.PARALLEL_GUNZIP=Parse.parseBoolean(b);
+		}else if(a.equals("gunzipthreads") || a.equals("pgunzipthreads")){
+			int x=Integer.parseInt(b);
+			ReadWrite.PARALLEL_GUNZIP=x!=1;
+			ReadWrite.PARALLEL_GUNZIP_THREADS=Tools.max(1, x>0 ? x : Shared.threads());
+			ReadWrite.PARALLEL_GUNZIP_MIN_THREADS=Tools.min(ReadWrite.PARALLEL_GUNZIP_MIN_THREADS, ReadWrite.PARALLEL_GUNZIP_THREADS);
 		}else if(a.equals("filteredbgzf")){
-			BgzfOutputStreamMT.FILTERED_BGZF=Parse.parseBoolean(b);
+			BgzfSettings.FILTERED_BGZF=Parse.parseBoolean(b);
 		}else if(a.equals("bgzfthreadsin") || a.equals("bgzftin") || a.equals("bgzfreadthreads")){
 			int x=Integer.parseInt(b);
 			BgzfSettings.READ_THREADS=Tools.max(1, x>0 ? x : Shared.threads());
 		}else if(a.equals("bgzfthreadsout") || a.equals("bgzftout") || a.equals("bgzfwritethreads")){
 			int x=Integer.parseInt(b);
 			BgzfSettings.WRITE_THREADS=Tools.max(1, x>0 ? x : Shared.threads());
+		}else if(a.equals("bgzfblocksize")){
+			BgzfSettings.WRITE_BLOCK_SIZE=Parse.parseIntKMG(b);
 		}
 		
 		else if(a.equals("preferunbgzip")){
@@ -1320,6 +1332,8 @@ public class Parser {
 			SamStreamer.DEFAULT_THREADS=Integer.parseInt(b);
 		}else if(a.equals("bsthreads")){
 			BamStreamer.DEFAULT_THREADS=Integer.parseInt(b);
+		}else if(a.equals("region") || a.equals("regions")){
+			BamStreamer.REGIONS=(b==null || b.equalsIgnoreCase("null") ? null : b);
 		}else if(a.equals("fastqstreamerthreads") || a.equals("fqsthreads")){
 			FastqStreamer.DEFAULT_THREADS=Integer.parseInt(b);
 		}else if(a.equals("fastastreamerthreads") || a.equals("fasthreads")){
@@ -38,6 +38,11 @@ final class SIMD{
 	/** Number of short elements per vector (16 for 256-bit) */
 	private static final int SWIDTH=SSPECIES.length();
 
+	/** Vector species for 256-bit byte operations with 32 lanes */
+	private static final VectorSpecies<Byte> BSPECIES=ByteVector.SPECIES_256;
+	/** Number of byte elements per vector (32 for 256-bit) */
+	private static final int BWIDTH=BSPECIES.length();
+
 	/** Vector species for 256-bit double operations with 4 lanes */
 	private static final VectorSpecies<Double> DSPECIES=DoubleVector.SPECIES_256;
 	/** Number of double elements per vector (4 for 256-bit) */
@@ -386,6 +391,183 @@ final class SIMD{
 		}
 	}
 
+	/**
+	 * Vectorized version of "c+=a[aOff+i]*b[bOff+i]" for i in [0, len).
+	 * Used by the CNN layers, which store weights and activations in flat arrays.
+	 * @param a A vector to multiply.
+	 * @param aOff Start offset in a.
+	 * @param b A vector to multiply.
+	 * @param bOff Start offset in b.
+	 * @param len Number of elements.
+	 * @return Sum of products of vector elements.
+	 */
+	static final float fma(final float[] a, final int aOff, final float[] b, final int bOff, final int len){
+		final int limit=FSPECIES.loopBound(len);
+
+		FloatVector sum=FloatVector.zero(FSPECIES);
+		int i=0;
+		for(; i<limit; i+=FWIDTH){// SIMD loop
+			FloatVector va=FloatVector.fromArray(FSPECIES, a, aOff+i);
+			FloatVector vb=FloatVector.fromArray(FSPECIES, b, bOff+i);
+			sum=va.fma(vb, sum);
+		}
+		float c=sum.reduceLanes(VectorOperators.ADD);
+		for(; i<len; i++){// Residual scalar loop
+			c+=a[aOff+i]*b[bOff+i];
+		}
+		return c;
+	}
+
+	/**
+	 * Returns "c+=a[aOff+i]*b[bOff+i]" for i in [0, len), for int8 values in [-127, 127].
+	 * Each 32-byte block is widened to shorts in two halves; the two halves' products
+	 * are summed in shorts, which cannot overflow in that range, then widened to ints.
+	 * @param a A vector to multiply.
+	 * @param aOff Start offset in a.
+	 * @param b A vector to multiply.
+	 * @param bOff Start offset in b.
+	 * @param len Number of elements.
+	 * @return Sum of products of vector elements.
+	 */
+	static final int fma(final byte[] a, final int aOff, final byte[] b, final int bOff, final int len){
+		final int limit=BSPECIES.loopBound(len);
+
+		IntVector sum0=IntVector.zero(ISPECIES), sum1=IntVector.zero(ISPECIES);
+		int i=0;
+		for(; i<limit; i+=BWIDTH){// SIMD loop
+			ByteVector va=ByteVector.fromArray(BSPECIES, a, aOff+i);
+			ByteVector vb=ByteVector.fromArray(BSPECIES, b, bOff+i);
+			ShortVector lo=((ShortVector)va.convertShape(VectorOperators.B2S, SSPECIES, 0))
+					.mul((ShortVector)vb.convertShape(VectorOperators.B2S, SSPECIES, 0));
+			ShortVector hi=((ShortVector)va.convertShape(VectorOperators.B2S, SSPECIES, 1))
+					.mul((ShortVector)vb.convertShape(VectorOperators.B2S, SSPECIES, 1));
+			ShortVector prod=lo.add(hi);
+			sum0=sum0.add((IntVector)prod.convertShape(VectorOperators.S2I, ISPECIES, 0));
+			sum1=sum1.add((IntVector)prod.convertShape(VectorOperators.S2I, ISPECIES, 1));
+		}
+		int c=sum0.add(sum1).reduceLanes(VectorOperators.ADD);
+		for(; i<len; i++){// Residual scalar loop
+			c+=a[aOff+i]*b[bOff+i];
+		}
+		return c;
+	}
+
+	/**
+	 * Performs "dest[dOff+i]=round(a[aOff+i]*mult)" for i in [0, len),
+	 * clamped to [-127, 127], rounding halves away from zero.
+	 * @param a Values to quantize.
+	 * @param aOff Start offset in a.
+	 * @param dest Receives int8 values.
+	 * @param dOff Start offset in dest.
+	 * @param mult Quantization steps per unit.
+	 * @param len Number of elements.
+	 */
+	static final void quantize(final float[] a, final int aOff, final byte[] dest, final int dOff, 
+			final float mult, final int len){
+		final int limit=FSPECIES.loopBound(len);
+
+		int i=0;
+		for(; i<limit; i+=FWIDTH){// SIMD loop
+			FloatVector v=FloatVector.fromArray(FSPECIES, a, aOff+i).mul(mult).max(-127f).min(127f);
+			FloatVector half=FloatVector.broadcast(FSPECIES, 0.5f).blend(-0.5f, v.lt(0f));
+			IntVector q=(IntVector)v.add(half).convertShape(VectorOperators.F2I, ISPECIES, 0);
+			((ByteVector)q.convertShape(VectorOperators.I2B, ByteVector.SPECIES_64, 0)).intoArray(dest, dOff+i);
+		}
+		for(; i<len; i++){// Residual scalar loop
+			final float x=Math.max(-127f, Math.min(127f, a[aOff+i]*mult));
+			dest[dOff+i]=(byte)(int)(x+(x<0 ? -0.5f : 0.5f));
+		}
+	}
+
+	/**
+	 * Performs "a[aOff+i]+=b[bOff+i]*mult" for i in [0, len).
+	 * The residual loop also fuses, so every element is rounded once.
+	 * @param a A vector to increment.
+	 * @param aOff Start offset in a.
+	 * @param b Increment amount.
+	 * @param bOff Start offset in b.
+	 * @param mult Increment multiplier.
+	 * @param len Number of elements.
+	 */
+	static final void addProduct(final float[] a, final int aOff, final float[] b, final int bOff, 
+			final float mult, final int len){
+		final int limit=FSPECIES.loopBound(len);
+
+		int i=0;
+		for(; i<limit; i+=FWIDTH){// SIMD loop
+			FloatVector va=FloatVector.fromArray(FSPECIES, a, aOff+i);
+			FloatVector vb=FloatVector.fromArray(FSPECIES, b, bOff+i);
+			vb.fma(FloatVector.broadcast(FSPECIES, mult), va).intoArray(a, aOff+i);
+		}
+		for(; i<len; i++){// Residual scalar loop
+			a[aOff+i]=Math.fma(b[bOff+i], mult, a[aOff+i]);
+		}
+	}
+
+	/**
+	 * Performs "w[i]+=d[i]*mult" then "d[i]=0", scaling any step that raises |w[i]| past thresh by damp.
+	 * Weights that would become subnormal are kept, as are zero weights unless updateZeros is set.
+	 * Blocks with no nonzero delta are not written, so concurrent callers touch only changed lines.
+	 * @param w Weights to update.
+	 * @param d Deltas; cleared.
+	 * @param mult Delta multiplier.
+	 * @param thresh Magnitude above which increases are damped.
+	 * @param damp Multiplier for damped steps.
+	 * @param updateZeros Allow zero weights to change.
+	 */
+	static final void applyDeltas(final float[] w, final float[] d, final float mult, 
+			final float thresh, final float damp, final boolean updateZeros){
+		final int limit=FSPECIES.loopBound(w.length);
+		final FloatVector zero=FloatVector.zero(FSPECIES);
+
+		int i=0;
+		for(; i<limit; i+=FWIDTH){// SIMD loop
+			FloatVector vd=FloatVector.fromArray(FSPECIES, d, i);
+			if(!vd.compare(VectorOperators.NE, 0f).anyTrue()){continue;}
+			FloatVector vw=FloatVector.fromArray(FSPECIES, w, i);
+			FloatVector d3=vd.mul(mult);
+			FloatVector w4=vw.add(d3);
+			FloatVector absW4=w4.abs();
+			VectorMask<Float> grow=absW4.compare(VectorOperators.GT, vw.abs()).and(absW4.compare(VectorOperators.GT, thresh));
+			w4=w4.blend(vw.add(d3.mul(damp)), grow);
+			VectorMask<Float> write=w4.abs().compare(VectorOperators.GT, Float.MIN_NORMAL);
+			if(!updateZeros){write=write.and(vw.compare(VectorOperators.NE, 0f));}
+			vw.blend(w4, write).intoArray(w, i);
+			zero.intoArray(d, i);
+		}
+		for(; i<w.length; i++){// Residual scalar loop
+			final float di=d[i];
+			if(di==0){continue;}
+			final float wi=w[i], d3=di*mult;
+			float w4=wi+d3;
+			final float absW4=Math.abs(w4);
+			if(absW4>Math.abs(wi) && absW4>thresh){w4=wi+damp*d3;}
+			d[i]=0;
+			if((wi!=0 || updateZeros) && Math.abs(w4)>Float.MIN_NORMAL){w[i]=w4;}
+		}
+	}
+
+	/**
+	 * Clamps each element of a[from, to) to [min, max].
+	 * @param a Array to modify.
+	 * @param from Start index, inclusive.
+	 * @param to End index, exclusive.
+	 * @param min Lower bound.
+	 * @param max Upper bound.
+	 */
+	static final void clamp(final float[] a, final int from, final int to, final float min, final float max){
+		final int limit=from+FSPECIES.loopBound(to-from);
+
+		int i=from;
+		for(; i<limit; i+=FWIDTH){// SIMD loop
+			FloatVector va=FloatVector.fromArray(FSPECIES, a, i);
+			va.max(min).min(max).intoArray(a, i);
+		}
+		for(; i<to; i++){// Residual scalar loop
+			a[i]=Math.max(min, Math.min(max, a[i]));
+		}
+	}
+
 	static final void addProductSparse(final float[] a, final float[] b, final int[] bSet,
 		final float mult){
 		// final int width=SPECIES.length();
@@ -832,4 +1014,50 @@ final class SIMD{
 		}
 	}
 
+	/**
+	 * SIMD codon classification over packed k-mer entries.
+	 * Each entry holds the codes of its last bases in the low bits and the number of
+	 * defined bases ending there at runShift; positions with fewer than 3 get UNDEFINED_CODON.
+	 * @param kmers Packed entries, non-negative
+	 * @param from Start index, inclusive
+	 * @param to End index, exclusive
+	 * @param runShift Bit position of the defined-base count
+	 * @param stopMask Bit c is set if codon code c is a stop
+	 * @param startMask Bit c is set if codon code c is a start
+	 * @param flags Receives STOP_CODON and/or START_CODON bits per position
+	 */
+	static void classifyCodons(final int[] kmers, final int from, final int to, final int runShift,
+			final long stopMask, final long startMask, final byte[] flags){
+		final IntVector vStopLo=IntVector.broadcast(ISPECIES, (int)stopMask);
+		final IntVector vStopHi=IntVector.broadcast(ISPECIES, (int)(stopMask>>>32));
+		final IntVector vStartLo=IntVector.broadcast(ISPECIES, (int)startMask);
+		final IntVector vStartHi=IntVector.broadcast(ISPECIES, (int)(startMask>>>32));
+		final IntVector vUndefined=IntVector.broadcast(ISPECIES, Vector.UNDEFINED_CODON);
+		
+		int i=from;
+		
+		// SIMD loop; lanewise shifts use the low 5 bits of each code, so the high half is chosen by blend
+		for(; i<=to-IWIDTH; i+=IWIDTH){
+			IntVector v=IntVector.fromArray(ISPECIES, kmers, i);
+			IntVector code=v.and(63);
+			VectorMask<Integer> high=code.compare(VectorOperators.GE, 32);
+			IntVector stop=vStopLo.lanewise(VectorOperators.LSHR, code).blend(
+					vStopHi.lanewise(VectorOperators.LSHR, code), high).and(1);
+			IntVector start=vStartLo.lanewise(VectorOperators.LSHR, code).blend(
+					vStartHi.lanewise(VectorOperators.LSHR, code), high).and(1);
+			IntVector f=stop.or(start.lanewise(VectorOperators.LSHL, 1));
+			VectorMask<Integer> undefined=v.lanewise(VectorOperators.LSHR, runShift).compare(VectorOperators.LT, 3);
+			f=f.blend(vUndefined, undefined);
+			((ByteVector)f.convertShape(VectorOperators.I2B, ByteVector.SPECIES_64, 0)).intoArray(flags, i);
+		}
+		
+		// Scalar tail
+		for(; i<to; i++){
+			final int e=kmers[i];
+			final int code=e&63;
+			flags[i]=((e>>>runShift)<3 ? Vector.UNDEFINED_CODON : 
+				(byte)(((stopMask>>>code)&1)|(((startMask>>>code)&1)<<1)));
+		}
+	}
+	
 }
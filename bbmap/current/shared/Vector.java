@@ -347,6 +347,118 @@ public final class Vector {
 		for(int i=0; i<a.length; i++) {a[i]+=b[i]*mult;}
 	}
 
+	/** 
+	 * Returns "c+=a[aOff+i]*b[bOff+i]" for i in [0, len).
+	 * @param a A vector to multiply.
+	 * @param aOff Start offset in a.
+	 * @param b A vector to multiply.
+	 * @param bOff Start offset in b.
+	 * @param len Number of elements.
+	 * @return Sum of products of vector elements.
+	 */
+	public static final float fma(final float[] a, final int aOff, final float[] b, final int bOff, final int len){
+		if(Shared.SIMD && len>=MINLEN32) {return SIMD.fma(a, aOff, b, bOff, len);}
+		float c=0;
+		for(int i=0; i<len; i++) {c+=a[aOff+i]*b[bOff+i];}
+		return c;
+	}
+
+	/** 
+	 * Returns "c+=a[aOff+i]*b[bOff+i]" for i in [0, len), for int8 values in [-127, 127].
+	 * Accumulates in an int, which cannot overflow below 2^17 elements.
+	 * @param a A vector to multiply.
+	 * @param aOff Start offset in a.
+	 * @param b A vector to multiply.
+	 * @param bOff Start offset in b.
+	 * @param len Number of elements.
+	 * @return Sum of products of vector elements.
+	 */
+	public static final int fma(final byte[] a, final int aOff, final byte[] b, final int bOff, final int len){
+		if(Shared.SIMD && len>=MINLEN32) {return SIMD.fma(a, aOff, b, bOff, len);}
+		int c=0;
+		for(int i=0; i<len; i++) {c+=a[aOff+i]*b[bOff+i];}
+		return c;
+	}
+
+	/** 
+	 * Performs "dest[dOff+i]=round(a[aOff+i]*mult)" for i in [0, len),
+	 * clamped to [-127, 127], rounding halves away from zero.
+	 * @param a Values to quantize.
+	 * @param aOff Start offset in a.
+	 * @param dest Receives int8 values.
+	 * @param dOff Start offset in dest.
+	 * @param mult Quantization steps per unit.
+	 * @param len Number of elements.
+	 */
+	public static final void quantize(final float[] a, final int aOff, final byte[] dest, final int dOff, 
+			final float mult, final int len){
+		if(Shared.SIMD && len>=MINLEN32) {SIMD.quantize(a, aOff, dest, dOff, mult, len); return;}
+		for(int i=0; i<len; i++) {dest[dOff+i]=quantize(a[aOff+i]*mult);}
+	}
+	
+	/** Rounds x to the nearest int8 in [-127, 127], rounding halves away from zero. */
+	public static final byte quantize(final float x){
+		final float y=Math.max(-127f, Math.min(127f, x));
+		return (byte)(int)(y+(y<0 ? -0.5f : 0.5f));
+	}
+
+	/** 
+	 * Performs "a[aOff+i]+=b[bOff+i]*mult" for i in [0, len).
+	 * With SIMD every element is one fused multiply-add, whatever len is,
+	 * so an element's result does not depend on how the span was cut up.
+	 * @param a A vector to increment.
+	 * @param aOff Start offset in a.
+	 * @param b Increment amount.
+	 * @param bOff Start offset in b.
+	 * @param mult Increment multiplier.
+	 * @param len Number of elements.
+	 */
+	public static final void addProduct(final float[] a, final int aOff, final float[] b, final int bOff, 
+			final float mult, final int len){
+		if(Shared.SIMD) {SIMD.addProduct(a, aOff, b, bOff, mult, len); return;}
+		for(int i=0; i<len; i++) {a[aOff+i]+=b[bOff+i]*mult;}
+	}
+
+	/** 
+	 * Performs "w[i]+=d[i]*mult" then "d[i]=0", scaling any step that raises |w[i]| past thresh by damp.
+	 * Weights that would become subnormal are kept, as are zero weights unless updateZeros is set.
+	 * Zero deltas leave their weights unwritten, so concurrent Hogwild callers touch only changed lines.
+	 * @param w Weights to update.
+	 * @param d Deltas; cleared.
+	 * @param mult Delta multiplier.
+	 * @param thresh Magnitude above which increases are damped.
+	 * @param damp Multiplier for damped steps.
+	 * @param updateZeros Allow zero weights to change.
+	 */
+	public static final void applyDeltas(final float[] w, final float[] d, final float mult, 
+			final float thresh, final float damp, final boolean updateZeros){
+		assert(w.length==d.length);
+		if(Shared.SIMD && w.length>=MINLEN32) {SIMD.applyDeltas(w, d, mult, thresh, damp, updateZeros); return;}
+		for(int i=0; i<w.length; i++) {
+			final float di=d[i];
+			if(di==0) {continue;}
+			final float wi=w[i], d3=di*mult;
+			float w4=wi+d3;
+			final float absW4=Math.abs(w4);
+			if(absW4>Math.abs(wi) && absW4>thresh) {w4=wi+damp*d3;}
+			d[i]=0;
+			if((wi!=0 || updateZeros) && Math.abs(w4)>Float.MIN_NORMAL) {w[i]=w4;}
+		}
+	}
+
+	/** 
+	 * Clamps each element of a[from, to) to [min, max].
+	 * @param a Array to modify.
+	 * @param from Start index, inclusive.
+	 * @param to End index, exclusive.
+	 * @param min Lower bound.
+	 * @param max Upper bound.
+	 */
+	public static final void clamp(final float[] a, final int from, final int to, final float min, final float max){
+		if(Shared.SIMD && to-from>=MINLEN32) {SIMD.clamp(a, from, to, min, max); return;}
+		for(int i=from; i<to; i++) {a[i]=Math.max(min, Math.min(max, a[i]));}
+	}
+
 	/** 
 	 * Performs "a[i]+=b[bSet[i]]*mult".
 	 * @param a A vector to increment.
@@ -1061,6 +1173,34 @@ public final class Vector {
 		}
 	}
 
+	/**
+	 * Classifies the codon ending at each position of packed k-mer entries,
+	 * such as prok.KmerTrack's, as a stop, start, or undefined codon.
+	 * @param kmers Entries with base codes in the low bits and the count of
+	 * defined bases ending there at runShift
+	 * @param from Start index, inclusive
+	 * @param to End index, exclusive
+	 * @param runShift Bit position of the defined-base count
+	 * @param stopMask Bit c is set if codon code c is a stop
+	 * @param startMask Bit c is set if codon code c is a start
+	 * @param flags Receives STOP_CODON and START_CODON bits, or UNDEFINED_CODON
+	 * for positions with fewer than 3 defined bases
+	 */
+	public static void classifyCodons(final int[] kmers, final int from, final int to, final int runShift,
+			final long stopMask, final long startMask, final byte[] flags){
+		assert(to<=kmers.length && to<=flags.length) : to+", "+kmers.length+", "+flags.length;
+		if(Shared.SIMD && to-from>=MINLEN32) {
+			SIMD.classifyCodons(kmers, from, to, runShift, stopMask, startMask, flags);
+			return;
+		}
+		for(int i=from; i<to; i++){
+			final int e=kmers[i];
+			final int code=e&63;
+			flags[i]=((e>>>runShift)<3 ? UNDEFINED_CODON : 
+				(byte)(((stopMask>>>code)&1)|(((startMask>>>code)&1)<<1)));
+		}
+	}
+
 	private static synchronized boolean vectorLoaded() {
 		try{Class.forName("jdk.incubator.vector.ByteVector");}
 		catch(ClassNotFoundException e){return false;}
@@ -1072,6 +1212,13 @@ public final class Vector {
 		catch(Throwable e){return false;}
 	}
 
+	/** classifyCodons flag for a stop codon */
+	public static final byte STOP_CODON=1;
+	/** classifyCodons flag for a start codon */
+	public static final byte START_CODON=2;
+	/** classifyCodons value for a codon with an undefined base; it also counts as a stop */
+	public static final byte UNDEFINED_CODON=STOP_CODON|4;
+
 	/** Minimum array length for 8-bit SIMD operations */
 	public static final int MINLEN8=8;//Due to dual SIMD
 	/** Minimum array length for 16-bit SIMD operations */
@@ -10,9 +10,11 @@ import java.util.Arrays;
 
 import fileIO.FileFormat;
 import fileIO.ReadWrite;
+import shared.KillSwitch;
 import shared.Shared;
 import shared.Tools;
 import stream.bam.BamReader;
+import stream.bam.BamRegionReader;
 import stream.bam.BamToSamConverter;
 import structures.ByteBuilder;
 import structures.ListNum;
@@ -261,11 +263,12 @@ public class BamStreamer implements Streamer {
 				//Read reference sequence dictionary
 				int n_ref=reader.readInt32();
 				String[] refNames=new String[n_ref];
+				long[] refLengths=new long[n_ref];
 				for(int i=0; i<n_ref; i++){
 					long l_name=reader.readUint32();
 					refNames[i]=reader.readString((int)l_name-1);
 					reader.readUint8(); //Skip NUL
-					long l_ref=reader.readUint32();
+					refLengths[i]=reader.readUint32();
 				}
 
 				if(verbose){outstream.println("Thread "+tid+" making converter.");}
@@ -275,6 +278,16 @@ public class BamStreamer implements Streamer {
 				}
 				if(verbose){outstream.println("Thread "+tid+" made converter.");}
 				
+				//With regions, records come from index-guided seeks instead of the sequential stream
+				BamRegionReader regionReader=null;
+				if(REGIONS!=null){
+					try{
+						regionReader=new BamRegionReader(fname, REGIONS, refNames, refLengths);
+					}catch(IOException | IllegalArgumentException e){
+						KillSwitch.kill(e.getMessage()); //Consumers would otherwise wait forever
+					}
+				}
+				
 				final int slimit=TARGET_LIST_SIZE, blimit=TARGET_LIST_BYTES;
 				int bytes=0;
 				ListNum<byte[]> ln=new ListNum<byte[]>(new ArrayList<byte[]>(slimit), listNumber++);
@@ -283,10 +296,16 @@ public class BamStreamer implements Streamer {
 				//Read alignment records
 				try{
 					for(long reads=0; reads<maxReads; reads++){
-						long block_size=reader.readUint32();
-						byte[] bamRecord=reader.readBytes((int)block_size);
+						final byte[] bamRecord;
+						if(regionReader==null){
+							long block_size=reader.readUint32();
+							bamRecord=reader.readBytes((int)block_size);
+						}else{
+							bamRecord=regionReader.next();
+							if(bamRecord==null){break;}
+						}
 						ln.add(bamRecord);
-						bytes+=block_size;
+						bytes+=bamRecord.length;
 
 						if(ln.size()>=slimit || bytes>=blimit){
 							oqs.addInput(ln);
@@ -306,6 +325,7 @@ public class BamStreamer implements Streamer {
 				}
 
 				bgzf.close();
+				if(regionReader!=null){regionReader.close();}
 
 				if(verbose){outstream.println("Thread "+tid+" closed streams.");}
 			}catch(IOException e){
@@ -424,6 +444,8 @@ public class BamStreamer implements Streamer {
 	public static int TARGET_LIST_SIZE=200;
 	public static int TARGET_LIST_BYTES=250000;
 	public static int DEFAULT_THREADS=6; // BAM benefits from more threads; peaks at 7 + 12 bgzip threads
+	/** Restrict input to these regions (name, name:start-end, or a BED file); requires an index */
+	public static String REGIONS=null;
 	
 	/*--------------------------------------------------------------*/
 	/*----------------        Common Fields         ----------------*/
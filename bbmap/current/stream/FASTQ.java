@@ -894,7 +894,7 @@ public class FASTQ {
 		Vector.applyQualOffset(quals, bases, -ASCII_OFFSET);
 	}
 	
-	private static int detectQuals(final byte[] quals, final byte[] bases,
+	static int detectQuals(final byte[] quals, final byte[] bases,
 			final String name, final long numericID) {
 		assert(quals!=null);
 		
@@ -947,7 +947,7 @@ public class FASTQ {
 		return ASCII_OFFSET;
 	}
 	
-	private static Read parseCustom(byte[] bases, byte[] quals, byte[] header, String id, long numericID) {
+	static Read parseCustom(byte[] bases, byte[] quals, byte[] header, String id, long numericID) {
 		Read r=null;
 		assert(PARSE_CUSTOM);
 
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 
 import fileIO.ByteFile;
 import fileIO.FileFormat;
+import shared.Parse;
 import shared.Shared;
 import shared.Timer;
 import shared.Tools;
@@ -25,15 +26,31 @@ public class FastaStreamer implements Streamer {
 		Timer t=new Timer();
 		String fname=args[0];
 		if(args.length>1) {DEFAULT_THREADS=Integer.parseInt(args[1]);}
+		boolean batch=(args.length>2 && Parse.parseBoolean(args[2]));
 
 		FileFormat ff=FileFormat.testInput(fname, FileFormat.FASTA, null, true, true);
-		Streamer st=StreamerFactory.makeStreamer(ff, 0, true, -1, true, true);
-		st.start();
 		long reads=0, bases=0;
-		for(ListNum<Read> ln=st.nextList(); ln!=null; ln=st.nextList()) {
-			for(Read r : ln) {
-				reads+=r.pairCount();
-				bases+=r.pairLength();
+		if(batch) {
+			FastaStreamer st=new FastaStreamer(ff, 0, 0, -1);
+			st.setBatchMode(true);
+			st.start();
+			ReadView rv=new ReadView();
+			for(ListNum<ReadBatch> ln=st.nextBatch(); ln!=null; ln=st.nextBatch()) {
+				for(ReadBatch rb : ln) {
+					for(int i=0, lim=rb.size(); i<lim; i++) {
+						bases+=rv.set(rb, i).length();
+					}
+					reads+=rb.size();
+				}
+			}
+		}else {
+			Streamer st=StreamerFactory.makeStreamer(ff, 0, true, -1, true, true);
+			st.start();
+			for(ListNum<Read> ln=st.nextList(); ln!=null; ln=st.nextList()) {
+				for(Read r : ln) {
+					reads+=r.pairCount();
+					bases+=r.pairLength();
+				}
 			}
 		}
 		t.stop();
@@ -69,6 +86,22 @@ public class FastaStreamer implements Streamer {
 		if(verbose){outstream.println("Made FastaStreamer-"+threads);}
 	}
 
+	/**
+	 * Batch mode delivers records through nextBatch() as ReadBatches,
+	 * one contiguous buffer per list, instead of Read objects through nextList().
+	 * Must be set before start().
+	 */
+	@Override
+	public boolean setBatchMode(boolean b){
+		batchMode=b;
+		if(b && boqs==null){
+			ListNum<ReadBatch> prototype=new ListNum<ReadBatch>(null, 0, ListNum.PROTO);
+			boqs=new OrderedQueueSystem<ListNum<ReadBatch>, ListNum<ReadBatch>>(
+				threads, true, prototype, prototype);
+		}
+		return true;
+	}
+
 	/*--------------------------------------------------------------*/
 	/*----------------         Outer Methods        ----------------*/
 	/*--------------------------------------------------------------*/
@@ -90,6 +123,7 @@ public class FastaStreamer implements Streamer {
 	@Override
 	public void close(){
 		if(bf!=null) {bf.close(); bf=null;}
+		if(reader!=null) {reader.close(); reader=null;}
 	}
 
 	@Override
@@ -97,7 +131,7 @@ public class FastaStreamer implements Streamer {
 
 	@Override
 	public boolean hasMore(){
-		return oqs.hasMore();
+		return batchMode ? boqs.hasMore() : oqs.hasMore();
 	}
 
 	@Override
@@ -123,6 +157,7 @@ public class FastaStreamer implements Streamer {
 
 	@Override
 	public ListNum<Read> nextList(){
+		assert(!batchMode) : "Use nextBatch() in batch mode.";
 		ListNum<Read> list=oqs.getOutput();
 		if(verbose){
 			if(list==null) {outstream.println("Consumer got null.");}
@@ -137,6 +172,23 @@ public class FastaStreamer implements Streamer {
 		return list;
 	}
 
+	/** 
+	 * Returns the next ordered list of ReadBatches in batch mode, or null when exhausted.
+	 * Each list holds a single batch.
+	 */
+	@Override
+	public ListNum<ReadBatch> nextBatch(){
+		assert(batchMode) : "Call setBatchMode(true) before start().";
+		ListNum<ReadBatch> list=boqs.getOutput();
+		if(list==null || list.last()){
+			if(list!=null && list.last()){
+				boqs.setFinished();
+			}
+			return null;
+		}
+		return list;
+	}
+
 	@Override
 	public ListNum<SamLine> nextLines(){
 		throw new UnsupportedOperationException("FASTA does not support SamLine");
@@ -185,6 +237,8 @@ public class FastaStreamer implements Streamer {
 			synchronized(this) {
 				if(tid==0){
 					processBytes();
+				}else if(batchMode){
+					parseBatches();
 				}else{
 					if(interleaved) {
 						makeReadsInterleaved();
@@ -200,11 +254,13 @@ public class FastaStreamer implements Streamer {
 		}
 
 		void processBytes(){
-			processBytes0();
+			if(batchMode){loadBatches0();}
+			else{processBytes0();}
 			if(verbose){outstream.println("tid "+tid+" done with processBytes0.");}
 
 			// Signal completion via OQS
-			oqs.poison();
+			if(batchMode){boqs.poison();}
+			else{oqs.poison();}
 			if(verbose){outstream.println("tid "+tid+" done poisoning.");}
 
 			//Wait for completion of all threads
@@ -282,6 +338,41 @@ public class FastaStreamer implements Streamer {
 			if(verbose){outstream.println("tid "+tid+" closed stream.");}
 		}
 
+		/** 
+		 * Batch mode: thread 0 reads raw blocks cut before a '>' line.
+		 */
+		private void loadBatches0(){
+			final long limit=maxReads*(interleaved && maxReads<Long.MAX_VALUE/2 ? 2 : 1);
+			reader=new ReadBatchReader(ffin, TARGET_LIST_BYTES, interleaved ? 2 : 1, limit);
+			long listNumber=0;
+			for(ReadBatch rb=reader.next(); rb!=null; rb=reader.next()){
+				ArrayList<ReadBatch> list=new ArrayList<ReadBatch>(1);
+				list.add(rb);
+				ListNum<ReadBatch> ln=new ListNum<ReadBatch>(list, listNumber++);
+				ln.firstRecordNum=rb.firstRecordNum;
+				boqs.addInput(ln);
+			}
+			if(verbose){outstream.println("tid "+tid+" done reading batches.");}
+			errorState|=reader.close();
+		}
+
+		/** Batch mode: parse each block in place */
+		void parseBatches(){
+			ListNum<ReadBatch> list=boqs.getInput();
+			while(list!=null && !list.poison()){
+				for(ReadBatch rb : list){
+					rb.parse(interleaved, pairnum, fname);
+					if(samplerate<1f){rb.sample(samplerate, randy);}
+					readsProcessedT+=rb.size();
+					basesProcessedT+=rb.bases();
+				}
+				boqs.addOutput(list);
+				list=boqs.getInput();
+			}
+			//Re-inject poison for other workers
+			if(list!=null) {boqs.addInput(list);}
+		}
+
 		/** Iterate through the reads */
 		void makeReadsSingle(){
 			if(verbose){outstream.println("tid "+tid+" started makeReads.");}
@@ -431,8 +522,14 @@ public class FastaStreamer implements Streamer {
 	final FileFormat ffin;
 	
 	public ByteFile bf;//TODO: Should not be a field, just internal.
+	/** Input source in batch mode */
+	private ReadBatchReader reader;
 
 	final OrderedQueueSystem<ListNum<byte[]>, ListNum<Read>> oqs;
+	/** Queue system for batch mode */
+	private OrderedQueueSystem<ListNum<ReadBatch>, ListNum<ReadBatch>> boqs;
+	/** Deliver ReadBatches instead of Reads */
+	private boolean batchMode=false;
 
 	final int threads;
 	final int pairnum;
@@ -26,15 +26,31 @@ public class FastqStreamer implements Streamer {
 		if(args.length>1) {DEFAULT_THREADS=Integer.parseInt(args[1]);}
 		if(args.length>2) {Shared.SIMD=true;}
 		if(args.length>3) {Read.VALIDATE_VECTOR=Parse.parseBoolean(args[3]);}
+		boolean batch=(args.length>4 && Parse.parseBoolean(args[4]));
 		
 		FileFormat ff=FileFormat.testInput(fname, FileFormat.FASTQ, null, true, true);
-		Streamer st=StreamerFactory.makeStreamer(ff, 0, true, -1, true, true);
-		st.start();
 		long reads=0, bases=0;
-		for(ListNum<Read> ln=st.nextList(); ln!=null; ln=st.nextList()) {
-			for(Read r : ln) {
-				reads+=r.pairCount();
-				bases+=r.pairLength();
+		if(batch) {
+			FastqStreamer st=new FastqStreamer(ff, 0, 0, -1);
+			st.setBatchMode(true);
+			st.start();
+			ReadView rv=new ReadView();
+			for(ListNum<ReadBatch> ln=st.nextBatch(); ln!=null; ln=st.nextBatch()) {
+				for(ReadBatch rb : ln) {
+					for(int i=0, lim=rb.size(); i<lim; i++) {
+						bases+=rv.set(rb, i).length();
+					}
+					reads+=rb.size();
+				}
+			}
+		}else {
+			Streamer st=StreamerFactory.makeStreamer(ff, 0, true, -1, true, true);
+			st.start();
+			for(ListNum<Read> ln=st.nextList(); ln!=null; ln=st.nextList()) {
+				for(Read r : ln) {
+					reads+=r.pairCount();
+					bases+=r.pairLength();
+				}
 			}
 		}
 		t.stop();
@@ -70,6 +86,22 @@ public class FastqStreamer implements Streamer {
 		if(verbose){outstream.println("Made FastqStreamer-"+threads);}
 	}
 	
+	/**
+	 * Batch mode delivers records through nextBatch() as ReadBatches,
+	 * one contiguous buffer per list, instead of Read objects through nextList().
+	 * Must be set before start().
+	 */
+	@Override
+	public boolean setBatchMode(boolean b){
+		batchMode=b;
+		if(b && boqs==null){
+			ListNum<ReadBatch> prototype=new ListNum<ReadBatch>(null, 0, ListNum.PROTO);
+			boqs=new OrderedQueueSystem<ListNum<ReadBatch>, ListNum<ReadBatch>>(
+				threads, true, prototype, prototype);
+		}
+		return true;
+	}
+	
 	/*--------------------------------------------------------------*/
 	/*----------------         Outer Methods        ----------------*/
 	/*--------------------------------------------------------------*/
@@ -91,6 +123,7 @@ public class FastqStreamer implements Streamer {
 	@Override
 	public void close(){
 		if(bf!=null) {bf.close(); bf=null;}
+		if(reader!=null) {reader.close(); reader=null;}
 	}
 	
 	@Override
@@ -98,7 +131,7 @@ public class FastqStreamer implements Streamer {
 	
 	@Override
 	public boolean hasMore(){
-		return oqs.hasMore();
+		return batchMode ? boqs.hasMore() : oqs.hasMore();
 	}
 	
 	@Override
@@ -124,6 +157,7 @@ public class FastqStreamer implements Streamer {
 	
 	@Override
 	public ListNum<Read> nextList(){
+		assert(!batchMode) : "Use nextBatch() in batch mode.";
 		ListNum<Read> list=oqs.getOutput();
 		if(verbose){
 			if(list==null) {outstream.println("Consumer got null.");}
@@ -138,6 +172,23 @@ public class FastqStreamer implements Streamer {
 		return list;
 	}
 	
+	/** 
+	 * Returns the next ordered list of ReadBatches in batch mode, or null when exhausted.
+	 * Each list holds a single batch.
+	 */
+	@Override
+	public ListNum<ReadBatch> nextBatch(){
+		assert(batchMode) : "Call setBatchMode(true) before start().";
+		ListNum<ReadBatch> list=boqs.getOutput();
+		if(list==null || list.last()){
+			if(list!=null && list.last()){
+				boqs.setFinished();
+			}
+			return null;
+		}
+		return list;
+	}
+	
 	@Override
 	public ListNum<SamLine> nextLines(){
 		throw new UnsupportedOperationException("FASTQ does not support SamLine");
@@ -185,6 +236,8 @@ public class FastqStreamer implements Streamer {
 			//Process the reads
 			if(tid==0){
 				processBytes();
+			}else if(batchMode){
+				parseBatches();
 			}else{
 				if(interleaved) {
 					makeReadsInterleaved();
@@ -199,11 +252,13 @@ public class FastqStreamer implements Streamer {
 		}
 		
 		void processBytes(){
-			processBytes0();
+			if(batchMode){loadBatches0();}
+			else{processBytes0();}
 			if(verbose){outstream.println("tid "+tid+" done with processBytes0.");}
 			
 			// Signal completion via OQS
-			oqs.poison();
+			if(batchMode){boqs.poison();}
+			else{oqs.poison();}
 			if(verbose){outstream.println("tid "+tid+" done poisoning.");}
 			
 			//Wait for completion of all threads
@@ -277,6 +332,40 @@ public class FastqStreamer implements Streamer {
 			if(verbose){outstream.println("tid "+tid+" closed stream.");}
 		}
 		
+		/** 
+		 * Batch mode: thread 0 reads raw blocks cut at record boundaries.
+		 */
+		private void loadBatches0(){
+			reader=new ReadBatchReader(ffin, TARGET_LIST_BYTES, interleaved ? 2 : 1, maxReads);
+			long listNumber=0;
+			for(ReadBatch rb=reader.next(); rb!=null; rb=reader.next()){
+				ArrayList<ReadBatch> list=new ArrayList<ReadBatch>(1);
+				list.add(rb);
+				ListNum<ReadBatch> ln=new ListNum<ReadBatch>(list, listNumber++);
+				ln.firstRecordNum=rb.firstRecordNum;
+				boqs.addInput(ln);
+			}
+			if(verbose){outstream.println("tid "+tid+" done reading batches.");}
+			errorState|=reader.close();
+		}
+		
+		/** Batch mode: parse each block in place */
+		void parseBatches(){
+			ListNum<ReadBatch> list=boqs.getInput();
+			while(list!=null && !list.poison()){
+				for(ReadBatch rb : list){
+					rb.parse(interleaved, pairnum, fname);
+					if(samplerate<1f){rb.sample(samplerate, randy);}
+					readsProcessedT+=rb.size();
+					basesProcessedT+=rb.bases();
+				}
+				boqs.addOutput(list);
+				list=boqs.getInput();
+			}
+			//Re-inject poison for other workers
+			if(list!=null) {boqs.addInput(list);}
+		}
+		
 		/** Iterate through the reads */
 		void makeReadsSingle(){
 			if(verbose){outstream.println("tid "+tid+" started makeReads.");}
@@ -392,8 +481,14 @@ public class FastqStreamer implements Streamer {
 	
 	/** Input source */
 	private ByteFile bf;
+	/** Input source in batch mode */
+	private ReadBatchReader reader;
 	
 	final OrderedQueueSystem<ListNum<byte[][]>, ListNum<Read>> oqs;
+	/** Queue system for batch mode */
+	private OrderedQueueSystem<ListNum<ReadBatch>, ListNum<ReadBatch>> boqs;
+	/** Deliver ReadBatches instead of Reads */
+	private boolean batchMode=false;
 	
 	final int threads;
 	final int pairnum;
@@ -0,0 +1,325 @@
+package stream;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import dna.AminoAcid;
+import shared.KillSwitch;
+import shared.Shared;
+
+/**
+ * A block of FASTQ or FASTA records held as one contiguous byte array
+ * plus int offsets for the id, bases and qualities of each record.
+ *
+ * <p>The buffer is the raw file text, parsed in place: FASTQ qualities are
+ * converted from ASCII to native scores where they lie, and multi-line FASTA
+ * sequence is compacted so each record's bases are contiguous.  Nothing is
+ * allocated per record until toRead() is called, so consumers that only look
+ * at reads (counting, length histograms, kmer lookups) can use a ReadView over
+ * the batch instead of materializing Read objects.
+ *
+ * <p>Bases seen through a view are as they appear in the file; they have not
+ * been through Read.validate(), which is only applied by toRead().
+ *
+ * @author Brandon Imstepf
+ * @date November 25, 2025
+ */
+public final class ReadBatch implements Serializable {
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private static final long serialVersionUID=3218657091522384407L;
+
+	/**
+	 * Wraps raw text that has not yet been parsed.
+	 * @param buf_ Buffer containing exactly records_ whole records starting at 0
+	 * @param length_ Number of valid bytes in buf_
+	 * @param records_ Number of records in the buffer
+	 * @param firstRecordNum_ Zero-based record number of the first record in the file
+	 * @param fasta_ True for FASTA, false for FASTQ
+	 */
+	ReadBatch(byte[] buf_, int length_, int records_, long firstRecordNum_, boolean fasta_){
+		buf=buf_;
+		bufLength=length_;
+		size=records_;
+		firstRecordNum=firstRecordNum_;
+		fasta=fasta_;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------           Parsing            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Fills in record offsets from the raw text, converting qualities in place.
+	 * Must be called exactly once, before any accessors.
+	 * @param interleaved_ True if consecutive records are mates
+	 * @param pairnum_ Pair number for all records when not interleaved
+	 * @param fname File name, for error messages
+	 */
+	void parse(boolean interleaved_, int pairnum_, String fname){
+		assert(idStart==null) : "Already parsed.";
+		interleaved=interleaved_;
+		pairnum=pairnum_;
+		assert(!interleaved || (size&1)==0) : "Odd number of records for interleaved batch: "+size;
+		idStart=new int[size];
+		idStop=new int[size];
+		basesStart=new int[size];
+		lengths=new int[size];
+		qualsStart=(fasta ? null : new int[size]);
+		try {
+			if(fasta){parseFasta(fname);}
+			else{parseFastq(fname);}
+		} catch (OutOfMemoryError e) {
+			KillSwitch.memKill(e);
+		}
+	}
+
+	/** Parses 4-line FASTQ records; qualities are offset in place. */
+	private void parseFastq(String fname){
+		final byte[] buf=this.buf;
+		final boolean trim=Shared.TRIM_READ_COMMENTS;
+		int pos=0;
+		for(int i=0; i<size; i++){
+			final long numericID=numericID(i);
+			final int h0=pos, h1=lineEnd(pos);
+			final int b0=h1+1, b1=lineEnd(b0);
+			final int p0=b1+1, p1=lineEnd(p0);
+			final int q0=p1+1, q1=lineEnd(q0);
+			pos=q1+1;
+			final int h1t=trimCR(h0, h1), b1t=trimCR(b0, b1), p1t=trimCR(p0, p1), q1t=trimCR(q0, q1);
+
+			assert(h1t>h0 && buf[h0]==(byte)'@') :
+				"\nError in "+fname+", record "+numericID+", with these 4 lines (missing header symbol):\n"+
+				new String(buf, h0, Math.max(0, q1t-h0), StandardCharsets.US_ASCII)+"\n";
+			assert(p1t-p0==1 && buf[p0]==(byte)'+') :
+				"\nError in "+fname+", record "+numericID+", with these 4 lines: (missing plus)\n"+
+				new String(buf, h0, Math.max(0, q1t-h0), StandardCharsets.US_ASCII)+"\n";
+			assert(b1t-b0==q1t-q0) :
+				"\nError in "+fname+", record "+numericID+", with these 4 lines (base-qual length mismatch):\n"+
+				new String(buf, h0, Math.max(0, q1t-h0), StandardCharsets.US_ASCII)+"\n";
+
+			final int idStop0=(trim ? firstWhitespace(h0+1, h1t) : h1t);
+			idStart[i]=h0+1;
+			idStop[i]=idStop0;
+			basesStart[i]=b0;
+			qualsStart[i]=q0;
+			final int len=b1t-b0;
+			lengths[i]=len;
+
+			if(numericID<8 && FASTQ.DETECT_QUALITY){
+				FASTQ.detectQuals(Arrays.copyOfRange(buf, q0, q0+len),
+					Arrays.copyOfRange(buf, b0, b0+len), id(i), numericID);
+			}
+			applyQualOffset(buf, q0, b0, len, -FASTQ.ASCII_OFFSET);
+		}
+		assert(pos>=bufLength) : pos+", "+bufLength;
+	}
+
+	/**
+	 * Parses FASTA records, moving sequence lines left over the newlines
+	 * between them so the bases of each record are contiguous.
+	 */
+	private void parseFasta(String fname){
+		final byte[] buf=this.buf;
+		final int limit=bufLength;
+		int pos=0, record=-1, dest=0;
+		while(pos<limit){
+			final int lineStop=lineEnd(pos), stop=trimCR(pos, lineStop);
+			if(stop>pos){
+				if(buf[pos]=='>'){
+					if(record>=0){lengths[record]=dest-basesStart[record];}
+					record++;
+					assert(record<size) : record+", "+size;
+					idStart[record]=pos+1;
+					idStop[record]=stop;
+					basesStart[record]=dest=lineStop+1;
+				}else if(record<0){
+					throw new RuntimeException("No header for record "+firstRecordNum+
+						" length "+(stop-pos)+" in "+fname);
+				}else{
+					final int len=stop-pos;
+					if(dest!=pos){System.arraycopy(buf, pos, buf, dest, len);}
+					dest+=len;
+				}
+			}
+			pos=lineStop+1;
+		}
+		if(record>=0){lengths[record]=dest-basesStart[record];}
+		assert(record+1==size) : (record+1)+", "+size;
+	}
+
+	/** Position of the next newline at or after pos, or bufLength. */
+	private int lineEnd(int pos){
+		final byte[] buf=this.buf;
+		final int limit=bufLength;
+		while(pos<limit && buf[pos]!='\n'){pos++;}
+		return pos;
+	}
+
+	/** Excludes a trailing carriage return from the line [start, stop). */
+	private int trimCR(int start, int stop){
+		return (stop>start && buf[stop-1]=='\r') ? stop-1 : stop;
+	}
+
+	private int firstWhitespace(int start, int stop){
+		for(int i=start; i<stop; i++){
+			if(Character.isWhitespace(buf[i])){return i;}
+		}
+		return stop;
+	}
+
+	/** In-place equivalent of Vector.applyQualOffset for one record. */
+	private static void applyQualOffset(final byte[] buf, final int qstart,
+			final int bstart, final int len, final int delta){
+		for(int i=0; i<len; i++){
+			byte b=buf[bstart+i];
+			int q=buf[qstart+i]+delta;
+			q=(AminoAcid.baseToNumber[b]<0 ? 0 : Math.max(2, q));
+			buf[qstart+i]=(byte)q;
+		}
+	}
+
+	/**
+	 * Keeps each record (or pair, if interleaved) with the given probability,
+	 * compacting the offset arrays; the buffer is untouched.
+	 */
+	void sample(float rate, Random randy){
+		final int step=(interleaved ? 2 : 1);
+		int kept=0;
+		for(int i=0; i<size; i+=step){
+			if(randy.nextFloat()<rate){
+				for(int j=i; j<i+step; j++){
+					idStart[kept]=idStart[j];
+					idStop[kept]=idStop[j];
+					basesStart[kept]=basesStart[j];
+					lengths[kept]=lengths[j];
+					if(qualsStart!=null){qualsStart[kept]=qualsStart[j];}
+					if(sampledIDs==null){sampledIDs=new long[size];}
+					sampledIDs[kept]=numericID(j);
+					kept++;
+				}
+			}
+		}
+		if(sampledIDs==null){sampledIDs=new long[0];}
+		size=kept;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------          Accessors           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Number of records (not pairs) in this batch. */
+	public int size(){return size;}
+
+	/** Number of pairs if interleaved, otherwise records. */
+	public int pairCount(){return interleaved ? size/2 : size;}
+
+	/** True if consecutive records are mates. */
+	public boolean interleaved(){return interleaved;}
+
+	/** True for FASTA, which has no qualities. */
+	public boolean fasta(){return fasta;}
+
+	/** The shared buffer; do not modify it while views are in use. */
+	public byte[] buffer(){return buf;}
+
+	public int length(int i){return lengths[i];}
+	public int basesStart(int i){return basesStart[i];}
+	/** Quality offset in the buffer, or -1 for FASTA. */
+	public int qualsStart(int i){return qualsStart==null ? -1 : qualsStart[i];}
+	public int idStart(int i){return idStart[i];}
+	public int idStop(int i){return idStop[i];}
+
+	/** Pair number of record i. */
+	public int pairnum(int i){return interleaved ? (i&1) : pairnum;}
+
+	/** Numeric ID of record i; mates share an ID. */
+	public long numericID(int i){
+		if(sampledIDs!=null){return sampledIDs[i];}
+		final long n=firstRecordNum+i;
+		return interleaved ? n/2 : n;
+	}
+
+	/** Sum of record lengths. */
+	public long bases(){
+		long sum=0;
+		for(int i=0; i<size; i++){sum+=lengths[i];}
+		return sum;
+	}
+
+	/** Allocates the id of record i, or returns null if it is empty. */
+	public String id(int i){
+		final int a=idStart[i], b=idStop[i];
+		return b>a ? new String(buf, a, b-a, StandardCharsets.US_ASCII) : null;
+	}
+
+	/** Copies the bases of record i into a new array. */
+	public byte[] copyBases(int i){
+		final int a=basesStart[i];
+		return Arrays.copyOfRange(buf, a, a+lengths[i]);
+	}
+
+	/** Copies the native quality scores of record i into a new array, or returns null for FASTA. */
+	public byte[] copyQuals(int i){
+		if(qualsStart==null){return null;}
+		final int a=qualsStart[i];
+		return Arrays.copyOfRange(buf, a, a+lengths[i]);
+	}
+
+	/**
+	 * Materializes record i as a validated Read.
+	 * For interleaved batches, call this on the first record of a pair to get both mates.
+	 */
+	public Read toRead(int i){
+		Read r=toRead0(i);
+		if(interleaved){
+			assert((i&1)==0) : "Call toRead() on read 1 of a pair: "+i;
+			Read r2=toRead0(i+1);
+			r.mate=r2;
+			r2.mate=r;
+		}
+		return r;
+	}
+
+	private Read toRead0(int i){
+		final byte[] bases=copyBases(i), quals=copyQuals(i);
+		final long numericID=numericID(i);
+		final Read r;
+		if(fasta){
+			final int a=idStart[i], b=idStop[i];
+			r=new Read(bases, null, new String(buf, a, b-a, StandardCharsets.US_ASCII), numericID, true);
+		}else if(FASTQ.PARSE_CUSTOM){
+			final int a=idStart[i]-1, b=trimCR(a, lineEnd(a));
+			r=FASTQ.parseCustom(bases, quals, Arrays.copyOfRange(buf, a, b), id(i), numericID);
+		}else{
+			r=new Read(bases, quals, id(i), numericID, 0);
+		}
+		r.setPairnum(pairnum(i));
+		if(!r.validated()){r.validate(true);}
+		return r;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Record text; the first bufLength bytes are valid. */
+	private final byte[] buf;
+	private final int bufLength;
+	private int size;
+	/** Zero-based number of the first record in the file, counting mates separately. */
+	public final long firstRecordNum;
+	private final boolean fasta;
+	private boolean interleaved;
+	private int pairnum;
+
+	private int[] idStart, idStop, basesStart, qualsStart, lengths;
+	/** Numeric IDs of the records kept by sample(), or null if unsampled. */
+	private long[] sampledIDs;
+
+}
@@ -0,0 +1,161 @@
+package stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import fileIO.FileFormat;
+import fileIO.ReadWrite;
+import shared.KillSwitch;
+
+/**
+ * Reads FASTQ or FASTA text in large blocks and cuts each block at the last
+ * record boundary, handing the block over as an unparsed ReadBatch.
+ * Only the partial record after the cut is copied, into the next block,
+ * so the bulk of the input is never copied after it is read.
+ *
+ * @author Brandon Imstepf
+ * @date November 25, 2025
+ */
+final class ReadBatchReader {
+
+	/**
+	 * @param ff_ Input file
+	 * @param targetBytes_ Approximate batch size in bytes
+	 * @param recordsPerUnit_ 2 if interleaved, so batches hold whole pairs; otherwise 1
+	 * @param maxRecords_ Stop after this many records, counting mates separately
+	 */
+	ReadBatchReader(FileFormat ff_, int targetBytes_, int recordsPerUnit_, long maxRecords_){
+		ff=ff_;
+		fasta=ff.fasta();
+		assert(fasta || ff.fastq()) : ff;
+		unit=recordsPerUnit_;
+		linesPerUnit=4*unit;
+		maxRecords=maxRecords_;
+		bufSize=Math.max(4096, targetBytes_);
+		buf=new byte[bufSize];
+		is=ReadWrite.getInputStream(ff.name(), false, ff.allowSubprocess(), true);
+	}
+
+	/**
+	 * Returns the next batch of whole records, or null when input is exhausted.
+	 * An incomplete FASTQ record at the end of the file is dropped.
+	 */
+	ReadBatch next(){
+		if(done){return null;}
+		while(true){
+			fill();
+			scan();
+			if(cut>0){return emit();}//fill() stops only when the buffer is full or at eof
+			if(eof){
+				if(fasta && len>0){//The last record ends at eof
+					cut=len;
+					cutRecords+=pending;
+					pending=0;
+				}
+				done=true;
+				return (cut>0 ? emit() : null);
+			}
+			if(len>=buf.length){buf=KillSwitch.copyOf(buf, buf.length*2L);}
+		}
+	}
+
+	/** Reads until the buffer is full or the input ends. */
+	private void fill(){
+		try {
+			while(len<buf.length && !eof){
+				int r=is.read(buf, len, buf.length-len);
+				if(r<0){eof=true;}
+				else{len+=r;}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		if(eof && len>scan && buf[len-1]!='\n'){//Terminate the last line
+			if(len>=buf.length){buf=KillSwitch.copyOf(buf, buf.length+1L);}
+			buf[len++]='\n';
+		}
+	}
+
+	/** Finds record boundaries among the complete lines read so far. */
+	private void scan(){
+		final byte[] buf=this.buf;
+		int pos=scan;
+		while(!done){
+			int nl=pos;
+			while(nl<len && buf[nl]!='\n'){nl++;}
+			if(nl>=len){break;}
+			if(fasta){
+				if(nl>pos && buf[pos]=='>'){
+					if(pending>0 && pending%unit==0){
+						cut=pos;
+						cutRecords+=pending;
+						pending=0;
+						if(totalRecords+cutRecords>=maxRecords){done=true; break;}
+					}
+					pending++;
+				}
+			}else{
+				pending++;
+				if(pending==linesPerUnit){
+					cut=nl+1;
+					cutRecords+=unit;
+					pending=0;
+					if(totalRecords+cutRecords>=maxRecords){done=true; pos=nl+1; break;}
+				}
+			}
+			pos=nl+1;
+		}
+		scan=pos;
+	}
+
+	/** Hands [0, cut) to a new batch and moves the remainder to a new buffer. */
+	private ReadBatch emit(){
+		assert(cut>0) : cut;
+		ReadBatch rb=new ReadBatch(buf, cut, cutRecords, totalRecords, fasta);
+		totalRecords+=cutRecords;
+		final int rem=len-cut;
+		byte[] next=new byte[Math.max(bufSize, rem*2)];
+		if(rem>0 && !done){System.arraycopy(buf, cut, next, 0, rem);}
+		buf=next;
+		len=(done ? 0 : rem);
+		scan=(done ? 0 : scan-cut);
+		cut=0;
+		cutRecords=0;
+		return rb;
+	}
+
+	/** Returns true if there was an error. */
+	boolean close(){
+		if(is==null){return false;}
+		boolean error=ReadWrite.finishReading(is, ff.name(), ff.allowSubprocess());
+		is=null;
+		return error;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final FileFormat ff;
+	private InputStream is;
+	private final boolean fasta;
+	private final int unit, linesPerUnit;
+	private final long maxRecords;
+	private final int bufSize;
+
+	private byte[] buf;
+	/** Valid bytes in buf */
+	private int len=0;
+	/** Start of the first line not yet scanned */
+	private int scan=0;
+	/** End of the last complete group of records */
+	private int cut=0;
+	/** Records before cut */
+	private int cutRecords=0;
+	/** FASTQ lines or FASTA headers seen after cut */
+	private int pending=0;
+	/** Records already emitted */
+	private long totalRecords=0;
+	private boolean eof=false, done=false;
+
+}
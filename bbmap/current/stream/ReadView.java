@@ -0,0 +1,71 @@
+package stream;
+
+/**
+ * Reusable read-only window onto one record of a ReadBatch.
+ * Gives Read-like access to bases, qualities and the header without
+ * allocating anything per record; set() repoints it to another record.
+ *
+ * <p>A view is only valid while its batch is; use toRead() or the copy
+ * methods to keep a record.  Bases are unvalidated file text.
+ *
+ * @author Brandon Imstepf
+ * @date November 25, 2025
+ */
+public final class ReadView {
+
+	/** Creates an unset view. */
+	public ReadView(){}
+
+	/** Creates a view of record i of batch b. */
+	public ReadView(ReadBatch b, int i){set(b, i);}
+
+	/** Points this view at record i of batch b. */
+	public ReadView set(ReadBatch b, int i){
+		batch=b;
+		index=i;
+		buf=b.buffer();
+		basesStart=b.basesStart(i);
+		qualsStart=b.qualsStart(i);
+		length=b.length(i);
+		return this;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------          Accessors           ----------------*/
+	/*--------------------------------------------------------------*/
+
+	public int length(){return length;}
+	public byte base(int i){return buf[basesStart+i];}
+	/** Native quality score at i; only valid if hasQuality(). */
+	public byte qual(int i){return buf[qualsStart+i];}
+	public boolean hasQuality(){return qualsStart>=0;}
+
+	/** Allocates and returns the read name. */
+	public String id(){return batch.id(index);}
+	public long numericID(){return batch.numericID(index);}
+	public int pairnum(){return batch.pairnum(index);}
+
+	/** The shared buffer holding this record. */
+	public byte[] buffer(){return buf;}
+	public int basesStart(){return basesStart;}
+	/** Quality offset in the buffer, or -1 for FASTA. */
+	public int qualsStart(){return qualsStart;}
+	public ReadBatch batch(){return batch;}
+	public int index(){return index;}
+
+	public byte[] copyBases(){return batch.copyBases(index);}
+	public byte[] copyQuals(){return batch.copyQuals(index);}
+
+	/** Materializes this record (and its mate, if interleaved) as a Read. */
+	public Read toRead(){return batch.toRead(index);}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private ReadBatch batch;
+	private int index;
+	private byte[] buf;
+	private int basesStart, qualsStart, length;
+
+}
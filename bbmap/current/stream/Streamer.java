@@ -45,6 +45,20 @@ public interface Streamer {
 	 * May return null or throw UnsupportedOperationException for FASTA/FASTQ.
 	 */
 	public ListNum<SamLine> nextLines();
+	
+	/** 
+	 * Requests ReadBatches through nextBatch() instead of Reads through nextList().
+	 * Must be called before start().
+	 * @return True if this streamer supports batch mode
+	 */
+	public default boolean setBatchMode(boolean b){return !b;}
+	
+	/** 
+	 * Returns next ordered list of ReadBatches in batch mode, or null when exhausted.
+	 */
+	public default ListNum<ReadBatch> nextBatch(){
+		throw new UnsupportedOperationException(getClass().getSimpleName()+" does not support batch mode");
+	}
 
 	/** 
 	 * Returns true if more data may be available.
@@ -0,0 +1,279 @@
+package stream.bam;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import map.IntObjectMap;
+import structures.LongList;
+
+/**
+ * Reads BAM index files (.bai or .csi) and finds the file chunks that may hold
+ * alignments overlapping a reference interval.
+ *
+ * <p>Both formats map hierarchical bins to lists of BGZF virtual offset chunks.
+ * BAI uses fixed 16kb bins over 6 levels plus a 16kb linear index of minimum offsets;
+ * CSI has a configurable minimum bin size and depth, stores the minimum offset per bin,
+ * and is itself BGZF-compressed.  The reader accepts either, compressed or not.
+ *
+ * <p>Queries follow the standard procedure: collect the chunks of every bin overlapping
+ * the interval, drop chunks ending before the minimum offset for the interval start,
+ * then sort and merge.  The chunks may still hold non-overlapping alignments,
+ * so callers must filter records by position.
+ *
+ * @author Brandon Imstepf
+ * @date November 12, 2025
+ */
+public final class BamIndexReader{
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Load the index for a BAM file, looking for x.bam.bai, x.bam.csi, then x.bai.
+	 * @param bamPath Path to the BAM file
+	 * @return The index, or null if none exists
+	 * @throws IOException if an index exists but cannot be read
+	 */
+	public static BamIndexReader load(String bamPath) throws IOException{
+		String path=findIndex(bamPath);
+		return path==null ? null : new BamIndexReader(path);
+	}
+
+	/** @return Path of the index for this BAM file, or null if none exists */
+	public static String findIndex(String bamPath){
+		String[] candidates={bamPath+".bai", bamPath+".csi",
+			bamPath.endsWith(".bam") ? bamPath.substring(0, bamPath.length()-4)+".bai" : null};
+		for(String s : candidates){
+			if(s!=null && new File(s).isFile()){return s;}
+		}
+		return null;
+	}
+
+	/**
+	 * Read an index file.
+	 * @param indexPath Path to a .bai or .csi file
+	 * @throws IOException if the file cannot be read or is not a BAM index
+	 */
+	public BamIndexReader(String indexPath) throws IOException{
+		path=indexPath;
+		try(InputStream is=openIndex(indexPath)){
+			BamReader reader=new BamReader(is);
+			byte[] magic=reader.readBytes(4);
+			if(magic[0]=='B' && magic[1]=='A' && magic[2]=='I' && magic[3]==1){
+				csi=false;
+				minShift=BAI_MIN_SHIFT;
+				depth=BAI_DEPTH;
+			}else if(magic[0]=='C' && magic[1]=='S' && magic[2]=='I' && magic[3]==1){
+				csi=true;
+				minShift=reader.readInt32();
+				depth=reader.readInt32();
+				int lAux=reader.readInt32();
+				if(lAux>0){reader.readBytes(lAux);} //Aux data (tabix metadata); unused for BAM
+			}else{
+				throw new IOException("Not a BAI or CSI index: "+indexPath);
+			}
+			if(minShift<1 || depth<1 || minShift+3*depth>62){
+				throw new IOException("Invalid index geometry: min_shift="+minShift+", depth="+depth);
+			}
+			binLimit=(int)(((1L<<((depth+1)*3))-1)/7);
+
+			final int nRef=reader.readInt32();
+			if(nRef<0){throw new IOException("Negative reference count in "+indexPath);}
+			refs=new RefIndex[nRef];
+			for(int r=0; r<nRef; r++){
+				refs[r]=readRef(reader);
+			}
+		}
+	}
+
+	/** Open an index, decompressing it if it is BGZF (as CSI files normally are) */
+	private static InputStream openIndex(String indexPath) throws IOException{
+		BufferedInputStream bis=new BufferedInputStream(new FileInputStream(indexPath), 65536);
+		bis.mark(2);
+		final boolean gzipped=(bis.read()==0x1F && bis.read()==0x8B);
+		bis.reset();
+		return gzipped ? new BgzfInputStream(bis) : bis;
+	}
+
+	private RefIndex readRef(BamReader reader) throws IOException{
+		final int nBin=reader.readInt32();
+		RefIndex ref=new RefIndex(Math.max(4, nBin));
+		for(int b=0; b<nBin; b++){
+			final int bin=reader.readInt32();
+			final long loffset=(csi ? reader.readInt64() : 0);
+			final int nChunk=reader.readInt32();
+			long[] chunks=new long[2*nChunk];
+			for(int c=0; c<chunks.length; c++){
+				chunks[c]=reader.readInt64();
+			}
+			if(bin>binLimit){continue;} //Pseudo-bin with mapped/unmapped counts
+			ref.bins.put(bin, chunks);
+			if(csi){ref.loffsets.put(bin, loffset);}
+		}
+		if(!csi){
+			final int nIntv=reader.readInt32();
+			ref.linear=new long[nIntv];
+			for(int i=0; i<nIntv; i++){
+				ref.linear[i]=reader.readInt64();
+			}
+		}
+		return ref;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Find the file chunks that may contain alignments overlapping [beg, end) on a reference.
+	 * @param refID Reference index in the BAM header
+	 * @param beg 0-based start, inclusive
+	 * @param end 0-based end, exclusive
+	 * @return Sorted, non-overlapping chunks as pairs of virtual offsets: start, end, start, end...
+	 */
+	public LongList query(int refID, long beg, long end){
+		LongList out=new LongList(16);
+		if(refID<0 || refID>=refs.length || beg>=end){return out;}
+		final RefIndex ref=refs[refID];
+		if(ref.bins.isEmpty()){return out;}
+		beg=Math.max(0, beg);
+
+		final long minOffset=minOffset(ref, beg);
+		LongList found=new LongList(64);
+		final int[] bins=reg2bins(beg, end, new int[64]);
+		for(int i=1; i<=bins[0]; i++){
+			long[] chunks=ref.bins.get(bins[i]);
+			if(chunks==null){continue;}
+			for(int c=0; c<chunks.length; c+=2){
+				if(chunks[c+1]>minOffset){
+					found.add(chunks[c]);
+					found.add(chunks[c+1]);
+				}
+			}
+		}
+		return merge(found, out);
+	}
+
+	/** Number of references in the index */
+	public int numRefs(){return refs.length;}
+
+	/** True for a CSI index */
+	public boolean csi(){return csi;}
+
+	@Override
+	public String toString(){
+		return (csi ? "CSI" : "BAI")+" index "+path+" with "+refs.length+" references";
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Lowest offset at which an alignment overlapping beg can start.
+	 * BAI reads the linear index; CSI reads the loffset of the smallest bin holding beg,
+	 * or of its nearest ancestor present in the index.
+	 */
+	private long minOffset(RefIndex ref, long beg){
+		if(!csi){
+			if(ref.linear==null || ref.linear.length<1){return 0;}
+			final int i=(int)Math.min(beg>>minShift, ref.linear.length-1);
+			return ref.linear[i];
+		}
+		int bin=binFirst(depth)+(int)(beg>>minShift);
+		while(bin>0 && !ref.bins.contains(bin)){bin=(bin-1)>>3;} //Parent bin
+		Long off=ref.loffsets.get(bin);
+		return off==null ? 0 : off;
+	}
+
+	/**
+	 * List the bins overlapping [beg, end) at every level, as htslib's hts_reg2bins.
+	 * @param list Workspace; element 0 receives the count
+	 * @return The list, grown if needed
+	 */
+	private int[] reg2bins(long beg, long end, int[] list){
+		int s=minShift+depth*3;
+		end=Math.min(end, 1L<<s);
+		end--;
+		int n=0;
+		for(int level=0, t=0; level<=depth; s-=3, t+=1<<(level*3), level++){
+			final int b=t+(int)(beg>>s), e=t+(int)(end>>s);
+			if(n+e-b+2>list.length){list=Arrays.copyOf(list, Math.max(2*list.length, n+e-b+2));}
+			for(int i=b; i<=e; i++){list[++n]=i;}
+		}
+		list[0]=n;
+		return list;
+	}
+
+	/** First bin of the finest level */
+	private static int binFirst(int depth){
+		return (int)(((1L<<(depth*3))-1)/7);
+	}
+
+	/** Sort chunks by start and merge those that overlap or share a BGZF block */
+	private static LongList merge(LongList found, LongList out){
+		final int n=found.size()/2;
+		if(n<1){return out;}
+		long[][] pairs=new long[n][];
+		for(int i=0; i<n; i++){
+			pairs[i]=new long[] {found.get(2*i), found.get(2*i+1)};
+		}
+		Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+		long beg=pairs[0][0], end=pairs[0][1];
+		for(int i=1; i<n; i++){
+			final long[] p=pairs[i];
+			if(p[0]<=end || (p[0]>>>16)==(end>>>16)){
+				end=Math.max(end, p[1]);
+			}else{
+				out.add(beg);
+				out.add(end);
+				beg=p[0];
+				end=p[1];
+			}
+		}
+		out.add(beg);
+		out.add(end);
+		return out;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Classes        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Index data for one reference */
+	private static final class RefIndex{
+
+		RefIndex(int binCapacity){
+			bins=new IntObjectMap<long[]>(binCapacity);
+		}
+
+		/** Bin number to chunk pairs */
+		final IntObjectMap<long[]> bins;
+		/** CSI only: bin number to minimum offset of alignments in the bin */
+		final IntObjectMap<Long> loffsets=new IntObjectMap<Long>(4);
+		/** BAI only: minimum offset per 16kb window */
+		long[] linear;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final String path;
+	private final boolean csi;
+	/** log2 of the smallest bin width */
+	private final int minShift;
+	/** Levels below the root bin */
+	private final int depth;
+	/** Bins above this are pseudo-bins */
+	private final int binLimit;
+	private final RefIndex[] refs;
+
+	private static final int BAI_MIN_SHIFT=14;
+	private static final int BAI_DEPTH=5;
+}
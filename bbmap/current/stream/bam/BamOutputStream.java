@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import fileIO.GzipOutputStreamMT;
 import shared.LineParser1;
 import stream.SamLine;
 import structures.ByteBuilder;
@@ -34,8 +35,8 @@ public class BamOutputStream extends OutputStream {
 	public BamOutputStream(OutputStream out, boolean closeUnderlying, int compression, int threads) {
 		this.closeUnderlying = closeUnderlying;
 		if (BgzfSettings.USE_MULTITHREADED_BGZF && threads>1) {
-			int blockSize = Math.max(1, BgzfSettings.WRITE_BLOCK_SIZE);
-			mtOut = new BgzfOutputStreamMT(out, threads, compression, blockSize);
+			int blockSize = Math.max(1, Math.min(BgzfSettings.WRITE_BLOCK_SIZE, GzipOutputStreamMT.MAX_BGZF_BLOCK_SIZE));
+			mtOut = new GzipOutputStreamMT(out, threads, compression, true, blockSize);
 			stOut = null;
 			bgzf = mtOut;
 //			System.err.println("MT: compression="+compression+", threads="+threads+", blockSize="+blockSize);
@@ -212,7 +213,7 @@ public class BamOutputStream extends OutputStream {
 	private static final int FLUSH_THRESHOLD = 256;
 
 	private final boolean closeUnderlying;
-	private final BgzfOutputStreamMT mtOut;
+	private final GzipOutputStreamMT mtOut;
 	private final BgzfOutputStream stOut;
 	private final OutputStream bgzf;
 	private final BamWriterHelper helper;
@@ -44,6 +44,16 @@ public class BamReader {
 		return wrapper.getInt()&0xFFFFFFFFL;
 	}
 
+	/**
+	 * Read a 64-bit signed integer (little-endian).
+	 * BAM index offsets are unsigned but never exceed 63 bits in practice.
+	 */
+	public long readInt64() throws IOException {
+		readFully(temp, 0, 8);
+		wrapper.position(0);
+		return wrapper.getLong();
+	}
+
 	/**
 	 * Read a 16-bit signed integer (little-endian).
 	 */
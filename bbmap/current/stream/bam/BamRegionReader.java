@@ -0,0 +1,248 @@
+package stream.bam;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import fileIO.ByteFile;
+import shared.Tools;
+import structures.LongList;
+
+/**
+ * Returns the BAM records overlapping a set of intervals, using the file's .bai or .csi index
+ * to seek to the chunks that hold them instead of decompressing the whole file.
+ *
+ * <p>Intervals are sorted and merged per reference and visited in file order, so records
+ * come out in coordinate order, and a record overlapping several intervals is returned once.
+ * Records are returned as BamStreamer reads them: the bytes after block_size.
+ *
+ * <p>Regions are given as a comma-delimited list of name, name:start, or name:start-end,
+ * with 1-based inclusive coordinates as in samtools; or as the path of a BED file,
+ * with 0-based half-open coordinates.
+ *
+ * @author Brandon Imstepf
+ * @date November 12, 2025
+ */
+public final class BamRegionReader{
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Initialization        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * @param bamPath Coordinate-sorted, indexed BAM file
+	 * @param regions Region list or BED file
+	 * @param refNames Reference names from the BAM header, in order
+	 * @param refLengths Reference lengths from the BAM header
+	 * @throws IOException if the BAM has no index or cannot be opened
+	 */
+	public BamRegionReader(String bamPath, String regions, String[] refNames, long[] refLengths) throws IOException{
+		index=BamIndexReader.load(bamPath);
+		if(index==null){
+			throw new IOException("Region queries need an index; none found for "+bamPath+
+				"\nCreate one with BamIndexWriter or samtools index.");
+		}
+		intervals=parseRegions(regions, refNames, refLengths);
+		bgzf=new BgzfInputStream(FileChannel.open(new File(bamPath).toPath(), StandardOpenOption.READ));
+		reader=new BamReader(bgzf);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Public Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * @return The next record overlapping an interval, without its block_size;
+	 * or null when all intervals are done
+	 */
+	public byte[] next() throws IOException{
+		while(true){
+			if(chunkPos>=chunks.size()){
+				if(!nextInterval()){return null;}
+				continue;
+			}
+			if(!inChunk){
+				bgzf.seek(chunks.get(chunkPos));
+				inChunk=true;
+			}
+			if(bgzf.getVirtualOffset()>=chunks.get(chunkPos+1)){
+				chunkPos+=2;
+				inChunk=false;
+				continue;
+			}
+
+			final byte[] record;
+			try{
+				final long blockSize=reader.readUint32();
+				record=reader.readBytes((int)blockSize);
+			}catch(EOFException e){
+				chunkPos=chunks.size();
+				continue;
+			}
+			if(record.length<FIXED_RECORD_FIELDS){
+				throw new IOException("Corrupted BAM record: truncated fixed fields");
+			}
+
+			final int refID=readInt(record, 0);
+			final int pos=readInt(record, 4);
+			if(refID>current.ref || (refID==current.ref && pos>=current.end)){
+				chunkPos=chunks.size(); //Sorted, so nothing later in this interval
+				continue;
+			}
+			if(refID<current.ref){continue;}
+			final long stop=pos+Math.max(1, referenceSpan(record));
+			if(stop<=current.beg){continue;}
+			if(previous!=null && previous.ref==refID && stop>previous.beg && pos<previous.end){
+				continue; //Already returned for the previous interval
+			}
+			recordsOut++;
+			return record;
+		}
+	}
+
+	/** Close the BAM file */
+	public void close() throws IOException{
+		bgzf.close();
+	}
+
+	/** Number of merged intervals */
+	public int intervals(){return intervals.size();}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Methods        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Advance to the next interval and look up its chunks */
+	private boolean nextInterval(){
+		if(intervalPos>=intervals.size()){return false;}
+		previous=current;
+		current=intervals.get(intervalPos++);
+		if(previous!=null && previous.ref!=current.ref){previous=null;}
+		chunks=index.query(current.ref, current.beg, current.end);
+		chunkPos=0;
+		inChunk=false;
+		return true;
+	}
+
+	/** Reference bases covered by a record's CIGAR */
+	private static int referenceSpan(byte[] record){
+		final int lReadName=record[8]&0xFF;
+		final int nCigar=(record[12]&0xFF)|((record[13]&0xFF)<<8);
+		int span=0;
+		for(int i=0, p=FIXED_RECORD_FIELDS+lReadName; i<nCigar && p+4<=record.length; i++, p+=4){
+			final int cigarOp=readInt(record, p);
+			final int op=cigarOp&0xF;
+			if(op==0 || op==2 || op==3 || op==7 || op==8){span+=cigarOp>>>4;} //M, D, N, =, X
+		}
+		return span;
+	}
+
+	private static int readInt(byte[] array, int p){
+		return (array[p]&0xFF)|((array[p+1]&0xFF)<<8)|((array[p+2]&0xFF)<<16)|((array[p+3]&0xFF)<<24);
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------        Region Parsing        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/**
+	 * Parse regions into intervals sorted by reference and start, with overlaps merged.
+	 * @throws IllegalArgumentException for unknown references or malformed coordinates
+	 */
+	static ArrayList<Interval> parseRegions(String regions, String[] refNames, long[] refLengths){
+		HashMap<String, Integer> refMap=new HashMap<String, Integer>(refNames.length*2+1);
+		for(int i=0; i<refNames.length; i++){refMap.put(refNames[i], i);}
+
+		ArrayList<Interval> list=new ArrayList<Interval>();
+		if(new File(regions).isFile()){
+			ByteFile bf=ByteFile.makeByteFile(regions, false);
+			for(byte[] line=bf.nextLine(); line!=null; line=bf.nextLine()){
+				if(line.length<1 || line[0]=='#' || Tools.startsWith(line, "track") || Tools.startsWith(line, "browser")){continue;}
+				String[] split=new String(line).split("\t");
+				Integer ref=refMap.get(split[0]);
+				if(ref==null){throw new IllegalArgumentException("Unknown reference in "+regions+": "+split[0]);}
+				final long beg=(split.length>1 ? Long.parseLong(split[1]) : 0);
+				final long end=(split.length>2 ? Long.parseLong(split[2]) : refLengths[ref]);
+				list.add(new Interval(ref, beg, end));
+			}
+			bf.close();
+		}else{
+			for(String region : regions.split(",")){
+				list.add(parseRegion(region, refMap, refLengths));
+			}
+		}
+		return merge(list);
+	}
+
+	/** Parse name, name:start, or name:start-end, with 1-based inclusive coordinates */
+	private static Interval parseRegion(String region, HashMap<String, Integer> refMap, long[] refLengths){
+		Integer ref=refMap.get(region);
+		if(ref!=null){return new Interval(ref, 0, refLengths[ref]);}
+
+		final int colon=region.lastIndexOf(':');
+		if(colon>0){ref=refMap.get(region.substring(0, colon));}
+		if(ref==null){throw new IllegalArgumentException("Unknown reference in region "+region);}
+		try{
+			String coords=region.substring(colon+1);
+			final int dash=coords.indexOf('-');
+			final long start=Long.parseLong(dash<0 ? coords : coords.substring(0, dash));
+			final long stop=(dash<0 ? refLengths[ref] : Long.parseLong(coords.substring(dash+1)));
+			if(start<1 || stop<start){throw new IllegalArgumentException("Invalid coordinates in region "+region);}
+			return new Interval(ref, start-1, stop);
+		}catch(NumberFormatException e){
+			throw new IllegalArgumentException("Invalid coordinates in region "+region);
+		}
+	}
+
+	private static ArrayList<Interval> merge(ArrayList<Interval> list){
+		list.sort((a, b) -> a.ref!=b.ref ? a.ref-b.ref : Long.compare(a.beg, b.beg));
+		ArrayList<Interval> merged=new ArrayList<Interval>(list.size());
+		Interval prev=null;
+		for(Interval iv : list){
+			if(iv.end<=iv.beg){continue;}
+			if(prev!=null && prev.ref==iv.ref && iv.beg<=prev.end){
+				prev=new Interval(prev.ref, prev.beg, Math.max(prev.end, iv.end));
+				merged.set(merged.size()-1, prev);
+			}else{
+				prev=iv;
+				merged.add(iv);
+			}
+		}
+		return merged;
+	}
+
+	/*--------------------------------------------------------------*/
+	/*----------------         Inner Classes        ----------------*/
+	/*--------------------------------------------------------------*/
+
+	/** Reference index, and 0-based half-open coordinates */
+	record Interval(int ref, long beg, long end){}
+
+	/*--------------------------------------------------------------*/
+	/*----------------            Fields            ----------------*/
+	/*--------------------------------------------------------------*/
+
+	private final BamIndexReader index;
+	private final ArrayList<Interval> intervals;
+	private final BgzfInputStream bgzf;
+	private final BamReader reader;
+
+	private int intervalPos=0;
+	private Interval current;
+	/** The previous interval, if on the same reference */
+	private Interval previous;
+	/** Chunk pairs for the current interval */
+	private LongList chunks=new LongList(2);
+	private int chunkPos=0;
+	/** True once the stream is positioned in chunk chunkPos */
+	private boolean inChunk=false;
+
+	/** Records returned */
+	public long recordsOut=0;
+
+	private static final int FIXED_RECORD_FIELDS=32;
+}
@@ -1,10 +1,13 @@
 package stream.bam;
 
+import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
@@ -22,9 +25,20 @@ public class BgzfInputStream extends InputStream {
 
 	public BgzfInputStream(InputStream in) {
 		this.in = in;
+		this.channel = null;
 		this.inflater = new Inflater(true); // true = nowrap mode for raw deflate
 	}
 
+	/**
+	 * Read from a file channel, so the stream can seek to virtual offsets from a BAM index.
+	 * Closing the stream closes the channel.
+	 */
+	public BgzfInputStream(FileChannel channel) {
+		this.in = new BufferedInputStream(Channels.newInputStream(channel), SEEK_BUFFER);
+		this.channel = channel;
+		this.inflater = new Inflater(true);
+	}
+
 	/**
 	 * Return the current BGZF virtual offset.
 	 * Upper 48 bits represent the compressed block offset; lower 16 bits represent the in-block position.
@@ -33,6 +47,33 @@ public class BgzfInputStream extends InputStream {
 		return (blockCompressedStart << 16) | (bufferPos & 0xFFFFL);
 	}
 
+	/**
+	 * Move to a BGZF virtual offset, as recorded in a .bai or .csi index.
+	 * Requires the FileChannel constructor.
+	 * @param virtualOffset Compressed block start in the upper 48 bits; position within the block in the lower 16
+	 * @throws IOException if the stream is not seekable or the offset is past the end of its block
+	 */
+	public void seek(long virtualOffset) throws IOException {
+		if (channel == null) {
+			throw new IOException("Seeking requires a BgzfInputStream opened on a FileChannel.");
+		}
+		exitPlainGzipMode();
+		final long coffset = virtualOffset >>> 16;
+		final int uoffset = (int) (virtualOffset & 0xFFFF);
+		channel.position(coffset);
+		in = new BufferedInputStream(Channels.newInputStream(channel), SEEK_BUFFER);
+		filePointer = coffset;
+		blockCompressedStart = coffset;
+		bufferPos = 0;
+		bufferLimit = 0;
+		if (uoffset > 0) {
+			if (!readBlock() || uoffset > bufferLimit) {
+				throw new IOException("Invalid BGZF virtual offset: " + virtualOffset);
+			}
+			bufferPos = uoffset;
+		}
+	}
+
 	@Override
 	public int read() throws IOException {
 		if (bufferPos >= bufferLimit) {
@@ -242,7 +283,10 @@ public class BgzfInputStream extends InputStream {
 		}
 	}
 
-	private final InputStream in;
+	/** Replaced on each seek, discarding data buffered from the old position */
+	private InputStream in;
+	/** Non-null only for seekable streams */
+	private final FileChannel channel;
 	private final Inflater inflater;
 	private final byte[] uncompressedBuffer = new byte[65536];
 	private int bufferPos = 0;
@@ -252,6 +296,9 @@ public class BgzfInputStream extends InputStream {
 	private boolean plainGzipMode = false;
 	private GZIPInputStream plainGzipStream = null;
 
+	/** Read-ahead per seek; index chunks are usually a few blocks */
+	private static final int SEEK_BUFFER = 65536;
+
 	private void enterPlainGzip(byte[] header, byte[] xlenBytes, byte[] extra) throws IOException {
 		if (plainGzipMode) {
 			return;
@@ -1,5 +1,6 @@
 package stream.bam;
 
+import fileIO.GzipOutputStreamMT;
 import shared.Shared;
 import shared.Tools;
 
@@ -21,12 +22,18 @@ public final class BgzfSettings {
 	/** Number of worker threads to use when compressing BGZF blocks. */
 	public static int WRITE_THREADS = Tools.mid(1, Shared.threads(), 32);
 
-	/** Maximum uncompressed BGZF block size used for writers. */
-	public static int WRITE_BLOCK_SIZE = BgzfOutputStreamMT.DEFAULT_BLOCK_SIZE;
+	/**
+	 * Maximum uncompressed BGZF block size used for multithreaded writers.
+	 * Capped at {@link GzipOutputStreamMT#MAX_BGZF_BLOCK_SIZE} so incompressible blocks still fit.
+	 */
+	public static int WRITE_BLOCK_SIZE = GzipOutputStreamMT.MAX_BGZF_BLOCK_SIZE;
 
 	/** Compression level (0-9) used for writers. */
 	public static int WRITE_COMPRESSION_LEVEL = 6;
 
+	/** Use the FILTERED deflate strategy for multithreaded BGZF output. */
+	public static boolean FILTERED_BGZF = false;
+
 	private BgzfSettings() {
 		// Utility class
 	}
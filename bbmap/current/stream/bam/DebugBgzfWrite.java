@@ -4,6 +4,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import fileIO.GzipOutputStreamMT;
+
 /**
  * Debug tool to trace BGZF writing in detail.
  */
@@ -18,7 +20,7 @@ public class DebugBgzfWrite {
 		try (FileInputStream fis = new FileInputStream(input);
 		     BgzfInputStream in = new BgzfInputStream(fis);
 		     FileOutputStream fos = new FileOutputStream(output);
-		     BgzfOutputStreamMT out = new BgzfOutputStreamMT(fos, 1, 6)) {
+		     GzipOutputStreamMT out = new GzipOutputStreamMT(fos, 1, 6, true)) {
 
 			byte[] buffer = new byte[8192];
 			int n;
@@ -7,11 +7,13 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import fileIO.GzipOutputStreamMT;
+
 /**
  * Stress-test BGZF multithreaded streams using a simple repetitive dataset.
  *
  * Generates a plain-text file containing 40,000 lines of "AAAAAAAAAAAAAAAAAAAA\n"
- * (~840 KB), repeatedly compresses it with {@link BgzfOutputStreamMT}, then
+ * (~840 KB), repeatedly compresses it with {@link GzipOutputStreamMT} in BGZF mode, then
  * decompresses it with {@link BgzfInputStreamMT}, verifying byte-for-byte
  * equality after each round-trip. The goal is to exercise queue ordering and
  * synchronization under repeated runs.
@@ -93,7 +95,7 @@ public class TestBgzfA80k {
 	private static void compressFile(String input, String output, int threads, int blockSize) throws IOException {
 		try (FileInputStream fis = new FileInputStream(input);
 		     FileOutputStream fos = new FileOutputStream(output);
-		     BgzfOutputStreamMT bgzf = new BgzfOutputStreamMT(fos, threads, 6, blockSize)) {
+		     GzipOutputStreamMT bgzf = new GzipOutputStreamMT(fos, threads, 6, true, blockSize)) {
 
 			byte[] buffer = new byte[32 * 1024];
 			int n;
@@ -5,10 +5,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import fileIO.GzipOutputStreamMT;
+
 /**
  * Test program for multithreaded BGZF streams.
  *
- * Tests both BgzfInputStreamMT and BgzfOutputStreamMT by:
+ * Tests both BgzfInputStreamMT and GzipOutputStreamMT by:
  * 1. Reading a BGZF file (BAM)
  * 2. Writing it to a new file
  * 3. Reading both files and comparing byte-by-byte
@@ -76,7 +78,7 @@ public class TestBgzfMultithreaded {
 
 			// Create output stream
 			Object outStream = mtWrite ?
-				new BgzfOutputStreamMT(fos, threads, 6) :
+				new GzipOutputStreamMT(fos, threads, 6, true) :
 				new BgzfOutputStream(fos, 6);
 
 			// Copy data
@@ -86,7 +88,7 @@ public class TestBgzfMultithreaded {
 			if (mtRead) {
 				BgzfInputStreamMT in = (BgzfInputStreamMT)inStream;
 				if (mtWrite) {
-					BgzfOutputStreamMT out = (BgzfOutputStreamMT)outStream;
+					GzipOutputStreamMT out = (GzipOutputStreamMT)outStream;
 					while ((n = in.read(buffer)) >= 0) {
 						if (n > 0) {
 							out.write(buffer, 0, n);
@@ -109,7 +111,7 @@ public class TestBgzfMultithreaded {
 			} else {
 				BgzfInputStream in = (BgzfInputStream)inStream;
 			if (mtWrite) {
-				BgzfOutputStreamMT out = (BgzfOutputStreamMT)outStream;
+				GzipOutputStreamMT out = (GzipOutputStreamMT)outStream;
 				while ((n = in.read(buffer)) >= 0) {
 					if (n > 0) {
 						out.write(buffer, 0, n);
@@ -4,6 +4,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import fileIO.GzipOutputStreamMT;
+
 /**
  * Simple BGZF test with known data.
  * Creates simple repeating pattern, compresses/decompresses, verifies correctness.
@@ -24,7 +26,7 @@ public class TestBgzfSimple {
 		createTestData(testFile);
 
 		// Test 1: Compress with our compressor
-		System.out.println("Test 1: Compressing with BgzfOutputStreamMT...");
+		System.out.println("Test 1: Compressing with GzipOutputStreamMT...");
 		compressFile(testFile, bgzfFile);
 		System.out.println("  Output: " + bgzfFile);
 		System.out.println("  ✅ Compression complete\n");
@@ -71,7 +73,7 @@ public class TestBgzfSimple {
 
 		try (FileInputStream fis = new FileInputStream(input);
 		     FileOutputStream fos = new FileOutputStream(output);
-		     BgzfOutputStreamMT bgzf = new BgzfOutputStreamMT(fos, 1, 6)) {
+		     GzipOutputStreamMT bgzf = new GzipOutputStreamMT(fos, 1, 6, true)) {
 
 			byte[] buffer = new byte[8192];
 			int n;
@@ -4,6 +4,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import fileIO.GzipOutputStreamMT;
+
 /**
  * Systematic test with increasing block counts.
  * Tests 1 block, 2 blocks, 4 blocks, 8 blocks of simple 'A' data.
@@ -84,7 +86,7 @@ public class TestBgzfSystematic {
 
 		try (FileInputStream fis = new FileInputStream(input);
 		     FileOutputStream fos = new FileOutputStream(output);
-		     BgzfOutputStreamMT bgzf = new BgzfOutputStreamMT(fos, 1, 6)) {
+		     GzipOutputStreamMT bgzf = new GzipOutputStreamMT(fos, 1, 6, true)) {
 
 			byte[] buffer = new byte[8192];
 			int n;
@@ -16,6 +16,9 @@ Usage:  filtersam.sh in=<file> out=<file> vcf=<file>
 
 Parameters:
 in=<file>       Input sam or bam file.
+region=         Only process reads overlapping these regions of a sorted,
+                indexed bam: name, name:start, or name:start-end (1-based),
+                comma-delimited, or a bed file.  Needs a .bai or .csi index.
 ref=<file>      Optional fasta reference file.
 out=<file>      Output file for good reads.
 outb=<file>     Output file for bad reads.
@@ -5,18 +5,34 @@ echo "
 Written by Brian Bushnell
 Last modified October 10, 2018
 
-Description:  Merges .pgm files.
+Description:  Merges .pgm files.  New genomes can be added to the merged
+model, so an existing model can be extended without reprocessing the
+genomes it was built from.
 
 Usage:  mergepgm.sh in=x.pgm,y.pgm out=z.pgm
+        mergepgm.sh in=x.pgm fna=new1.fna,new2.fna out=z.pgm
 
 File parameters:
 in=<file,file>  A pgm file or comma-delimited list of pgm files.
 out=<file>      Output filename.
+fna=<file>      A fasta file or comma-delimited list of genomes to train on
+                and add to the merged input models.  Genomes are processed
+                in parallel, one per thread.  With no in=, a new model
+                is built from the genomes alone.
+gff=<file>      Gff files matching the fna files.  If absent, a fasta file
+                'foo.fasta' will imply the presence of 'foo.gff'.
+t=              Maximum threads for processing genomes.
+18s=t           Count 18S from the gff files; set to false to train
+                exactly as analyzegenes.sh does.
 normalize=f     Merge proportionally to base counts, so small models
                 have equal weight to large models.  Normalization happens
                 before applying the @ multiplier.
 @ symbol        Input filenames in the form of 'x.pgm@0.1' will have
                 a multiplier applied to that model prior to merging.
+snapshot=f      Write out as a binary snapshot instead of text.  A snapshot
+                also holds the rRNA/tRNA k-mer sets and rRNA consensus
+                sequences, and loads much faster in callgenes.sh.
+                Convert a model with 'mergepgm.sh in=x.pgm out=x.pgmb snapshot'.
 
 Please contact Brian Bushnell at bbushnell@lbl.gov if you encounter any problems.
 For documentation and the latest version, visit: https://bbmap.org
@@ -16,6 +16,9 @@ Usage:        pileup.sh in=<input> out=<output>
 Input Parameters:
 in=<file>           The input sam file; this is the only required parameter.
 ref=<file>          Scans a reference fasta for per-scaffold GC counts, not otherwise needed.
+region=            Only process reads overlapping these regions of a sorted, indexed
+                    bam: name, name:start, or name:start-end (1-based), comma-delimited,
+                    or a bed file.  Needs a .bai or .csi index next to the bam.
 fastaorf=<file>     An optional fasta file with ORF header information in PRODIGAL's output format.  Must also specify 'outorf'.
 unpigz=t            Decompress with pigz for faster decompression.
 addfromref=t        Allow ref scaffolds not present in sam header to be added from the reference.
@@ -0,0 +1,86 @@
+#!/bin/bash
+
+usage(){
+echo "
+Written by Brandon Imstepf
+Last modified August 12th, 2025
+
+Description:  Converts a trained CNN network to int8 for faster gene-call
+filtering with a smaller footprint.  Each layer's input range is calibrated
+by running the float network over a sample of the training data; weights are
+then rounded to int8 with one scale per filter or dense row.  Float and int8
+scores are compared over the whole dataset, and the quantized network is
+written in the .bbnet format, which callgenes.sh net= loads directly.
+Hidden dense layers run in int8; convolutions and the output layer run
+in float over the rounded weights.
+
+Usage:  quantizenet.sh in=<network.bbnet> data=<train.tsv> out=<int8.bbnet>
+
+Parameters:
+in=<file>       Trained CNN network (*.bbnet), as written by cnntrain.sh.
+data=<file>     Tab-delimited or binary training data, as for cnntrain.sh.
+                Used for calibration and the accuracy report.
+out=<file>      Quantized network.  Optional; without it, only the report
+                is printed.
+calibrate=10000 Samples used to find input ranges, spread evenly over data.
+maxlines=<int>  Maximum samples to load (default: all).
+cutoff=0.5      Score cutoff for the accuracy and agreement report.
+
+The report gives float32 and int8 accuracy against the labels, how often
+the two agree at the cutoff, score differences, weight bytes, and scoring
+time per sample.  In callgenes.sh, nnint8=f runs a quantized network's
+rounded weights in float instead.
+
+Java Parameters:
+-Xmx            This will set Java's memory usage, overriding autodetection.
+                -Xmx20g will specify 20 gigs of RAM, and -Xmx200m will
+                specify 200 megs. The max is typically 85% of physical memory.
+-eoom           This flag will cause the process to exit if an out-of-memory
+                exception occurs.  Requires Java 8u92+.
+-da             Disable assertions.
+"
+}
+
+#This block allows symlinked shellscripts to correctly set classpath.
+pushd . > /dev/null
+DIR="${BASH_SOURCE[0]}"
+while [ -h "$DIR" ]; do
+  cd "$(dirname "$DIR")"
+  DIR="$(readlink "$(basename "$DIR")")"
+done
+cd "$(dirname "$DIR")"
+DIR="$(pwd)/"
+popd > /dev/null
+
+#DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )/"
+CP="$DIR""current/"
+
+z="-Xmx4g"
+z2="-Xms4g"
+set=0
+
+if [ -z "$1" ] || [[ $1 == -h ]] || [[ $1 == --help ]]; then
+	usage
+	exit
+fi
+
+calcXmx () {
+	source "$DIR""/calcmem.sh"
+	setEnvironment
+	parseXmx "$@"
+	if [[ $set == 1 ]]; then
+		return
+	fi
+	freeRam 4000m 42
+	z="-Xmx${RAM}m"
+	z2="-Xms${RAM}m"
+}
+calcXmx "$@"
+
+quantize() {
+	local CMD="java $EA $EOOM $z $z2 -cp $CP ml.QuantizeNet $@"
+	echo $CMD >&2
+	eval $CMD
+}
+
+quantize "$@"
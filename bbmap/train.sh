@@ -19,7 +19,8 @@ in=<file>       Tab-delimited data vectors.  The first line should look like
                 '#dims	5	1' with the number of inputs and outputs; the
                 first X columns are inputs, and the last Y the desired result.
                 Subsequent lines are tab-delimited floating point numbers.
-                Can be created via seqtovec.sh.
+                Can be created via seqtovec.sh.  Binary .bbd files written by
+                gff2tsv.sh binary=t are also accepted, and load much faster.
 validate=<file> Optional validation dataset used exclusively for evaluation.
 net=<file>      Optional input network to train.
 out=<file>      Final output network after the last epoch.
@@ -57,6 +58,11 @@ setsize=60000   Iterate through subsets of at most this size while training;
                 larger makes batches take longer.
 fpb=0.08        Only train this fraction of the subset per batch, prioritizing
                 samples with the most error; larger is slower.
+hogwild=f       Lock-free training: worker threads apply their updates
+                directly to the shared network weights instead of merging
+                them at the end of each batch.  Nondeterministic.
+hogwildbatch=16 In hogwild mode, each worker applies its updates after this
+                many samples.
 
 Evaluation parameters
 vfraction=0.1   If no validation file is given, split off this fraction of the
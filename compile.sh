@@ -1,2 +1,16 @@
 # Compile the java files
-javac --add-modules jdk.incubator.vector @sources.txt
\ No newline at end of file
+javac --add-modules jdk.incubator.vector @sources.txt
+
+# Optional: "./compile.sh bench" also compiles the JMH benchmarks in bbmap/bench.
+# JMH_HOME must be a folder holding jmh-core, jmh-generator-annprocess,
+# jopt-simple, and commons-math3 jars.  Run them with bbmap/bench.sh.
+if [[ "$1" == "bench" ]]; then
+	if [[ -z "$JMH_HOME" ]]; then
+		echo "Set JMH_HOME to a folder containing the JMH jars." >&2
+		exit 1
+	fi
+	mkdir -p bbmap/bench/build
+	javac --add-modules jdk.incubator.vector -cp "bbmap/current:$JMH_HOME/*" \
+		-processor org.openjdk.jmh.generators.BenchmarkProcessor \
+		-d bbmap/bench/build $(find bbmap/bench -name '*.java')
+fi